@@ -0,0 +1,59 @@
+package io.auklet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures metric lookups and updates with 32 threads sharing one registry, as in an application
+ * server whose request threads all record the same metrics.</p>
+ */
+@State(Scope.Benchmark)
+@Threads(32)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricRegistryBenchmark {
+
+    private MetricRegistry registry;
+    private MetricRegistry fullRegistry;
+    private Counter counter;
+    private Histogram histogram;
+
+    @Setup public void setUp() {
+        this.registry = new MetricRegistry();
+        this.counter = this.registry.get("requests", Counter.class);
+        this.histogram = this.registry.get("latency", Histogram.class);
+        this.fullRegistry = new MetricRegistry();
+        for (int i = 0; i < 1000; i++) this.fullRegistry.get("metric" + i, Counter.class);
+    }
+
+    @Benchmark public Counter lookup() {
+        return this.registry.get("requests", Counter.class);
+    }
+
+    @Benchmark public Counter lookupWhenFull() {
+        return this.fullRegistry.get("unregistered", Counter.class);
+    }
+
+    @Benchmark public void increment() {
+        this.counter.increment();
+    }
+
+    @Benchmark public void record() {
+        this.histogram.record(1234L);
+    }
+
+}
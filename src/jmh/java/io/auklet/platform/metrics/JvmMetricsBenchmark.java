@@ -0,0 +1,54 @@
+package io.auklet.platform.metrics;
+
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures the cost of one JVM metrics sample, which the agent takes every 10 seconds, and of packing
+ * it as telemetry.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JvmMetricsBenchmark {
+
+    private Runnable sampler;
+    private JvmMetrics metrics;
+    private MessageBufferPacker packer;
+
+    @Setup public void setUp() {
+        this.metrics = new JvmMetrics();
+        this.sampler = this.metrics.calculateJvmUsage();
+        this.sampler.run();
+        this.packer = MessagePack.newDefaultBufferPacker();
+    }
+
+    @Benchmark public JvmMetrics.Snapshot sample() {
+        this.sampler.run();
+        return this.metrics.getSnapshot();
+    }
+
+    @Benchmark public int pack() throws IOException {
+        this.packer.clear();
+        this.metrics.getSnapshot().packTelemetry(this.packer);
+        this.packer.flush();
+        return this.packer.getBufferSize();
+    }
+
+}
@@ -6,6 +6,16 @@ import edu.umd.cs.findbugs.annotations.Nullable;
 import io.auklet.core.AukletDaemonExecutor;
 import io.auklet.core.DataUsageMonitor;
 import io.auklet.core.AukletExceptionHandler;
+import io.auklet.core.Breadcrumbs;
+import io.auklet.core.EventQueue;
+import io.auklet.core.HasAgent;
+import io.auklet.core.LoadGovernor;
+import io.auklet.jfr.AgentEvent;
+import io.auklet.core.EventRateLimiter;
+import io.auklet.core.PipelineStats;
+import io.auklet.core.SharedExecutor;
+import io.auklet.core.TelemetryEmitter;
+import io.auklet.core.TimeOrderedIdGenerator;
 import io.auklet.config.DeviceAuth;
 import io.auklet.net.Https;
 import io.auklet.util.SysUtil;
@@ -24,7 +34,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * <p>The entry point for the Auklet agent for Java and related languages/platforms.</p>
@@ -40,6 +52,10 @@ import java.util.concurrent.*;
  *   <li>All {@code public static} methods in the {@link Auklet} class.</li>
  *   <li>All {@code public} methods in the {@link Config} class.</li>
  *   <li>The {@link AukletException} class.</li>
+ *   <li>All {@code public} methods in the {@link Counter}, {@link Gauge} and {@link Histogram} classes.</li>
+ *   <li>The {@link EventIdGenerator} interface.</li>
+ *   <li>The classes in the {@code io.auklet.logging} package, via the configuration of the respective
+ *   logging framework.</li>
  * </ul>
  *
  * <p><b>Unless instructed to do so by Auklet support, do not use any classes/fields/methods other than
@@ -55,8 +71,15 @@ public final class Auklet {
     private static final Logger LOGGER = LoggerFactory.getLogger(Auklet.class);
     private static final Object LOCK = new Object();
     private static final AukletDaemonExecutor DAEMON = new AukletDaemonExecutor(1, ThreadUtil.createDaemonThreadFactory("Auklet"));
+    // Paho keeps three threads busy while connected; the agent's own tasks need at least one more.
+    private static final int MIN_THREAD_BUDGET = 4;
     private static final String INVALID_INIT_MSG = "Use Auklet.init() to initialize the agent.";
-    @GuardedBy("LOCK") private static Auklet agent = null;
+    private static final MetricRegistry METRICS = new MetricRegistry();
+    private static final Breadcrumbs BREADCRUMBS = new Breadcrumbs();
+    private static final EventQueue QUEUE = new EventQueue();
+    private static final AtomicBoolean DRAIN_SCHEDULED = new AtomicBoolean(false);
+    // Written while holding LOCK; send() reads it without locking.
+    @GuardedBy("LOCK") private static volatile Auklet agent = null;
 
     private final String appId;
     private final String apiKey;
@@ -64,13 +87,27 @@ public final class Auklet {
     private final AbstractPlatform platform;
     private final File configDir;
     private final String serialPort;
+    private final int serialBaudRate;
+    private final boolean serialReliable;
+    private final boolean fileSinkCompressed;
+    private final String collectorAddress;
     private final int mqttThreads;
+    private final int threadBudget;
+    private final long threadStackSize;
+    private final int stringDictionarySize;
     private final String macHash;
     private final String ipAddress;
     private final Https https;
     private final DeviceAuth deviceAuth;
     private final AbstractSink sink;
+    private final SharedRingSink sharedRing;
+    private final LocalCollector localCollector;
     private final DataUsageMonitor usageMonitor;
+    private final EventIdGenerator idGenerator;
+    private final EventRateLimiter rateLimiter;
+    private final PipelineStats pipelineStats;
+    private final TelemetryEmitter telemetryEmitter;
+    private final LoadGovernor loadGovernor;
     private final Thread shutdownHook;
 
     static {
@@ -178,18 +215,94 @@ public final class Auklet {
         this.serialPort = SysUtil.getValue(config.getSerialPort(), "AUKLET_SERIAL_PORT", "auklet.serial.port", LOUD_SECURITY_EXCEPTIONS);
         Object androidContext = config.getAndroidContext();
         if (androidContext != null && serialPort != null) throw new AukletException("Auklet can not use serial port when on an Android platform.");
+        Integer serialBaudRateMaybeNull = SysUtil.getValue(config.getSerialBaudRate(), "AUKLET_SERIAL_BAUD_RATE", "auklet.serial.baud.rate", LOUD_SECURITY_EXCEPTIONS);
+        int serialBaudRateFromConfig = serialBaudRateMaybeNull == null ? 115200 : serialBaudRateMaybeNull;
+        if (serialBaudRateFromConfig < 1) serialBaudRateFromConfig = 115200;
+        this.serialBaudRate = serialBaudRateFromConfig;
+        Boolean serialReliableMaybeNull = SysUtil.getValue(config.getSerialReliable(), "AUKLET_SERIAL_RELIABLE", "auklet.serial.reliable", LOUD_SECURITY_EXCEPTIONS);
+        this.serialReliable = serialReliableMaybeNull == null ? false : serialReliableMaybeNull;
 
         Integer mqttThreadsFromConfigMaybeNull = SysUtil.getValue(config.getMqttThreads(), "AUKLET_THREADS_MQTT", "auklet.threads.mqtt", LOUD_SECURITY_EXCEPTIONS);
         int mqttThreadsFromConfig = mqttThreadsFromConfigMaybeNull == null ? 3 : mqttThreadsFromConfigMaybeNull;
         if (mqttThreadsFromConfig < 1) mqttThreadsFromConfig = 3;
         this.mqttThreads = mqttThreadsFromConfig;
 
+        Integer threadBudgetMaybeNull = SysUtil.getValue(config.getThreadBudget(), "AUKLET_THREAD_BUDGET", "auklet.thread.budget", LOUD_SECURITY_EXCEPTIONS);
+        int threadBudgetFromConfig = threadBudgetMaybeNull == null ? 0 : threadBudgetMaybeNull;
+        if (threadBudgetFromConfig < 0) threadBudgetFromConfig = 0;
+        if (threadBudgetFromConfig > 0 && threadBudgetFromConfig < MIN_THREAD_BUDGET) {
+            LOGGER.warn("Thread budget {} is too small; using {}.", threadBudgetFromConfig, MIN_THREAD_BUDGET);
+            threadBudgetFromConfig = MIN_THREAD_BUDGET;
+        }
+        this.threadBudget = threadBudgetFromConfig;
+        Integer threadStackSizeMaybeNull = SysUtil.getValue(config.getThreadStackSize(), "AUKLET_THREAD_STACK_SIZE", "auklet.thread.stack.size", LOUD_SECURITY_EXCEPTIONS);
+        int threadStackSizeKb = threadStackSizeMaybeNull == null ? 0 : threadStackSizeMaybeNull;
+        this.threadStackSize = Math.max(0, threadStackSizeKb) * 1024L;
+
+        Integer dictionarySizeMaybeNull = SysUtil.getValue(config.getStringDictionarySize(), "AUKLET_STRING_DICTIONARY_SIZE", "auklet.string.dictionary.size", LOUD_SECURITY_EXCEPTIONS);
+        int dictionarySize = dictionarySizeMaybeNull == null ? 0 : dictionarySizeMaybeNull;
+        if (dictionarySize < 0) dictionarySize = 0;
+        this.stringDictionarySize = Math.min(dictionarySize, 65535);
+
+        Integer eventRateLimitMaybeNull = SysUtil.getValue(config.getEventRateLimit(), "AUKLET_EVENT_RATE_LIMIT", "auklet.event.rate.limit", LOUD_SECURITY_EXCEPTIONS);
+        int eventRateLimit = eventRateLimitMaybeNull == null ? 120 : eventRateLimitMaybeNull;
+        if (eventRateLimit < 0) eventRateLimit = 120;
+
+        Integer eventQueueSizeMaybeNull = SysUtil.getValue(config.getEventQueueSize(), "AUKLET_EVENT_QUEUE_SIZE", "auklet.event.queue.size", LOUD_SECURITY_EXCEPTIONS);
+        int eventQueueSize = eventQueueSizeMaybeNull == null ? EventQueue.DEFAULT_CAPACITY : eventQueueSizeMaybeNull;
+        if (eventQueueSize < 1) eventQueueSize = EventQueue.DEFAULT_CAPACITY;
+        String eventQueueOverflow = SysUtil.getValue(config.getEventQueueOverflow(), "AUKLET_EVENT_QUEUE_OVERFLOW", "auklet.event.queue.overflow", LOUD_SECURITY_EXCEPTIONS);
+        EventQueue.OverflowPolicy overflowPolicy = EventQueue.OverflowPolicy.fromConfig(eventQueueOverflow);
+        if (overflowPolicy == null) {
+            if (eventQueueOverflow != null) LOGGER.warn("Unknown event queue overflow policy '{}'; using dropNewest.", eventQueueOverflow);
+            overflowPolicy = EventQueue.OverflowPolicy.DROP_NEWEST;
+        }
+
+        Integer telemetryIntervalMaybeNull = SysUtil.getValue(config.getTelemetryInterval(), "AUKLET_TELEMETRY_INTERVAL", "auklet.telemetry.interval", LOUD_SECURITY_EXCEPTIONS);
+        int telemetryInterval = telemetryIntervalMaybeNull == null ? 300 : telemetryIntervalMaybeNull;
+        if (telemetryInterval < 0) telemetryInterval = 300;
+
+        Integer loadGovernorThresholdMaybeNull = SysUtil.getValue(config.getLoadGovernorThreshold(), "AUKLET_LOAD_GOVERNOR_THRESHOLD", "auklet.load.governor.threshold", LOUD_SECURITY_EXCEPTIONS);
+        int loadGovernorThreshold = loadGovernorThresholdMaybeNull == null ? 90 : loadGovernorThresholdMaybeNull;
+        if (loadGovernorThreshold < 0 || loadGovernorThreshold > 100) loadGovernorThreshold = 90;
+
+        Integer profilerHzMaybeNull = SysUtil.getValue(config.getProfilerHz(), "AUKLET_PROFILER_HZ", "auklet.profiler.hz", LOUD_SECURITY_EXCEPTIONS);
+        int profilerHz = profilerHzMaybeNull == null ? 0 : profilerHzMaybeNull;
+        if (profilerHz < 0 || profilerHz > 100 || telemetryInterval == 0) profilerHz = 0;
+        Integer profilerOverheadMaybeNull = SysUtil.getValue(config.getProfilerOverhead(), "AUKLET_PROFILER_OVERHEAD", "auklet.profiler.overhead", LOUD_SECURITY_EXCEPTIONS);
+        int profilerOverhead = profilerOverheadMaybeNull == null ? 1 : profilerOverheadMaybeNull;
+        if (profilerOverhead < 1 || profilerOverhead > 100) profilerOverhead = 1;
+
+        Integer lockMonitorIntervalMaybeNull = SysUtil.getValue(config.getLockMonitorInterval(), "AUKLET_LOCK_MONITOR_INTERVAL", "auklet.lock.monitor.interval", LOUD_SECURITY_EXCEPTIONS);
+        int lockMonitorInterval = lockMonitorIntervalMaybeNull == null ? 60 : lockMonitorIntervalMaybeNull;
+        if (lockMonitorInterval < 0) lockMonitorInterval = 60;
+
+        Integer memoryThresholdMaybeNull = SysUtil.getValue(config.getMemoryThreshold(), "AUKLET_MEMORY_THRESHOLD", "auklet.memory.threshold", LOUD_SECURITY_EXCEPTIONS);
+        int memoryThreshold = memoryThresholdMaybeNull == null ? 90 : memoryThresholdMaybeNull;
+        if (memoryThreshold < 0 || memoryThreshold > 100) memoryThreshold = 90;
+
+        Boolean fileSinkCompressionMaybeNull = SysUtil.getValue(config.getFileSinkCompression(), "AUKLET_FILE_SINK_COMPRESSION", "auklet.file.sink.compression", LOUD_SECURITY_EXCEPTIONS);
+        this.fileSinkCompressed = fileSinkCompressionMaybeNull == null ? true : fileSinkCompressionMaybeNull;
+        String collectorAddressMaybeNull = SysUtil.getValue(config.getCollectorAddress(), "AUKLET_COLLECTOR_ADDRESS", "auklet.collector.address", LOUD_SECURITY_EXCEPTIONS);
+        this.collectorAddress = collectorAddressMaybeNull == null ? String.valueOf(LocalCollector.DEFAULT_PORT) : collectorAddressMaybeNull;
+        Boolean collectorModeMaybeNull = SysUtil.getValue(config.getCollectorMode(), "AUKLET_COLLECTOR_MODE", "auklet.collector.mode", LOUD_SECURITY_EXCEPTIONS);
+        boolean collectorMode = collectorModeMaybeNull == null ? false : collectorModeMaybeNull;
+        Boolean sharedUplinkMaybeNull = SysUtil.getValue(config.getSharedUplink(), "AUKLET_SHARED_UPLINK", "auklet.shared.uplink", LOUD_SECURITY_EXCEPTIONS);
+        boolean sharedUplink = sharedUplinkMaybeNull == null ? false : sharedUplinkMaybeNull;
+        String sinks = SysUtil.getValue(config.getSinks(), "AUKLET_SINKS", "auklet.sinks", LOUD_SECURITY_EXCEPTIONS);
+        String sinkPolicyName = SysUtil.getValue(config.getSinkPolicy(), "AUKLET_SINK_POLICY", "auklet.sink.policy", LOUD_SECURITY_EXCEPTIONS);
+        CompositeSink.Policy sinkPolicy = CompositeSink.Policy.fromConfig(sinkPolicyName);
+        if (sinkPolicy == null) {
+            if (sinkPolicyName != null) LOGGER.warn("Unknown data sink policy '{}'; using fallback.", sinkPolicyName);
+            sinkPolicy = CompositeSink.Policy.FALLBACK;
+        }
+
         // Finalizing the config dir may cause changes to the filesystem, so we wait to do this
         // until we've validated the rest of the config, in case there is a config error; this
         // approach avoids unnecessary filesystem changes for bad configs.
         LOGGER.debug("Determining which config directory to use.");
         if (androidContext == null) {
-            this.platform = new JavaPlatform();
+            this.platform = new JavaPlatform(profilerHz, profilerOverhead, lockMonitorInterval, memoryThreshold);
         } else {
             this.platform = new AndroidPlatform(androidContext);
         }
@@ -197,31 +310,44 @@ public final class Auklet {
         if (configDir == null) throw new AukletException("Could not find or create any config directory; see previous logged errors for details.");
 
         LOGGER.debug("Configuring agent resources.");
-        this.https = new Https(config.getSslCertificates());
+        this.https = new Https(config.getSslCertificates(), this.threadBudget > 0 ? this.createSharedExecutor() : null);
         this.deviceAuth = new DeviceAuth();
 
+        AbstractSink upstream = SinkFactory.create(sinks, sinkPolicy, this.serialPort);
+        if (collectorMode && SinkFactory.includesCollector(upstream)) throw new AukletException("The local collector can not forward data to a collector sink.");
+        SharedRingSink shared = sharedUplink ? new SharedRingSink(upstream, this.configDir) : null;
+        this.sink = shared == null ? upstream : shared;
+        this.sharedRing = shared;
+        this.localCollector = collectorMode ? new LocalCollector(this.collectorAddress, this.sink) : null;
+
         LOGGER.debug("Getting IP/MAC address.");
         this.macHash = Util.getMacAddressHash();
         String ip = "";
-        try (Response response = this.https.doRequest(new Request.Builder().url("https://checkip.amazonaws.com"))) {
-            String responseString = response.body().string().trim();
-            if (response.isSuccessful()) {
-                ip = responseString;
-            } else {
-                LOGGER.warn("Could not get public IP address: {}", responseString);
+        if (shared != null && !shared.isLeader()) {
+            // Followers make no network requests; use the address published by the leader.
+            ip = shared.getLeaderIpAddress();
+        } else {
+            try (Response response = this.https.doRequest(new Request.Builder().url("https://checkip.amazonaws.com"))) {
+                String responseString = response.body().string().trim();
+                if (response.isSuccessful()) {
+                    ip = responseString;
+                } else {
+                    LOGGER.warn("Could not get public IP address: {}", responseString);
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Could not get public IP address.", e);
             }
-        } catch (IOException e) {
-            LOGGER.warn("Could not get public IP address.", e);
         }
         this.ipAddress = ip;
 
-        // In the future we may want to make this some kind of SinkFactory.
-        if (this.serialPort != null) {
-            this.sink = new SerialPortSink();
-        } else {
-            this.sink = new AukletIoSink();
-        }
         this.usageMonitor = new DataUsageMonitor();
+        EventIdGenerator customIdGenerator = config.getIdGenerator();
+        this.idGenerator = customIdGenerator == null ? new TimeOrderedIdGenerator() : customIdGenerator;
+        this.rateLimiter = new EventRateLimiter(eventRateLimit);
+        this.pipelineStats = new PipelineStats();
+        QUEUE.configure(eventQueueSize, overflowPolicy);
+        this.telemetryEmitter = new TelemetryEmitter(telemetryInterval);
+        this.loadGovernor = new LoadGovernor(loadGovernorThreshold);
 
         LOGGER.debug("Configuring JVM integrations.");
         if (autoShutdown) {
@@ -324,28 +450,99 @@ public final class Auklet {
      *
      * @param throwable if {@code null}, this method is no-op.
      */
-    public static void send(@Nullable final Throwable throwable) {
+    public static void send(@Nullable Throwable throwable) {
+        send(throwable, null);
+    }
+
+    /**
+     * <p>Sends the given throwable to the agent as an <i>event</i>, tagged with the given key/value
+     * pairs (for example, the logger name and MDC of a logged exception).</p>
+     *
+     * <p>This method never blocks. Events are placed in a bounded queue and sent by the agent's daemon
+     * thread; if the queue is full, the configured overflow policy decides which event is dropped. While
+     * the agent is degraded due to CPU pressure, events are sampled before they are queued; events over
+     * the global event rate limit are not queued either.</p>
+     *
+     * @param throwable if {@code null}, this method is no-op.
+     * @param tags may be {@code null}. The map is copied before this method returns.
+     */
+    public static void send(@Nullable Throwable throwable, @Nullable Map<String, String> tags) {
         if (throwable == null) {
             LOGGER.debug("Ignoring send request for null throwable.");
             return;
         }
-        LOGGER.debug("Scheduling send task.");
-        Runnable sendTask = new Runnable() {
-            @Override public void run() {
-                synchronized (LOCK) {
-                    if (agent == null) {
-                        LOGGER.debug("Ignoring send request because agent is null.");
-                        return;
-                    }
-                    agent.doSend(throwable);
-                }
-            }
-        };
-        try {
-            DAEMON.submit(sendTask);
-        } catch (RejectedExecutionException e) {
-            LOGGER.error("Could not send event.", e);
-        }
+        // Sample and apply the global rate limit now, so that a burst of events cannot fill the queue,
+        // and so that degraded-mode sampling is not deferred along with the drain.
+        Auklet current = agent;
+        double sampleRate = current == null ? 1d : current.rateLimiter.admit(current.loadGovernor.isDegraded());
+        if (sampleRate == 0d) return;
+        // Breadcrumbs are per-thread, so they must be captured before handing off to the daemon thread.
+        EventContext context = new EventContext(BREADCRUMBS.snapshot(), tags, sampleRate);
+        if (!QUEUE.offer(throwable, context)) return;
+        if (!DRAIN_SCHEDULED.compareAndSet(false, true)) return;
+        submitDrain();
+    }
+
+    /**
+     * <p>Records a breadcrumb for the current thread. The most recent breadcrumbs of a thread (up to
+     * {@value Breadcrumbs#CAPACITY}) are attached to any event sent from that thread, to describe what
+     * the thread was doing before the exception occurred.</p>
+     *
+     * <p>Breadcrumbs may be recorded before the agent is initialized. Recording a breadcrumb takes no
+     * locks and does not copy the message.</p>
+     *
+     * @param message if {@code null}, this method is no-op.
+     */
+    public static void breadcrumb(@Nullable String message) {
+        BREADCRUMBS.record(message);
+    }
+
+    /**
+     * <p>Returns the counter with the given name, creating it if needed. Counter values are reported
+     * with each telemetry message.</p>
+     *
+     * <p>Metric handles may be obtained before the agent is initialized, and may be cached and reused
+     * indefinitely.</p>
+     *
+     * @param name the name of the counter. Must not be {@code null} or empty.
+     * @return never {@code null}.
+     * @throws IllegalArgumentException if the name is {@code null} or empty, or if a gauge or histogram
+     * with the same name already exists.
+     */
+    @NonNull public static Counter counter(@NonNull String name) {
+        return METRICS.get(name, Counter.class);
+    }
+
+    /**
+     * <p>Returns the gauge with the given name, creating it if needed. Gauge values are reported with
+     * each telemetry message.</p>
+     *
+     * <p>Metric handles may be obtained before the agent is initialized, and may be cached and reused
+     * indefinitely.</p>
+     *
+     * @param name the name of the gauge. Must not be {@code null} or empty.
+     * @return never {@code null}.
+     * @throws IllegalArgumentException if the name is {@code null} or empty, or if a counter or
+     * histogram with the same name already exists.
+     */
+    @NonNull public static Gauge gauge(@NonNull String name) {
+        return METRICS.get(name, Gauge.class);
+    }
+
+    /**
+     * <p>Returns the histogram with the given name, creating it if needed. Histogram values are reported
+     * with each telemetry message.</p>
+     *
+     * <p>Metric handles may be obtained before the agent is initialized, and may be cached and reused
+     * indefinitely.</p>
+     *
+     * @param name the name of the histogram. Must not be {@code null} or empty.
+     * @return never {@code null}.
+     * @throws IllegalArgumentException if the name is {@code null} or empty, or if a counter or gauge
+     * with the same name already exists.
+     */
+    @NonNull public static Histogram histogram(@NonNull String name) {
+        return METRICS.get(name, Histogram.class);
     }
 
     /**
@@ -412,6 +609,42 @@ public final class Auklet {
         return this.serialPort;
     }
 
+    /**
+     * <p>Returns the baud rate of the serial port that will be used by this instance of the agent.</p>
+     *
+     * @return never less than 1.
+     */
+    public int getSerialBaudRate() {
+        return this.serialBaudRate;
+    }
+
+    /**
+     * <p>Returns whether the serial sink resends messages until the receiver acknowledges them.</p>
+     *
+     * @return {@code true} if reliable serial delivery is enabled.
+     */
+    public boolean isSerialReliable() {
+        return this.serialReliable;
+    }
+
+    /**
+     * <p>Returns whether the file sink compresses closed segment files.</p>
+     *
+     * @return {@code true} if segments are compressed.
+     */
+    public boolean isFileSinkCompressed() {
+        return this.fileSinkCompressed;
+    }
+
+    /**
+     * <p>Returns the address of the host-local collector.</p>
+     *
+     * @return a UDP port number or Unix domain socket path. Never {@code null}.
+     */
+    @NonNull public String getCollectorAddress() {
+        return this.collectorAddress;
+    }
+
     /**
      * <p>Returns the number of MQTT threads that will be used by this instance of the agent.</p>
      *
@@ -419,6 +652,40 @@ public final class Auklet {
      */
     public int getMqttThreads() { return this.mqttThreads; }
 
+    /**
+     * <p>Returns the maximum number of threads shared by the agent, the MQTT client and the HTTP client
+     * in thread-budget mode.</p>
+     *
+     * @return zero if thread-budget mode is disabled.
+     */
+    public int getThreadBudget() { return this.threadBudget; }
+
+    /**
+     * <p>Returns the stack size of the threads started by this instance of the agent.</p>
+     *
+     * @return the stack size in bytes, or zero to use the JVM default.
+     */
+    public long getThreadStackSize() { return this.threadStackSize; }
+
+    /**
+     * <p>Returns a new executor service that runs its tasks on the Auklet agent's daemon executor
+     * threads, for clients that need an executor service of their own in thread-budget mode. Shutting it
+     * down does not affect the daemon executor.</p>
+     *
+     * @return never {@code null}.
+     */
+    @NonNull public ScheduledExecutorService createSharedExecutor() {
+        return new SharedExecutor(DAEMON);
+    }
+
+    /**
+     * <p>Returns the maximum number of strings that each sink will intern per connection when
+     * encoding stack frames.</p>
+     *
+     * @return never less than 0. If 0, stack frame strings are not interned.
+     */
+    public int getStringDictionarySize() { return this.stringDictionarySize; }
+
     /**
      * <p>Returns the MAC address hash for this instance of the agent.</p>
      *
@@ -437,6 +704,17 @@ public final class Auklet {
         return this.ipAddress;
     }
 
+    /**
+     * <p>Returns whether this instance of the agent may make requests to the Auklet API. Agents that
+     * follow another agent's shared uplink do not; they read the config files that the leader saves in
+     * the shared config directory.</p>
+     *
+     * @return {@code false} while this agent follows another agent's shared uplink.
+     */
+    public boolean isApiEnabled() {
+        return this.sharedRing == null || this.sharedRing.isLeader();
+    }
+
     /**
      * <p>Returns the device auth for this instance of the agent.</p>
      *
@@ -455,6 +733,96 @@ public final class Auklet {
         return this.usageMonitor;
     }
 
+    /**
+     * <p>Returns the generator of message IDs for this instance of the agent.</p>
+     *
+     * @return never {@code null}.
+     */
+    @NonNull public EventIdGenerator getIdGenerator() {
+        return this.idGenerator;
+    }
+
+    /**
+     * <p>Returns the event rate limiter for this instance of the agent.</p>
+     *
+     * @return never {@code null}.
+     */
+    @NonNull public EventRateLimiter getRateLimiter() {
+        return this.rateLimiter;
+    }
+
+    /**
+     * <p>Returns the queue of events waiting to be sent to the data sink.</p>
+     *
+     * @return never {@code null}.
+     */
+    @NonNull public EventQueue getEventQueue() {
+        return QUEUE;
+    }
+
+    /**
+     * <p>Returns the load governor for this instance of the agent.</p>
+     *
+     * @return never {@code null}.
+     */
+    @NonNull public LoadGovernor getLoadGovernor() {
+        return this.loadGovernor;
+    }
+
+    /** <p>Sends any events that were deferred while the agent was degraded.</p> */
+    public void resumeEventDrain() {
+        if (QUEUE.size() == 0 && !DRAIN_SCHEDULED.get()) return;
+        DRAIN_SCHEDULED.set(true);
+        submitDrain();
+    }
+
+    /**
+     * <p>Returns the latency counters for tasks run on the agent's daemon thread.</p>
+     *
+     * @return never {@code null}.
+     */
+    @NonNull public AukletDaemonExecutor.TaskStats getTaskStats() {
+        return DAEMON.getTaskStats();
+    }
+
+    /**
+     * <p>Returns the event pipeline counters for this instance of the agent.</p>
+     *
+     * @return never {@code null}.
+     */
+    @NonNull public PipelineStats getPipelineStats() {
+        return this.pipelineStats;
+    }
+
+    /**
+     * <p>Returns the values of all application metrics recorded since the previous call to this method,
+     * and starts a new telemetry period.</p>
+     *
+     * @return {@code null} if no application metrics have been created.
+     */
+    @CheckForNull public Telemetry drainMetrics() {
+        return METRICS.snapshot();
+    }
+
+    /**
+     * <p>Returns the values of application metrics that could not be sent to the current telemetry
+     * period, so that they are sent with the next one.</p>
+     *
+     * @param metrics the value returned by {@link #drainMetrics()}; may be {@code null}.
+     */
+    public void restoreMetrics(@Nullable Telemetry metrics) {
+        METRICS.restore(metrics);
+    }
+
+    /**
+     * <p>Returns the data sink for this instance of the agent.</p>
+     *
+     * @return never {@code null}.
+     */
+    @NonNull public Sink getSink() {
+        return this.sink;
+    }
+
     /**
      * <p>Returns the platform for this instance of the agent.</p>
      *
@@ -480,7 +848,14 @@ public final class Auklet {
         request
                 .url(this.baseUrl + Util.addLeadingSlash(path))
                 .header("Authorization", "JWT " + this.apiKey);
-        return this.https.doRequest(request);
+        AgentEvent event = AgentEvent.configFetch(path);
+        try {
+            Response response = this.https.doRequest(request);
+            event.setStatus(response.code());
+            return response;
+        } finally {
+            event.end();
+        }
     }
 
     /**
@@ -552,42 +927,107 @@ public final class Auklet {
      * <p>Starts the Auklet agent by:</p>
      *
      * <ul>
+     *     <li>Sizing the daemon executor, in thread-budget mode.</li>
      *     <li>Passing the Auklet agent reference to internal objects that require it.</li>
      *     <li>Loading configuration files from disk.</li>
      *     <li>Starting the data sink selected by the agent configuration.</li>
+     *     <li>Starting the local collector, if enabled.</li>
      *     <li>Starting the data usage monitor daemon.</li>
+     *     <li>Starting the event rate limiter.</li>
+     *     <li>Starting the telemetry emitter.</li>
      * </ul>
      *
      * @throws AukletException if the underlying resources cannot be started.
      */
     private void start() throws AukletException {
         LOGGER.debug("Starting internal resources.");
-        this.deviceAuth.start(this);
-        this.usageMonitor.start(this);
-        this.platform.start(this);
-        this.sink.start(this);
+        // Daemon threads started from now on use the configured stack size; the current one keeps its own.
+        if (this.threadStackSize > 0) DAEMON.setThreadFactory(ThreadUtil.createDaemonThreadFactory("Auklet", this.threadStackSize));
+        if (this.threadBudget > 0) {
+            LOGGER.info("Sharing up to {} threads between the agent, MQTT and HTTP clients.", this.threadBudget);
+            DAEMON.setCorePoolSize(this.threadBudget);
+        }
+        this.startPhase("deviceAuth", this.deviceAuth);
+        this.startPhase("usageMonitor", this.usageMonitor);
+        this.startPhase("rateLimiter", this.rateLimiter);
+        this.startPhase("platform", this.platform);
+        this.startPhase("loadGovernor", this.loadGovernor);
+        this.startPhase("sink", this.sink);
+        if (this.localCollector != null) this.startPhase("localCollector", this.localCollector);
+        this.startPhase("telemetryEmitter", this.telemetryEmitter);
     }
 
     /**
-     * <p>Queues a task to submit the given throwable to the data sink.</p>
+     * <p>Starts one internal resource, recording the time taken as a Flight Recorder event.</p>
      *
-     * @param throwable if {@code null}, this method is no-op.
+     * @param phase the name of the startup phase.
+     * @param resource the resource to start.
+     * @throws AukletException if the resource cannot be started.
+     */
+    private void startPhase(@NonNull String phase, @NonNull HasAgent resource) throws AukletException {
+        AgentEvent event = AgentEvent.startupPhase(phase);
+        try {
+            resource.start(this);
+        } finally {
+            event.end();
+        }
+    }
+
+    /**
+     * <p>Submits a task that sends all queued events to the data sink. The caller must have set
+     * {@link #DRAIN_SCHEDULED}.</p>
      */
-    private void doSend(@Nullable final Throwable throwable) {
-        if (throwable == null) return;
+    private static void submitDrain() {
+        LOGGER.debug("Scheduling send task.");
         try {
-            this.scheduleOneShotTask(new Runnable() {
+            DAEMON.submit(new Runnable() {
                 @Override public void run() {
-                    try {
-                        LOGGER.debug("Sending event for exception: {}", throwable.getClass().getName());
-                        sink.send(throwable);
-                    } catch (AukletException e) {
-                        LOGGER.warn("Could not send event.", e);
-                    }
+                    drainQueue();
                 }
-            }, 0, TimeUnit.SECONDS); // 5-second cooldown.
-        } catch (AukletException e) {
-            LOGGER.warn("Could not queue event send task.", e);
+            });
+        } catch (RejectedExecutionException e) {
+            DRAIN_SCHEDULED.set(false);
+            LOGGER.error("Could not send event.", e);
+        }
+    }
+
+    /**
+     * <p>Sends all queued events to the data sink. Runs on the agent's daemon thread.</p>
+     */
+    private static void drainQueue() {
+        Auklet current;
+        synchronized (LOCK) {
+            current = agent;
+        }
+        // While degraded, leave the flag set so that new events do not schedule further drains;
+        // the load governor resumes draining when it leaves degraded mode.
+        if (current != null && current.loadGovernor.isDegraded()) {
+            LOGGER.debug("Deferring {} queued events because the agent is degraded.", QUEUE.size());
+            return;
+        }
+        // Clear the flag first, so that events queued while draining schedule another drain.
+        DRAIN_SCHEDULED.set(false);
+        sendQueuedEvents(current);
+    }
+
+    /**
+     * <p>Sends all queued events to the data sink of the given agent.</p>
+     *
+     * @param current the agent; if {@code null}, the events are discarded.
+     */
+    private static void sendQueuedEvents(@Nullable Auklet current) {
+        EventQueue.Entry entry;
+        while ((entry = QUEUE.poll()) != null) {
+            if (current == null) {
+                LOGGER.debug("Ignoring send request because agent is null.");
+                continue;
+            }
+            try {
+                LOGGER.debug("Sending event for exception: {}", entry.getThrowable().getClass().getName());
+                current.sink.send(entry.getThrowable(), entry.getContext());
+            } catch (AukletException e) {
+                LOGGER.warn("Could not send event.", e);
+            }
         }
     }
 
@@ -599,8 +1039,16 @@ public final class Auklet {
     private void doShutdown(boolean viaJvmHook) {
         LOGGER.info("Shutting down agent.");
         if (!viaJvmHook && this.shutdownHook != null) Runtime.getRuntime().removeShutdownHook(this.shutdownHook);
+        // Send what is still queued, including events deferred while degraded, and clear the flag, which
+        // would otherwise stay set and stop an agent initialized later from ever draining the queue.
+        DRAIN_SCHEDULED.set(false);
+        sendQueuedEvents(this);
+        this.telemetryEmitter.shutdown();
+        this.platform.shutdown();
+        if (this.localCollector != null) this.localCollector.shutdown();
         this.sink.shutdown();
         this.https.shutdown();
+        if (this.threadBudget > 0) DAEMON.setCorePoolSize(1);
     }
 
 }
@@ -10,6 +10,9 @@ package io.auklet;
  *   <li>All {@code public static} methods in the {@link Auklet} class.</li>
  *   <li>All {@code public} methods in the {@link Config} class.</li>
  *   <li>The {@link AukletException} class.</li>
+ *   <li>All {@code public} methods in the {@link Counter}, {@link Gauge} and {@link Histogram} classes.</li>
+ *   <li>The classes in the {@code io.auklet.logging} package, via the configuration of the respective
+ *   logging framework.</li>
  * </ul>
  *
  * <p><b>Unless instructed to do so by Auklet support, do not use any classes/fields/methods other than
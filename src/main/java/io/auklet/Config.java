@@ -158,6 +158,254 @@ import java.util.*;
  *       </td>
  *       <td>3</td>
  *     </tr>
+ *     <tr>
+ *       <td>Size of the per-connection string dictionary used to encode stack frames</td>
+ *       <td>{@link #setStringDictionarySize(Integer)}</td>
+ *       <td>
+ *         <ol>
+ *           <li>Setter method value</li>
+ *           <li>Environment variable {@code AUKLET_STRING_DICTIONARY_SIZE}</li>
+ *           <li>JVM system property {@code auklet.string.dictionary.size}</li>
+ *         </ol>
+ *       </td>
+ *       <td>0 (stack frame strings are sent in full)</td>
+ *     </tr>
+ *     <tr>
+ *       <td>Maximum number of events sent per minute</td>
+ *       <td>{@link #setEventRateLimit(Integer)}</td>
+ *       <td>
+ *         <ol>
+ *           <li>Setter method value</li>
+ *           <li>Environment variable {@code AUKLET_EVENT_RATE_LIMIT}</li>
+ *           <li>JVM system property {@code auklet.event.rate.limit}</li>
+ *         </ol>
+ *       </td>
+ *       <td>120</td>
+ *     </tr>
+ *     <tr>
+ *       <td>Maximum number of events waiting to be sent</td>
+ *       <td>{@link #setEventQueueSize(Integer)}</td>
+ *       <td>
+ *         <ol>
+ *           <li>Setter method value</li>
+ *           <li>Environment variable {@code AUKLET_EVENT_QUEUE_SIZE}</li>
+ *           <li>JVM system property {@code auklet.event.queue.size}</li>
+ *         </ol>
+ *       </td>
+ *       <td>1000</td>
+ *     </tr>
+ *     <tr>
+ *       <td>Which event to drop when the event queue is full</td>
+ *       <td>{@link #setEventQueueOverflow(String)}</td>
+ *       <td>
+ *         <ol>
+ *           <li>Setter method value</li>
+ *           <li>Environment variable {@code AUKLET_EVENT_QUEUE_OVERFLOW}</li>
+ *           <li>JVM system property {@code auklet.event.queue.overflow}</li>
+ *         </ol>
+ *       </td>
+ *       <td>{@code dropNewest}</td>
+ *     </tr>
+ *     <tr>
+ *       <td>Number of seconds between telemetry messages, if not set by the Auklet backend</td>
+ *       <td>{@link #setTelemetryInterval(Integer)}</td>
+ *       <td>
+ *         <ol>
+ *           <li>Setter method value</li>
+ *           <li>Environment variable {@code AUKLET_TELEMETRY_INTERVAL}</li>
+ *           <li>JVM system property {@code auklet.telemetry.interval}</li>
+ *         </ol>
+ *       </td>
+ *       <td>300</td>
+ *     </tr>
+ *     <tr>
+ *       <td>CPU usage percentage at which the agent backs off</td>
+ *       <td>{@link #setLoadGovernorThreshold(Integer)}</td>
+ *       <td>
+ *         <ol>
+ *           <li>Setter method value</li>
+ *           <li>Environment variable {@code AUKLET_LOAD_GOVERNOR_THRESHOLD}</li>
+ *           <li>JVM system property {@code auklet.load.governor.threshold}</li>
+ *         </ol>
+ *       </td>
+ *       <td>90</td>
+ *     </tr>
+ *     <tr>
+ *       <td>Sampling profiler frequency, in Hz</td>
+ *       <td>{@link #setProfilerHz(Integer)}</td>
+ *       <td>
+ *         <ol>
+ *           <li>Setter method value</li>
+ *           <li>Environment variable {@code AUKLET_PROFILER_HZ}</li>
+ *           <li>JVM system property {@code auklet.profiler.hz}</li>
+ *         </ol>
+ *       </td>
+ *       <td>0 (disabled)</td>
+ *     </tr>
+ *     <tr>
+ *       <td>Maximum profiler overhead, as a percentage of one CPU core</td>
+ *       <td>{@link #setProfilerOverhead(Integer)}</td>
+ *       <td>
+ *         <ol>
+ *           <li>Setter method value</li>
+ *           <li>Environment variable {@code AUKLET_PROFILER_OVERHEAD}</li>
+ *           <li>JVM system property {@code auklet.profiler.overhead}</li>
+ *         </ol>
+ *       </td>
+ *       <td>1</td>
+ *     </tr>
+ *     <tr>
+ *       <td>Maximum seconds between deadlock checks</td>
+ *       <td>{@link #setLockMonitorInterval(Integer)}</td>
+ *       <td>
+ *         <ol>
+ *           <li>Setter method value</li>
+ *           <li>Environment variable {@code AUKLET_LOCK_MONITOR_INTERVAL}</li>
+ *           <li>JVM system property {@code auklet.lock.monitor.interval}</li>
+ *         </ol>
+ *       </td>
+ *       <td>60</td>
+ *     </tr>
+ *     <tr>
+ *       <td>Heap occupancy percentage, after GC, at which a memory warning is sent</td>
+ *       <td>{@link #setMemoryThreshold(Integer)}</td>
+ *       <td>
+ *         <ol>
+ *           <li>Setter method value</li>
+ *           <li>Environment variable {@code AUKLET_MEMORY_THRESHOLD}</li>
+ *           <li>JVM system property {@code auklet.memory.threshold}</li>
+ *         </ol>
+ *       </td>
+ *       <td>90</td>
+ *     </tr>
+ *     <tr>
+ *       <td>Data sinks to write to, in priority order</td>
+ *       <td>{@link #setSinks(String)}</td>
+ *       <td>
+ *         <ol>
+ *           <li>Setter method value</li>
+ *           <li>Environment variable {@code AUKLET_SINKS}</li>
+ *           <li>JVM system property {@code auklet.sinks}</li>
+ *         </ol>
+ *       </td>
+ *       <td>{@code serial} if a serial port is set, {@code mqtt} otherwise</td>
+ *     </tr>
+ *     <tr>
+ *       <td>How data is routed when there are several data sinks</td>
+ *       <td>{@link #setSinkPolicy(String)}</td>
+ *       <td>
+ *         <ol>
+ *           <li>Setter method value</li>
+ *           <li>Environment variable {@code AUKLET_SINK_POLICY}</li>
+ *           <li>JVM system property {@code auklet.sink.policy}</li>
+ *         </ol>
+ *       </td>
+ *       <td>{@code fallback}</td>
+ *     </tr>
+ *     <tr>
+ *       <td>Whether the file sink compresses closed segment files</td>
+ *       <td>{@link #setFileSinkCompression(Boolean)}</td>
+ *       <td>
+ *         <ol>
+ *           <li>Setter method value</li>
+ *           <li>Environment variable {@code AUKLET_FILE_SINK_COMPRESSION}</li>
+ *           <li>JVM system property {@code auklet.file.sink.compression}</li>
+ *         </ol>
+ *       </td>
+ *       <td>{@code true}</td>
+ *     </tr>
+ *     <tr>
+ *       <td>Address of the host-local collector: a UDP port number, or a Unix domain socket path</td>
+ *       <td>{@link #setCollectorAddress(String)}</td>
+ *       <td>
+ *         <ol>
+ *           <li>Setter method value</li>
+ *           <li>Environment variable {@code AUKLET_COLLECTOR_ADDRESS}</li>
+ *           <li>JVM system property {@code auklet.collector.address}</li>
+ *         </ol>
+ *       </td>
+ *       <td>{@code 7155}</td>
+ *     </tr>
+ *     <tr>
+ *       <td>Whether this agent is the host-local collector</td>
+ *       <td>{@link #setCollectorMode(Boolean)}</td>
+ *       <td>
+ *         <ol>
+ *           <li>Setter method value</li>
+ *           <li>Environment variable {@code AUKLET_COLLECTOR_MODE}</li>
+ *           <li>JVM system property {@code auklet.collector.mode}</li>
+ *         </ol>
+ *       </td>
+ *       <td>{@code false}</td>
+ *     </tr>
+ *     <tr>
+ *       <td>Whether agents sharing the config directory share one upstream connection</td>
+ *       <td>{@link #setSharedUplink(Boolean)}</td>
+ *       <td>
+ *         <ol>
+ *           <li>Setter method value</li>
+ *           <li>Environment variable {@code AUKLET_SHARED_UPLINK}</li>
+ *           <li>JVM system property {@code auklet.shared.uplink}</li>
+ *         </ol>
+ *       </td>
+ *       <td>{@code false}</td>
+ *     </tr>
+ *     <tr>
+ *       <td>Serial port baud rate</td>
+ *       <td>{@link #setSerialBaudRate(Integer)}</td>
+ *       <td>
+ *         <ol>
+ *           <li>Setter method value</li>
+ *           <li>Environment variable {@code AUKLET_SERIAL_BAUD_RATE}</li>
+ *           <li>JVM system property {@code auklet.serial.baud.rate}</li>
+ *         </ol>
+ *       </td>
+ *       <td>{@code 115200}</td>
+ *     </tr>
+ *     <tr>
+ *       <td>Whether the serial sink retransmits messages until the receiver acknowledges them</td>
+ *       <td>{@link #setSerialReliable(Boolean)}</td>
+ *       <td>
+ *         <ol>
+ *           <li>Setter method value</li>
+ *           <li>Environment variable {@code AUKLET_SERIAL_RELIABLE}</li>
+ *           <li>JVM system property {@code auklet.serial.reliable}</li>
+ *         </ol>
+ *       </td>
+ *       <td>{@code false}</td>
+ *     </tr>
+ *     <tr>
+ *       <td>Maximum number of threads shared by the agent, MQTT and HTTP clients (thread-budget mode)</td>
+ *       <td>{@link #setThreadBudget(Integer)}</td>
+ *       <td>
+ *         <ol>
+ *           <li>Setter method value</li>
+ *           <li>Environment variable {@code AUKLET_THREAD_BUDGET}</li>
+ *           <li>JVM system property {@code auklet.thread.budget}</li>
+ *         </ol>
+ *       </td>
+ *       <td>{@code 0} (disabled)</td>
+ *     </tr>
+ *     <tr>
+ *       <td>Stack size of agent threads, in KB</td>
+ *       <td>{@link #setThreadStackSize(Integer)}</td>
+ *       <td>
+ *         <ol>
+ *           <li>Setter method value</li>
+ *           <li>Environment variable {@code AUKLET_THREAD_STACK_SIZE}</li>
+ *           <li>JVM system property {@code auklet.thread.stack.size}</li>
+ *         </ol>
+ *       </td>
+ *       <td>{@code 0} (JVM default)</td>
+ *     </tr>
+ *     <tr>
+ *       <td>Generator of message IDs</td>
+ *       <td>{@link #setIdGenerator(EventIdGenerator)}</td>
+ *       <td>
+ *         Setter method value
+ *       </td>
+ *       <td>UUIDv7-style, time-ordered IDs</td>
+ *     </tr>
  *   </tbody>
  * </table>
  *
@@ -168,6 +416,10 @@ import java.util.*;
  *   <li>All {@code public static} methods in the {@link Auklet} class.</li>
  *   <li>All {@code public} methods in the {@link Config} class.</li>
  *   <li>The {@link AukletException} class.</li>
+ *   <li>All {@code public} methods in the {@link Counter}, {@link Gauge} and {@link Histogram} classes.</li>
+ *   <li>The {@link EventIdGenerator} interface.</li>
+ *   <li>The classes in the {@code io.auklet.logging} package, via the configuration of the respective
+ *   logging framework.</li>
  * </ul>
  *
  * <p><b>Unless instructed to do so by Auklet support, do not use any classes/fields/methods other than
@@ -188,6 +440,27 @@ public final class Config {
     private String serialPort = null;
     private Object androidContext = null;
     private Integer mqttThreads = null;
+    private Integer stringDictionarySize = null;
+    private Integer eventRateLimit = null;
+    private Integer telemetryInterval = null;
+    private Integer loadGovernorThreshold = null;
+    private Integer profilerHz = null;
+    private Integer profilerOverhead = null;
+    private Integer lockMonitorInterval = null;
+    private Integer memoryThreshold = null;
+    private String sinks = null;
+    private String sinkPolicy = null;
+    private Boolean fileSinkCompression = null;
+    private String collectorAddress = null;
+    private Boolean collectorMode = null;
+    private Boolean sharedUplink = null;
+    private Integer serialBaudRate = null;
+    private Boolean serialReliable = null;
+    private Integer threadBudget = null;
+    private Integer threadStackSize = null;
+    private Integer eventQueueSize = null;
+    private String eventQueueOverflow = null;
+    private EventIdGenerator idGenerator = null;
 
     /**
      * <p>Sets the Auklet agent's app ID.</p>
@@ -316,6 +589,311 @@ public final class Config {
         return this;
     }
 
+    /**
+     * <p>Tells the Auklet agent how many distinct class/method/file names to remember per sink
+     * connection. Each remembered string is sent in full once and is afterwards referenced by a
+     * small integer ID; the least recently used strings are evicted once the dictionary is full.</p>
+     *
+     * @param stringDictionarySize may be {@code null}. Values less than 0 are coerced to {@code null}.
+     * Zero disables the dictionary. Values greater than 65535 are coerced to 65535.
+     * @return {@code this}.
+     */
+    @NonNull public Config setStringDictionarySize(@Nullable Integer stringDictionarySize) {
+        if (stringDictionarySize != null && stringDictionarySize < 0) stringDictionarySize = null;
+        if (stringDictionarySize != null && stringDictionarySize > 65535) stringDictionarySize = 65535;
+        this.stringDictionarySize = stringDictionarySize;
+        return this;
+    }
+
+    /**
+     * <p>Tells the Auklet agent how many events it may send per minute, across all exception types.
+     * Each distinct exception type/location may use at most a tenth of this rate.</p>
+     *
+     * @param eventRateLimit may be {@code null}. Values less than 0 are coerced to {@code null}.
+     * Zero disables rate limiting.
+     * @return {@code this}.
+     */
+    @NonNull public Config setEventRateLimit(@Nullable Integer eventRateLimit) {
+        if (eventRateLimit != null && eventRateLimit < 0) eventRateLimit = null;
+        this.eventRateLimit = eventRateLimit;
+        return this;
+    }
+
+    /**
+     * <p>Tells the Auklet agent how many events may wait to be sent to the data sink. Events submitted
+     * while the queue is full are handled per {@link #setEventQueueOverflow(String)}.</p>
+     *
+     * @param eventQueueSize may be {@code null}. Values less than 1 are coerced to {@code null}.
+     * @return {@code this}.
+     */
+    @NonNull public Config setEventQueueSize(@Nullable Integer eventQueueSize) {
+        if (eventQueueSize != null && eventQueueSize < 1) eventQueueSize = null;
+        this.eventQueueSize = eventQueueSize;
+        return this;
+    }
+
+    /**
+     * <p>Tells the Auklet agent which event to drop when an event is submitted while the event queue is
+     * full: {@code dropNewest} drops the submitted event, and {@code dropOldest} drops the oldest queued
+     * event. In either case, the application thread is never blocked.</p>
+     *
+     * @param eventQueueOverflow may be {@code null}. Unrecognized values are logged and ignored.
+     * @return {@code this}.
+     */
+    @NonNull public Config setEventQueueOverflow(@Nullable String eventQueueOverflow) {
+        this.eventQueueOverflow = eventQueueOverflow;
+        return this;
+    }
+
+    /**
+     * <p>Tells the Auklet agent how often, in seconds, to send telemetry (such as JVM metrics) to the
+     * data sink, if the emission period is not set by the Auklet backend.</p>
+     *
+     * @param telemetryInterval may be {@code null}. Values less than 0 are coerced to {@code null}.
+     * Zero disables telemetry.
+     * @return {@code this}.
+     */
+    @NonNull public Config setTelemetryInterval(@Nullable Integer telemetryInterval) {
+        if (telemetryInterval != null && telemetryInterval < 0) telemetryInterval = null;
+        this.telemetryInterval = telemetryInterval;
+        return this;
+    }
+
+    /**
+     * <p>Tells the Auklet agent the CPU usage percentage (of the host, or of the container's CPU quota
+     * where available) at or above which the agent backs off: events are sampled more heavily and
+     * deferred, and telemetry is paused, until CPU usage subsides.</p>
+     *
+     * @param loadGovernorThreshold may be {@code null}. Values less than 0 or greater than 100 are
+     * coerced to {@code null}. Zero disables this behavior.
+     * @return {@code this}.
+     */
+    @NonNull public Config setLoadGovernorThreshold(@Nullable Integer loadGovernorThreshold) {
+        if (loadGovernorThreshold != null && (loadGovernorThreshold < 0 || loadGovernorThreshold > 100)) loadGovernorThreshold = null;
+        this.loadGovernorThreshold = loadGovernorThreshold;
+        return this;
+    }
+
+    /**
+     * <p>Tells the Auklet agent how many times per second to sample the stacks of running threads. The
+     * samples are aggregated on-device and sent to the data sink as one compact CPU profile per
+     * telemetry period. Frequencies between 19 and 99 are recommended; odd values such as these avoid
+     * sampling in lockstep with periodic application work.</p>
+     *
+     * <p>This has no effect on Android, or if telemetry is disabled.</p>
+     *
+     * @param profilerHz may be {@code null}. Values less than 0 or greater than 100 are coerced to
+     * {@code null}. Zero disables the profiler.
+     * @return {@code this}.
+     */
+    @NonNull public Config setProfilerHz(@Nullable Integer profilerHz) {
+        if (profilerHz != null && (profilerHz < 0 || profilerHz > 100)) profilerHz = null;
+        this.profilerHz = profilerHz;
+        return this;
+    }
+
+    /**
+     * <p>Tells the Auklet agent the maximum average CPU time the profiler may use, as a percentage of
+     * one CPU core. Samples are skipped as needed to stay under this limit.</p>
+     *
+     * @param profilerOverhead may be {@code null}. Values less than 1 or greater than 100 are coerced
+     * to {@code null}.
+     * @return {@code this}.
+     */
+    @NonNull public Config setProfilerOverhead(@Nullable Integer profilerOverhead) {
+        if (profilerOverhead != null && (profilerOverhead < 1 || profilerOverhead > 100)) profilerOverhead = null;
+        this.profilerOverhead = profilerOverhead;
+        return this;
+    }
+
+    /**
+     * <p>Tells the Auklet agent the maximum number of seconds between checks for deadlocked threads and
+     * contended locks. Checks run more often while locks are contended, and back off to this interval
+     * while the application is quiet. Deadlocks are sent as events; the most contended locks are sent
+     * with telemetry.</p>
+     *
+     * <p>This has no effect on Android.</p>
+     *
+     * @param lockMonitorInterval may be {@code null}. Values less than 0 are coerced to {@code null}.
+     * Zero disables deadlock and contention detection.
+     * @return {@code this}.
+     */
+    @NonNull public Config setLockMonitorInterval(@Nullable Integer lockMonitorInterval) {
+        if (lockMonitorInterval != null && lockMonitorInterval < 0) lockMonitorInterval = null;
+        this.lockMonitorInterval = lockMonitorInterval;
+        return this;
+    }
+
+    /**
+     * <p>Tells the Auklet agent the occupancy percentage of the old generation (or other long-lived heap
+     * pool), measured right after garbage collection, at or above which the agent sends a warning
+     * event. Warnings are repeated at most once every few minutes while the pool stays above this
+     * percentage.</p>
+     *
+     * <p>This has no effect on Android.</p>
+     *
+     * @param memoryThreshold may be {@code null}. Values less than 0 or greater than 100 are coerced to
+     * {@code null}. Zero disables memory warnings.
+     * @return {@code this}.
+     */
+    @NonNull public Config setMemoryThreshold(@Nullable Integer memoryThreshold) {
+        if (memoryThreshold != null && (memoryThreshold < 0 || memoryThreshold > 100)) memoryThreshold = null;
+        this.memoryThreshold = memoryThreshold;
+        return this;
+    }
+
+    /**
+     * <p>Tells the Auklet agent which data sinks to write to, as a comma-separated list in priority
+     * order. Supported sinks are {@code mqtt} ({@code auklet.io}), {@code serial} (requires
+     * {@link #setSerialPort(String)}), {@code file} (rolling segment files in the {@code events}
+     * subdirectory of the config directory, for offline deployments) and {@code collector} (a host-local
+     * collector; see {@link #setCollectorMode(Boolean)}). When more than one sink is listed, data is routed between them
+     * per {@link #setSinkPolicy(String)}, and each sink gets its own queue so that a slow sink does not
+     * delay the others.</p>
+     *
+     * @param sinks may be {@code null}. Empty string is coerced to {@code null}. Unrecognized sink
+     * names are logged and ignored.
+     * @return {@code this}.
+     */
+    @NonNull public Config setSinks(@Nullable String sinks) {
+        if (Util.isNullOrEmpty(sinks)) sinks = null;
+        this.sinks = sinks;
+        return this;
+    }
+
+    /**
+     * <p>Tells the Auklet agent how to route data when several data sinks are configured:
+     * {@code fallback} writes each message to the first connected sink, in the order given to
+     * {@link #setSinks(String)}, and {@code mirror} writes each message to every sink.</p>
+     *
+     * @param sinkPolicy may be {@code null}. Unrecognized values are logged and ignored.
+     * @return {@code this}.
+     */
+    @NonNull public Config setSinkPolicy(@Nullable String sinkPolicy) {
+        this.sinkPolicy = sinkPolicy;
+        return this;
+    }
+
+    /**
+     * <p>Tells the Auklet agent whether the {@code file} data sink should compress each segment file
+     * with gzip once it is closed.</p>
+     *
+     * @param fileSinkCompression may be {@code null}.
+     * @return {@code this}.
+     */
+    @NonNull public Config setFileSinkCompression(@Nullable Boolean fileSinkCompression) {
+        this.fileSinkCompression = fileSinkCompression;
+        return this;
+    }
+
+    /**
+     * <p>Tells the Auklet agent where the host-local collector listens: either a loopback UDP port
+     * number, or the path of a Unix domain socket (requires Java 16 or later).</p>
+     *
+     * @param collectorAddress may be {@code null}. Empty string is coerced to {@code null}.
+     * @return {@code this}.
+     */
+    @NonNull public Config setCollectorAddress(@Nullable String collectorAddress) {
+        if (Util.isNullOrEmpty(collectorAddress)) collectorAddress = null;
+        this.collectorAddress = collectorAddress;
+        return this;
+    }
+
+    /**
+     * <p>Tells the Auklet agent whether to act as the host-local collector: if {@code true}, the agent
+     * listens on the collector address and forwards everything that other agents on the same host send
+     * to their {@code collector} data sink to its own data sinks, over a single upstream connection.</p>
+     *
+     * @param collectorMode may be {@code null}.
+     * @return {@code this}.
+     */
+    @NonNull public Config setCollectorMode(@Nullable Boolean collectorMode) {
+        this.collectorMode = collectorMode;
+        return this;
+    }
+
+    /**
+     * <p>Tells the Auklet agent whether to share one upstream connection with the other agents on this
+     * host that use the same config directory. One of them (the leader) writes to the configured data
+     * sinks; the others skip broker and network setup and hand their data to the leader through a
+     * memory-mapped file in the config directory. If the leader exits, another agent takes over.</p>
+     *
+     * @param sharedUplink may be {@code null}.
+     * @return {@code this}.
+     */
+    @NonNull public Config setSharedUplink(@Nullable Boolean sharedUplink) {
+        this.sharedUplink = sharedUplink;
+        return this;
+    }
+
+    /**
+     * <p>Tells the Auklet agent the baud rate of the serial port. The agent configures the port for 8
+     * data bits, 1 stop bit and no parity at this rate, and paces its output to it.</p>
+     *
+     * @param serialBaudRate may be {@code null}. Values less than 1 are coerced to {@code null}.
+     * @return {@code this}.
+     */
+    @NonNull public Config setSerialBaudRate(@Nullable Integer serialBaudRate) {
+        if (serialBaudRate != null && serialBaudRate < 1) serialBaudRate = null;
+        this.serialBaudRate = serialBaudRate;
+        return this;
+    }
+
+    /**
+     * <p>Tells the Auklet agent whether the serial sink should number its messages and resend each one
+     * until the receiver on the other end of the line acknowledges it. This requires a receiver that
+     * speaks the protocol, and a line that carries data in both directions.</p>
+     *
+     * @param serialReliable may be {@code null}.
+     * @return {@code this}.
+     */
+    @NonNull public Config setSerialReliable(@Nullable Boolean serialReliable) {
+        this.serialReliable = serialReliable;
+        return this;
+    }
+
+    /**
+     * <p>Tells the Auklet agent to run its own tasks, the MQTT client and the HTTP client on a single
+     * shared pool of at most this many threads, instead of on separate pools. The MQTT client keeps three
+     * of these threads busy while connected, so values from 1 to 3 are raised to 4. Set this to 0 to
+     * disable thread-budget mode.</p>
+     *
+     * @param threadBudget may be {@code null}. Negative values are coerced to {@code null}.
+     * @return {@code this}.
+     */
+    @NonNull public Config setThreadBudget(@Nullable Integer threadBudget) {
+        if (threadBudget != null && threadBudget < 0) threadBudget = null;
+        this.threadBudget = threadBudget;
+        return this;
+    }
+
+    /**
+     * <p>Tells the Auklet agent the stack size, in KB, of the threads it starts for its own tasks and
+     * for the MQTT client. Set this to 0 to use the JVM default. The JVM may round this value up, or
+     * ignore it.</p>
+     *
+     * @param threadStackSize may be {@code null}. Negative values are coerced to {@code null}.
+     * @return {@code this}.
+     */
+    @NonNull public Config setThreadStackSize(@Nullable Integer threadStackSize) {
+        if (threadStackSize != null && threadStackSize < 0) threadStackSize = null;
+        this.threadStackSize = threadStackSize;
+        return this;
+    }
+
+    /**
+     * <p>Sets the generator of the IDs attached to every message sent by the Auklet agent. IDs are sent
+     * as 16-byte MessagePack {@code bin} values.</p>
+     *
+     * @param idGenerator may be {@code null}, in which case the agent generates UUIDv7-style,
+     * time-ordered IDs.
+     * @return {@code this}.
+     */
+    @NonNull public Config setIdGenerator(@Nullable EventIdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+        return this;
+    }
+
     /** <p>Returns the desired app ID.</p> */
     /*package*/ @CheckForNull String getAppId() {
         return appId;
@@ -362,4 +940,67 @@ public final class Config {
     /** <p>Returns the desired number of MQTT threads.</p> */
     /*package*/ @CheckForNull Integer getMqttThreads() { return mqttThreads; }
 
+    /** <p>Returns the desired string dictionary size.</p> */
+    /*package*/ @CheckForNull Integer getStringDictionarySize() { return stringDictionarySize; }
+
+    /** <p>Returns the desired event rate limit.</p> */
+    /*package*/ @CheckForNull Integer getEventRateLimit() { return eventRateLimit; }
+
+    /** <p>Returns the desired event queue size.</p> */
+    /*package*/ @CheckForNull Integer getEventQueueSize() { return eventQueueSize; }
+
+    /** <p>Returns the desired event queue overflow policy.</p> */
+    /*package*/ @CheckForNull String getEventQueueOverflow() { return eventQueueOverflow; }
+
+    /** <p>Returns the desired telemetry interval.</p> */
+    /*package*/ @CheckForNull Integer getTelemetryInterval() { return telemetryInterval; }
+
+    /** <p>Returns the desired load governor threshold.</p> */
+    /*package*/ @CheckForNull Integer getLoadGovernorThreshold() { return loadGovernorThreshold; }
+
+    /** <p>Returns the desired profiler frequency.</p> */
+    /*package*/ @CheckForNull Integer getProfilerHz() { return profilerHz; }
+
+    /** <p>Returns the desired maximum profiler overhead.</p> */
+    /*package*/ @CheckForNull Integer getProfilerOverhead() { return profilerOverhead; }
+
+    /** <p>Returns the desired maximum lock monitor interval.</p> */
+    /*package*/ @CheckForNull Integer getLockMonitorInterval() { return lockMonitorInterval; }
+
+    /** <p>Returns the desired memory warning threshold.</p> */
+    /*package*/ @CheckForNull Integer getMemoryThreshold() { return memoryThreshold; }
+
+    /** <p>Returns the desired data sinks.</p> */
+    /*package*/ @CheckForNull String getSinks() { return sinks; }
+
+    /** <p>Returns the desired data sink routing policy.</p> */
+    /*package*/ @CheckForNull String getSinkPolicy() { return sinkPolicy; }
+
+    /** <p>Returns whether the file sink should compress closed segments.</p> */
+    /*package*/ @CheckForNull Boolean getFileSinkCompression() { return fileSinkCompression; }
+
+    /** <p>Returns the desired local collector address.</p> */
+    /*package*/ @CheckForNull String getCollectorAddress() { return collectorAddress; }
+
+    /** <p>Returns whether this agent should act as the local collector.</p> */
+    /*package*/ @CheckForNull Boolean getCollectorMode() { return collectorMode; }
+
+    /** <p>Returns whether this agent should share its upstream connection.</p> */
+    /*package*/ @CheckForNull Boolean getSharedUplink() { return sharedUplink; }
+
+    /** <p>Returns the desired serial port baud rate.</p> */
+    /*package*/ @CheckForNull Integer getSerialBaudRate() { return serialBaudRate; }
+
+    /** <p>Returns whether the serial sink should use reliable delivery.</p> */
+    /*package*/ @CheckForNull Boolean getSerialReliable() { return serialReliable; }
+
+    /** <p>Returns the desired thread budget.</p> */
+    /*package*/ @CheckForNull Integer getThreadBudget() { return threadBudget; }
+
+    /** <p>Returns the desired thread stack size, in KB.</p> */
+    /*package*/ @CheckForNull Integer getThreadStackSize() { return threadStackSize; }
+
+    /** <p>Returns the desired message ID generator.</p> */
+    /*package*/ @CheckForNull EventIdGenerator getIdGenerator() { return idGenerator; }
+
 }
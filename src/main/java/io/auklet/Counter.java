@@ -0,0 +1,73 @@
+package io.auklet;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>A named counter whose value is reported to the Auklet backend as the amount by which it was
+ * incremented during each telemetry period. Obtain instances via {@link Auklet#counter(String)}.</p>
+ *
+ * <p>Increments are spread across per-thread cells, so they do not allocate and scale with the number
+ * of threads recording concurrently.</p>
+ */
+@ThreadSafe
+public final class Counter {
+
+    private static final int MAX_CELLS = 64;
+    private final String name;
+    private final int mask;
+    private final AtomicLongArray cells;
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param name the name of this counter. Never {@code null}.
+     */
+    /*package*/ Counter(@NonNull String name) {
+        this.name = name;
+        int cellCount = Striping.cellCount(MAX_CELLS);
+        this.mask = cellCount - 1;
+        this.cells = new AtomicLongArray(cellCount * Striping.PADDING);
+    }
+
+    /** <p>Increments this counter by one.</p> */
+    public void increment() {
+        this.add(1L);
+    }
+
+    /**
+     * <p>Increments this counter by the given amount.</p>
+     *
+     * @param amount the amount; may be negative.
+     */
+    public void add(long amount) {
+        this.cells.getAndAdd(Striping.cellIndex(this.mask) * Striping.PADDING, amount);
+    }
+
+    /**
+     * <p>Returns the name of this counter.</p>
+     *
+     * @return never {@code null}.
+     */
+    @NonNull public String getName() {
+        return this.name;
+    }
+
+    /**
+     * <p>Returns the amount by which this counter was incremented since the previous call to this
+     * method, and starts a new period. Increments that race with this method are counted in exactly
+     * one period.</p>
+     *
+     * @return the sum of all increments in the period.
+     */
+    /*package*/ long drain() {
+        long sum = 0L;
+        for (int i = 0; i < this.cells.length(); i += Striping.PADDING) {
+            sum += this.cells.getAndSet(i, 0L);
+        }
+        return sum;
+    }
+
+}
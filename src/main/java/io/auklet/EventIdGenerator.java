@@ -0,0 +1,25 @@
+package io.auklet;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * <p>Generates the unique IDs that are attached to every message sent by the Auklet agent.</p>
+ *
+ * <p>Implementations must be thread-safe and must never block. A custom implementation can be set via
+ * {@link Config#setIdGenerator(EventIdGenerator)}.</p>
+ */
+public interface EventIdGenerator {
+
+    /** <p>The length, in bytes, of every generated ID.</p> */
+    int ID_LENGTH = 16;
+
+    /**
+     * <p>Writes the next ID into the given array.</p>
+     *
+     * @param dest the array that will receive the ID. Never {@code null}, and must be exactly
+     * {@link #ID_LENGTH} bytes long.
+     * @throws IllegalArgumentException if the array is {@code null} or has the wrong length.
+     */
+    void nextId(@NonNull byte[] dest);
+
+}
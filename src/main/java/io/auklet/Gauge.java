@@ -0,0 +1,52 @@
+package io.auklet;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * <p>A named gauge whose most recent value is reported to the Auklet backend once per telemetry period.
+ * Obtain instances via {@link Auklet#gauge(String)}.</p>
+ */
+@ThreadSafe
+public final class Gauge {
+
+    private final String name;
+    private volatile double value = 0d;
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param name the name of this gauge. Never {@code null}.
+     */
+    /*package*/ Gauge(@NonNull String name) {
+        this.name = name;
+    }
+
+    /**
+     * <p>Sets the value of this gauge.</p>
+     *
+     * @param value the new value.
+     */
+    public void set(double value) {
+        this.value = value;
+    }
+
+    /**
+     * <p>Returns the name of this gauge.</p>
+     *
+     * @return never {@code null}.
+     */
+    @NonNull public String getName() {
+        return this.name;
+    }
+
+    /**
+     * <p>Returns the most recent value of this gauge.</p>
+     *
+     * @return zero if this gauge has never been set.
+     */
+    public double getValue() {
+        return this.value;
+    }
+
+}
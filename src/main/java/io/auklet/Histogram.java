@@ -0,0 +1,125 @@
+package io.auklet;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>A named distribution of non-negative values, such as latencies, that is reported to the Auklet
+ * backend as a histogram once per telemetry period. Obtain instances via
+ * {@link Auklet#histogram(String)}.</p>
+ *
+ * <p>Values are counted in fixed power-of-two buckets: bucket {@code 0} holds the value {@code 0}, and
+ * bucket {@code n} holds values from {@code 2^(n-1)} to {@code 2^n - 1}. Choose the unit of recorded
+ * values (e.g. microseconds) so that the expected range spans several buckets. As with {@link Counter},
+ * recording is spread across per-thread cells and does not allocate.</p>
+ */
+@ThreadSafe
+public final class Histogram {
+
+    /** <p>The number of buckets.</p> */
+    public static final int BUCKETS = 64;
+    private static final int MAX_CELLS = 16;
+    // Each cell holds the bucket counts followed by the sum of all values, padded to a cache line.
+    private static final int SUM = BUCKETS;
+    private static final int CELL_SIZE = BUCKETS + Striping.PADDING;
+    private final String name;
+    private final int mask;
+    private final AtomicLongArray cells;
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param name the name of this histogram. Never {@code null}.
+     */
+    /*package*/ Histogram(@NonNull String name) {
+        this.name = name;
+        int cellCount = Striping.cellCount(MAX_CELLS);
+        this.mask = cellCount - 1;
+        this.cells = new AtomicLongArray(cellCount * CELL_SIZE);
+    }
+
+    /**
+     * <p>Records a value.</p>
+     *
+     * @param value the value. Negative values are recorded as zero.
+     */
+    public void record(long value) {
+        long clamped = Math.max(0L, value);
+        int base = Striping.cellIndex(this.mask) * CELL_SIZE;
+        this.cells.getAndIncrement(base + bucketOf(clamped));
+        this.cells.getAndAdd(base + SUM, clamped);
+    }
+
+    /**
+     * <p>Records the time elapsed since the given start time, in microseconds.</p>
+     *
+     * @param startNanos the start time, as obtained from {@link System#nanoTime()}.
+     */
+    public void recordMicrosSince(long startNanos) {
+        this.record((System.nanoTime() - startNanos) / 1000L);
+    }
+
+    /**
+     * <p>Returns the name of this histogram.</p>
+     *
+     * @return never {@code null}.
+     */
+    @NonNull public String getName() {
+        return this.name;
+    }
+
+    /**
+     * <p>Returns the bucket counts and sum recorded since the previous call to this method, and starts a
+     * new period.</p>
+     *
+     * @param counts the array into which bucket counts are written; must have {@link #BUCKETS} elements.
+     * @return the sum of all values recorded in the period.
+     */
+    /*package*/ long drain(@NonNull long[] counts) {
+        long sum = 0L;
+        for (int base = 0; base < this.cells.length(); base += CELL_SIZE) {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                counts[bucket] += this.cells.getAndSet(base + bucket, 0L);
+            }
+            sum += this.cells.getAndSet(base + SUM, 0L);
+        }
+        return sum;
+    }
+
+    /**
+     * <p>Adds bucket counts and a sum, as returned by {@link #drain(long[])}, to the current period.</p>
+     *
+     * @param counts the bucket counts; must have {@link #BUCKETS} elements.
+     * @param sum the sum of the values.
+     */
+    /*package*/ void merge(@NonNull long[] counts, long sum) {
+        int base = Striping.cellIndex(this.mask) * CELL_SIZE;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            if (counts[bucket] != 0L) this.cells.getAndAdd(base + bucket, counts[bucket]);
+        }
+        this.cells.getAndAdd(base + SUM, sum);
+    }
+
+    /**
+     * <p>Returns the largest value that falls into the given bucket.</p>
+     *
+     * @param bucket the bucket index.
+     * @return never negative.
+     */
+    /*package*/ static long upperBound(int bucket) {
+        return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    /**
+     * <p>Returns the bucket into which the given value falls.</p>
+     *
+     * @param value a non-negative value.
+     * @return the bucket index.
+     */
+    private static int bucketOf(long value) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+    }
+
+}
@@ -0,0 +1,120 @@
+package io.auklet;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import io.auklet.instrument.CatchSiteTransformer;
+import io.auklet.logging.LoggingBridges;
+import io.auklet.util.SysUtil;
+import net.jcip.annotations.Immutable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.instrument.Instrumentation;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Entry point for running the Auklet agent as a Java agent, so that it can be added to an application
+ * without code changes, either at JVM startup ({@code -javaagent}) or by attaching to a running JVM.</p>
+ *
+ * <pre>{@code
+ * java -javaagent:auklet-agent.jar=appId=...,apiKey=...,loggers=com.example:org.example -jar app.jar
+ * }</pre>
+ *
+ * <p>Options are comma-separated {@code key=value} pairs. Options that are not given fall back to the
+ * environment variables and JVM system properties described in {@link Config}.</p>
+ *
+ * <ul>
+ *   <li>{@code appId}, {@code apiKey}, {@code baseUrl}, {@code configDir}, {@code serialPort}: see the
+ *   {@link Config} setters of the same name.</li>
+ *   <li>{@code captureLogged}: if {@code true} (the default), exceptions logged via
+ *   {@code java.util.logging} or Logback are sent to Auklet, in addition to uncaught exceptions.</li>
+ *   <li>{@code loggers}: colon-separated logger name prefixes (e.g. the application's packages) to
+ *   which {@code captureLogged} is restricted. By default, all loggers are included.</li>
+ *   <li>{@code instrument}: colon-separated package name prefixes (e.g. the application's packages)
+ *   whose {@code catch} blocks are instrumented, so that exceptions the application catches are also
+ *   sent to Auklet. By default, no classes are instrumented. Requires ASM on the classpath; see
+ *   {@link CatchSiteTransformer}.</li>
+ * </ul>
+ *
+ * <p>The Auklet agent JAR's dependencies must be on the application classpath.</p>
+ */
+@Immutable
+public final class JavaAgent {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JavaAgent.class);
+
+    private JavaAgent() {}
+
+    /**
+     * <p>Invoked by the JVM when the agent is loaded at startup.</p>
+     *
+     * @param args the agent options; may be {@code null}.
+     * @param inst the instrumentation instance; may be {@code null}.
+     */
+    public static void premain(@Nullable String args, @Nullable Instrumentation inst) {
+        start(args, inst);
+    }
+
+    /**
+     * <p>Invoked by the JVM when the agent is attached to a running JVM.</p>
+     *
+     * @param args the agent options; may be {@code null}.
+     * @param inst the instrumentation instance; may be {@code null}.
+     */
+    public static void agentmain(@Nullable String args, @Nullable Instrumentation inst) {
+        start(args, inst);
+    }
+
+    /**
+     * <p>Parses the agent options, initializes the Auklet agent asynchronously and attaches the logging
+     * integrations and instrumentation. This method never throws, so that a misconfigured agent cannot
+     * prevent the application from starting.</p>
+     *
+     * @param args the agent options; may be {@code null}.
+     * @param inst the instrumentation instance; may be {@code null}.
+     */
+    private static void start(@Nullable String args, @Nullable Instrumentation inst) {
+        try {
+            Map<String, String> options = parseOptions(args);
+            if (!"false".equalsIgnoreCase(options.get("captureLogged"))) LoggingBridges.install(options.get("loggers"));
+            String instrument = options.get("instrument");
+            if (instrument != null && inst != null) CatchSiteTransformer.install(inst, instrument);
+            // Referencing the Auklet class may already have initialized the agent via auto-start.
+            if (Boolean.valueOf(SysUtil.getValue((String) null, "AUKLET_AUTO_START", "auklet.auto.start", Auklet.LOUD_SECURITY_EXCEPTIONS))) {
+                LOGGER.info("Auto-start is enabled; Java agent options other than captureLogged, loggers and instrument are ignored.");
+                return;
+            }
+            Config config = new Config()
+                    .setAppId(options.get("appId"))
+                    .setApiKey(options.get("apiKey"))
+                    .setBaseUrl(options.get("baseUrl"))
+                    .setConfigDir(options.get("configDir"))
+                    .setSerialPort(options.get("serialPort"));
+            Auklet.init(config);
+        } catch (RuntimeException | LinkageError e) {
+            LOGGER.error("Could not start Auklet Java agent.", e);
+        }
+    }
+
+    /**
+     * <p>Parses the agent options.</p>
+     *
+     * @param args comma-separated {@code key=value} pairs; may be {@code null}.
+     * @return never {@code null}.
+     */
+    @NonNull private static Map<String, String> parseOptions(@Nullable String args) {
+        Map<String, String> options = new HashMap<>();
+        if (args == null) return options;
+        for (String option : args.split(",")) {
+            int separator = option.indexOf('=');
+            if (separator <= 0) {
+                if (!option.trim().isEmpty()) LOGGER.warn("Ignoring malformed Java agent option '{}'.", option);
+                continue;
+            }
+            options.put(option.substring(0, separator).trim(), option.substring(separator + 1).trim());
+        }
+        return options;
+    }
+
+}
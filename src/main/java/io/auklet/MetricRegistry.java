@@ -0,0 +1,220 @@
+package io.auklet;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import io.auklet.sink.Telemetry;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+import org.msgpack.core.MessagePacker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>Holds all named application metrics, and produces the aggregated telemetry snapshot that is
+ * periodically sent to the data sink.</p>
+ *
+ * <p>Metrics are registered independently of the agent lifecycle, so handles may be obtained before
+ * the agent is initialized and remain valid across agent restarts.</p>
+ *
+ * <p>Once the registry is full, new names get one shared handle per metric type, whose values are never
+ * reported; looking them up neither allocates nor logs more than once.</p>
+ */
+@ThreadSafe
+/*package*/ final class MetricRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricRegistry.class);
+    private static final int MAX_METRICS = 1000;
+    private static final Counter UNREGISTERED_COUNTER = new Counter("");
+    private static final Gauge UNREGISTERED_GAUGE = new Gauge("");
+    private static final Histogram UNREGISTERED_HISTOGRAM = new Histogram("");
+    private final ConcurrentMap<String, Object> metrics = new ConcurrentHashMap<>();
+    private final AtomicBoolean full = new AtomicBoolean();
+
+    /**
+     * <p>Returns the metric with the given name, creating it if needed.</p>
+     *
+     * @param name the metric name.
+     * @param type the metric type.
+     * @param <T> the metric type.
+     * @return never {@code null}. If the registry is full, the returned metric is shared by all names
+     * that are not registered, and its values are never reported.
+     * @throws IllegalArgumentException if the name is {@code null} or empty, or if a metric of a
+     * different type is already registered with the given name.
+     */
+    @NonNull /*package*/ <T> T get(@Nullable String name, @NonNull Class<T> type) {
+        if (name == null || name.isEmpty()) throw new IllegalArgumentException("Metric name is null or empty.");
+        Object metric = this.metrics.get(name);
+        if (metric == null) {
+            // Metrics are never removed, so once the registry is full it stays full.
+            if (this.full.get() || this.metrics.size() >= MAX_METRICS) {
+                if (this.full.compareAndSet(false, true)) {
+                    LOGGER.warn("Too many metrics registered; values for metric '{}' and any further new metrics will not be reported.", name);
+                }
+                return type.cast(unregistered(type));
+            }
+            Object created = create(name, type);
+            metric = this.metrics.putIfAbsent(name, created);
+            if (metric == null) metric = created;
+        }
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric '" + name + "' is already registered as a " + metric.getClass().getSimpleName() + ".");
+        }
+        return type.cast(metric);
+    }
+
+    /**
+     * <p>Drains all registered metrics into a telemetry snapshot.</p>
+     *
+     * @return {@code null} if no metrics are registered.
+     */
+    @CheckForNull /*package*/ Telemetry snapshot() {
+        if (this.metrics.isEmpty()) return null;
+        List<String> counterNames = new ArrayList<>();
+        List<Long> counterValues = new ArrayList<>();
+        List<String> gaugeNames = new ArrayList<>();
+        List<Double> gaugeValues = new ArrayList<>();
+        List<String> histogramNames = new ArrayList<>();
+        List<long[]> histogramCounts = new ArrayList<>();
+        List<Long> histogramSums = new ArrayList<>();
+        for (Object metric : this.metrics.values()) {
+            if (metric instanceof Counter) {
+                Counter counter = (Counter) metric;
+                counterNames.add(counter.getName());
+                counterValues.add(counter.drain());
+            } else if (metric instanceof Gauge) {
+                Gauge gauge = (Gauge) metric;
+                gaugeNames.add(gauge.getName());
+                gaugeValues.add(gauge.getValue());
+            } else if (metric instanceof Histogram) {
+                Histogram histogram = (Histogram) metric;
+                long[] counts = new long[Histogram.BUCKETS];
+                histogramNames.add(histogram.getName());
+                histogramSums.add(histogram.drain(counts));
+                histogramCounts.add(counts);
+            }
+        }
+        return new Snapshot(counterNames, counterValues, gaugeNames, gaugeValues, histogramNames, histogramCounts, histogramSums);
+    }
+
+    /**
+     * <p>Adds the counter and histogram values of a snapshot that could not be sent back to the
+     * registered metrics, so that they are reported in the next snapshot instead of being lost. Gauges
+     * are not restored, as they already hold their latest value.</p>
+     *
+     * @param telemetry a snapshot returned by {@link #snapshot()}; may be {@code null}.
+     */
+    /*package*/ void restore(@Nullable Telemetry telemetry) {
+        if (!(telemetry instanceof Snapshot)) return;
+        Snapshot snapshot = (Snapshot) telemetry;
+        for (int i = 0; i < snapshot.counterNames.size(); i++) {
+            Object metric = this.metrics.get(snapshot.counterNames.get(i));
+            if (metric instanceof Counter) ((Counter) metric).add(snapshot.counterValues.get(i));
+        }
+        for (int i = 0; i < snapshot.histogramNames.size(); i++) {
+            Object metric = this.metrics.get(snapshot.histogramNames.get(i));
+            if (metric instanceof Histogram) ((Histogram) metric).merge(snapshot.histogramCounts.get(i), snapshot.histogramSums.get(i));
+        }
+    }
+
+    /**
+     * <p>Returns the shared handle for metrics of the given type that are not registered.</p>
+     *
+     * @param type the metric type.
+     * @return never {@code null}.
+     * @throws IllegalArgumentException if the type is not a metric type.
+     */
+    @NonNull private static Object unregistered(@NonNull Class<?> type) {
+        if (type == Counter.class) return UNREGISTERED_COUNTER;
+        if (type == Gauge.class) return UNREGISTERED_GAUGE;
+        if (type == Histogram.class) return UNREGISTERED_HISTOGRAM;
+        throw new IllegalArgumentException("Unknown metric type: " + type.getName());
+    }
+
+    /**
+     * <p>Constructs a new metric of the given type.</p>
+     *
+     * @param name the metric name.
+     * @param type the metric type.
+     * @return never {@code null}.
+     * @throws IllegalArgumentException if the type is not a metric type.
+     */
+    @NonNull private static Object create(@NonNull String name, @NonNull Class<?> type) {
+        if (type == Counter.class) return new Counter(name);
+        if (type == Gauge.class) return new Gauge(name);
+        if (type == Histogram.class) return new Histogram(name);
+        throw new IllegalArgumentException("Unknown metric type: " + type.getName());
+    }
+
+    /**
+     * <p>The values of all metrics for one telemetry period.</p>
+     *
+     * <p>When packed, counters and gauges are maps from metric name to value. Histograms are maps from
+     * metric name to a map containing the {@code count} and {@code sum} of all values and the non-empty
+     * {@code buckets}, as an array of {@code [upperBound, count]} arrays.</p>
+     */
+    @Immutable
+    private static final class Snapshot implements Telemetry {
+
+        private final List<String> counterNames;
+        private final List<Long> counterValues;
+        private final List<String> gaugeNames;
+        private final List<Double> gaugeValues;
+        private final List<String> histogramNames;
+        private final List<long[]> histogramCounts;
+        private final List<Long> histogramSums;
+
+        private Snapshot(List<String> counterNames, List<Long> counterValues, List<String> gaugeNames, List<Double> gaugeValues,
+                         List<String> histogramNames, List<long[]> histogramCounts, List<Long> histogramSums) {
+            this.counterNames = counterNames;
+            this.counterValues = counterValues;
+            this.gaugeNames = gaugeNames;
+            this.gaugeValues = gaugeValues;
+            this.histogramNames = histogramNames;
+            this.histogramCounts = histogramCounts;
+            this.histogramSums = histogramSums;
+        }
+
+        @NonNull @Override public String getTelemetryType() {
+            return "metrics";
+        }
+
+        @Override public void packTelemetry(@NonNull MessagePacker msgpack) throws IOException {
+            msgpack.packMapHeader(3);
+            msgpack.packString("counters").packMapHeader(this.counterNames.size());
+            for (int i = 0; i < this.counterNames.size(); i++) {
+                msgpack.packString(this.counterNames.get(i)).packLong(this.counterValues.get(i));
+            }
+            msgpack.packString("gauges").packMapHeader(this.gaugeNames.size());
+            for (int i = 0; i < this.gaugeNames.size(); i++) {
+                msgpack.packString(this.gaugeNames.get(i)).packDouble(this.gaugeValues.get(i));
+            }
+            msgpack.packString("histograms").packMapHeader(this.histogramNames.size());
+            for (int i = 0; i < this.histogramNames.size(); i++) {
+                long[] counts = this.histogramCounts.get(i);
+                long total = 0L;
+                int nonEmpty = 0;
+                for (long count : counts) {
+                    total += count;
+                    if (count != 0) nonEmpty++;
+                }
+                msgpack.packString(this.histogramNames.get(i)).packMapHeader(3)
+                        .packString("count").packLong(total)
+                        .packString("sum").packLong(this.histogramSums.get(i))
+                        .packString("buckets").packArrayHeader(nonEmpty);
+                for (int bucket = 0; bucket < counts.length; bucket++) {
+                    if (counts[bucket] != 0) msgpack.packArrayHeader(2).packLong(Histogram.upperBound(bucket)).packLong(counts[bucket]);
+                }
+            }
+        }
+
+    }
+
+}
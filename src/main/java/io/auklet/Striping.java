@@ -0,0 +1,40 @@
+package io.auklet;
+
+/**
+ * <p>Helpers for spreading concurrent updates across multiple cells, so that metric handles recorded
+ * from many threads do not contend on a single memory location.</p>
+ */
+/*package*/ final class Striping {
+
+    /** <p>The number of {@code long} slots between cells, so that each cell is on its own cache line.</p> */
+    /*package*/ static final int PADDING = 8;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private Striping() {}
+
+    /**
+     * <p>Returns the number of cells to use: the smallest power of two that is at least twice the number
+     * of available processors, but no more than the given maximum.</p>
+     *
+     * @param max the maximum number of cells; must be a power of two.
+     * @return a power of two between 1 and {@code max}.
+     */
+    /*package*/ static int cellCount(int max) {
+        int target = Runtime.getRuntime().availableProcessors() * 2;
+        int count = 1;
+        while (count < target && count < max) count <<= 1;
+        return count;
+    }
+
+    /**
+     * <p>Returns the cell to be used by the current thread. The choice is stable for each thread and
+     * does not allocate.</p>
+     *
+     * @param mask the number of cells minus one.
+     * @return a value between 0 and {@code mask}.
+     */
+    /*package*/ static int cellIndex(int mask) {
+        return (int) ((Thread.currentThread().getId() * GOLDEN_GAMMA) >>> 32) & mask;
+    }
+
+}
@@ -17,23 +17,49 @@ import java.io.IOException;
 @NotThreadSafe
 public abstract class AbstractConfigFileFromApi<T> extends AbstractConfigFile {
 
+    private static final int DISK_WAIT_SECONDS = 30;
+
     /**
      * <p>Loads the config for this object, either from disk or from the API. If the latter, this method
      * persists the API response to disk prior to returning.</p>
      *
+     * <p>If the agent may not use the API (see {@link io.auklet.Auklet#isApiEnabled()}), the config is
+     * only read from disk, waiting up to {@value #DISK_WAIT_SECONDS} seconds for the agent that owns the
+     * shared uplink to save it.</p>
+     *
      * @return never {@code null}.
      * @throws AukletException if the config cannot be read from disk or fetched from the API, or if it
      * cannot be written to disk.
      */
     @NonNull protected final T loadConfig() throws AukletException {
         T config = this.readFromDisk();
-        if (config == null) {
-            config = this.fetchFromApi();
-            this.writeToDisk(config);
-        }
+        if (config != null) return config;
+        if (!this.getAgent().isApiEnabled()) return this.awaitFromDisk();
+        config = this.fetchFromApi();
+        this.writeToDisk(config);
         return config;
     }
 
+    /**
+     * <p>Waits for the config file to be saved to disk by another agent.</p>
+     *
+     * @return never {@code null}.
+     * @throws AukletException if the file is not saved in time, or if the wait is interrupted.
+     */
+    @NonNull private T awaitFromDisk() throws AukletException {
+        for (int i = 0; i < DISK_WAIT_SECONDS; i++) {
+            try {
+                Thread.sleep(1000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AukletException(String.format("Interrupted while waiting for config file '%s'.", this.getName()), e);
+            }
+            T config = this.readFromDisk();
+            if (config != null) return config;
+        }
+        throw new AukletException(String.format("Config file '%s' was not saved by the agent that owns the shared uplink.", this.getName()));
+    }
+
     /**
      * <p>Returns the config file contents from disk.</p>
      *
@@ -42,6 +42,20 @@ public final class DataUsageLimit extends AbstractJsonConfigFileFromApi {
      */
     @NonNull public DataUsageConfig getConfig() { return this.usageConfig; }
 
+    /**
+     * <p>Reads the data usage limit config from disk again, e.g. after another agent has refreshed it.
+     * If the file cannot be read, the current config is kept.</p>
+     */
+    public void reload() {
+        Json config = this.readFromDisk();
+        if (config == null) return;
+        try {
+            this.updateConfig(config);
+        } catch (AukletException | RuntimeException e) {
+            LOGGER.warn("Could not reload data usage limit config from disk.", e);
+        }
+    }
+
     /** <p>Refreshes the data usage limit config from the API.</p> */
     public void refresh() {
         try {
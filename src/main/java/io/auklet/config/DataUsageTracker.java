@@ -4,6 +4,7 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import io.auklet.Auklet;
 import io.auklet.AukletException;
 import io.auklet.core.AukletDaemonExecutor;
+import io.auklet.jfr.AgentEvent;
 import io.auklet.util.FileUtil;
 import io.auklet.util.JsonUtil;
 import mjson.Json;
@@ -34,17 +35,8 @@ public final class DataUsageTracker extends AbstractConfigFile {
     @Override public void start(@NonNull Auklet agent) throws AukletException {
         LOGGER.debug("Loading data usage tracker file.");
         super.start(agent);
-        try {
-            // If the file doesn't exist, create it.
-            if (!this.file.exists()) this.writeUsageToDisk(0L);
-            // Read from disk.
-            byte[] usageBytes = FileUtil.read(this.file);
-            String usageString = new String(usageBytes, "UTF-8");
-            // Parse the JSON and set relevant fields.
-            Json usageJson = JsonUtil.validateJson(JsonUtil.readJson(usageString), this.getClass().getName());
-            this.bytesSent = usageJson.at(USAGE_KEY, 0L).asLong();
-        } catch (IOException | IllegalArgumentException e) {
-            LOGGER.warn("Could not read data usage tracker file from disk, assuming zero usage.", e);
+        synchronized (lock) {
+            this.load();
         }
     }
 
@@ -74,6 +66,22 @@ public final class DataUsageTracker extends AbstractConfigFile {
         }
     }
 
+    /**
+     * <p>Discards the usage counted in memory, including any write that is still pending, and reads the
+     * usage from disk again. Used when another agent may have updated the file.</p>
+     */
+    public void reload() {
+        synchronized (lock) {
+            if (this.currentWriteTask != null) this.currentWriteTask.cancel(false);
+            this.currentWriteTask = null;
+            try {
+                this.load();
+            } catch (AukletException e) {
+                LOGGER.warn("Could not reload data usage tracker file from disk.", e);
+            }
+        }
+    }
+
     /** <p>Resets the data usage to zero.</p> */
     public void reset() {
         synchronized (lock) {
@@ -82,6 +90,26 @@ public final class DataUsageTracker extends AbstractConfigFile {
         }
     }
 
+    /**
+     * <p>Reads the usage from disk, creating the file if it does not exist.</p>
+     *
+     * @throws AukletException if the file does not contain a JSON object.
+     */
+    @GuardedBy("lock") private void load() throws AukletException {
+        try {
+            // If the file doesn't exist, create it.
+            if (!this.file.exists()) this.writeUsageToDisk(0L);
+            // Read from disk.
+            byte[] usageBytes = FileUtil.read(this.file);
+            String usageString = new String(usageBytes, "UTF-8");
+            // Parse the JSON and set relevant fields.
+            Json usageJson = JsonUtil.validateJson(JsonUtil.readJson(usageString), this.getClass().getName());
+            this.bytesSent = usageJson.at(USAGE_KEY, 0L).asLong();
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.warn("Could not read data usage tracker file from disk, assuming zero usage.", e);
+        }
+    }
+
     /**
      * <p>Asynchronously saves the given usage value to disk.</p>
      *
@@ -124,7 +152,10 @@ public final class DataUsageTracker extends AbstractConfigFile {
     @GuardedBy("lock") private void writeUsageToDisk(long usage) throws IOException {
         Json usageJson = Json.object();
         usageJson.set(USAGE_KEY, usage);
-        FileUtil.writeUtf8(this.file, usageJson.toString());
+        String contents = usageJson.toString();
+        AgentEvent event = AgentEvent.usageFileWrite().setBytes(contents.length());
+        FileUtil.writeUtf8(this.file, contents);
+        event.end();
     }
 
 }
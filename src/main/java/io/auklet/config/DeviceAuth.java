@@ -109,6 +109,15 @@ public final class DeviceAuth extends AbstractJsonConfigFileFromApi {
         return "java/events/" + this.getOrganizationId() + "/" + this.getClientUsername();
     }
 
+    /**
+     * <p>Returns the MQTT topic that should be used for publishing telemetry messages.</p>
+     *
+     * @return never {@code null}.
+     */
+    @NonNull public String getMqttTelemetryTopic() {
+        return "java/telemetry/" + this.getOrganizationId() + "/" + this.getClientUsername();
+    }
+
     @Override protected Json readFromDisk() {
         try {
             // Read and decrypt the device auth file from disk.
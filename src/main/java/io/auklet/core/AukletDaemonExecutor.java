@@ -8,12 +8,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <p>Auklet daemon task executor that logs exceptions that occur in submitted tasks.</p>
  *
  * <p>To prevent an infinite loop, exceptions that are logged by this executor are not submitted
  * to the Auklet data sink and are only logged to SLF4J.</p>
+ *
+ * <p>This executor also measures how late each task starts relative to its scheduled time and how long
+ * it runs; see {@link #getTaskStats()}. Tasks submitted through a {@link SharedExecutor} are not measured,
+ * because they belong to libraries such as Paho, whose tasks are loops that run for as long as the
+ * connection is open.</p>
  */
 @ThreadSafe
 public final class AukletDaemonExecutor extends ScheduledThreadPoolExecutor {
@@ -21,6 +27,12 @@ public final class AukletDaemonExecutor extends ScheduledThreadPoolExecutor {
     private static final Logger LOGGER = LoggerFactory.getLogger(AukletDaemonExecutor.class);
     private final Object lock = new Object();
     @GuardedBy("lock") private boolean logCancelExceptions = true;
+    private final TaskStats taskStats = new TaskStats();
+    private final ThreadLocal<long[]> taskStart = new ThreadLocal<long[]>() {
+        @Override protected long[] initialValue() {
+            return new long[1];
+        }
+    };
 
     /**
      * Constructor.
@@ -41,15 +53,35 @@ public final class AukletDaemonExecutor extends ScheduledThreadPoolExecutor {
         synchronized(lock) { logCancelExceptions = enabled; }
     }
 
+    /**
+     * <p>Returns the latency counters for tasks run by this executor.</p>
+     *
+     * @return never {@code null}.
+     */
+    @NonNull public TaskStats getTaskStats() {
+        return this.taskStats;
+    }
+
+    /* Measures how late the task is starting. */
+    @Override protected void beforeExecute(@Nullable Thread t, @Nullable Runnable r) {
+        super.beforeExecute(t, r);
+        if (!isTimed(r)) return;
+        // Scheduled tasks report a negative delay once they are overdue.
+        long lateness = r instanceof Delayed ? -((Delayed) r).getDelay(TimeUnit.NANOSECONDS) : 0L;
+        this.taskStats.recordDelay(Math.max(0L, lateness));
+        this.taskStart.get()[0] = System.nanoTime();
+    }
+
     /* Logs exceptions that occur in tasks. */
     @Override protected void afterExecute(@Nullable Runnable r, @Nullable Throwable t) {
         super.afterExecute(r, t);
+        if (isTimed(r)) this.taskStats.recordRun(System.nanoTime() - this.taskStart.get()[0]);
         if (t == null && r instanceof Future<?>) {
             Future<?> future = (Future<?>) r;
             try {
                 if (future.isDone()) future.get();
             } catch (CancellationException ce) {
-                if (!(future instanceof CancelSilentlyRSF)) t = ce;
+                if (!(future instanceof MarkedRSF && ((MarkedRSF<?>) future).silent)) t = ce;
             } catch (ExecutionException ee) {
                 t = ee.getCause();
             } catch (InterruptedException ie) {
@@ -64,27 +96,151 @@ public final class AukletDaemonExecutor extends ScheduledThreadPoolExecutor {
         else if (t != null) LOGGER.warn("Exception in Auklet daemon task.", t);
     }
 
-    /* Decorates CancelSilentlyFutureTasks so that afterExecute() knows about them. */
+    /* Decorates CancelSilentlyRunnables and UntimedTasks so that beforeExecute() and afterExecute() know about them. */
     @Override
     protected <V> RunnableScheduledFuture<V> decorateTask(
             @Nullable Runnable r, @NonNull RunnableScheduledFuture<V> task) {
         if (task == null) throw new IllegalArgumentException("Task is null.");
-        return r instanceof CancelSilentlyRunnable ? new CancelSilentlyRSF<>(task) : task;
+        boolean silent = r instanceof CancelSilentlyRunnable;
+        boolean untimed = r instanceof UntimedTask;
+        return silent || untimed ? new MarkedRSF<>(task, silent, untimed) : task;
+    }
+
+    /* Decorates UntimedTasks so that beforeExecute() and afterExecute() know about them. */
+    @Override
+    protected <V> RunnableScheduledFuture<V> decorateTask(
+            @Nullable Callable<V> c, @NonNull RunnableScheduledFuture<V> task) {
+        if (task == null) throw new IllegalArgumentException("Task is null.");
+        return c instanceof UntimedTask ? new MarkedRSF<>(task, false, true) : task;
+    }
+
+    /**
+     * <p>Determines whether the given task is included in the task stats.</p>
+     *
+     * @param r the task, as passed to {@link #beforeExecute(Thread, Runnable)}.
+     * @return {@code false} if the task is an {@link UntimedTask}.
+     */
+    private static boolean isTimed(@Nullable Runnable r) {
+        return !(r instanceof MarkedRSF && ((MarkedRSF<?>) r).untimed);
+    }
+
+    /**
+     * <p>Cumulative task latency counters. <i>Delay</i> is the time between when a task was due to run
+     * and when it started, and is the best indicator of backpressure on the agent; <i>run time</i> is
+     * how long the task ran.</p>
+     */
+    @ThreadSafe
+    public final class TaskStats {
+
+        private final AtomicLong tasksRun = new AtomicLong();
+        private final AtomicLong totalDelayNanos = new AtomicLong();
+        private final AtomicLong maxDelayNanos = new AtomicLong();
+        private final AtomicLong totalRunNanos = new AtomicLong();
+        private final AtomicLong maxRunNanos = new AtomicLong();
+
+        private TaskStats() {}
+
+        private void recordDelay(long nanos) {
+            this.totalDelayNanos.addAndGet(nanos);
+            updateMax(this.maxDelayNanos, nanos);
+        }
+
+        private void recordRun(long nanos) {
+            this.tasksRun.incrementAndGet();
+            this.totalRunNanos.addAndGet(nanos);
+            updateMax(this.maxRunNanos, nanos);
+        }
+
+        /**
+         * <p>Returns the number of tasks that have finished running.</p>
+         *
+         * @return never negative.
+         */
+        public long getTasksRun() {
+            return this.tasksRun.get();
+        }
+
+        /**
+         * <p>Returns the number of tasks waiting to run, including repeating tasks.</p>
+         *
+         * @return never negative.
+         */
+        public int getTasksPending() {
+            return AukletDaemonExecutor.this.getQueue().size();
+        }
+
+        /**
+         * <p>Returns the sum of the delays of all tasks that have started.</p>
+         *
+         * @return nanoseconds; never negative.
+         */
+        public long getTotalDelayNanos() {
+            return this.totalDelayNanos.get();
+        }
+
+        /**
+         * <p>Returns the longest delay of any task that has started.</p>
+         *
+         * @return nanoseconds; never negative.
+         */
+        public long getMaxDelayNanos() {
+            return this.maxDelayNanos.get();
+        }
+
+        /**
+         * <p>Returns the sum of the run times of all tasks that have finished running.</p>
+         *
+         * @return nanoseconds; never negative.
+         */
+        public long getTotalRunNanos() {
+            return this.totalRunNanos.get();
+        }
+
+        /**
+         * <p>Returns the longest run time of any task that has finished running.</p>
+         *
+         * @return nanoseconds; never negative.
+         */
+        public long getMaxRunNanos() {
+            return this.maxRunNanos.get();
+        }
+
+        /** <p>Resets the maximum delay and run time, so that new peaks can be observed.</p> */
+        public void resetMaxima() {
+            this.maxDelayNanos.set(0L);
+            this.maxRunNanos.set(0L);
+        }
+
+        private void updateMax(@NonNull AtomicLong max, long value) {
+            long current;
+            do {
+                current = max.get();
+                if (value <= current) return;
+            } while (!max.compareAndSet(current, value));
+        }
+
     }
 
     /** A {@link Runnable} that the {@link AukletDaemonExecutor} will not log if it is cancelled. */
     public abstract static class CancelSilentlyRunnable implements Runnable {}
 
+    /** A {@link Runnable} or {@link Callable} that the {@link AukletDaemonExecutor} does not include in its task stats. */
+    /*package*/ interface UntimedTask {}
+
     /*
-     * Internal version of CancelSilentlyRunnable that is required by the
-     * decorateTask() methods to pass to afterExecute() the fact that cancellation
-     * should not be logged.
+     * Wrapper that is required by the decorateTask() methods to pass to
+     * beforeExecute() and afterExecute() the fact that cancellation should
+     * not be logged, or that the task should not be timed.
      */
-    private static final class CancelSilentlyRSF<V> implements RunnableScheduledFuture<V> {
+    private static final class MarkedRSF<V> implements RunnableScheduledFuture<V> {
         private final RunnableScheduledFuture<V> task;
-        private CancelSilentlyRSF(@NonNull RunnableScheduledFuture<V> task) {
+        private final boolean silent;
+        private final boolean untimed;
+        private MarkedRSF(@NonNull RunnableScheduledFuture<V> task, boolean silent, boolean untimed) {
             if (task == null) throw new IllegalArgumentException("Task is null");
             this.task = task;
+            this.silent = silent;
+            this.untimed = untimed;
         }
         @Override
         public boolean isPeriodic() { return task.isPeriodic(); }
@@ -0,0 +1,183 @@
+package io.auklet.core;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.NotThreadSafe;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * <p>Records short, per-thread messages ("breadcrumbs") describing what each thread was doing, so that
+ * the most recent breadcrumbs of the thread that captured an exception can be attached to its
+ * event.</p>
+ *
+ * <p>Each thread writes into its own fixed-size ring buffer, which is created the first time that
+ * thread records a breadcrumb. Recording takes no locks and allocates nothing beyond the message
+ * reference itself. To bound memory globally, at most {@link #MAX_RINGS} rings exist at once; rings
+ * belonging to threads that have died are reclaimed when a new ring is needed, and threads that cannot
+ * obtain a ring silently drop their breadcrumbs.</p>
+ */
+@ThreadSafe
+public final class Breadcrumbs {
+
+    /** <p>The number of breadcrumbs kept per thread.</p> */
+    public static final int CAPACITY = 32;
+    /** <p>The maximum number of threads that may hold breadcrumbs at once.</p> */
+    public static final int MAX_RINGS = 256;
+    private static final Logger LOGGER = LoggerFactory.getLogger(Breadcrumbs.class);
+    private static final Ring NO_RING = new Ring(0);
+    private final Object lock = new Object();
+    // Rings are only reachable through each thread's ThreadLocal map; this list only tracks which
+    // threads own one, so that the global limit can be enforced.
+    @GuardedBy("lock") private final List<WeakReference<Thread>> owners = new ArrayList<>();
+    @GuardedBy("lock") private boolean warnedFull = false;
+    private final ThreadLocal<Ring> rings = new ThreadLocal<>();
+
+    /**
+     * <p>Records a breadcrumb for the current thread.</p>
+     *
+     * @param message if {@code null}, this method is no-op.
+     */
+    public void record(@Nullable String message) {
+        if (message == null) return;
+        Ring ring = this.rings.get();
+        if (ring == null) ring = this.createRing();
+        ring.add(message, System.currentTimeMillis());
+    }
+
+    /**
+     * <p>Returns a copy of the current thread's breadcrumbs, oldest first.</p>
+     *
+     * @return {@code null} if the current thread has no breadcrumbs.
+     */
+    @CheckForNull public Trail snapshot() {
+        Ring ring = this.rings.get();
+        if (ring == null || ring.count == 0) return null;
+        return ring.snapshot();
+    }
+
+    /**
+     * <p>Creates and registers a ring for the current thread, if the global limit allows.</p>
+     *
+     * @return never {@code null}. If the limit has been reached, a shared zero-capacity ring is
+     * returned, so that the current thread does not retry on every breadcrumb.
+     */
+    @NonNull private Ring createRing() {
+        Ring ring;
+        synchronized (this.lock) {
+            if (this.owners.size() >= MAX_RINGS) this.reclaim();
+            if (this.owners.size() >= MAX_RINGS) {
+                if (!this.warnedFull) {
+                    LOGGER.warn("More than {} threads are recording breadcrumbs; breadcrumbs from additional threads will be dropped.", MAX_RINGS);
+                    this.warnedFull = true;
+                }
+                ring = NO_RING;
+            } else {
+                ring = new Ring(CAPACITY);
+                this.owners.add(new WeakReference<>(Thread.currentThread()));
+            }
+        }
+        this.rings.set(ring);
+        return ring;
+    }
+
+    /** <p>Frees the slots of threads that have died; their rings are garbage collected along with them.</p> */
+    @GuardedBy("lock") private void reclaim() {
+        Iterator<WeakReference<Thread>> it = this.owners.iterator();
+        while (it.hasNext()) {
+            Thread thread = it.next().get();
+            if (thread == null || !thread.isAlive()) it.remove();
+        }
+    }
+
+    /** <p>A fixed-size ring of breadcrumbs, written and read only by its owner thread.</p> */
+    @NotThreadSafe
+    private static final class Ring {
+
+        private final String[] messages;
+        private final long[] timestamps;
+        private int next = 0;
+        private int count = 0;
+
+        private Ring(int capacity) {
+            this.messages = new String[capacity];
+            this.timestamps = new long[capacity];
+        }
+
+        private void add(@NonNull String message, long timestamp) {
+            int capacity = this.messages.length;
+            if (capacity == 0) return;
+            this.messages[this.next] = message;
+            this.timestamps[this.next] = timestamp;
+            this.next = (this.next + 1) % capacity;
+            if (this.count < capacity) this.count++;
+        }
+
+        @NonNull private Trail snapshot() {
+            int capacity = this.messages.length;
+            String[] messagesCopy = new String[this.count];
+            long[] timestampsCopy = new long[this.count];
+            int start = (this.next - this.count + capacity) % capacity;
+            for (int i = 0; i < this.count; i++) {
+                int index = (start + i) % capacity;
+                messagesCopy[i] = this.messages[index];
+                timestampsCopy[i] = this.timestamps[index];
+            }
+            return new Trail(messagesCopy, timestampsCopy);
+        }
+
+    }
+
+    /** <p>An immutable copy of a thread's breadcrumbs, oldest first.</p> */
+    @Immutable
+    public static final class Trail {
+
+        private final String[] messages;
+        private final long[] timestamps;
+
+        private Trail(@NonNull String[] messages, @NonNull long[] timestamps) {
+            this.messages = messages;
+            this.timestamps = timestamps;
+        }
+
+        /**
+         * <p>Returns the number of breadcrumbs in this trail.</p>
+         *
+         * @return between 1 and {@link #CAPACITY}.
+         */
+        public int size() {
+            return this.messages.length;
+        }
+
+        /**
+         * <p>Returns the message of the given breadcrumb.</p>
+         *
+         * @param index the index of the breadcrumb, where 0 is the oldest.
+         * @return never {@code null}.
+         */
+        @NonNull public String getMessage(int index) {
+            return this.messages[index];
+        }
+
+        /**
+         * <p>Returns the time at which the given breadcrumb was recorded.</p>
+         *
+         * @param index the index of the breadcrumb, where 0 is the oldest.
+         * @return milliseconds since the epoch.
+         */
+        public long getTimestamp(int index) {
+            return this.timestamps[index];
+        }
+
+    }
+
+}
@@ -15,7 +15,8 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * <p>This class handles tracking of data usage, enforcement of data usage limits, and periodic refresh
- * of the {@link DataUsageLimit} config.</p>
+ * of the {@link DataUsageLimit} config. Agents that follow another agent's shared uplink re-read the
+ * config from disk instead, where the leader saves it.</p>
  *
  * <p>The enforcement of the data usage limit provided by this class is fuzzy by nature; due to a lack
  * of OS integration to sniff all traffic that's being sent across the wire, this class will always
@@ -54,6 +55,17 @@ public final class DataUsageMonitor extends HasAgent {
         }
     }
 
+    /**
+     * <p>Returns the number of bytes sent in the current billing cycle.</p>
+     *
+     * @return never negative.
+     */
+    public long getBytesSent() {
+        synchronized (this.lock) {
+            return this.tracker.getBytesSent();
+        }
+    }
+
     /**
      * <p>Adds the input number of bytes to the current amount of bytes sent.</p>
      *
@@ -67,6 +79,17 @@ public final class DataUsageMonitor extends HasAgent {
         }
     }
 
+    /**
+     * <p>Reads the data usage from disk again, discarding the usage counted in memory. Agents that share
+     * a config directory must call this before they start counting usage that another agent was counting
+     * until then.</p>
+     */
+    public void reloadUsage() {
+        synchronized (this.lock) {
+            this.tracker.reload();
+        }
+    }
+
     /**
      * <p>Determines whether or not the given proposed payload size would exceed the data limit.</p>
      *
@@ -88,6 +111,36 @@ public final class DataUsageMonitor extends HasAgent {
         return result;
     }
 
+    /**
+     * <p>Compares the share of the monthly data limit that remains unused to the share of the
+     * monthly billing cycle that remains.</p>
+     *
+     * @return a value of at least {@code 1} if the remaining data budget is being consumed no faster
+     * than an even spread across the rest of the billing cycle would allow (or if there is no data
+     * limit), a value between {@code 0} and {@code 1} if the budget is running out early, or {@code 0}
+     * if the budget is exhausted.
+     */
+    public double getBudgetPacing() {
+        long dataLimit;
+        long bytesSent;
+        int planDate;
+        synchronized (this.lock) {
+            bytesSent = this.tracker.getBytesSent();
+            dataLimit = this.limit.getConfig().getCellularDataLimit();
+            planDate = this.limit.getConfig().getCellularPlanDate();
+        }
+        if (dataLimit <= 0) return 1d;
+        if (bytesSent >= dataLimit) return 0d;
+        Calendar now = Calendar.getInstance();
+        int daysInMonth = now.getActualMaximum(Calendar.DAY_OF_MONTH);
+        int today = now.get(Calendar.DAY_OF_MONTH);
+        int resetDay = Math.min(Math.max(planDate, 1), daysInMonth);
+        int daysLeft = resetDay > today ? resetDay - today : daysInMonth - today + resetDay;
+        double budgetLeft = (double) (dataLimit - bytesSent) / dataLimit;
+        double timeLeft = (double) daysLeft / daysInMonth;
+        return budgetLeft / timeLeft;
+    }
+
     /**
      * <p>Creates the periodic task that resets data usage once a month.</p>
      *
@@ -113,7 +166,8 @@ public final class DataUsageMonitor extends HasAgent {
     }
 
     /**
-     * <p>Creates the periodic task that refreshes the limit config from the API once a day.</p>
+     * <p>Creates the periodic task that refreshes the limit config from the API (or, if the agent may not
+     * use the API, from disk) once a day.</p>
      *
      * @return never {@code null}.
      */
@@ -124,9 +178,21 @@ public final class DataUsageMonitor extends HasAgent {
                 synchronized (lock) {
                     hoursSinceConfigRefresh++;
                     if (hoursSinceConfigRefresh == 24) {
-                        limit.refresh();
                         hoursSinceConfigRefresh = 0;
-                        LOGGER.info("Refreshed data limit config from API.");
+                        Auklet agent;
+                        try {
+                            agent = getAgent();
+                        } catch (AukletException e) {
+                            LOGGER.warn("Could not refresh data limit config.", e);
+                            return;
+                        }
+                        if (agent.isApiEnabled()) {
+                            limit.refresh();
+                            LOGGER.info("Refreshed data limit config from API.");
+                        } else {
+                            limit.reload();
+                            LOGGER.info("Reloaded data limit config from disk.");
+                        }
                     }
                 }
             }
@@ -0,0 +1,198 @@
+package io.auklet.core;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import io.auklet.sink.EventContext;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>A bounded queue of events waiting to be sent to the data sink.</p>
+ *
+ * <p>Adding to the queue is lock-free and never blocks, so that application threads (including logging
+ * threads) are never slowed down by a burst of events or a slow data sink. When the queue is full, the
+ * configured {@link OverflowPolicy} decides which event is dropped, and the drop is counted.</p>
+ *
+ * <p>The capacity is enforced on a best-effort basis; under heavy contention the queue may briefly hold
+ * a few more events than its capacity.</p>
+ */
+@ThreadSafe
+public final class EventQueue {
+
+    /** <p>The default capacity of the queue.</p> */
+    public static final int DEFAULT_CAPACITY = 1000;
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventQueue.class);
+    private final Queue<Entry> entries = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong droppedNewest = new AtomicLong();
+    private final AtomicLong droppedOldest = new AtomicLong();
+    private final AtomicBoolean warnedOverflow = new AtomicBoolean(false);
+    private volatile int capacity = DEFAULT_CAPACITY;
+    private volatile OverflowPolicy policy = OverflowPolicy.DROP_NEWEST;
+
+    /** <p>Decides which event to drop when the queue is full.</p> */
+    public enum OverflowPolicy {
+        /** <p>Drop the event being added, keeping the events already queued.</p> */
+        DROP_NEWEST,
+        /** <p>Drop the oldest queued event to make room for the event being added.</p> */
+        DROP_OLDEST;
+
+        /**
+         * <p>Returns the policy with the given config name.</p>
+         *
+         * @param name {@code dropNewest} or {@code dropOldest}, case-insensitive.
+         * @return {@code null} if the name is {@code null} or not recognized.
+         */
+        @CheckForNull public static OverflowPolicy fromConfig(@Nullable String name) {
+            if ("dropNewest".equalsIgnoreCase(name)) return DROP_NEWEST;
+            if ("dropOldest".equalsIgnoreCase(name)) return DROP_OLDEST;
+            return null;
+        }
+    }
+
+    /**
+     * <p>Reconfigures this queue. Events already queued are not affected.</p>
+     *
+     * @param capacity the maximum number of queued events; values less than 1 are coerced to 1.
+     * @param policy the overflow policy. Never {@code null}.
+     */
+    public void configure(int capacity, @NonNull OverflowPolicy policy) {
+        this.capacity = Math.max(1, capacity);
+        this.policy = policy;
+    }
+
+    /**
+     * <p>Adds an event to this queue without blocking.</p>
+     *
+     * @param throwable the throwable. Never {@code null}.
+     * @param context the event context; may be {@code null}.
+     * @return {@code false} if the event was dropped because the queue is full.
+     */
+    public boolean offer(@NonNull Throwable throwable, @Nullable EventContext context) {
+        if (this.size.incrementAndGet() > this.capacity) {
+            if (this.warnedOverflow.compareAndSet(false, true)) {
+                LOGGER.warn("Event queue is full (capacity {}); applying overflow policy {}. Further drops will only be counted.", this.capacity, this.policy);
+            }
+            if (this.policy == OverflowPolicy.DROP_NEWEST) {
+                this.size.decrementAndGet();
+                this.droppedNewest.incrementAndGet();
+                return false;
+            }
+            if (this.entries.poll() != null) {
+                this.size.decrementAndGet();
+                this.droppedOldest.incrementAndGet();
+            }
+        }
+        this.entries.add(new Entry(throwable, context));
+        return true;
+    }
+
+    /**
+     * <p>Removes and returns the oldest queued event.</p>
+     *
+     * @return {@code null} if the queue is empty.
+     */
+    @CheckForNull public Entry poll() {
+        Entry entry = this.entries.poll();
+        if (entry != null) this.size.decrementAndGet();
+        return entry;
+    }
+
+    /**
+     * <p>Returns the number of queued events.</p>
+     *
+     * @return never negative.
+     */
+    public int size() {
+        return Math.max(0, this.size.get());
+    }
+
+    /**
+     * <p>Returns the capacity of this queue.</p>
+     *
+     * @return at least 1.
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * <p>Returns the overflow policy.</p>
+     *
+     * @return never {@code null}.
+     */
+    @NonNull public OverflowPolicy getOverflowPolicy() {
+        return this.policy;
+    }
+
+    /**
+     * <p>Returns the number of events that were dropped because they were added while the queue was
+     * full, under {@link OverflowPolicy#DROP_NEWEST}.</p>
+     *
+     * @return never negative.
+     */
+    public long getDroppedNewestCount() {
+        return this.droppedNewest.get();
+    }
+
+    /**
+     * <p>Returns the number of queued events that were dropped to make room for newer events, under
+     * {@link OverflowPolicy#DROP_OLDEST}.</p>
+     *
+     * @return never negative.
+     */
+    public long getDroppedOldestCount() {
+        return this.droppedOldest.get();
+    }
+
+    /**
+     * <p>Returns the total number of events dropped due to overflow.</p>
+     *
+     * @return never negative.
+     */
+    public long getDroppedCount() {
+        return this.droppedNewest.get() + this.droppedOldest.get();
+    }
+
+    /** <p>A queued event.</p> */
+    @Immutable
+    public static final class Entry {
+
+        private final Throwable throwable;
+        private final EventContext context;
+
+        private Entry(@NonNull Throwable throwable, @Nullable EventContext context) {
+            this.throwable = throwable;
+            this.context = context;
+        }
+
+        /**
+         * <p>Returns the throwable.</p>
+         *
+         * @return never {@code null}.
+         */
+        @NonNull public Throwable getThrowable() {
+            return this.throwable;
+        }
+
+        /**
+         * <p>Returns the event context.</p>
+         *
+         * @return possibly {@code null}.
+         */
+        @CheckForNull public EventContext getContext() {
+            return this.context;
+        }
+
+    }
+
+}
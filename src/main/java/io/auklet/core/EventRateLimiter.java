@@ -0,0 +1,244 @@
+package io.auklet.core;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import io.auklet.Auklet;
+import io.auklet.AukletException;
+import io.auklet.sink.EventContext;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Decides which events are allowed through to the data sink.</p>
+ *
+ * <p>Every event must pass these checks, in order. The first two are made by {@link #admit(boolean)}
+ * on the thread that submits the event, before it is queued, so that an exception thrown in a tight
+ * loop cannot fill the event queue; the others are made by {@link #tryAcquire(Throwable, EventContext)}
+ * when the queue is drained.</p>
+ *
+ * <ol>
+ *     <li>While the {@link LoadGovernor} has degraded the agent due to CPU pressure, sampling at
+ *     {@link LoadGovernor#DEGRADED_SAMPLE_RATE}. Events deferred in degraded mode are therefore not
+ *     sampled again at the full rate when the agent recovers; the rate at which they were sampled is
+ *     carried in their {@link EventContext}.</li>
+ *     <li>A global token bucket, which caps the total event rate.</li>
+ *     <li>Adaptive sampling, which tightens automatically when the monthly cellular data budget is
+ *     being consumed faster than the remaining days in the billing cycle allow.</li>
+ *     <li>A token bucket shared by all events of the same <i>fingerprint</i> (exception class plus
+ *     the top stack frame), so that one exception thrown in a tight loop cannot crowd out others. If
+ *     it is empty, the event's global token is returned, so that events dropped here do not use up
+ *     the global rate.</li>
+ * </ol>
+ *
+ * <p>Each permitted event carries a {@link Decision} that records its sampling rate and the number of
+ * events with the same fingerprint that were dropped by the fingerprint's token bucket since the previous
+ * one was permitted. Those events had already passed sampling, so the backend estimates the true number
+ * of events that a permitted event stands for as {@code (1 + suppressed) / rate}. Events that were
+ * sampled out are not included in {@code suppressed}, and events dropped by the global token bucket are
+ * not attributed to any fingerprint; both are only counted in telemetry.</p>
+ */
+@ThreadSafe
+public final class EventRateLimiter extends HasAgent {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventRateLimiter.class);
+    private static final int MAX_FINGERPRINTS = 256;
+    private static final double MIN_SAMPLE_RATE = 0.01d;
+    private final Object lock = new Object();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong sampledOut = new AtomicLong();
+    private final int eventsPerMinute;
+    private final TokenBucket global;
+    @GuardedBy("lock") private final Map<String, Fingerprint> fingerprints = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param eventsPerMinute the maximum sustained rate of events across all fingerprints. If less
+     * than 1, rate limiting is disabled, but adaptive sampling is still applied.
+     */
+    public EventRateLimiter(int eventsPerMinute) {
+        this.eventsPerMinute = eventsPerMinute;
+        // Allow bursts of up to one minute's worth of events.
+        this.global = eventsPerMinute < 1 ? null : new TokenBucket(eventsPerMinute, eventsPerMinute / 60d);
+    }
+
+    @Override public void start(@NonNull Auklet agent) throws AukletException {
+        this.setAgent(agent);
+    }
+
+    /**
+     * <p>Decides, on the thread that submits an event, whether the event is queued at all. While the
+     * agent is degraded, events are sampled at {@link LoadGovernor#DEGRADED_SAMPLE_RATE}; events that
+     * are sampled in must then take a token from the global token bucket.</p>
+     *
+     * @param degraded whether the agent is degraded.
+     * @return the probability with which the event was sampled, to be recorded in its
+     * {@link EventContext}, or {@code 0} if the event must be dropped.
+     */
+    public double admit(boolean degraded) {
+        double sampleRate = 1d;
+        if (degraded) {
+            if (ThreadLocalRandom.current().nextDouble() >= LoadGovernor.DEGRADED_SAMPLE_RATE) {
+                this.sampledOut.incrementAndGet();
+                return 0d;
+            }
+            sampleRate = LoadGovernor.DEGRADED_SAMPLE_RATE;
+        }
+        if (this.global != null && !this.global.tryAcquire()) {
+            long total = this.rateLimited.incrementAndGet();
+            LOGGER.debug("Event rate limit exceeded; {} events rate limited so far.", total);
+            return 0d;
+        }
+        return sampleRate;
+    }
+
+    /**
+     * <p>Decides whether or not the given throwable should be sent to the data sink.</p>
+     *
+     * @param throwable the throwable. Never {@code null}.
+     * @param context the context of the event; may be {@code null}.
+     * @return {@code null} if the event must be dropped, otherwise the sampling decision to be
+     * included in the event payload.
+     * @throws AukletException if the agent reference has not been set.
+     */
+    @CheckForNull public Decision tryAcquire(@NonNull Throwable throwable, @Nullable EventContext context) throws AukletException {
+        return this.tryAcquire(throwable, context, this.getAgent().getUsageMonitor().getBudgetPacing());
+    }
+
+    /**
+     * <p>Decides whether or not the given throwable should be sent to the data sink.</p>
+     *
+     * @param throwable the throwable. Never {@code null}.
+     * @param context the context of the event; may be {@code null}.
+     * @param budgetPacing the data budget pacing; see {@link DataUsageMonitor#getBudgetPacing()}.
+     * @return {@code null} if the event must be dropped, otherwise the sampling decision to be
+     * included in the event payload.
+     */
+    @CheckForNull /*package*/ Decision tryAcquire(@NonNull Throwable throwable, @Nullable EventContext context, double budgetPacing) {
+        double sampleRate = Math.min(1d, budgetPacing);
+        if (sampleRate < 1d) {
+            sampleRate = Math.max(sampleRate, MIN_SAMPLE_RATE);
+            if (ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+                // The event took a global token when it was queued.
+                if (this.global != null) this.global.release();
+                this.sampledOut.incrementAndGet();
+                return null;
+            }
+        }
+        // The event was already sampled once if it was submitted while the agent was degraded.
+        if (context != null) sampleRate *= context.getSampleRate();
+        Fingerprint fingerprint = null;
+        if (this.global != null) {
+            String key = fingerprintOf(throwable);
+            synchronized (this.lock) {
+                fingerprint = this.fingerprints.get(key);
+                if (fingerprint == null) {
+                    if (this.fingerprints.size() >= MAX_FINGERPRINTS) {
+                        Iterator<Fingerprint> eldest = this.fingerprints.values().iterator();
+                        eldest.next();
+                        eldest.remove();
+                    }
+                    // Each fingerprint gets a tenth of the global rate.
+                    double perFingerprint = Math.max(1d, this.eventsPerMinute / 10d);
+                    fingerprint = new Fingerprint(new TokenBucket(perFingerprint, perFingerprint / 60d));
+                    this.fingerprints.put(key, fingerprint);
+                }
+            }
+            if (!fingerprint.bucket.tryAcquire()) {
+                // The event took a global token when it was queued.
+                this.global.release();
+                fingerprint.suppressed.incrementAndGet();
+                long total = this.rateLimited.incrementAndGet();
+                LOGGER.debug("Event rate limit exceeded; {} events rate limited so far.", total);
+                return null;
+            }
+        }
+        long suppressed = fingerprint == null ? 0L : fingerprint.suppressed.getAndSet(0L);
+        return new Decision(sampleRate, suppressed);
+    }
+
+    /**
+     * <p>Returns the number of events dropped by the token buckets since the agent started.</p>
+     *
+     * @return never negative.
+     */
+    public long getRateLimitedCount() {
+        return this.rateLimited.get();
+    }
+
+    /**
+     * <p>Returns the number of events dropped by adaptive sampling since the agent started.</p>
+     *
+     * @return never negative.
+     */
+    public long getSampledOutCount() {
+        return this.sampledOut.get();
+    }
+
+    /**
+     * <p>Returns the fingerprint of the given throwable, which is its class name plus its top stack
+     * frame.</p>
+     *
+     * @param throwable the throwable. Never {@code null}.
+     * @return never {@code null}.
+     */
+    @NonNull private static String fingerprintOf(@NonNull Throwable throwable) {
+        String type = throwable.getClass().getName();
+        StackTraceElement[] stackTrace = throwable.getStackTrace();
+        if (stackTrace.length == 0) return type;
+        return type + '@' + stackTrace[0].toString();
+    }
+
+    /** <p>Per-fingerprint rate limiting state.</p> */
+    private static final class Fingerprint {
+        private final TokenBucket bucket;
+        private final AtomicLong suppressed = new AtomicLong();
+        private Fingerprint(@NonNull TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+
+    /** <p>The sampling decision for a permitted event.</p> */
+    @Immutable
+    public static final class Decision {
+
+        private final double sampleRate;
+        private final long suppressed;
+
+        private Decision(double sampleRate, long suppressed) {
+            this.sampleRate = sampleRate;
+            this.suppressed = suppressed;
+        }
+
+        /**
+         * <p>Returns the probability with which this event was sampled.</p>
+         *
+         * @return a value greater than 0 and at most 1.
+         */
+        public double getSampleRate() {
+            return this.sampleRate;
+        }
+
+        /**
+         * <p>Returns the number of events with the same fingerprint that were dropped by the fingerprint's
+         * token bucket since the previous one was permitted. Sampled-out events are not included.</p>
+         *
+         * @return never negative.
+         */
+        public long getSuppressed() {
+            return this.suppressed;
+        }
+
+    }
+
+}
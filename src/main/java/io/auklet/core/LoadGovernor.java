@@ -0,0 +1,175 @@
+package io.auklet.core;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.auklet.Auklet;
+import io.auklet.AukletException;
+import io.auklet.misc.OSMX;
+import io.auklet.platform.Platform;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Switches the agent into a <i>degraded</i> mode while the host or container is under CPU pressure,
+ * so that the agent does not add to the load of an application that is already struggling.</p>
+ *
+ * <p>CPU pressure is the highest of the process CPU load, the system CPU load and the platform's
+ * (container-relative, where available) CPU usage; CFS throttling of the container also counts as
+ * pressure. The governor enters degraded mode after {@value #ENTER_SAMPLES} consecutive samples at or
+ * above the threshold, and leaves it only after {@value #EXIT_SAMPLES} consecutive samples below the
+ * threshold minus {@value #HYSTERESIS} percentage points (but at least half the threshold), so that it
+ * does not flap.</p>
+ *
+ * <p>While degraded:</p>
+ *
+ * <ul>
+ *   <li>Events are sampled at {@value #DEGRADED_SAMPLE_RATE} of their normal rate, when they are
+ *   submitted.</li>
+ *   <li>Events that are sampled in wait in the event queue and are not encoded or sent until the
+ *   governor leaves degraded mode.</li>
+ *   <li>Telemetry is not sent; the next telemetry message covers the whole degraded period.</li>
+ * </ul>
+ *
+ * <p>Mode transitions are logged, and are counted in telemetry and JMX.</p>
+ */
+@ThreadSafe
+public final class LoadGovernor extends HasAgent {
+
+    /** <p>The factor applied to the event sampling rate while degraded.</p> */
+    public static final double DEGRADED_SAMPLE_RATE = 0.1d;
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadGovernor.class);
+    private static final long SAMPLE_PERIOD_SECONDS = 2L;
+    private static final int ENTER_SAMPLES = 3;
+    private static final int EXIT_SAMPLES = 15;
+    private static final int HYSTERESIS = 20;
+    private static final double THROTTLING_ENTER = 25d;
+    private static final double THROTTLING_EXIT = 10d;
+    private final Object lock = new Object();
+    private final int thresholdPercent;
+    private final int exitPercent;
+    private final AtomicLong transitions = new AtomicLong();
+    private volatile boolean degraded = false;
+    private volatile double pressure = 0d;
+    @GuardedBy("lock") private int consecutive = 0;
+    @GuardedBy("lock") private long degradedSince = 0L;
+    @GuardedBy("lock") private long degradedMillis = 0L;
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param thresholdPercent the CPU usage percentage at or above which the agent degrades. If less
+     * than 1, the governor is disabled and the agent never degrades.
+     */
+    public LoadGovernor(int thresholdPercent) {
+        this.thresholdPercent = Math.min(100, Math.max(0, thresholdPercent));
+        // Low thresholds would otherwise leave nothing to fall below, and the agent would never recover.
+        this.exitPercent = Math.max((this.thresholdPercent + 1) / 2, this.thresholdPercent - HYSTERESIS);
+    }
+
+    @Override public void start(@NonNull Auklet agent) throws AukletException {
+        this.setAgent(agent);
+        if (this.thresholdPercent == 0) {
+            LOGGER.info("Load governor is disabled.");
+            return;
+        }
+        agent.scheduleRepeatingTask(new Runnable() {
+            @Override public void run() {
+                sample();
+            }
+        }, SAMPLE_PERIOD_SECONDS, SAMPLE_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * <p>Returns whether the agent is currently degraded. This is a single volatile read.</p>
+     *
+     * @return {@code true} if the agent is degraded.
+     */
+    public boolean isDegraded() {
+        return this.degraded;
+    }
+
+    /**
+     * <p>Returns the CPU pressure observed in the most recent sample.</p>
+     *
+     * @return a percentage between 0 and 100.
+     */
+    public double getPressure() {
+        return this.pressure;
+    }
+
+    /**
+     * <p>Returns the number of times the agent has entered or left degraded mode.</p>
+     *
+     * @return never negative.
+     */
+    public long getTransitionCount() {
+        return this.transitions.get();
+    }
+
+    /**
+     * <p>Returns the total time the agent has spent in degraded mode, including the current degraded
+     * period, if any.</p>
+     *
+     * @return milliseconds; never negative.
+     */
+    public long getDegradedMillis() {
+        synchronized (this.lock) {
+            long total = this.degradedMillis;
+            if (this.degraded) total += System.currentTimeMillis() - this.degradedSince;
+            return total;
+        }
+    }
+
+    /** <p>Samples CPU pressure and changes mode if needed.</p> */
+    private void sample() {
+        Platform platform;
+        try {
+            platform = this.getAgent().getPlatform();
+        } catch (AukletException e) {
+            LOGGER.warn("Could not sample CPU pressure.", e);
+            return;
+        }
+        double cpu = Math.max(platform.getCpuUsage(),
+                100d * Math.max(OSMX.BEAN.getProcessCpuLoad(), OSMX.BEAN.getSystemCpuLoad()));
+        double throttling = platform.getCpuThrottling();
+        this.pressure = Math.min(100d, Math.max(0d, cpu));
+        boolean resume = false;
+        synchronized (this.lock) {
+            boolean pressured = this.degraded
+                    ? cpu >= this.exitPercent || throttling >= THROTTLING_EXIT
+                    : cpu >= this.thresholdPercent || throttling >= THROTTLING_ENTER;
+            // Count consecutive samples that disagree with the current mode.
+            if (pressured == this.degraded) {
+                this.consecutive = 0;
+            } else if (++this.consecutive >= (this.degraded ? EXIT_SAMPLES : ENTER_SAMPLES)) {
+                this.consecutive = 0;
+                long now = System.currentTimeMillis();
+                if (this.degraded) {
+                    long duration = now - this.degradedSince;
+                    this.degradedMillis += duration;
+                    this.degraded = false;
+                    resume = true;
+                    LOGGER.info("CPU pressure has subsided ({}%); leaving degraded mode after {} ms.", Math.round(cpu), duration);
+                } else {
+                    this.degradedSince = now;
+                    this.degraded = true;
+                    LOGGER.warn("CPU pressure is high ({}%, {}% throttled); entering degraded mode. Events will be sampled more heavily and deferred, and telemetry paused.",
+                            Math.round(cpu), Math.round(throttling));
+                }
+                this.transitions.incrementAndGet();
+            }
+        }
+        if (resume) {
+            try {
+                this.getAgent().resumeEventDrain();
+            } catch (AukletException e) {
+                LOGGER.warn("Could not resume sending deferred events.", e);
+            }
+        }
+    }
+
+}
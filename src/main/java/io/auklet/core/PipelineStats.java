@@ -0,0 +1,94 @@
+package io.auklet.core;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Counts events as they pass through the agent's send pipeline. All counts are cumulative since the
+ * agent started; consumers that need per-interval values must compute deltas themselves.</p>
+ *
+ * <p>Events dropped by rate limiting and adaptive sampling are counted by {@link EventRateLimiter}.</p>
+ */
+@ThreadSafe
+public final class PipelineStats {
+
+    private final AtomicLong eventsReceived = new AtomicLong();
+    private final AtomicLong eventsSent = new AtomicLong();
+    private final AtomicLong eventsOverDataLimit = new AtomicLong();
+    private final AtomicLong eventsDropped = new AtomicLong();
+    private final AtomicLong eventsFailed = new AtomicLong();
+
+    /** <p>Records that an event was submitted to the data sink.</p> */
+    public void recordEventReceived() {
+        this.eventsReceived.incrementAndGet();
+    }
+
+    /** <p>Records that an event was written to the data sink.</p> */
+    public void recordEventSent() {
+        this.eventsSent.incrementAndGet();
+    }
+
+    /** <p>Records that an event was dropped because sending it would exceed the data usage limit.</p> */
+    public void recordEventOverDataLimit() {
+        this.eventsOverDataLimit.incrementAndGet();
+    }
+
+    /** <p>Records that an event was dropped because the data sink could not accept it in time.</p> */
+    public void recordEventDropped() {
+        this.eventsDropped.incrementAndGet();
+    }
+
+    /** <p>Records that an event could not be assembled or written due to an error.</p> */
+    public void recordEventFailed() {
+        this.eventsFailed.incrementAndGet();
+    }
+
+    /**
+     * <p>Returns the number of events submitted to the data sink.</p>
+     *
+     * @return never negative.
+     */
+    public long getEventsReceived() {
+        return this.eventsReceived.get();
+    }
+
+    /**
+     * <p>Returns the number of events written to the data sink.</p>
+     *
+     * @return never negative.
+     */
+    public long getEventsSent() {
+        return this.eventsSent.get();
+    }
+
+    /**
+     * <p>Returns the number of events dropped because sending them would exceed the data usage
+     * limit.</p>
+     *
+     * @return never negative.
+     */
+    public long getEventsOverDataLimit() {
+        return this.eventsOverDataLimit.get();
+    }
+
+    /**
+     * <p>Returns the number of events dropped because the data sink could not accept them in time,
+     * e.g. because its queue was full.</p>
+     *
+     * @return never negative.
+     */
+    public long getEventsDropped() {
+        return this.eventsDropped.get();
+    }
+
+    /**
+     * <p>Returns the number of events that could not be assembled or written due to an error.</p>
+     *
+     * @return never negative.
+     */
+    public long getEventsFailed() {
+        return this.eventsFailed.get();
+    }
+
+}
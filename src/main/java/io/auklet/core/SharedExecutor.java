@@ -0,0 +1,220 @@
+package io.auklet.core;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>An executor service that runs its tasks on another executor, so that a library which insists on
+ * owning an executor service (such as Paho or OkHttp) can share the agent's threads instead of starting
+ * its own.</p>
+ *
+ * <p>Shutting down this executor service only affects the tasks submitted through it: it stops accepting
+ * tasks, cancels its delayed and periodic tasks, {@link #shutdownNow()} interrupts those that are
+ * running, and it terminates when they have all finished. The underlying executor keeps running. Tasks
+ * may rename the thread they run on; the name is restored when they finish. Tasks are not included in the
+ * underlying executor's {@link AukletDaemonExecutor.TaskStats}.</p>
+ */
+@ThreadSafe
+public final class SharedExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+
+    private final Object lock = new Object();
+    private final ScheduledExecutorService delegate;
+    @GuardedBy("lock") private final Set<Thread> running = new HashSet<>();
+    @GuardedBy("lock") private final Set<ScheduledFuture<?>> scheduled = new HashSet<>();
+    @GuardedBy("lock") private int pending = 0;
+    @GuardedBy("lock") private boolean shutdown = false;
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param delegate the executor on which tasks run. Never {@code null}.
+     */
+    public SharedExecutor(@NonNull ScheduledExecutorService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override public void execute(@NonNull final Runnable command) {
+        synchronized (this.lock) {
+            if (this.shutdown) throw new RejectedExecutionException("Shared executor has been shut down.");
+            this.pending++;
+        }
+        try {
+            this.delegate.execute(new UntimedRunnable() {
+                @Override public void run() {
+                    runTask(command);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            this.finished(null, null);
+            throw e;
+        }
+    }
+
+    @NonNull @Override public ScheduledFuture<?> schedule(@NonNull final Runnable command, long delay, @NonNull TimeUnit unit) {
+        synchronized (this.lock) {
+            if (this.shutdown) throw new RejectedExecutionException("Shared executor has been shut down.");
+            return this.track(this.delegate.schedule(this.scheduledTask(command), delay, unit));
+        }
+    }
+
+    @NonNull @Override public <V> ScheduledFuture<V> schedule(@NonNull final Callable<V> callable, long delay, @NonNull TimeUnit unit) {
+        synchronized (this.lock) {
+            if (this.shutdown) throw new RejectedExecutionException("Shared executor has been shut down.");
+            return this.track(this.delegate.schedule(new UntimedCallable<V>() {
+                @Override public V call() throws Exception {
+                    if (!started()) return null;
+                    Thread thread = Thread.currentThread();
+                    String name = thread.getName();
+                    try {
+                        return callable.call();
+                    } finally {
+                        finished(thread, name);
+                    }
+                }
+            }, delay, unit));
+        }
+    }
+
+    @NonNull @Override public ScheduledFuture<?> scheduleAtFixedRate(@NonNull Runnable command, long initialDelay, long period, @NonNull TimeUnit unit) {
+        synchronized (this.lock) {
+            if (this.shutdown) throw new RejectedExecutionException("Shared executor has been shut down.");
+            return this.track(this.delegate.scheduleAtFixedRate(this.scheduledTask(command), initialDelay, period, unit));
+        }
+    }
+
+    @NonNull @Override public ScheduledFuture<?> scheduleWithFixedDelay(@NonNull Runnable command, long initialDelay, long delay, @NonNull TimeUnit unit) {
+        synchronized (this.lock) {
+            if (this.shutdown) throw new RejectedExecutionException("Shared executor has been shut down.");
+            return this.track(this.delegate.scheduleWithFixedDelay(this.scheduledTask(command), initialDelay, delay, unit));
+        }
+    }
+
+    @Override public void shutdown() {
+        synchronized (this.lock) {
+            this.shutdown = true;
+            for (ScheduledFuture<?> future : this.scheduled) future.cancel(false);
+            this.scheduled.clear();
+            this.lock.notifyAll();
+        }
+    }
+
+    /** <p>Interrupts the tasks that are running; tasks passed to {@link #execute(Runnable)} that have not yet started still run.</p> */
+    @NonNull @Override public List<Runnable> shutdownNow() {
+        synchronized (this.lock) {
+            this.shutdown();
+            for (Thread thread : this.running) thread.interrupt();
+        }
+        return Collections.emptyList();
+    }
+
+    @Override public boolean isShutdown() {
+        synchronized (this.lock) {
+            return this.shutdown;
+        }
+    }
+
+    @Override public boolean isTerminated() {
+        synchronized (this.lock) {
+            return this.shutdown && this.pending == 0;
+        }
+    }
+
+    @Override public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (this.lock) {
+            while (!(this.shutdown && this.pending == 0)) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0L) return false;
+                TimeUnit.NANOSECONDS.timedWait(this.lock, remaining);
+            }
+            return true;
+        }
+    }
+
+    private void runTask(@NonNull Runnable command) {
+        Thread thread = Thread.currentThread();
+        String name = thread.getName();
+        synchronized (this.lock) {
+            this.running.add(thread);
+        }
+        try {
+            command.run();
+        } finally {
+            this.finished(thread, name);
+        }
+    }
+
+    /** <p>Returns a task that runs the given delayed or periodic task, unless this executor is shut down.</p> */
+    @NonNull private Runnable scheduledTask(@NonNull final Runnable command) {
+        // Shutting down cancels these tasks, which is not worth logging.
+        return new UntimedCancelSilentlyRunnable() {
+            @Override public void run() {
+                if (!started()) return;
+                Thread thread = Thread.currentThread();
+                String name = thread.getName();
+                try {
+                    command.run();
+                } finally {
+                    finished(thread, name);
+                }
+            }
+        };
+    }
+
+    /**
+     * <p>Records that a delayed or periodic task is starting on the current thread.</p>
+     *
+     * @return {@code false} if this executor is shut down, in which case the task must not run.
+     */
+    private boolean started() {
+        synchronized (this.lock) {
+            if (this.shutdown) return false;
+            this.pending++;
+            this.running.add(Thread.currentThread());
+            return true;
+        }
+    }
+
+    @GuardedBy("lock") @NonNull private <T extends ScheduledFuture<?>> T track(@NonNull T future) {
+        // Forget tasks that have already finished, so that the set does not grow without bound.
+        Iterator<ScheduledFuture<?>> iterator = this.scheduled.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isDone()) iterator.remove();
+        }
+        this.scheduled.add(future);
+        return future;
+    }
+
+    private void finished(@Nullable Thread thread, @Nullable String name) {
+        synchronized (this.lock) {
+            if (thread != null) this.running.remove(thread);
+            this.pending--;
+            this.lock.notifyAll();
+        }
+        if (thread == null) return;
+        thread.setName(name);
+        // Do not leak an interrupt from shutdownNow() into the next task on this thread.
+        Thread.interrupted();
+    }
+
+    private abstract static class UntimedRunnable implements Runnable, AukletDaemonExecutor.UntimedTask {}
+
+    private abstract static class UntimedCallable<V> implements Callable<V>, AukletDaemonExecutor.UntimedTask {}
+
+    private abstract static class UntimedCancelSilentlyRunnable extends AukletDaemonExecutor.CancelSilentlyRunnable implements AukletDaemonExecutor.UntimedTask {}
+
+}
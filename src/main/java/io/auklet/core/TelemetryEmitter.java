@@ -0,0 +1,312 @@
+package io.auklet.core;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import io.auklet.Auklet;
+import io.auklet.AukletException;
+import io.auklet.platform.Platform;
+import io.auklet.platform.metrics.JvmMetrics;
+import io.auklet.sink.Telemetry;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+import org.msgpack.core.MessagePacker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Periodically sends a compact summary of agent and system activity to the data sink.</p>
+ *
+ * <p>CPU and memory usage are sampled once per second and aggregated on-device; once per
+ * <i>emission period</i>, the minimum, maximum, average and 95th percentile of each, along with the
+ * number of events received, sent and dropped during the period and the latest JVM metrics, are sent
+ * as a single telemetry message. The uplink cost is therefore independent of the sampling
+ * frequency. Application metrics (see {@link Auklet#counter(String)}) are sent alongside, as a second
+ * message, if any exist, as are the CPU profile, if the sampling profiler is enabled, and the lock
+ * contention report, if any locks were contended.</p>
+ *
+ * <p>While the {@link LoadGovernor} has degraded the agent, no telemetry is sent; samples keep being
+ * aggregated, so the first message after recovery covers the whole degraded period. Likewise, if the
+ * summary or the application metrics are not written, for example because of the data usage limit,
+ * they are carried over into the next emission period.</p>
+ *
+ * <p>The emission period is obtained from the data usage config downloaded from the Auklet backend, and
+ * is re-read after every emission so that changes take effect without restarting the agent. If the
+ * backend does not define an emission period, the telemetry interval from the agent config is used.</p>
+ */
+@ThreadSafe
+public final class TelemetryEmitter extends HasAgent {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TelemetryEmitter.class);
+    private static final long MIN_EMISSION_PERIOD_MILLIS = 10000L;
+    private final Object lock = new Object();
+    private final long fallbackPeriodMillis;
+    @GuardedBy("lock") private UsageHistogram cpu = new UsageHistogram();
+    @GuardedBy("lock") private UsageHistogram memory = new UsageHistogram();
+    @GuardedBy("lock") private long periodStart = 0L;
+    @GuardedBy("lock") private final long[] lastCounts = new long[EventCounts.SIZE];
+    @GuardedBy("lock") private long lastTransitions = 0L;
+    @GuardedBy("lock") private long lastDegradedMillis = 0L;
+    @GuardedBy("lock") private ScheduledFuture<?> samplingTask = null;
+    @GuardedBy("lock") private ScheduledFuture<?> emissionTask = null;
+    @GuardedBy("lock") private boolean stopped = false;
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param fallbackPeriodSeconds the emission period to use if the Auklet backend does not define
+     * one. If less than 1, telemetry is disabled.
+     */
+    public TelemetryEmitter(int fallbackPeriodSeconds) {
+        this.fallbackPeriodMillis = Math.max(0, fallbackPeriodSeconds) * 1000L;
+    }
+
+    @Override public void start(@NonNull Auklet agent) throws AukletException {
+        this.setAgent(agent);
+        if (this.fallbackPeriodMillis == 0L) {
+            LOGGER.info("Telemetry is disabled.");
+            return;
+        }
+        synchronized (this.lock) {
+            this.periodStart = System.currentTimeMillis();
+            this.samplingTask = agent.scheduleRepeatingTask(new Runnable() {
+                @Override public void run() {
+                    sample();
+                }
+            }, 0L, 1L, TimeUnit.SECONDS);
+            this.scheduleEmission();
+        }
+    }
+
+    /** <p>Stops sampling and emitting telemetry.</p> */
+    public void shutdown() {
+        synchronized (this.lock) {
+            this.stopped = true;
+            if (this.samplingTask != null) this.samplingTask.cancel(false);
+            if (this.emissionTask != null) this.emissionTask.cancel(false);
+        }
+    }
+
+    /** <p>Records the current CPU and memory usage.</p> */
+    private void sample() {
+        try {
+            Platform platform = this.getAgent().getPlatform();
+            double cpuUsage = platform.getCpuUsage();
+            double memoryUsage = platform.getMemoryUsage();
+            synchronized (this.lock) {
+                this.cpu.record(cpuUsage);
+                this.memory.record(memoryUsage);
+            }
+        } catch (AukletException | RuntimeException e) {
+            LOGGER.warn("Could not sample system metrics for telemetry.", e);
+        }
+    }
+
+    /** <p>Sends the summary of the current emission period and starts a new period.</p> */
+    private void emit() {
+        try {
+            Auklet agent = this.getAgent();
+            LoadGovernor governor = agent.getLoadGovernor();
+            if (governor.isDegraded()) {
+                LOGGER.debug("Deferring telemetry because the agent is degraded.");
+                return;
+            }
+            long[] counts = EventCounts.current(agent);
+            long transitions = governor.getTransitionCount();
+            long degradedMillis = governor.getDegradedMillis();
+            Summary summary;
+            UsageHistogram cpuPeriod;
+            UsageHistogram memoryPeriod;
+            long[] deltas = new long[EventCounts.SIZE];
+            long[] governorDeltas;
+            long start;
+            synchronized (this.lock) {
+                if (this.stopped) return;
+                long now = System.currentTimeMillis();
+                for (int i = 0; i < EventCounts.SIZE; i++) {
+                    deltas[i] = counts[i] - this.lastCounts[i];
+                    this.lastCounts[i] = counts[i];
+                }
+                governorDeltas = new long[] {transitions - this.lastTransitions, degradedMillis - this.lastDegradedMillis};
+                this.lastTransitions = transitions;
+                this.lastDegradedMillis = degradedMillis;
+                cpuPeriod = this.cpu;
+                memoryPeriod = this.memory;
+                summary = new Summary(now - this.periodStart, cpuPeriod, memoryPeriod, deltas, governorDeltas, agent.getPlatform().getJvmMetrics());
+                this.cpu = new UsageHistogram();
+                this.memory = new UsageHistogram();
+                start = this.periodStart;
+                this.periodStart = now;
+            }
+            boolean sent = false;
+            try {
+                sent = agent.getSink().sendTelemetry(summary);
+            } finally {
+                if (!sent) this.restorePeriod(start, cpuPeriod, memoryPeriod, deltas, governorDeltas);
+            }
+            Telemetry metrics = agent.drainMetrics();
+            sent = false;
+            try {
+                sent = agent.getSink().sendTelemetry(metrics);
+            } finally {
+                if (!sent) agent.restoreMetrics(metrics);
+            }
+            agent.getSink().sendTelemetry(agent.getPlatform().drainProfile());
+            agent.getSink().sendTelemetry(agent.getPlatform().drainLockReport());
+        } catch (AukletException | RuntimeException e) {
+            LOGGER.warn("Could not send telemetry.", e);
+        } finally {
+            synchronized (this.lock) {
+                if (!this.stopped) this.scheduleEmission();
+            }
+        }
+    }
+
+    /**
+     * <p>Carries a summary that was not written over into the current emission period.</p>
+     *
+     * @param start the start of the summary's period.
+     * @param cpu the CPU samples of the summary. Never {@code null}.
+     * @param memory the memory samples of the summary. Never {@code null}.
+     * @param deltas the event counts of the summary. Never {@code null}.
+     * @param governorDeltas the load governor counts of the summary. Never {@code null}.
+     */
+    private void restorePeriod(long start, @NonNull UsageHistogram cpu, @NonNull UsageHistogram memory,
+                               @NonNull long[] deltas, @NonNull long[] governorDeltas) {
+        synchronized (this.lock) {
+            this.cpu.merge(cpu);
+            this.memory.merge(memory);
+            for (int i = 0; i < EventCounts.SIZE; i++) this.lastCounts[i] -= deltas[i];
+            this.lastTransitions -= governorDeltas[0];
+            this.lastDegradedMillis -= governorDeltas[1];
+            this.periodStart = start;
+        }
+    }
+
+    /** <p>Schedules the next emission using the current emission period.</p> */
+    @GuardedBy("lock") private void scheduleEmission() {
+        try {
+            Auklet agent = this.getAgent();
+            long period = agent.getUsageMonitor().getUsageConfig().getEmissionPeriod();
+            if (period <= 0L) period = this.fallbackPeriodMillis;
+            period = Math.max(period, MIN_EMISSION_PERIOD_MILLIS);
+            this.emissionTask = agent.scheduleOneShotTask(new Runnable() {
+                @Override public void run() {
+                    emit();
+                }
+            }, period, TimeUnit.MILLISECONDS);
+        } catch (AukletException e) {
+            LOGGER.warn("Could not schedule telemetry; telemetry will not be sent.", e);
+        }
+    }
+
+    /** <p>Cumulative event counters, in the order in which they are reported.</p> */
+    private static final class EventCounts {
+
+        private static final int SIZE = 8;
+        private static final String[] NAMES = {"received", "sent", "queueOverflow", "rateLimited", "sampledOut", "overDataLimit", "dropped", "failed"};
+
+        private EventCounts() {}
+
+        /**
+         * <p>Returns the current values of all event counters.</p>
+         *
+         * @param agent the Auklet agent. Never {@code null}.
+         * @return never {@code null}.
+         */
+        @NonNull private static long[] current(@NonNull Auklet agent) {
+            PipelineStats stats = agent.getPipelineStats();
+            EventRateLimiter rateLimiter = agent.getRateLimiter();
+            return new long[] {
+                    stats.getEventsReceived(),
+                    stats.getEventsSent(),
+                    agent.getEventQueue().getDroppedCount(),
+                    rateLimiter.getRateLimitedCount(),
+                    rateLimiter.getSampledOutCount(),
+                    stats.getEventsOverDataLimit(),
+                    stats.getEventsDropped(),
+                    stats.getEventsFailed()
+            };
+        }
+
+    }
+
+    /**
+     * <p>The telemetry summary for one emission period. CPU and memory are packed as
+     * {@code [min, max, avg, p95]} arrays of percentages.</p>
+     */
+    @Immutable
+    private static final class Summary implements Telemetry {
+
+        private final long periodMillis;
+        private final int samples;
+        private final double[] cpu;
+        private final double[] memory;
+        private final long[] events;
+        private final long[] governor;
+        private final JvmMetrics.Snapshot jvm;
+
+        private Summary(long periodMillis, @NonNull UsageHistogram cpu, @NonNull UsageHistogram memory, @NonNull long[] events,
+                        @NonNull long[] governor, @Nullable JvmMetrics.Snapshot jvm) {
+            this.periodMillis = periodMillis;
+            this.samples = cpu.getCount();
+            this.cpu = summarize(cpu);
+            this.memory = summarize(memory);
+            this.events = events;
+            this.governor = governor;
+            this.jvm = jvm;
+        }
+
+        @NonNull @Override public String getTelemetryType() {
+            return "stats";
+        }
+
+        @Override public void packTelemetry(@NonNull MessagePacker msgpack) throws IOException {
+            msgpack.packMapHeader(7)
+                    .packString("period").packLong(this.periodMillis)
+                    .packString("samples").packInt(this.samples);
+            msgpack.packString("cpu");
+            packSummary(msgpack, this.cpu);
+            msgpack.packString("memory");
+            packSummary(msgpack, this.memory);
+            msgpack.packString("events").packMapHeader(EventCounts.SIZE);
+            for (int i = 0; i < EventCounts.SIZE; i++) {
+                msgpack.packString(EventCounts.NAMES[i]).packLong(this.events[i]);
+            }
+            msgpack.packString("governor").packMapHeader(2)
+                    .packString("transitions").packLong(this.governor[0])
+                    .packString("degradedMillis").packLong(this.governor[1]);
+            msgpack.packString("jvm");
+            if (this.jvm == null) msgpack.packNil();
+            else this.jvm.packTelemetry(msgpack);
+        }
+
+        /**
+         * <p>Extracts the reported statistics from the given histogram.</p>
+         *
+         * @param histogram the histogram. Never {@code null}.
+         * @return min, max, average and 95th percentile.
+         */
+        @NonNull private static double[] summarize(@NonNull UsageHistogram histogram) {
+            return new double[] {histogram.getMin(), histogram.getMax(), histogram.getAverage(), histogram.getPercentile(95d)};
+        }
+
+        /**
+         * <p>Packs the given statistics as a MessagePack array.</p>
+         *
+         * @param msgpack the MessagePacker. Never {@code null}.
+         * @param values the statistics. Never {@code null}.
+         * @throws IOException if an error occurs while writing to the MessagePacker.
+         */
+        private static void packSummary(@NonNull MessagePacker msgpack, @NonNull double[] values) throws IOException {
+            msgpack.packArrayHeader(values.length);
+            for (double value : values) msgpack.packDouble(value);
+        }
+
+    }
+
+}
@@ -0,0 +1,59 @@
+package io.auklet.core;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+/** <p>A simple token bucket that refills continuously at a fixed rate.</p> */
+@ThreadSafe
+public final class TokenBucket {
+
+    private final Object lock = new Object();
+    private final double capacity;
+    private final double tokensPerNano;
+    @GuardedBy("lock") private double tokens;
+    @GuardedBy("lock") private long lastRefill;
+
+    /**
+     * <p>Constructor. The bucket starts full.</p>
+     *
+     * @param capacity the maximum number of tokens the bucket can hold (i.e. the burst size). Must be
+     * positive.
+     * @param tokensPerSecond the rate at which tokens are added to the bucket. Must be positive.
+     * @throws IllegalArgumentException if either argument is not positive.
+     */
+    public TokenBucket(double capacity, double tokensPerSecond) {
+        if (capacity <= 0) throw new IllegalArgumentException("Token bucket capacity must be positive.");
+        if (tokensPerSecond <= 0) throw new IllegalArgumentException("Token bucket rate must be positive.");
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / 1e9;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * <p>Takes one token from the bucket, if one is available.</p>
+     *
+     * @return {@code true} if a token was taken, {@code false} if the bucket is empty.
+     */
+    public boolean tryAcquire() {
+        synchronized (this.lock) {
+            long now = System.nanoTime();
+            this.tokens = Math.min(this.capacity, this.tokens + (now - this.lastRefill) * this.tokensPerNano);
+            this.lastRefill = now;
+            if (this.tokens < 1) return false;
+            this.tokens -= 1;
+            return true;
+        }
+    }
+
+    /**
+     * <p>Returns one token to the bucket, e.g. because the action it was taken for did not happen. The
+     * bucket never holds more than its capacity.</p>
+     */
+    public void release() {
+        synchronized (this.lock) {
+            this.tokens = Math.min(this.capacity, this.tokens + 1);
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+package io.auklet.core;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.util.Arrays;
+
+/**
+ * <p>Aggregates percentage samples (0 to 100) into a fixed-size histogram, so that the minimum, maximum,
+ * average and percentiles of an arbitrary number of samples can be reported in constant space.
+ * Recording a sample never allocates.</p>
+ *
+ * <p>Percentiles are accurate to within {@link #RESOLUTION} percentage points.</p>
+ */
+@NotThreadSafe
+public final class UsageHistogram {
+
+    /** <p>The width of each histogram bucket, in percentage points.</p> */
+    public static final double RESOLUTION = 0.5d;
+    private final int[] buckets = new int[(int) (100 / RESOLUTION) + 1];
+    private int count = 0;
+    private double sum = 0d;
+    private double min = Double.MAX_VALUE;
+    private double max = -Double.MAX_VALUE;
+
+    /**
+     * <p>Records a sample.</p>
+     *
+     * @param percent the sample. Values outside 0 to 100 are clamped; NaN is ignored.
+     */
+    public void record(double percent) {
+        if (Double.isNaN(percent)) return;
+        double clamped = Math.max(0d, Math.min(100d, percent));
+        this.buckets[(int) (clamped / RESOLUTION)]++;
+        this.count++;
+        this.sum += clamped;
+        if (clamped < this.min) this.min = clamped;
+        if (clamped > this.max) this.max = clamped;
+    }
+
+    /**
+     * <p>Adds the samples of the given histogram to this one.</p>
+     *
+     * @param other the histogram. Never {@code null}.
+     */
+    public void merge(@NonNull UsageHistogram other) {
+        if (other.count == 0) return;
+        for (int i = 0; i < this.buckets.length; i++) this.buckets[i] += other.buckets[i];
+        this.count += other.count;
+        this.sum += other.sum;
+        this.min = Math.min(this.min, other.min);
+        this.max = Math.max(this.max, other.max);
+    }
+
+    /** <p>Discards all samples.</p> */
+    public void reset() {
+        Arrays.fill(this.buckets, 0);
+        this.count = 0;
+        this.sum = 0d;
+        this.min = Double.MAX_VALUE;
+        this.max = -Double.MAX_VALUE;
+    }
+
+    /**
+     * <p>Returns the number of samples recorded since the last reset.</p>
+     *
+     * @return never negative.
+     */
+    public int getCount() {
+        return this.count;
+    }
+
+    /**
+     * <p>Returns the smallest sample.</p>
+     *
+     * @return zero if there are no samples.
+     */
+    public double getMin() {
+        return this.count == 0 ? 0d : this.min;
+    }
+
+    /**
+     * <p>Returns the largest sample.</p>
+     *
+     * @return zero if there are no samples.
+     */
+    public double getMax() {
+        return this.count == 0 ? 0d : this.max;
+    }
+
+    /**
+     * <p>Returns the average of all samples.</p>
+     *
+     * @return zero if there are no samples.
+     */
+    public double getAverage() {
+        return this.count == 0 ? 0d : this.sum / this.count;
+    }
+
+    /**
+     * <p>Returns the given percentile of all samples, as the upper bound of the bucket in which it
+     * falls (but never more than the largest sample).</p>
+     *
+     * @param percentile the percentile, between 0 and 100.
+     * @return zero if there are no samples.
+     */
+    public double getPercentile(double percentile) {
+        if (this.count == 0) return 0d;
+        long rank = (long) Math.ceil(this.count * percentile / 100d);
+        if (rank < 1) rank = 1;
+        long seen = 0L;
+        for (int i = 0; i < this.buckets.length; i++) {
+            seen += this.buckets[i];
+            if (seen >= rank) return Math.min(this.max, (i + 1) * RESOLUTION);
+        }
+        return this.max;
+    }
+
+}
@@ -0,0 +1,220 @@
+package io.auklet.instrument;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import net.jcip.annotations.Immutable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>Instruments the application's {@code catch} blocks so that the exceptions they catch are sent to
+ * Auklet via {@link CatchSites#caught(Throwable)}. Only classes in the configured packages are
+ * transformed; {@code finally} blocks are not instrumented, because they do not handle the exception.</p>
+ *
+ * <p>Throw sites are deliberately not instrumented: an exception that is thrown and never caught is
+ * already reported by the uncaught exception handler, and one that is caught is reported here, so
+ * instrumenting throw sites would only send the same exception twice.</p>
+ *
+ * <p>The instrumentation adds two instructions to the start of each {@code catch} block, and nothing to
+ * code that does not throw.</p>
+ */
+@Immutable
+public final class CatchSiteTransformer implements ClassFileTransformer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CatchSiteTransformer.class);
+    private static final String ASM_PROBE = "org.objectweb.asm.ClassReader";
+    private static final String AGENT_PACKAGE = "io/auklet/";
+    private static final String CATCH_SITES = "io/auklet/instrument/CatchSites";
+    private final String[] prefixes;
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param packages the package name prefixes of the classes to instrument, separated by commas or
+     * colons.
+     * @throws IllegalArgumentException if no prefixes are given.
+     */
+    public CatchSiteTransformer(@NonNull String packages) {
+        List<String> parsed = new ArrayList<>();
+        for (String prefix : packages.split("[,:]")) {
+            prefix = prefix.trim();
+            if (!prefix.isEmpty()) parsed.add(prefix.replace('.', '/'));
+        }
+        if (parsed.isEmpty()) throw new IllegalArgumentException("No packages to instrument.");
+        this.prefixes = parsed.toArray(new String[0]);
+    }
+
+    /**
+     * <p>Registers a transformer for the given packages and, if the JVM supports it, instruments the
+     * matching classes that have already been loaded. This method never throws.</p>
+     *
+     * @param inst the instrumentation instance passed to the Java agent.
+     * @param packages the package name prefixes of the classes to instrument, separated by commas or
+     * colons.
+     * @return {@code true} if the transformer was registered, {@code false} otherwise.
+     */
+    public static boolean install(@NonNull Instrumentation inst, @NonNull String packages) {
+        try {
+            Class.forName(ASM_PROBE, false, CatchSiteTransformer.class.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            LOGGER.warn("Cannot instrument catch blocks because ASM is not on the classpath.");
+            return false;
+        }
+        CatchSiteTransformer transformer;
+        try {
+            transformer = new CatchSiteTransformer(packages);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Cannot instrument catch blocks: {}", e.getMessage());
+            return false;
+        }
+        boolean retransform = inst.isRetransformClassesSupported();
+        inst.addTransformer(transformer, retransform);
+        if (retransform) {
+            List<Class<?>> loaded = new ArrayList<>();
+            for (Class<?> c : inst.getAllLoadedClasses()) {
+                if (c.getClassLoader() != null && transformer.includes(c.getName().replace('.', '/')) && inst.isModifiableClass(c)) loaded.add(c);
+            }
+            if (!loaded.isEmpty()) {
+                try {
+                    inst.retransformClasses(loaded.toArray(new Class<?>[0]));
+                } catch (UnmodifiableClassException | RuntimeException | LinkageError e) {
+                    LOGGER.warn("Could not instrument already-loaded classes.", e);
+                }
+            }
+        }
+        LOGGER.info("Instrumenting catch blocks in {}.", packages);
+        return true;
+    }
+
+    @Override
+    @CheckForNull
+    public byte[] transform(@Nullable ClassLoader loader, @Nullable String className, @Nullable Class<?> classBeingRedefined,
+                            @Nullable ProtectionDomain protectionDomain, @Nullable byte[] classfileBuffer) {
+        // Bootstrap classes cannot see CatchSites.
+        if (loader == null || className == null || classfileBuffer == null || !this.includes(className)) return null;
+        try {
+            return instrument(classfileBuffer);
+        } catch (RuntimeException | LinkageError e) {
+            // Returning null loads the class unchanged; throwing would be ignored by the JVM anyway.
+            LOGGER.warn("Could not instrument class {}.", className, e);
+            return null;
+        }
+    }
+
+    /**
+     * <p>Determines whether the given class is to be instrumented.</p>
+     *
+     * @param className the internal name of the class.
+     * @return {@code true} if the class is in one of the configured packages and not part of the agent.
+     */
+    /*package*/ boolean includes(@NonNull String className) {
+        if (className.startsWith(AGENT_PACKAGE)) return false;
+        for (String prefix : this.prefixes) {
+            if (className.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * <p>Adds a call to {@link CatchSites#caught(Throwable)} to the start of each {@code catch} block in
+     * the given class.</p>
+     *
+     * @param classfile the class file.
+     * @return {@code null} if the class has no {@code catch} blocks, or the instrumented class file.
+     */
+    @CheckForNull public static byte[] instrument(@NonNull byte[] classfile) {
+        ClassReader reader = new ClassReader(classfile);
+        // The stack depth at a handler only grows by one, and no locals are added, so the existing stack
+        // map frames remain valid and no class has to be loaded to recompute them.
+        ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+        CatchSiteClassVisitor visitor = new CatchSiteClassVisitor(writer);
+        reader.accept(visitor, 0);
+        return visitor.instrumented ? writer.toByteArray() : null;
+    }
+
+    private static final class CatchSiteClassVisitor extends ClassVisitor {
+
+        private boolean instrumented = false;
+
+        private CatchSiteClassVisitor(@NonNull ClassVisitor next) {
+            super(Opcodes.ASM9, next);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            return new CatchSiteMethodVisitor(this, super.visitMethod(access, name, descriptor, signature, exceptions));
+        }
+
+    }
+
+    /**
+     * <p>Try/catch blocks are visited before the code they refer to, so the handler labels are known
+     * by the time each one is visited. The call is emitted before the first instruction after the
+     * label, so that it follows the handler's stack map frame.</p>
+     */
+    private static final class CatchSiteMethodVisitor extends MethodVisitor {
+
+        private final CatchSiteClassVisitor owner;
+        private final Set<Label> handlers = new HashSet<>();
+        private boolean pending = false;
+
+        private CatchSiteMethodVisitor(@NonNull CatchSiteClassVisitor owner, @Nullable MethodVisitor next) {
+            super(Opcodes.ASM9, next);
+            this.owner = owner;
+        }
+
+        @Override
+        public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+            // A null type is a finally block, or the part of a catch block that javac protects for one.
+            if (type != null) this.handlers.add(handler);
+            super.visitTryCatchBlock(start, end, handler, type);
+        }
+
+        @Override
+        public void visitLabel(Label label) {
+            super.visitLabel(label);
+            if (this.handlers.contains(label)) this.pending = true;
+        }
+
+        private void beforeInstruction() {
+            if (!this.pending) return;
+            this.pending = false;
+            this.owner.instrumented = true;
+            super.visitInsn(Opcodes.DUP);
+            super.visitMethodInsn(Opcodes.INVOKESTATIC, CATCH_SITES, "caught", "(Ljava/lang/Throwable;)V", false);
+        }
+
+        @Override public void visitInsn(int opcode) { this.beforeInstruction(); super.visitInsn(opcode); }
+        @Override public void visitIntInsn(int opcode, int operand) { this.beforeInstruction(); super.visitIntInsn(opcode, operand); }
+        @Override public void visitVarInsn(int opcode, int var) { this.beforeInstruction(); super.visitVarInsn(opcode, var); }
+        @Override public void visitTypeInsn(int opcode, String type) { this.beforeInstruction(); super.visitTypeInsn(opcode, type); }
+        @Override public void visitFieldInsn(int opcode, String owner, String name, String descriptor) { this.beforeInstruction(); super.visitFieldInsn(opcode, owner, name, descriptor); }
+        @Override public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) { this.beforeInstruction(); super.visitMethodInsn(opcode, owner, name, descriptor, isInterface); }
+        @Override public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrap, Object... arguments) { this.beforeInstruction(); super.visitInvokeDynamicInsn(name, descriptor, bootstrap, arguments); }
+        @Override public void visitJumpInsn(int opcode, Label label) { this.beforeInstruction(); super.visitJumpInsn(opcode, label); }
+        @Override public void visitLdcInsn(Object value) { this.beforeInstruction(); super.visitLdcInsn(value); }
+        @Override public void visitIincInsn(int var, int increment) { this.beforeInstruction(); super.visitIincInsn(var, increment); }
+        @Override public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) { this.beforeInstruction(); super.visitTableSwitchInsn(min, max, dflt, labels); }
+        @Override public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) { this.beforeInstruction(); super.visitLookupSwitchInsn(dflt, keys, labels); }
+        @Override public void visitMultiANewArrayInsn(String descriptor, int numDimensions) { this.beforeInstruction(); super.visitMultiANewArrayInsn(descriptor, numDimensions); }
+
+    }
+
+}
@@ -0,0 +1,61 @@
+package io.auklet.instrument;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+import io.auklet.Auklet;
+import net.jcip.annotations.ThreadSafe;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Receives the exceptions caught by instrumented code (see {@link CatchSiteTransformer}) and sends
+ * them to the Auklet agent, tagged with {@code capture=catch}.</p>
+ *
+ * <p>An exception that is caught, rethrown and caught again by several instrumented methods on the same
+ * thread is only sent the first time. Sending never blocks and never throws; see
+ * {@link Auklet#send(Throwable, Map)}.</p>
+ */
+@ThreadSafe
+public final class CatchSites {
+
+    private static final Map<String, String> TAGS = Collections.singletonMap("capture", "catch");
+    private static final AtomicLong CAUGHT = new AtomicLong();
+    private static final ThreadLocal<WeakReference<Throwable>> LAST = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> SENDING = new ThreadLocal<>();
+
+    private CatchSites() {}
+
+    /**
+     * <p>Called by instrumented code at the start of each {@code catch} block.</p>
+     *
+     * @param throwable the caught exception. If {@code null}, this method is no-op.
+     */
+    public static void caught(@Nullable Throwable throwable) {
+        if (throwable == null || SENDING.get() != null) return;
+        WeakReference<Throwable> last = LAST.get();
+        if (last != null && last.get() == throwable) return;
+        LAST.set(new WeakReference<>(throwable));
+        CAUGHT.incrementAndGet();
+        // Exceptions caught while sending must not be sent in turn.
+        SENDING.set(Boolean.TRUE);
+        try {
+            Auklet.send(throwable, TAGS);
+        } catch (RuntimeException | LinkageError e) {
+            // Never disturb the application's own exception handling.
+        } finally {
+            SENDING.remove();
+        }
+    }
+
+    /**
+     * <p>Returns the number of caught exceptions reported by instrumented code.</p>
+     *
+     * @return never negative.
+     */
+    public static long getCaughtCount() {
+        return CAUGHT.get();
+    }
+
+}
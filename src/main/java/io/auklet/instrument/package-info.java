@@ -0,0 +1,6 @@
+/**
+ * <p>Bytecode instrumentation used by {@link io.auklet.JavaAgent} to report exceptions that the
+ * application catches. It requires ASM, which is an optional dependency; only applications that enable
+ * instrumentation need it on the classpath.</p>
+ */
+package io.auklet.instrument;
@@ -0,0 +1,135 @@
+package io.auklet.jfr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * <p>A timed agent operation, recorded as a JDK Flight Recorder event so that the agent's own work can
+ * be told apart from the application's in standard profiling tools.</p>
+ *
+ * <p>Usage: obtain an instance from one of the static factory methods immediately before the operation
+ * starts, optionally call {@link #setBytes(long)}, and call {@link #end()} when the operation
+ * finishes.</p>
+ *
+ * <p>This is the Java 7 implementation, in which every operation is a no-op and every factory method
+ * returns the same shared instance. The agent JAR is a multi-release JAR; on Java 11 and later, a
+ * Flight Recorder-backed implementation of this class is used instead, which still returns the
+ * shared no-op instance unless the corresponding event type is enabled in a running recording.</p>
+ */
+@NotThreadSafe
+public class AgentEvent {
+
+    private static final AgentEvent DISABLED = new AgentEvent();
+
+    private AgentEvent() {}
+
+    /**
+     * <p>Starts an event covering the assembly of a MessagePack payload.</p>
+     *
+     * @param kind the kind of payload, e.g. {@code event} or the telemetry type.
+     * @return never {@code null}.
+     */
+    @NonNull public static AgentEvent encode(@Nullable String kind) {
+        return DISABLED;
+    }
+
+    /**
+     * <p>Starts an event covering a write to a data sink.</p>
+     *
+     * @param sink the name of the data sink.
+     * @return never {@code null}.
+     */
+    @NonNull public static AgentEvent sinkWrite(@Nullable String sink) {
+        return DISABLED;
+    }
+
+    /**
+     * <p>Starts an event covering the handoff of a message to the MQTT client.</p>
+     *
+     * @param topic the MQTT topic.
+     * @param qos the MQTT QoS level.
+     * @return never {@code null}.
+     */
+    @NonNull public static AgentEvent mqttPublish(@Nullable String topic, int qos) {
+        return DISABLED;
+    }
+
+    /**
+     * <p>Starts an event covering the time between publishing a message to the MQTT broker and its
+     * acknowledgement by the broker.</p>
+     *
+     * @param topic the MQTT topic.
+     * @param qos the MQTT QoS level.
+     * @return never {@code null}.
+     */
+    @NonNull public static AgentEvent mqttAck(@Nullable String topic, int qos) {
+        return DISABLED;
+    }
+
+    /**
+     * <p>Starts an event covering a request to the Auklet API.</p>
+     *
+     * @param path the URL path.
+     * @return never {@code null}.
+     */
+    @NonNull public static AgentEvent configFetch(@Nullable String path) {
+        return DISABLED;
+    }
+
+    /**
+     * <p>Starts an event covering a write of the data usage file.</p>
+     *
+     * @return never {@code null}.
+     */
+    @NonNull public static AgentEvent usageFileWrite() {
+        return DISABLED;
+    }
+
+    /**
+     * <p>Starts an event covering one phase of agent startup.</p>
+     *
+     * @param phase the name of the phase.
+     * @return never {@code null}.
+     */
+    @NonNull public static AgentEvent startupPhase(@Nullable String phase) {
+        return DISABLED;
+    }
+
+    /**
+     * <p>Returns whether this event will be recorded. Callers may use this to skip work that only
+     * serves to describe the event.</p>
+     *
+     * @return {@code false} in this implementation.
+     */
+    public boolean isEnabled() {
+        return false;
+    }
+
+    /**
+     * <p>Sets the number of bytes processed by the operation.</p>
+     *
+     * @param bytes the number of bytes.
+     * @return {@code this}.
+     */
+    @NonNull public AgentEvent setBytes(long bytes) {
+        return this;
+    }
+
+    /**
+     * <p>Sets the numeric outcome of the operation, such as an HTTP status code, or {@code 1}/{@code 0}
+     * for success/failure.</p>
+     *
+     * @param status the status.
+     * @return {@code this}.
+     */
+    @NonNull public AgentEvent setStatus(int status) {
+        return this;
+    }
+
+    /** <p>Ends the operation and records the event.</p> */
+    public void end() {
+        // No-op.
+    }
+
+}
@@ -0,0 +1,5 @@
+/**
+ * <p>Classes that describe agent operations to JDK Flight Recorder. On JVMs without Flight Recorder,
+ * these classes are no-op.</p>
+ */
+package io.auklet.jfr;
@@ -0,0 +1,62 @@
+package io.auklet.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.ThrowableProxy;
+import ch.qos.logback.core.AppenderBase;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * <p>A Logback appender that sends exceptions attached to log messages to the Auklet agent. Log
+ * messages without an exception are ignored.</p>
+ *
+ * <p>The logger name, formatted message, thread name and MDC of each log message are attached to the
+ * event as tags. Events are handed to the agent's bounded event queue, so logging threads are never
+ * blocked by the agent.</p>
+ *
+ * <pre>{@code
+ * <appender name="AUKLET" class="io.auklet.logging.AukletAppender">
+ *   <threshold>ERROR</threshold>
+ *   <!-- Optional; by default, all loggers are included. -->
+ *   <loggers>com.example,org.example</loggers>
+ * </appender>
+ * }</pre>
+ */
+@ThreadSafe
+public final class AukletAppender extends AppenderBase<ILoggingEvent> {
+
+    private volatile Level threshold = Level.ERROR;
+    private volatile String[] loggers = null;
+
+    /**
+     * <p>Sets the minimum level of log messages whose exceptions are sent to Auklet. The default is
+     * {@code ERROR}.</p>
+     *
+     * @param threshold the level name. If {@code null} or unrecognized, {@code ERROR} is used.
+     */
+    public void setThreshold(@Nullable String threshold) {
+        this.threshold = Level.toLevel(threshold, Level.ERROR);
+    }
+
+    /**
+     * <p>Restricts this appender to loggers whose names start with one of the given prefixes. By
+     * default, all loggers are included.</p>
+     *
+     * @param loggers the prefixes, separated by commas; may be {@code null}.
+     */
+    public void setLoggers(@Nullable String loggers) {
+        this.loggers = LogEvents.parseLoggers(loggers);
+    }
+
+    @Override protected void append(ILoggingEvent event) {
+        if (!event.getLevel().isGreaterOrEqual(this.threshold)) return;
+        if (!LogEvents.isIncluded(event.getLoggerName(), this.loggers)) return;
+        IThrowableProxy proxy = event.getThrowableProxy();
+        if (!(proxy instanceof ThrowableProxy)) return;
+        LogEvents.send(((ThrowableProxy) proxy).getThrowable(), event.getLoggerName(), event.getFormattedMessage(),
+                event.getThreadName(), event.getMDCPropertyMap());
+    }
+
+}
@@ -0,0 +1,72 @@
+package io.auklet.logging;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.logging.*;
+
+/**
+ * <p>A {@code java.util.logging} handler that sends exceptions attached to log records to the Auklet
+ * agent. Log records without an exception are ignored.</p>
+ *
+ * <p>The logger name, formatted message and thread ID of each log record are attached to the event as
+ * tags. Events are handed to the agent's bounded event queue, so logging threads are never blocked by
+ * the agent.</p>
+ *
+ * <p>The default level of this handler is {@code SEVERE}; it can be changed via {@link #setLevel(Level)}
+ * or the {@code io.auklet.logging.AukletHandler.level} logging property. The handler can be restricted
+ * to loggers whose names start with given prefixes via {@link #setLoggers(String)} or the
+ * {@code io.auklet.logging.AukletHandler.loggers} logging property (comma-separated).</p>
+ */
+@ThreadSafe
+public final class AukletHandler extends Handler {
+
+    private volatile String[] loggers;
+
+    /** <p>Constructor.</p> */
+    public AukletHandler() {
+        Level level = null;
+        String configured = LogManager.getLogManager().getProperty(AukletHandler.class.getName() + ".level");
+        if (configured != null) {
+            try {
+                level = Level.parse(configured.trim());
+            } catch (IllegalArgumentException e) {
+                // Fall back to the default level.
+            }
+        }
+        this.setLevel(level == null ? Level.SEVERE : level);
+        this.loggers = LogEvents.parseLoggers(LogManager.getLogManager().getProperty(AukletHandler.class.getName() + ".loggers"));
+        this.setFormatter(new SimpleFormatter());
+    }
+
+    /**
+     * <p>Restricts this handler to loggers whose names start with one of the given prefixes. By
+     * default, all loggers are included.</p>
+     *
+     * @param loggers the prefixes, separated by commas; may be {@code null}.
+     */
+    public void setLoggers(@Nullable String loggers) {
+        this.loggers = LogEvents.parseLoggers(loggers);
+    }
+
+    @Override public void publish(LogRecord record) {
+        if (record == null || record.getThrown() == null || !this.isLoggable(record)) return;
+        if (!LogEvents.isIncluded(record.getLoggerName(), this.loggers)) return;
+        String message;
+        try {
+            message = this.getFormatter().formatMessage(record);
+        } catch (RuntimeException e) {
+            message = record.getMessage();
+        }
+        LogEvents.send(record.getThrown(), record.getLoggerName(), message, "thread-" + record.getThreadID(), null);
+    }
+
+    @Override public void flush() {
+        // Events are queued by the agent; nothing to flush.
+    }
+
+    @Override public void close() {
+        // Nothing to release.
+    }
+
+}
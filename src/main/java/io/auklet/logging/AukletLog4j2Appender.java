@@ -0,0 +1,70 @@
+package io.auklet.logging;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import net.jcip.annotations.ThreadSafe;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.*;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.config.Property;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginElement;
+import org.apache.logging.log4j.core.config.plugins.PluginFactory;
+import org.apache.logging.log4j.core.filter.ThresholdFilter;
+
+/**
+ * <p>A log4j2 appender that sends exceptions attached to log events to the Auklet agent. Log events
+ * without an exception are ignored.</p>
+ *
+ * <p>The logger name, formatted message, thread name and context data (MDC) of each log event are
+ * attached to the event as tags. Events are handed to the agent's bounded event queue, so logging
+ * threads are never blocked by the agent.</p>
+ *
+ * <p>Unless a filter is configured, only log events at level {@code ERROR} or above are sent. The
+ * optional {@code loggers} attribute restricts the appender to loggers whose names start with one of
+ * the given comma-separated prefixes.</p>
+ *
+ * <pre>{@code
+ * <Configuration packages="io.auklet.logging">
+ *   <Appenders>
+ *     <Auklet name="auklet"/>
+ *   </Appenders>
+ * </Configuration>
+ * }</pre>
+ */
+@ThreadSafe
+@Plugin(name = "Auklet", category = Core.CATEGORY_NAME, elementType = Appender.ELEMENT_TYPE, printObject = true)
+public final class AukletLog4j2Appender extends AbstractAppender {
+
+    private final String[] loggers;
+
+    private AukletLog4j2Appender(@NonNull String name, @NonNull Filter filter, @Nullable String[] loggers) {
+        super(name, filter, null, true, Property.EMPTY_ARRAY);
+        this.loggers = loggers;
+    }
+
+    /**
+     * <p>Creates the appender. Invoked by log4j2 when reading its configuration.</p>
+     *
+     * @param name the appender name. If {@code null}, {@code Auklet} is used.
+     * @param filter the filter; may be {@code null}.
+     * @param loggers comma-separated logger name prefixes; may be {@code null}.
+     * @return never {@code null}.
+     */
+    @PluginFactory
+    @NonNull public static AukletLog4j2Appender createAppender(@PluginAttribute("name") @Nullable String name,
+                                                               @PluginElement("Filter") @Nullable Filter filter,
+                                                               @PluginAttribute("loggers") @Nullable String loggers) {
+        if (filter == null) filter = ThresholdFilter.createFilter(Level.ERROR, Filter.Result.NEUTRAL, Filter.Result.DENY);
+        return new AukletLog4j2Appender(name == null ? "Auklet" : name, filter, LogEvents.parseLoggers(loggers));
+    }
+
+    @Override public void append(LogEvent event) {
+        Throwable thrown = event.getThrown();
+        if (thrown == null || !LogEvents.isIncluded(event.getLoggerName(), this.loggers)) return;
+        LogEvents.send(thrown, event.getLoggerName(), event.getMessage().getFormattedMessage(),
+                event.getThreadName(), event.getContextData().toMap());
+    }
+
+}
@@ -0,0 +1,82 @@
+package io.auklet.logging;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import io.auklet.Auklet;
+import net.jcip.annotations.Immutable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** <p>Logic shared by all logging integrations.</p> */
+@Immutable
+/*package*/ final class LogEvents {
+
+    private static final String AGENT_LOGGER_PREFIX = "io.auklet.";
+
+    private LogEvents() {}
+
+    /**
+     * <p>Parses a list of logger name prefixes.</p>
+     *
+     * @param loggers the prefixes, separated by commas or colons; may be {@code null}.
+     * @return {@code null} if the list is {@code null} or contains no prefixes, meaning that all loggers
+     * are included.
+     */
+    @CheckForNull /*package*/ static String[] parseLoggers(@Nullable String loggers) {
+        if (loggers == null) return null;
+        List<String> prefixes = new ArrayList<>();
+        for (String prefix : loggers.split("[,:]")) {
+            prefix = prefix.trim();
+            if (!prefix.isEmpty()) prefixes.add(prefix);
+        }
+        return prefixes.isEmpty() ? null : prefixes.toArray(new String[0]);
+    }
+
+    /**
+     * <p>Determines whether the given logger is included by the given prefixes. This is a handful of
+     * string comparisons, and is only done for log messages that carry an exception.</p>
+     *
+     * @param loggerName the logger name; may be {@code null}.
+     * @param prefixes the prefixes returned by {@link #parseLoggers(String)}; may be {@code null}.
+     * @return {@code true} if the prefixes are {@code null} or the logger name starts with any of them.
+     */
+    /*package*/ static boolean isIncluded(@Nullable String loggerName, @Nullable String[] prefixes) {
+        if (prefixes == null) return true;
+        if (loggerName == null) return false;
+        for (String prefix : prefixes) {
+            if (loggerName.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * <p>Sends a logged exception to the Auklet agent. This method never blocks; see
+     * {@link Auklet#send(Throwable, Map)}.</p>
+     *
+     * @param throwable the logged exception. If {@code null}, this method is no-op.
+     * @param loggerName the name of the logger. If it belongs to the Auklet agent itself, this method
+     * is no-op, so that errors logged while sending events cannot cause further events.
+     * @param message the formatted log message; may be {@code null}.
+     * @param threadName the name of the thread that logged the message; may be {@code null}.
+     * @param mdc the mapped diagnostic context of the log message; may be {@code null}.
+     */
+    /*package*/ static void send(@Nullable Throwable throwable, @Nullable String loggerName, @Nullable String message,
+                                 @Nullable String threadName, @Nullable Map<String, String> mdc) {
+        if (throwable == null) return;
+        if (loggerName != null && loggerName.startsWith(AGENT_LOGGER_PREFIX)) return;
+        Map<String, String> tags = mdc == null ? new HashMap<String, String>() : new HashMap<>(mdc);
+        putIfNotNull(tags, "logger", loggerName);
+        putIfNotNull(tags, "logMessage", message);
+        putIfNotNull(tags, "thread", threadName);
+        Auklet.send(throwable, tags);
+    }
+
+    private static void putIfNotNull(@NonNull Map<String, String> tags, @NonNull String key, @Nullable String value) {
+        if (value != null) tags.put(key, value);
+    }
+
+}
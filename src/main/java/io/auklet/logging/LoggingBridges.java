@@ -0,0 +1,73 @@
+package io.auklet.logging;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Attaches the Auklet logging integrations to the root loggers of the logging frameworks in use,
+ * without any logging configuration changes. This is used by {@link io.auklet.JavaAgent}.</p>
+ *
+ * <p>The {@code java.util.logging} handler is always attached. The Logback appender is attached only
+ * if Logback is the SLF4J backend. log4j2 must be configured explicitly; see
+ * {@link AukletLog4j2Appender}.</p>
+ */
+@ThreadSafe
+public final class LoggingBridges {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoggingBridges.class);
+    private static final String LOGBACK_CONTEXT = "ch.qos.logback.classic.LoggerContext";
+    private static final Object LOCK = new Object();
+    private static boolean installed = false;
+
+    private LoggingBridges() {}
+
+    /**
+     * <p>Attaches the logging integrations. Subsequent calls are no-op.</p>
+     *
+     * @param loggers if not {@code null}, only exceptions logged by loggers whose names start with one
+     * of these prefixes, separated by commas or colons, are sent. Java agent options must use colons,
+     * because commas separate the options themselves.
+     */
+    public static void install(@Nullable String loggers) {
+        synchronized (LOCK) {
+            if (installed) return;
+            installed = true;
+        }
+        try {
+            AukletHandler handler = new AukletHandler();
+            if (loggers != null) handler.setLoggers(loggers);
+            java.util.logging.Logger.getLogger("").addHandler(handler);
+            LOGGER.info("Attached Auklet handler to java.util.logging.");
+        } catch (SecurityException e) {
+            LOGGER.warn("Could not attach Auklet handler to java.util.logging.", e);
+        }
+        if (LOGBACK_CONTEXT.equals(LoggerFactory.getILoggerFactory().getClass().getName())) {
+            try {
+                LogbackBridge.install(loggers);
+                LOGGER.info("Attached Auklet appender to Logback.");
+            } catch (LinkageError e) {
+                LOGGER.warn("Could not attach Auklet appender to Logback.", e);
+            }
+        }
+    }
+
+    /** <p>Logback-specific code, which is only loaded if Logback is present.</p> */
+    private static final class LogbackBridge {
+
+        private LogbackBridge() {}
+
+        private static void install(@Nullable String loggers) {
+            ch.qos.logback.classic.LoggerContext context = (ch.qos.logback.classic.LoggerContext) LoggerFactory.getILoggerFactory();
+            AukletAppender appender = new AukletAppender();
+            appender.setContext(context);
+            appender.setName("AUKLET");
+            if (loggers != null) appender.setLoggers(loggers);
+            appender.start();
+            context.getLogger(Logger.ROOT_LOGGER_NAME).addAppender(appender);
+        }
+
+    }
+
+}
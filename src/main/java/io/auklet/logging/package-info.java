@@ -0,0 +1,6 @@
+/**
+ * <p>Integrations that send exceptions logged through common logging frameworks (Logback, log4j2 and
+ * {@code java.util.logging}) to the Auklet agent. The logging frameworks are optional dependencies;
+ * only the integration for the framework actually in use needs to be on the classpath.</p>
+ */
+package io.auklet.logging;
@@ -0,0 +1,127 @@
+package io.auklet.net;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * <p>A plain socket wrapper that reports all bytes read from and written to the wrapped socket to the
+ * {@link TrafficCounter}. When an SSL socket is layered on top of this socket, the counts include all
+ * TLS record and handshake overhead.</p>
+ */
+@ThreadSafe
+public final class CountingSocket extends Socket {
+
+    private final Socket delegate;
+    private final Object lock = new Object();
+    @GuardedBy("lock") private InputStream in;
+    @GuardedBy("lock") private OutputStream out;
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param delegate the socket to wrap.
+     * @throws IllegalArgumentException if the socket is {@code null}.
+     */
+    public CountingSocket(@NonNull Socket delegate) {
+        if (delegate == null) throw new IllegalArgumentException("Socket is null.");
+        this.delegate = delegate;
+    }
+
+    @Override public InputStream getInputStream() throws IOException {
+        synchronized (this.lock) {
+            if (this.in == null) this.in = new CountingInputStream(this.delegate.getInputStream());
+            return this.in;
+        }
+    }
+
+    @Override public OutputStream getOutputStream() throws IOException {
+        synchronized (this.lock) {
+            if (this.out == null) this.out = new CountingOutputStream(this.delegate.getOutputStream());
+            return this.out;
+        }
+    }
+
+    @Override public void connect(@Nullable SocketAddress endpoint) throws IOException { this.delegate.connect(endpoint); }
+    @Override public void connect(@Nullable SocketAddress endpoint, int timeout) throws IOException { this.delegate.connect(endpoint, timeout); }
+    @Override public void bind(@Nullable SocketAddress bindpoint) throws IOException { this.delegate.bind(bindpoint); }
+    @Override public InetAddress getInetAddress() { return this.delegate.getInetAddress(); }
+    @Override public InetAddress getLocalAddress() { return this.delegate.getLocalAddress(); }
+    @Override public int getPort() { return this.delegate.getPort(); }
+    @Override public int getLocalPort() { return this.delegate.getLocalPort(); }
+    @Override public SocketAddress getRemoteSocketAddress() { return this.delegate.getRemoteSocketAddress(); }
+    @Override public SocketAddress getLocalSocketAddress() { return this.delegate.getLocalSocketAddress(); }
+    @Override public SocketChannel getChannel() { return this.delegate.getChannel(); }
+    @Override public void setTcpNoDelay(boolean on) throws SocketException { this.delegate.setTcpNoDelay(on); }
+    @Override public boolean getTcpNoDelay() throws SocketException { return this.delegate.getTcpNoDelay(); }
+    @Override public void setSoLinger(boolean on, int linger) throws SocketException { this.delegate.setSoLinger(on, linger); }
+    @Override public int getSoLinger() throws SocketException { return this.delegate.getSoLinger(); }
+    @Override public void sendUrgentData(int data) throws IOException { this.delegate.sendUrgentData(data); }
+    @Override public void setOOBInline(boolean on) throws SocketException { this.delegate.setOOBInline(on); }
+    @Override public boolean getOOBInline() throws SocketException { return this.delegate.getOOBInline(); }
+    @Override public void setSoTimeout(int timeout) throws SocketException { this.delegate.setSoTimeout(timeout); }
+    @Override public int getSoTimeout() throws SocketException { return this.delegate.getSoTimeout(); }
+    @Override public void setSendBufferSize(int size) throws SocketException { this.delegate.setSendBufferSize(size); }
+    @Override public int getSendBufferSize() throws SocketException { return this.delegate.getSendBufferSize(); }
+    @Override public void setReceiveBufferSize(int size) throws SocketException { this.delegate.setReceiveBufferSize(size); }
+    @Override public int getReceiveBufferSize() throws SocketException { return this.delegate.getReceiveBufferSize(); }
+    @Override public void setKeepAlive(boolean on) throws SocketException { this.delegate.setKeepAlive(on); }
+    @Override public boolean getKeepAlive() throws SocketException { return this.delegate.getKeepAlive(); }
+    @Override public void setTrafficClass(int tc) throws SocketException { this.delegate.setTrafficClass(tc); }
+    @Override public int getTrafficClass() throws SocketException { return this.delegate.getTrafficClass(); }
+    @Override public void setReuseAddress(boolean on) throws SocketException { this.delegate.setReuseAddress(on); }
+    @Override public boolean getReuseAddress() throws SocketException { return this.delegate.getReuseAddress(); }
+    @Override public void close() throws IOException { this.delegate.close(); }
+    @Override public void shutdownInput() throws IOException { this.delegate.shutdownInput(); }
+    @Override public void shutdownOutput() throws IOException { this.delegate.shutdownOutput(); }
+    @Override public boolean isConnected() { return this.delegate.isConnected(); }
+    @Override public boolean isBound() { return this.delegate.isBound(); }
+    @Override public boolean isClosed() { return this.delegate.isClosed(); }
+    @Override public boolean isInputShutdown() { return this.delegate.isInputShutdown(); }
+    @Override public boolean isOutputShutdown() { return this.delegate.isOutputShutdown(); }
+    @Override public void setPerformancePreferences(int connectionTime, int latency, int bandwidth) { this.delegate.setPerformancePreferences(connectionTime, latency, bandwidth); }
+    @Override public String toString() { return this.delegate.toString(); }
+
+    /** <p>Counts bytes read from the wrapped stream.</p> */
+    private static final class CountingInputStream extends FilterInputStream {
+        private CountingInputStream(@NonNull InputStream in) { super(in); }
+        @Override public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) TrafficCounter.addInbound(1);
+            return b;
+        }
+        @Override public int read(@NonNull byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            TrafficCounter.addInbound(n);
+            return n;
+        }
+        @Override public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            TrafficCounter.addInbound(skipped);
+            return skipped;
+        }
+    }
+
+    /** <p>Counts bytes written to the wrapped stream.</p> */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private CountingOutputStream(@NonNull OutputStream out) { super(out); }
+        @Override public void write(int b) throws IOException {
+            this.out.write(b);
+            TrafficCounter.addOutbound(1);
+        }
+        @Override public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            // FilterOutputStream would otherwise write one byte at a time.
+            this.out.write(b, off, len);
+            TrafficCounter.addOutbound(len);
+        }
+    }
+
+}
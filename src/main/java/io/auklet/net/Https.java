@@ -7,6 +7,8 @@ import io.auklet.util.ThreadUtil;
 import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.Immutable;
 import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -17,6 +19,8 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>All HTTP requests from the Auklet agent, most of which are to the Auklet API, are
@@ -58,10 +62,29 @@ public final class Https {
      * @throws AukletException if an error occurs while initializing the SSL trust object.
      */
     public Https(@Nullable List<InputStream> sslCertificates) throws AukletException {
+        this(sslCertificates, null);
+    }
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param sslCertificates the SSL certificates to use. If {@code null} or empty,
+     * the truststore provided by the OS/JVM will be used.
+     * @param executor if not {@code null}, OkHttp's dispatcher runs on this executor instead of starting
+     * its own threads, and idle connections are not kept, so that OkHttp's connection pool cleaner
+     * thread exits as soon as each request completes.
+     * @throws AukletException if an error occurs while initializing the SSL trust object.
+     */
+    public Https(@Nullable List<InputStream> sslCertificates, @Nullable ExecutorService executor) throws AukletException {
         X509Trust trust = X509Trust.fromStreams(sslCertificates);
         OkHttpClient.Builder builder = new OkHttpClient.Builder()
                 .addInterceptor(Https.INTERCEPTOR)
                 .sslSocketFactory(trust.createSocketFactory(), trust.getTrustManager());
+        if (executor != null) {
+            // The agent only makes a few requests, far apart, so a kept-alive connection saves little.
+            builder.dispatcher(new Dispatcher(executor))
+                    .connectionPool(new ConnectionPool(0, 1L, TimeUnit.SECONDS));
+        }
         this.httpClient = builder.build();
     }
 
@@ -14,6 +14,10 @@ import java.net.Socket;
  * <p>A custom SSL socket factory that only supports TLS 1.2. This class adds compatibility for SSL connections
  * on Android versions less than 4.4W, but is safe to use in Android 4.4W+ and non-Android environments.</p>
  *
+ * <p>Sockets layered over an existing socket, or connected by host name, are wrapped in a
+ * {@link CountingSocket} so that the agent's own network usage (including TLS overhead) is recorded by
+ * the {@link TrafficCounter}. Both OkHttp and Paho MQTT use the layered variant.</p>
+ *
  * <p>Derived from https://gist.githubusercontent.com/fkrauthan/ac8624466a4dee4fd02f/raw/309efc30e31c96a932ab9d19bf4d73b286b00573/TLSSocketFactory.java.</p>
  *
  * @see <a href="https://developer.android.com/reference/javax/net/ssl/SSLSocket.html">SSLSocket docs for Android</a>
@@ -47,15 +51,15 @@ public final class Tls12SocketFactory extends SSLSocketFactory {
     }
 
     @Override public Socket createSocket(@NonNull Socket s, @Nullable String host, int port, boolean autoClose) throws IOException {
-        return tls12Only(delegateFactory.createSocket(s, host, port, autoClose));
+        return tls12Only(delegateFactory.createSocket(new CountingSocket(s), host, port, autoClose));
     }
 
     @Override public Socket createSocket(@Nullable String host, int port) throws IOException {
-        return tls12Only(delegateFactory.createSocket(host, port));
+        return layer(new Socket(host, port), host, port);
     }
 
     @Override public Socket createSocket(@Nullable String host, int port, @Nullable InetAddress localHost, int localPort) throws IOException {
-        return tls12Only(delegateFactory.createSocket(host, port, localHost, localPort));
+        return layer(new Socket(host, port, localHost, localPort), host, port);
     }
 
     @Override public Socket createSocket(@NonNull InetAddress host, int port) throws IOException {
@@ -66,6 +70,15 @@ public final class Tls12SocketFactory extends SSLSocketFactory {
         return tls12Only(delegateFactory.createSocket(address, port, localAddress, localPort));
     }
 
+    @NonNull private Socket layer(@NonNull Socket plain, @Nullable String host, int port) throws IOException {
+        try {
+            return createSocket(plain, host, port, true);
+        } catch (IOException | RuntimeException e) {
+            plain.close();
+            throw e;
+        }
+    }
+
     @CheckForNull private Socket tls12Only(@Nullable Socket socket) {
         if (socket == null) throw new IllegalArgumentException("Socket is null.");
         if (socket instanceof SSLSocket) {
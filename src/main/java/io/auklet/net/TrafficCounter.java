@@ -0,0 +1,55 @@
+package io.auklet.net;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Counts the bytes sent and received over the network by the Auklet agent itself, as measured by
+ * {@link CountingSocket}. Byte counts include TLS overhead.</p>
+ */
+@ThreadSafe
+public final class TrafficCounter {
+
+    private static final AtomicLong INBOUND = new AtomicLong();
+    private static final AtomicLong OUTBOUND = new AtomicLong();
+
+    private TrafficCounter() {}
+
+    /**
+     * <p>Returns the total number of bytes received by the agent since the JVM started.</p>
+     *
+     * @return never negative.
+     */
+    public static long getInboundBytes() {
+        return INBOUND.get();
+    }
+
+    /**
+     * <p>Returns the total number of bytes sent by the agent since the JVM started.</p>
+     *
+     * @return never negative.
+     */
+    public static long getOutboundBytes() {
+        return OUTBOUND.get();
+    }
+
+    /**
+     * <p>Records received bytes.</p>
+     *
+     * @param bytes no-op if less than 1.
+     */
+    /*package*/ static void addInbound(long bytes) {
+        if (bytes > 0) INBOUND.addAndGet(bytes);
+    }
+
+    /**
+     * <p>Records sent bytes.</p>
+     *
+     * @param bytes no-op if less than 1.
+     */
+    /*package*/ static void addOutbound(long bytes) {
+        if (bytes > 0) OUTBOUND.addAndGet(bytes);
+    }
+
+}
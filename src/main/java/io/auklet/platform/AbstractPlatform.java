@@ -8,22 +8,69 @@ import io.auklet.AukletException;
 import io.auklet.Config;
 import io.auklet.config.DeviceAuth;
 import io.auklet.core.HasAgent;
+import io.auklet.platform.metrics.JvmMetrics;
+import io.auklet.platform.metrics.NetDevMetrics;
+import io.auklet.sink.Telemetry;
 import io.auklet.util.FileUtil;
+import org.msgpack.core.MessagePacker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /** <p>Provides logic common to all platforms.</p> */
 public abstract class AbstractPlatform extends HasAgent implements Platform {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractPlatform.class);
     private static final String DIR_ERROR = "Skipping directory '{}' due to an error.";
+    private final NetDevMetrics netDev = new NetDevMetrics(null);
 
     @Override public void start(@NonNull Auklet agent) throws AukletException {
         this.setAgent(agent);
+        Runnable networkUsage = this.netDev.calculateNetworkUsage();
+        if (networkUsage != null) agent.scheduleRepeatingTask(networkUsage, 0L, 10L, TimeUnit.SECONDS);
+    }
+
+    /** <p>Releases any resources held by this platform. By default, this method is no-op.</p> */
+    public void shutdown() {
+        // No-op by default.
+    }
+
+    @Override public void addSystemMetrics(@NonNull MessagePacker msgpack) throws AukletException, IOException {
+        if (msgpack == null) throw new AukletException("msgpack is null.");
+        msgpack.packString("memoryUsage").packDouble(this.getMemoryUsage());
+        msgpack.packString("cpuUsage").packDouble(this.getCpuUsage());
+    }
+
+    @Override public double getInboundNetworkRate() {
+        return this.netDev.getInboundRate();
+    }
+
+    @Override public double getOutboundNetworkRate() {
+        return this.netDev.getOutboundRate();
+    }
+
+    @Override public double getCpuThrottling() {
+        return 0d;
+    }
+
+    @Override public boolean isNetworkMetered() {
+        return false;
+    }
+
+    @CheckForNull @Override public JvmMetrics.Snapshot getJvmMetrics() {
+        return null;
+    }
+
+    @CheckForNull @Override public Telemetry drainProfile() {
+        return null;
+    }
+
+    @CheckForNull @Override public Telemetry drainLockReport() {
+        return null;
     }
 
     @CheckForNull @Override public final File obtainConfigDir(@Nullable String fromConfig) {
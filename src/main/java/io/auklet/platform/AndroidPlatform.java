@@ -1,6 +1,7 @@
 package io.auklet.platform;
 
 import android.content.Context;
+import android.net.ConnectivityManager;
 import android.os.Build;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
@@ -8,11 +9,9 @@ import io.auklet.Auklet;
 import io.auklet.AukletException;
 import io.auklet.platform.metrics.AndroidMetrics;
 import net.jcip.annotations.Immutable;
-import org.msgpack.core.MessagePacker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -55,10 +54,24 @@ public final class AndroidPlatform extends AbstractPlatform {
         return Collections.singletonList(this.context.getFilesDir().getPath() + "/.auklet");
     }
 
-    @Override public void addSystemMetrics(@NonNull MessagePacker msgpack) throws AukletException, IOException {
-        if (msgpack == null) throw new AukletException("msgpack is null.");
-        msgpack.packString("memoryUsage").packDouble(metrics.getMemoryUsage());
-        msgpack.packString("cpuUsage").packDouble(metrics.getCpuUsage());
+    @Override public double getCpuUsage() {
+        return metrics.getCpuUsage();
+    }
+
+    @Override public double getMemoryUsage() {
+        return metrics.getMemoryUsage();
+    }
+
+    /** <p>Requires the {@code ACCESS_NETWORK_STATE} permission; without it, returns {@code false}.</p> */
+    @Override public boolean isNetworkMetered() {
+        ConnectivityManager connectivity = (ConnectivityManager) this.context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivity == null) return false;
+        try {
+            return connectivity.isActiveNetworkMetered();
+        } catch (SecurityException e) {
+            LOGGER.debug("Could not determine whether the network is metered.", e);
+            return false;
+        }
     }
 
 }
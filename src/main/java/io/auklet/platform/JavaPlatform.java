@@ -1,5 +1,6 @@
 package io.auklet.platform;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import io.auklet.Auklet;
@@ -7,21 +8,74 @@ import io.auklet.AukletException;
 import io.auklet.util.SysUtil;
 import io.auklet.util.Util;
 import io.auklet.misc.OSMX;
-import net.jcip.annotations.Immutable;
-import org.msgpack.core.MessagePacker;
+import io.auklet.platform.jmx.AgentMBeans;
+import io.auklet.platform.metrics.CgroupMetrics;
+import io.auklet.platform.metrics.JvmMetrics;
+import io.auklet.platform.metrics.LockMonitor;
+import io.auklet.platform.metrics.MemoryMonitor;
+import io.auklet.platform.metrics.Profiler;
+import io.auklet.sink.Telemetry;
+import net.jcip.annotations.ThreadSafe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /** <p>Platform methods specific to Java SE (and variants).</p> */
-@Immutable
+@ThreadSafe
 public final class JavaPlatform extends AbstractPlatform {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JavaPlatform.class);
+    private final CgroupMetrics cgroup = new CgroupMetrics();
+    private final JvmMetrics jvm = new JvmMetrics();
+    private final AgentMBeans mbeans = new AgentMBeans();
+    private final Profiler profiler;
+    private final LockMonitor lockMonitor;
+    private final MemoryMonitor memoryMonitor;
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param profilerHz the sampling profiler frequency; if less than 1, the profiler is disabled.
+     * @param profilerOverhead the maximum profiler overhead, as a percentage of one CPU core.
+     * @param lockMonitorInterval the maximum number of seconds between deadlock checks; if less than 1,
+     * deadlock detection is disabled.
+     * @param memoryThreshold the heap pool occupancy percentage, after GC, at or above which a memory
+     * warning is sent; if less than 1, memory warnings are disabled.
+     */
+    public JavaPlatform(int profilerHz, int profilerOverhead, int lockMonitorInterval, int memoryThreshold) {
+        this.profiler = profilerHz < 1 ? null : new Profiler(profilerHz, profilerOverhead);
+        this.lockMonitor = new LockMonitor(lockMonitorInterval);
+        this.memoryMonitor = new MemoryMonitor(memoryThreshold);
+    }
+
+    @Override public void start(@NonNull final Auklet agent) throws AukletException {
+        super.start(agent);
+        Runnable containerUsage = this.cgroup.calculateUsage();
+        if (containerUsage != null) agent.scheduleRepeatingTask(containerUsage, 0L, 1L, TimeUnit.SECONDS);
+        agent.scheduleRepeatingTask(this.jvm.calculateJvmUsage(), 0L, 10L, TimeUnit.SECONDS);
+        if (this.profiler != null) {
+            final Runnable sampleStacks = this.profiler.sampleStacks();
+            agent.scheduleRepeatingTask(new Runnable() {
+                @Override public void run() {
+                    if (!agent.getLoadGovernor().isDegraded()) sampleStacks.run();
+                }
+            }, 0L, 1000000L / this.profiler.getHz(), TimeUnit.MICROSECONDS);
+            LOGGER.info("Sampling profiler enabled at {} Hz.", this.profiler.getHz());
+        }
+        this.lockMonitor.start(agent);
+        this.memoryMonitor.start(agent);
+        this.mbeans.start(agent);
+    }
+
+    @Override public void shutdown() {
+        this.lockMonitor.shutdown();
+        this.memoryMonitor.shutdown();
+        this.mbeans.shutdown();
+    }
 
     @Override public List<String> getPossibleConfigDirs(@Nullable String fromConfig) {
         if (Util.isNullOrEmpty(fromConfig)) LOGGER.warn("Config dir not defined, will attempt to fallback on JVM system properties.");
@@ -42,29 +96,51 @@ public final class JavaPlatform extends AbstractPlatform {
         return filteredConfigDirs;
     }
 
-    @Override public void addSystemMetrics(@NonNull MessagePacker msgpack) throws AukletException, IOException {
-        if (msgpack == null) throw new AukletException("msgpack is null.");
-        // Calculate memory usage.
-        double memUsage;
-        long freeMem = OSMX.BEAN.getFreePhysicalMemorySize();
-        long totalMem = OSMX.BEAN.getTotalPhysicalMemorySize();
-        if (freeMem >= 0 && totalMem >= 0) {
-            memUsage = 100 * (1 - ((double) freeMem / (double) totalMem));
-        } else {
-            memUsage = 0d;
+    @Override public double getMemoryUsage() {
+        // Prefer container-relative metrics when running inside a cgroup, since host-wide metrics
+        // describe the node rather than this container.
+        double memUsage = this.cgroup.getMemoryUsage();
+        if (memUsage < 0) {
+            long freeMem = OSMX.BEAN.getFreePhysicalMemorySize();
+            long totalMem = OSMX.BEAN.getTotalPhysicalMemorySize();
+            if (freeMem >= 0 && totalMem >= 0) {
+                memUsage = 100 * (1 - ((double) freeMem / (double) totalMem));
+            } else {
+                memUsage = 0d;
+            }
         }
-        msgpack.packString("memoryUsage").packDouble(memUsage);
-
-        // Calculate CPU usage.
-        double cpuUsage;
-        double loadAvg = OSMX.BEAN.getSystemLoadAverage();
-        int processors = OSMX.BEAN.getAvailableProcessors();
-        if (loadAvg >= 0 && processors > 0) {
-            cpuUsage = 100 * (loadAvg / processors);
-        } else {
-            cpuUsage = 0d;
+        return memUsage;
+    }
+
+    @Override public double getCpuUsage() {
+        // See getMemoryUsage().
+        double cpuUsage = this.cgroup.getCpuUsage();
+        if (cpuUsage < 0) {
+            double loadAvg = OSMX.BEAN.getSystemLoadAverage();
+            int processors = OSMX.BEAN.getAvailableProcessors();
+            if (loadAvg >= 0 && processors > 0) {
+                cpuUsage = 100 * (loadAvg / processors);
+            } else {
+                cpuUsage = 0d;
+            }
         }
-        msgpack.packString("cpuUsage").packDouble(cpuUsage);
+        return cpuUsage;
+    }
+
+    @Override public double getCpuThrottling() {
+        return this.cgroup.getCpuThrottling();
+    }
+
+    @CheckForNull @Override public JvmMetrics.Snapshot getJvmMetrics() {
+        return this.jvm.getSnapshot();
+    }
+
+    @CheckForNull @Override public Telemetry drainProfile() {
+        return this.profiler == null ? null : this.profiler.drain();
+    }
+
+    @CheckForNull @Override public Telemetry drainLockReport() {
+        return this.lockMonitor.drain();
     }
 
 }
@@ -4,7 +4,9 @@ import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import io.auklet.AukletException;
+import io.auklet.platform.metrics.JvmMetrics;
 import io.auklet.Config;
+import io.auklet.sink.Telemetry;
 import org.msgpack.core.MessagePacker;
 
 import java.io.File;
@@ -26,6 +28,78 @@ public interface Platform {
      */
     void addSystemMetrics(@NonNull MessagePacker msgpack) throws AukletException, IOException;
 
+    /**
+     * <p>Returns the current CPU usage of the system (or container) on which the agent is running.</p>
+     *
+     * @return a value between 0 and 100.
+     */
+    double getCpuUsage();
+
+    /**
+     * <p>Returns the current memory usage of the system (or container) on which the agent is
+     * running.</p>
+     *
+     * @return a value between 0 and 100.
+     */
+    double getMemoryUsage();
+
+    /**
+     * <p>Returns the number of bytes per second received by this host, excluding loopback traffic.</p>
+     *
+     * @return a non-negative value, which is zero if this metric is not available on this platform.
+     */
+    double getInboundNetworkRate();
+
+    /**
+     * <p>Returns the number of bytes per second sent by this host, excluding loopback traffic.</p>
+     *
+     * @return a non-negative value, which is zero if this metric is not available on this platform.
+     */
+    double getOutboundNetworkRate();
+
+    /**
+     * <p>Returns the percentage of CPU scheduler periods in which the agent's container was throttled
+     * because it had used up its CPU quota.</p>
+     *
+     * @return a value between 0 and 100, which is zero if the agent is not running in a container with
+     * a CPU quota, or if this metric is not available on this platform.
+     */
+    double getCpuThrottling();
+
+    /**
+     * <p>Returns whether the host's active network connection is metered, such as a cellular
+     * connection.</p>
+     *
+     * @return {@code false} if the connection is not metered, or if this is not known on this platform.
+     */
+    boolean isNetworkMetered();
+
+    /**
+     * <p>Returns the most recent snapshot of process-level JVM metrics.</p>
+     *
+     * @return {@code null} if JVM metrics are not available on this platform, or have not yet been
+     * sampled.
+     */
+    @CheckForNull JvmMetrics.Snapshot getJvmMetrics();
+
+    /**
+     * <p>Returns the CPU profile aggregated since the previous call to this method, and starts a new
+     * one.</p>
+     *
+     * @return {@code null} if profiling is disabled or not available on this platform, or if no samples
+     * were taken.
+     */
+    @CheckForNull Telemetry drainProfile();
+
+    /**
+     * <p>Returns the lock contention report aggregated since the previous call to this method, and
+     * starts a new one.</p>
+     *
+     * @return {@code null} if lock monitoring is disabled or not available on this platform, or if no
+     * contention was observed.
+     */
+    @CheckForNull Telemetry drainLockReport();
+
     /**
      * <p>Returns the directory the Auklet agent will use to store its configuration files. This method
      * creates/tests write access to the target config directory after determining which directory to use,
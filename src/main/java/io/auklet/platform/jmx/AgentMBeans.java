@@ -0,0 +1,169 @@
+package io.auklet.platform.jmx;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import io.auklet.Auklet;
+import io.auklet.AukletException;
+import io.auklet.core.AukletDaemonExecutor;
+import io.auklet.core.EventQueue;
+import io.auklet.core.HasAgent;
+import io.auklet.core.PipelineStats;
+import io.auklet.net.TrafficCounter;
+import io.auklet.sink.CompositeSink;
+import io.auklet.sink.Sink;
+import io.auklet.sink.SinkStats;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Registers the agent's self-monitoring MBeans with the platform MBean server: one
+ * {@code io.auklet:type=Agent} MBean and one {@code io.auklet:type=Sink,name=...} MBean for the data
+ * sink and, if it is a {@link CompositeSink}, for each of its branches.</p>
+ *
+ * <p>The MBeans are read-only views over counters that the agent maintains anyway, so they add no cost
+ * to the agent until they are read.</p>
+ */
+@ThreadSafe
+public final class AgentMBeans extends HasAgent {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AgentMBeans.class);
+    private final Object lock = new Object();
+    @GuardedBy("lock") private final List<ObjectName> registered = new ArrayList<>();
+
+    @Override public void start(@NonNull Auklet agent) throws AukletException {
+        this.setAgent(agent);
+        Sink sink = agent.getSink();
+        synchronized (this.lock) {
+            this.register("io.auklet:type=Agent", new AgentView(agent));
+            this.register("io.auklet:type=Sink,name=" + ObjectName.quote(sink.getClass().getSimpleName()), new SinkView(sink, null));
+            if (sink instanceof CompositeSink) {
+                for (CompositeSink.Branch branch : ((CompositeSink) sink).getBranches()) {
+                    this.register("io.auklet:type=Sink,name=" + ObjectName.quote(branch.getName()), new SinkView(branch.getSink(), branch));
+                }
+            }
+        }
+    }
+
+    /** <p>Unregisters all MBeans registered by this object.</p> */
+    public void shutdown() {
+        synchronized (this.lock) {
+            for (ObjectName name : this.registered) {
+                try {
+                    ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+                } catch (JMException | SecurityException e) {
+                    LOGGER.debug("Could not unregister MBean {}.", name, e);
+                }
+            }
+            this.registered.clear();
+        }
+    }
+
+    /**
+     * <p>Registers the given MBean, replacing any MBean left registered under the same name by a
+     * previous instance of the agent.</p>
+     *
+     * @param name the object name.
+     * @param mbean the MBean.
+     */
+    @GuardedBy("lock") private void register(@NonNull String name, @NonNull Object mbean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(name);
+            if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+            server.registerMBean(mbean, objectName);
+            this.registered.add(objectName);
+        } catch (JMException e) {
+            LOGGER.warn("Could not register MBean {}.", name, e);
+        } catch (SecurityException e) {
+            if (Auklet.LOUD_SECURITY_EXCEPTIONS) LOGGER.warn("Could not register MBean {}.", name, e);
+        }
+    }
+
+    /** <p>The {@code io.auklet:type=Agent} MBean.</p> */
+    @ThreadSafe
+    private static final class AgentView implements AgentMXBean {
+
+        private final Auklet agent;
+        private final PipelineStats pipeline;
+        private final EventQueue queue;
+        private final AukletDaemonExecutor.TaskStats tasks;
+
+        private AgentView(@NonNull Auklet agent) {
+            this.agent = agent;
+            this.pipeline = agent.getPipelineStats();
+            this.queue = agent.getEventQueue();
+            this.tasks = agent.getTaskStats();
+        }
+
+        @Override public String getVersion() { return Auklet.VERSION; }
+        @Override public int getEventQueueSize() { return this.queue.size(); }
+        @Override public int getEventQueueCapacity() { return this.queue.getCapacity(); }
+        @Override public String getEventQueueOverflowPolicy() { return this.queue.getOverflowPolicy().name(); }
+        @Override public long getEventsDroppedQueueFull() { return this.queue.getDroppedCount(); }
+        @Override public long getEventsReceived() { return this.pipeline.getEventsReceived(); }
+        @Override public long getEventsSent() { return this.pipeline.getEventsSent(); }
+        @Override public long getEventsRateLimited() { return this.agent.getRateLimiter().getRateLimitedCount(); }
+        @Override public long getEventsSampledOut() { return this.agent.getRateLimiter().getSampledOutCount(); }
+        @Override public long getEventsOverDataLimit() { return this.pipeline.getEventsOverDataLimit(); }
+        @Override public long getEventsDropped() { return this.pipeline.getEventsDropped(); }
+        @Override public long getEventsFailed() { return this.pipeline.getEventsFailed(); }
+        @Override public long getDataUsageBytes() { return this.agent.getUsageMonitor().getBytesSent(); }
+        @Override public long getDataUsageLimitBytes() { return this.agent.getUsageMonitor().getUsageConfig().getCellularDataLimit(); }
+        @Override public double getDataBudgetPacing() { return this.agent.getUsageMonitor().getBudgetPacing(); }
+        @Override public long getNetworkBytesOut() { return TrafficCounter.getOutboundBytes(); }
+        @Override public long getNetworkBytesIn() { return TrafficCounter.getInboundBytes(); }
+        @Override public boolean isDegraded() { return this.agent.getLoadGovernor().isDegraded(); }
+        @Override public double getCpuPressure() { return this.agent.getLoadGovernor().getPressure(); }
+        @Override public long getDegradedTransitions() { return this.agent.getLoadGovernor().getTransitionCount(); }
+        @Override public long getDegradedMillis() { return this.agent.getLoadGovernor().getDegradedMillis(); }
+        @Override public long getTasksRun() { return this.tasks.getTasksRun(); }
+        @Override public int getTasksPending() { return this.tasks.getTasksPending(); }
+        @Override public long getTaskDelayMeanMicros() { return mean(this.tasks.getTotalDelayNanos(), this.tasks.getTasksRun()); }
+        @Override public long getTaskDelayMaxMicros() { return this.tasks.getMaxDelayNanos() / 1000L; }
+        @Override public long getTaskRunMeanMicros() { return mean(this.tasks.getTotalRunNanos(), this.tasks.getTasksRun()); }
+        @Override public long getTaskRunMaxMicros() { return this.tasks.getMaxRunNanos() / 1000L; }
+        @Override public void resetTaskMaxima() { this.tasks.resetMaxima(); }
+
+        private static long mean(long totalNanos, long count) {
+            return count == 0L ? 0L : totalNanos / count / 1000L;
+        }
+
+    }
+
+    /** <p>The {@code io.auklet:type=Sink} MBean.</p> */
+    @ThreadSafe
+    private static final class SinkView implements SinkMXBean {
+
+        private final Sink sink;
+        private final SinkStats stats;
+        private final CompositeSink.Branch branch;
+
+        private SinkView(@NonNull Sink sink, @Nullable CompositeSink.Branch branch) {
+            this.sink = sink;
+            this.stats = sink.getStats();
+            this.branch = branch;
+        }
+
+        @Override public String getSinkType() { return this.sink.getClass().getName(); }
+        @Override public boolean isConnected() { return this.branch == null ? this.sink.isConnected() : this.branch.isConnected(); }
+        @Override public long getMessagesWritten() { return this.stats.getMessagesWritten(); }
+        @Override public long getBytesWritten() { return this.stats.getBytesWritten(); }
+        @Override public long getMessagesOverDataLimit() { return this.stats.getMessagesOverDataLimit(); }
+        @Override public long getMessagesDropped() { return this.stats.getMessagesDropped(); }
+        @Override public long getWriteFailures() { return this.stats.getWriteFailures(); }
+        @Override public long getLastWriteTime() { return this.stats.getLastWriteTime(); }
+        @Override public int getQueueSize() { return this.branch == null ? 0 : this.branch.getQueueSize(); }
+        @Override public long getQueueDropped() { return this.branch == null ? 0L : this.branch.getDroppedCount(); }
+
+    }
+
+}
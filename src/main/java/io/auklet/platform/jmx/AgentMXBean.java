@@ -0,0 +1,93 @@
+package io.auklet.platform.jmx;
+
+/**
+ * <p>Management interface of the {@code io.auklet:type=Agent} MBean. All counters are cumulative since
+ * the agent started; durations are in microseconds.</p>
+ */
+public interface AgentMXBean {
+
+    /** @return the agent version. */
+    String getVersion();
+
+    /** @return the number of events waiting to be sent to the data sink. */
+    int getEventQueueSize();
+
+    /** @return the maximum number of events that may wait to be sent. */
+    int getEventQueueCapacity();
+
+    /** @return the event queue overflow policy. */
+    String getEventQueueOverflowPolicy();
+
+    /** @return the number of events dropped because the event queue was full. */
+    long getEventsDroppedQueueFull();
+
+    /** @return the number of events submitted to the data sink. */
+    long getEventsReceived();
+
+    /** @return the number of events written to the data sink. */
+    long getEventsSent();
+
+    /** @return the number of events dropped by rate limiting. */
+    long getEventsRateLimited();
+
+    /** @return the number of events dropped by adaptive sampling. */
+    long getEventsSampledOut();
+
+    /** @return the number of events dropped because of the data usage limit. */
+    long getEventsOverDataLimit();
+
+    /** @return the number of events dropped because the data sink could not accept them in time. */
+    long getEventsDropped();
+
+    /** @return the number of events that could not be assembled or written. */
+    long getEventsFailed();
+
+    /** @return the number of bytes counted against the data usage limit in the current billing cycle. */
+    long getDataUsageBytes();
+
+    /** @return the data usage limit in bytes, or {@code 0} if there is none. */
+    long getDataUsageLimitBytes();
+
+    /** @return the remaining data budget relative to the remaining billing cycle; see the agent docs. */
+    double getDataBudgetPacing();
+
+    /** @return the number of bytes sent over the network by the agent, including protocol overhead. */
+    long getNetworkBytesOut();
+
+    /** @return the number of bytes received over the network by the agent, including protocol overhead. */
+    long getNetworkBytesIn();
+
+    /** @return whether the agent is degraded due to CPU pressure. */
+    boolean isDegraded();
+
+    /** @return the CPU pressure percentage observed by the load governor in its latest sample. */
+    double getCpuPressure();
+
+    /** @return the number of times the agent has entered or left degraded mode. */
+    long getDegradedTransitions();
+
+    /** @return the total time the agent has spent in degraded mode, in milliseconds. */
+    long getDegradedMillis();
+
+    /** @return the number of agent tasks that have finished running. */
+    long getTasksRun();
+
+    /** @return the number of agent tasks waiting to run, including repeating tasks. */
+    int getTasksPending();
+
+    /** @return the average time between when agent tasks were due and when they started. */
+    long getTaskDelayMeanMicros();
+
+    /** @return the longest time between when an agent task was due and when it started. */
+    long getTaskDelayMaxMicros();
+
+    /** @return the average run time of agent tasks. */
+    long getTaskRunMeanMicros();
+
+    /** @return the longest run time of any agent task. */
+    long getTaskRunMaxMicros();
+
+    /** <p>Resets the maximum task delay and run time.</p> */
+    void resetTaskMaxima();
+
+}
@@ -0,0 +1,39 @@
+package io.auklet.platform.jmx;
+
+/**
+ * <p>Management interface of the {@code io.auklet:type=Sink,name=...} MBeans. All counters are
+ * cumulative since the sink was created.</p>
+ */
+public interface SinkMXBean {
+
+    /** @return the class name of the data sink. */
+    String getSinkType();
+
+    /** @return whether the sink is connected to its underlying output (e.g. the MQTT broker). */
+    boolean isConnected();
+
+    /** @return the number of messages (events and telemetry) written. */
+    long getMessagesWritten();
+
+    /** @return the number of payload bytes written. */
+    long getBytesWritten();
+
+    /** @return the number of messages not written because of the data usage limit. */
+    long getMessagesOverDataLimit();
+
+    /** @return the number of messages dropped because the sink could not accept them in time. */
+    long getMessagesDropped();
+
+    /** @return the number of messages that could not be written due to an error. */
+    long getWriteFailures();
+
+    /** @return the time at which a message was last written, in milliseconds since the epoch, or {@code 0}. */
+    long getLastWriteTime();
+
+    /** @return the number of messages waiting to be written, if the sink is a branch of a composite sink, or {@code 0}. */
+    int getQueueSize();
+
+    /** @return the number of messages dropped because the sink's queue was full, if the sink is a branch of a composite sink, or {@code 0}. */
+    long getQueueDropped();
+
+}
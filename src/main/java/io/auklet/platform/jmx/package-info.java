@@ -0,0 +1,2 @@
+/** <p>JMX MBeans that expose the health of the Auklet agent itself (Java SE only).</p> */
+package io.auklet.platform.jmx;
@@ -0,0 +1,502 @@
+package io.auklet.platform.metrics;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.auklet.misc.OSMX;
+import io.auklet.util.Util;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>This class computes CPU and memory usage for the Linux control group (cgroup) in which the JVM is
+ * running, so that metrics reported from inside a container describe the container and not the host.
+ * Both cgroup v1 and cgroup v2 hierarchies are supported.</p>
+ *
+ * <ul>
+ *     <li>CPU usage is the CPU time consumed over the last sampling interval, as a percentage of the
+ *     CPU quota ({@code cpu.max} or {@code cpu.cfs_quota_us}), or of the number of available
+ *     processors if there is no quota.</li>
+ *     <li>CPU throttling is the percentage of CFS scheduler periods in the last sampling interval in
+ *     which the cgroup was throttled because it had used up its quota.</li>
+ *     <li>Memory usage is the working set (usage minus inactive page cache) as a percentage of the
+ *     memory limit ({@code memory.max} or {@code memory.limit_in_bytes}), or of the host's physical
+ *     memory if there is no limit.</li>
+ * </ul>
+ *
+ * <p>The cgroup directory is the one that the JVM process belongs to, per {@code /proc/self/cgroup}, in
+ * the cgroup filesystem that is mounted per {@code /proc/self/mountinfo}. On cgroup v1, each controller
+ * has its own mount and its own directory. If the process's cgroup is not visible under the mount (as
+ * when the mount is the root of a cgroup namespace), the mount point itself is used.</p>
+ *
+ * <p>The cgroup files are sampled periodically by the task returned from {@link #calculateUsage()}.
+ * To keep sampling cheap, each file is kept open and is parsed in place from a reusable buffer; no
+ * objects are allocated per sample. Readers of the computed values only perform a volatile read.</p>
+ */
+@ThreadSafe
+public final class CgroupMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CgroupMetrics.class);
+    private static final String PROC_SELF_CGROUP = "/proc/self/cgroup";
+    private static final String PROC_SELF_MOUNTINFO = "/proc/self/mountinfo";
+    // The key of the cgroup v2 hierarchy in the map returned by findCgroupDirs().
+    private static final String UNIFIED = "";
+    private static final List<String> V1_CONTROLLERS = Arrays.asList("cpu", "cpuacct", "memory");
+    private static final long NOT_FOUND = -1L;
+    private static final long UNLIMITED = Long.MAX_VALUE;
+    // cgroup v1 reports "no limit" as a page-aligned LONG_MAX; anything this large is not a real limit.
+    private static final long V1_UNLIMITED_THRESHOLD = 1L << 60;
+
+    private final boolean v2;
+    private final CgroupFile cpuUsageFile;
+    private final CgroupFile cpuStatFile;
+    private final CgroupFile cpuQuotaFile;
+    private final CgroupFile cpuPeriodFile;
+    private final CgroupFile memoryUsageFile;
+    private final CgroupFile memoryLimitFile;
+    private final CgroupFile memoryStatFile;
+    // The following fields are only accessed by the sampling task, which never runs concurrently
+    // with itself.
+    private final byte[] buffer = new byte[8192];
+    private int length = 0;
+    private long lastSampleNanos = 0L;
+    private long lastCpuNanos = NOT_FOUND;
+    private long lastPeriods = NOT_FOUND;
+    private long lastThrottled = NOT_FOUND;
+
+    private volatile double cpuUsage = -1d;
+    private volatile double cpuThrottling = 0d;
+    private volatile double memoryUsage = -1d;
+
+    /** <p>Constructor.</p> */
+    public CgroupMetrics() {
+        this("");
+    }
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param fsRoot the directory to which {@code /proc} and the cgroup mount points are relative; the
+     * empty string for the real filesystem.
+     */
+    /*package*/ CgroupMetrics(@NonNull String fsRoot) {
+        Map<String, String> dirs = findCgroupDirs(Util.removeTrailingSlash(fsRoot));
+        // On hybrid systems, the controllers are in the v1 hierarchy.
+        this.v2 = dirs.containsKey(UNIFIED) && dirs.size() == 1;
+        if (this.v2) {
+            String base = dirs.get(UNIFIED);
+            this.cpuUsageFile = null;
+            this.cpuStatFile = CgroupFile.of(base + "/cpu.stat");
+            this.cpuQuotaFile = CgroupFile.of(base + "/cpu.max");
+            this.cpuPeriodFile = null;
+            this.memoryUsageFile = CgroupFile.of(base + "/memory.current");
+            this.memoryLimitFile = CgroupFile.of(base + "/memory.max");
+            this.memoryStatFile = CgroupFile.of(base + "/memory.stat");
+        } else {
+            String cpu = dirs.get("cpu");
+            String cpuacct = dirs.get("cpuacct");
+            String memory = dirs.get("memory");
+            this.cpuUsageFile = cpuacct == null ? null : CgroupFile.of(cpuacct + "/cpuacct.usage");
+            this.cpuStatFile = cpu == null ? null : CgroupFile.of(cpu + "/cpu.stat");
+            this.cpuQuotaFile = cpu == null ? null : CgroupFile.of(cpu + "/cpu.cfs_quota_us");
+            this.cpuPeriodFile = cpu == null ? null : CgroupFile.of(cpu + "/cpu.cfs_period_us");
+            this.memoryUsageFile = memory == null ? null : CgroupFile.of(memory + "/memory.usage_in_bytes");
+            this.memoryLimitFile = memory == null ? null : CgroupFile.of(memory + "/memory.limit_in_bytes");
+            this.memoryStatFile = memory == null ? null : CgroupFile.of(memory + "/memory.stat");
+        }
+    }
+
+    /**
+     * <p>Returns a runnable task that samples the cgroup files and updates the CPU and memory usage
+     * values.</p>
+     *
+     * @return {@code null} if the JVM is not running in a cgroup that this class can read, in which
+     * case no background task needs to be executed.
+     */
+    @CheckForNull public Runnable calculateUsage() {
+        if (!this.isAvailable()) return null;
+        LOGGER.debug("Reading container metrics from cgroup v{}.", this.v2 ? 2 : 1);
+        return new Runnable() {
+            @Override public void run() {
+                sample();
+            }
+        };
+    }
+
+    /**
+     * <p>Determines whether or not cgroup metrics are available on this system.</p>
+     *
+     * @return {@code true} if at least the CPU or the memory usage can be read.
+     */
+    public boolean isAvailable() {
+        boolean cpu = this.v2 ? this.cpuStatFile != null : this.cpuUsageFile != null;
+        return cpu || this.memoryUsageFile != null;
+    }
+
+    /**
+     * <p>Returns the CPU usage of this cgroup, relative to its CPU quota.</p>
+     *
+     * @return a value between 0 and 100, or a negative value if this metric has not been sampled.
+     */
+    public double getCpuUsage() {
+        return this.cpuUsage;
+    }
+
+    /**
+     * <p>Returns the percentage of CFS scheduler periods in which this cgroup was throttled.</p>
+     *
+     * @return a value between 0 and 100, which is zero if this cgroup has no CPU quota.
+     */
+    public double getCpuThrottling() {
+        return this.cpuThrottling;
+    }
+
+    /**
+     * <p>Returns the memory usage of this cgroup, relative to its memory limit.</p>
+     *
+     * @return a value between 0 and 100, or a negative value if this metric has not been sampled.
+     */
+    public double getMemoryUsage() {
+        return this.memoryUsage;
+    }
+
+    /** <p>Reads the cgroup files and updates the CPU and memory usage values.</p> */
+    private void sample() {
+        long now = System.nanoTime();
+        this.sampleCpu(now);
+        this.sampleMemory();
+        this.lastSampleNanos = now;
+    }
+
+    /**
+     * <p>Updates the CPU usage and throttling values.</p>
+     *
+     * @param now the time of this sample, per {@link System#nanoTime()}.
+     */
+    private void sampleCpu(long now) {
+        long cpuNanos;
+        long periods = NOT_FOUND;
+        long throttled = NOT_FOUND;
+        if (this.read(this.cpuStatFile)) {
+            periods = this.findKey("nr_periods");
+            throttled = this.findKey("nr_throttled");
+            cpuNanos = this.v2 ? this.findKey("usage_usec") : NOT_FOUND;
+            if (cpuNanos != NOT_FOUND) cpuNanos *= 1000L;
+        } else {
+            cpuNanos = NOT_FOUND;
+        }
+        if (!this.v2 && this.read(this.cpuUsageFile)) cpuNanos = this.parseLong(0);
+        double cpus = this.cpuLimit();
+        if (this.lastSampleNanos != 0L && now > this.lastSampleNanos) {
+            long elapsed = now - this.lastSampleNanos;
+            if (cpuNanos != NOT_FOUND && this.lastCpuNanos != NOT_FOUND && cpuNanos >= this.lastCpuNanos) {
+                this.cpuUsage = clamp(100d * (cpuNanos - this.lastCpuNanos) / (elapsed * cpus));
+            }
+            if (periods > this.lastPeriods && this.lastPeriods != NOT_FOUND && throttled >= this.lastThrottled) {
+                this.cpuThrottling = clamp(100d * (throttled - this.lastThrottled) / (periods - this.lastPeriods));
+            } else if (periods == this.lastPeriods) {
+                this.cpuThrottling = 0d;
+            }
+        }
+        this.lastCpuNanos = cpuNanos;
+        this.lastPeriods = periods;
+        this.lastThrottled = throttled;
+    }
+
+    /**
+     * <p>Returns the number of CPUs this cgroup may use, which is fractional if the CPU quota is not a
+     * multiple of the CFS period.</p>
+     *
+     * @return a positive value.
+     */
+    private double cpuLimit() {
+        long quota = UNLIMITED;
+        long period = NOT_FOUND;
+        if (this.v2) {
+            // Format: "$MAX $PERIOD", where $MAX may be "max".
+            if (this.read(this.cpuQuotaFile)) {
+                quota = this.parseLong(0);
+                period = this.parseLong(this.nextToken(0));
+            }
+        } else if (this.read(this.cpuQuotaFile)) {
+            quota = this.parseLong(0);
+            if (this.read(this.cpuPeriodFile)) period = this.parseLong(0);
+        }
+        if (quota > 0 && quota != UNLIMITED && period > 0) return (double) quota / period;
+        return Math.max(1, OSMX.BEAN.getAvailableProcessors());
+    }
+
+    /** <p>Updates the memory usage value.</p> */
+    private void sampleMemory() {
+        if (!this.read(this.memoryUsageFile)) return;
+        long usage = this.parseLong(0);
+        if (usage < 0) return;
+        if (this.read(this.memoryStatFile)) {
+            long inactive = this.findKey(this.v2 ? "inactive_file" : "total_inactive_file");
+            if (inactive > 0 && inactive < usage) usage -= inactive;
+        }
+        long limit = this.read(this.memoryLimitFile) ? this.parseLong(0) : UNLIMITED;
+        if (limit <= 0 || limit >= V1_UNLIMITED_THRESHOLD) limit = OSMX.BEAN.getTotalPhysicalMemorySize();
+        if (limit > 0) this.memoryUsage = clamp(100d * usage / limit);
+    }
+
+    /**
+     * <p>Reads the given file into the buffer.</p>
+     *
+     * @param file the file to read, possibly {@code null}.
+     * @return {@code false} if the file is {@code null} or cannot be read.
+     */
+    private boolean read(@CheckForNull CgroupFile file) {
+        if (file == null) return false;
+        try {
+            this.length = file.read(this.buffer);
+            return true;
+        } catch (IOException | SecurityException e) {
+            LOGGER.warn("Unable to read {}", file.path, e);
+            file.close();
+            return false;
+        }
+    }
+
+    /**
+     * <p>Finds the value of the given key in the buffer, which holds lines of the form
+     * {@code key value}.</p>
+     *
+     * @param key the key to find.
+     * @return {@link #NOT_FOUND} if the key is not present.
+     */
+    private long findKey(@NonNull String key) {
+        int keyLength = key.length();
+        int pos = 0;
+        while (pos < this.length) {
+            boolean matches = pos + keyLength < this.length && this.buffer[pos + keyLength] == ' ';
+            for (int i = 0; i < keyLength && matches; i++) {
+                matches = this.buffer[pos + i] == key.charAt(i);
+            }
+            if (matches) return this.parseLong(pos + keyLength + 1);
+            while (pos < this.length && this.buffer[pos] != '\n') pos++;
+            pos++;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * <p>Parses the non-negative integer, or the word {@code max}, at the given offset.</p>
+     *
+     * @param start the offset at which to start parsing.
+     * @return {@link #UNLIMITED} if the value is {@code max}, or {@link #NOT_FOUND} if there is no
+     * number at that offset. A value of {@code -1} (which cgroup v1 uses for "no limit") is also
+     * returned as {@link #NOT_FOUND}.
+     */
+    private long parseLong(int start) {
+        int pos = start;
+        while (pos < this.length && this.buffer[pos] == ' ') pos++;
+        if (pos + 2 < this.length && this.buffer[pos] == 'm' && this.buffer[pos + 1] == 'a' && this.buffer[pos + 2] == 'x') return UNLIMITED;
+        if (pos == this.length || this.buffer[pos] < '0' || this.buffer[pos] > '9') return NOT_FOUND;
+        long value = 0L;
+        while (pos < this.length && this.buffer[pos] >= '0' && this.buffer[pos] <= '9') {
+            value = value * 10 + (this.buffer[pos++] - '0');
+        }
+        return value;
+    }
+
+    /**
+     * <p>Returns the offset of the token following the one at the given offset.</p>
+     *
+     * @param start the offset of the current token.
+     * @return never greater than the length of the valid data in the buffer.
+     */
+    private int nextToken(int start) {
+        int pos = start;
+        while (pos < this.length && this.buffer[pos] != ' ' && this.buffer[pos] != '\n') pos++;
+        while (pos < this.length && this.buffer[pos] == ' ') pos++;
+        return pos;
+    }
+
+    /**
+     * <p>Limits the given percentage to between 0 and 100.</p>
+     *
+     * @param percent the percentage.
+     * @return the clamped percentage.
+     */
+    private static double clamp(double percent) {
+        return Math.max(0d, Math.min(100d, percent));
+    }
+
+    /**
+     * <p>Returns the cgroup directories of the JVM process.</p>
+     *
+     * @param fsRoot the directory to which {@code /proc} and the cgroup mount points are relative.
+     * @return the directory of each cgroup v1 controller that this class reads, keyed by controller
+     * name, and the cgroup v2 directory keyed by {@link #UNIFIED}. Never {@code null}; empty if the
+     * process's cgroups cannot be determined.
+     */
+    @NonNull private static Map<String, String> findCgroupDirs(@NonNull String fsRoot) {
+        Map<String, String> dirs = new HashMap<>();
+        // Controller (or UNIFIED) -> the process's cgroup path in that hierarchy.
+        Map<String, String> paths = new HashMap<>();
+        // Format: "$ID:$CONTROLLERS:$PATH", where $CONTROLLERS is empty for cgroup v2.
+        for (String line : readLines(fsRoot + PROC_SELF_CGROUP)) {
+            String[] fields = line.split(":", 3);
+            if (fields.length < 3) continue;
+            if (fields[1].isEmpty()) paths.put(UNIFIED, fields[2]);
+            for (String controller : fields[1].split(",")) {
+                if (V1_CONTROLLERS.contains(controller)) paths.put(controller, fields[2]);
+            }
+        }
+        if (paths.isEmpty()) return dirs;
+        // Format: "$ID $PARENT $DEV $ROOT $MOUNT_POINT $OPTIONS [$OPTIONAL...] - $TYPE $SOURCE $SUPER_OPTIONS".
+        for (String line : readLines(fsRoot + PROC_SELF_MOUNTINFO)) {
+            String[] fields = line.split(" ");
+            int separator = Arrays.asList(fields).indexOf("-");
+            if (separator < 5 || fields.length < separator + 4) continue;
+            String type = fields[separator + 1];
+            String root = unescape(fields[3]);
+            String mountPoint = fsRoot + unescape(fields[4]);
+            if ("cgroup2".equals(type)) {
+                String path = paths.get(UNIFIED);
+                if (path != null && !dirs.containsKey(UNIFIED)) dirs.put(UNIFIED, cgroupDir(root, mountPoint, path));
+            } else if ("cgroup".equals(type)) {
+                for (String option : fields[separator + 3].split(",")) {
+                    String path = paths.get(option);
+                    if (path != null && V1_CONTROLLERS.contains(option) && !dirs.containsKey(option)) dirs.put(option, cgroupDir(root, mountPoint, path));
+                }
+            }
+        }
+        return dirs;
+    }
+
+    /**
+     * <p>Returns the directory of a cgroup in a mounted cgroup filesystem.</p>
+     *
+     * @param root the cgroup at the root of the mount.
+     * @param mountPoint the mount point.
+     * @param path the cgroup.
+     * @return the mount point if the cgroup is not below the root of the mount, or if its directory
+     * does not exist.
+     */
+    @NonNull private static String cgroupDir(@NonNull String root, @NonNull String mountPoint, @NonNull String path) {
+        String base = Util.removeTrailingSlash(root);
+        if (!path.startsWith(base + '/') && !path.equals(base)) return mountPoint;
+        String dir = Util.removeTrailingSlash(mountPoint + path.substring(base.length()));
+        return exists(dir) ? dir : mountPoint;
+    }
+
+    /**
+     * <p>Decodes the octal escapes ({@code \040} for a space, etc.) used in {@code /proc/self/mountinfo}.</p>
+     *
+     * @param field the field to decode.
+     * @return never {@code null}.
+     */
+    @NonNull private static String unescape(@NonNull String field) {
+        if (field.indexOf('\\') < 0) return field;
+        StringBuilder decoded = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '\\' && i + 3 < field.length()) {
+                try {
+                    decoded.append((char) Integer.parseInt(field.substring(i + 1, i + 4), 8));
+                    i += 3;
+                    continue;
+                } catch (NumberFormatException e) {
+                    // Not an escape; keep the backslash.
+                }
+            }
+            decoded.append(c);
+        }
+        return decoded.toString();
+    }
+
+    /**
+     * <p>Reads the lines of the given file.</p>
+     *
+     * @param path the path to the file.
+     * @return never {@code null}; empty if the file cannot be read.
+     */
+    @NonNull private static List<String> readLines(@NonNull String path) {
+        List<String> lines = new ArrayList<>();
+        if (!exists(path)) return lines;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) lines.add(line);
+        } catch (IOException | SecurityException e) {
+            LOGGER.warn("Unable to read {}", path, e);
+        }
+        return lines;
+    }
+
+    /**
+     * <p>Determines whether or not the given file exists and is readable.</p>
+     *
+     * @param path the path to the file.
+     * @return {@code false} if the file cannot be read, including due to a security manager.
+     */
+    private static boolean exists(@NonNull String path) {
+        try {
+            return new File(path).canRead();
+        } catch (SecurityException e) {
+            return false;
+        }
+    }
+
+    /** <p>A cgroup file that is kept open between samples.</p> */
+    private static final class CgroupFile {
+
+        private final String path;
+        private RandomAccessFile file;
+
+        private CgroupFile(@NonNull String path) {
+            this.path = path;
+        }
+
+        /**
+         * <p>Returns a cgroup file for the given path.</p>
+         *
+         * @param path the path to the file.
+         * @return {@code null} if the file does not exist or is not readable.
+         */
+        @CheckForNull private static CgroupFile of(@NonNull String path) {
+            return exists(path) ? new CgroupFile(path) : null;
+        }
+
+        /**
+         * <p>Reads as much of the file as fits into the given buffer.</p>
+         *
+         * @param buffer the buffer to read into.
+         * @return the number of bytes read.
+         * @throws IOException if the file cannot be read.
+         */
+        private int read(@NonNull byte[] buffer) throws IOException {
+            if (this.file == null) this.file = new RandomAccessFile(this.path, "r");
+            this.file.seek(0L);
+            int total = 0;
+            while (total < buffer.length) {
+                int read = this.file.read(buffer, total, buffer.length - total);
+                if (read < 0) break;
+                total += read;
+            }
+            return total;
+        }
+
+        /** <p>Closes the file so that it is re-opened on the next sample.</p> */
+        private void close() {
+            Util.closeQuietly(this.file);
+            this.file = null;
+        }
+
+    }
+
+}
@@ -0,0 +1,308 @@
+package io.auklet.platform.metrics;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.auklet.misc.OSMX;
+import io.auklet.sink.Telemetry;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+import org.msgpack.core.MessagePacker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>This class collects process-level metrics about the JVM in which the agent is running: garbage
+ * collection counts and times, heap and metaspace pool usage, thread counts, process CPU load and file
+ * descriptor usage.</p>
+ *
+ * <p>Metrics are sampled periodically by the task returned from {@link #calculateJvmUsage()} into an
+ * immutable {@link Snapshot}, which can be attached to events or sent as telemetry. Each snapshot also
+ * records how long it took to collect, so that the overhead of this collector can be observed in
+ * production.</p>
+ *
+ * <p>Process CPU load is computed from the process CPU time consumed since the previous sample, rather
+ * than obtained from {@code OperatingSystemMXBean.getProcessCpuLoad()}, which on container-aware JVMs
+ * re-reads the container's cgroup files on every call and accounts for almost all of the cost of a
+ * sample.</p>
+ *
+ * <p>This class requires the {@code java.lang.management} API, which is not available on Android.</p>
+ */
+@ThreadSafe
+public final class JvmMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JvmMetrics.class);
+    private final List<GarbageCollectorMXBean> collectors;
+    private final List<MemoryPoolMXBean> pools;
+    private final ThreadMXBean threads;
+    // The following fields are only accessed by the sampling task, which never runs concurrently
+    // with itself.
+    private long lastCpuTime = -1L;
+    private long lastSampleNanos = 0L;
+    private volatile Snapshot snapshot = null;
+
+    /** <p>Constructor.</p> */
+    public JvmMetrics() {
+        this.collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        this.threads = ManagementFactory.getThreadMXBean();
+        this.pools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP || isClassMetadataPool(pool.getName())) this.pools.add(pool);
+        }
+    }
+
+    /**
+     * <p>Returns a runnable task that samples the JVM metrics and publishes a new snapshot.</p>
+     *
+     * @return never {@code null}.
+     */
+    @NonNull public Runnable calculateJvmUsage() {
+        return new Runnable() {
+            @Override public void run() {
+                try {
+                    snapshot = sample();
+                } catch (RuntimeException e) {
+                    // MXBeans may throw SecurityException or UnsupportedOperationException.
+                    LOGGER.warn("Unable to obtain JVM metrics", e);
+                }
+            }
+        };
+    }
+
+    /**
+     * <p>Returns the most recent snapshot of JVM metrics.</p>
+     *
+     * @return {@code null} if no sample has been taken yet.
+     */
+    @CheckForNull public Snapshot getSnapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * <p>Collects a new snapshot of JVM metrics.</p>
+     *
+     * @return never {@code null}.
+     */
+    @NonNull private Snapshot sample() {
+        long start = System.nanoTime();
+        int collectorCount = this.collectors.size();
+        String[] gcNames = new String[collectorCount];
+        long[] gcCounts = new long[collectorCount];
+        long[] gcTimes = new long[collectorCount];
+        for (int i = 0; i < collectorCount; i++) {
+            GarbageCollectorMXBean collector = this.collectors.get(i);
+            gcNames[i] = collector.getName();
+            gcCounts[i] = collector.getCollectionCount();
+            gcTimes[i] = collector.getCollectionTime();
+        }
+        int poolCount = this.pools.size();
+        String[] poolNames = new String[poolCount];
+        long[] poolUsed = new long[poolCount];
+        long[] poolCommitted = new long[poolCount];
+        long[] poolMax = new long[poolCount];
+        long heapUsed = 0L;
+        long heapCommitted = 0L;
+        for (int i = 0; i < poolCount; i++) {
+            MemoryPoolMXBean pool = this.pools.get(i);
+            poolNames[i] = pool.getName();
+            MemoryUsage usage = pool.getUsage();
+            // Invalid pools return null.
+            if (usage == null) continue;
+            poolUsed[i] = usage.getUsed();
+            poolCommitted[i] = usage.getCommitted();
+            poolMax[i] = usage.getMax();
+            if (pool.getType() == MemoryType.HEAP) {
+                heapUsed += usage.getUsed();
+                heapCommitted += usage.getCommitted();
+            }
+        }
+        long cpuTime = OSMX.BEAN.getProcessCpuTime();
+        double cpuLoad = -1d;
+        if (cpuTime >= 0L && this.lastCpuTime >= 0L && start > this.lastSampleNanos) {
+            double capacity = (double) (start - this.lastSampleNanos) * Math.max(1, OSMX.BEAN.getAvailableProcessors());
+            cpuLoad = Math.max(0d, Math.min(1d, (cpuTime - this.lastCpuTime) / capacity));
+        }
+        this.lastCpuTime = cpuTime;
+        this.lastSampleNanos = start;
+        return new Snapshot(gcNames, gcCounts, gcTimes, poolNames, poolUsed, poolCommitted, poolMax,
+                heapUsed, heapCommitted, Runtime.getRuntime().maxMemory(),
+                this.threads.getThreadCount(), this.threads.getDaemonThreadCount(), this.threads.getPeakThreadCount(),
+                cpuLoad, cpuTime,
+                OSMX.BEAN.getOpenFileDescriptorCount(), OSMX.BEAN.getMaxFileDescriptorCount(),
+                System.nanoTime() - start);
+    }
+
+    /**
+     * <p>Determines whether or not the named non-heap memory pool holds class metadata.</p>
+     *
+     * @param name the name of the memory pool.
+     * @return {@code true} for Metaspace, Compressed Class Space and PermGen pools.
+     */
+    private static boolean isClassMetadataPool(@NonNull String name) {
+        return name.contains("Metaspace") || name.contains("Class Space") || name.contains("Perm Gen");
+    }
+
+    /**
+     * <p>An immutable snapshot of JVM metrics.</p>
+     *
+     * <p>When packed, the snapshot is a compact MessagePack map. Garbage collectors are an array of
+     * {@code [name, count, timeMs]} arrays, and memory pools are an array of
+     * {@code [name, used, committed, max]} arrays; all memory sizes are in bytes. Values that cannot be
+     * obtained on this JVM are reported as {@code -1}.</p>
+     */
+    @Immutable
+    public static final class Snapshot implements Telemetry {
+
+        private final String[] gcNames;
+        private final long[] gcCounts;
+        private final long[] gcTimes;
+        private final String[] poolNames;
+        private final long[] poolUsed;
+        private final long[] poolCommitted;
+        private final long[] poolMax;
+        private final long heapUsed;
+        private final long heapCommitted;
+        private final long heapMax;
+        private final int threadCount;
+        private final int daemonThreadCount;
+        private final int peakThreadCount;
+        private final double processCpuLoad;
+        private final long processCpuTime;
+        private final long openFds;
+        private final long maxFds;
+        private final long collectionNanos;
+
+        private Snapshot(String[] gcNames, long[] gcCounts, long[] gcTimes, String[] poolNames, long[] poolUsed, // NOSONAR
+                         long[] poolCommitted, long[] poolMax, long heapUsed, long heapCommitted, long heapMax,
+                         int threadCount, int daemonThreadCount, int peakThreadCount, double processCpuLoad,
+                         long processCpuTime, long openFds, long maxFds, long collectionNanos) {
+            this.gcNames = gcNames;
+            this.gcCounts = gcCounts;
+            this.gcTimes = gcTimes;
+            this.poolNames = poolNames;
+            this.poolUsed = poolUsed;
+            this.poolCommitted = poolCommitted;
+            this.poolMax = poolMax;
+            this.heapUsed = heapUsed;
+            this.heapCommitted = heapCommitted;
+            this.heapMax = heapMax;
+            this.threadCount = threadCount;
+            this.daemonThreadCount = daemonThreadCount;
+            this.peakThreadCount = peakThreadCount;
+            this.processCpuLoad = processCpuLoad;
+            this.processCpuTime = processCpuTime;
+            this.openFds = openFds;
+            this.maxFds = maxFds;
+            this.collectionNanos = collectionNanos;
+        }
+
+        /**
+         * <p>Returns the total time spent in garbage collection across all collectors.</p>
+         *
+         * @return in milliseconds; never negative.
+         */
+        public long getGcTime() {
+            long total = 0L;
+            for (long time : this.gcTimes) {
+                if (time > 0) total += time;
+            }
+            return total;
+        }
+
+        /**
+         * <p>Returns the amount of heap memory in use.</p>
+         *
+         * @return in bytes; never negative.
+         */
+        public long getHeapUsed() {
+            return this.heapUsed;
+        }
+
+        /**
+         * <p>Returns the maximum amount of heap memory that the JVM will attempt to use.</p>
+         *
+         * @return in bytes, or {@link Long#MAX_VALUE} if there is no limit.
+         */
+        public long getHeapMax() {
+            return this.heapMax;
+        }
+
+        /**
+         * <p>Returns the number of live threads.</p>
+         *
+         * @return never negative.
+         */
+        public int getThreadCount() {
+            return this.threadCount;
+        }
+
+        /**
+         * <p>Returns the CPU usage of the JVM process since the previous snapshot, as a percentage of all
+         * available processors.</p>
+         *
+         * @return a value between 0 and 100, or a negative value if not available on this JVM or if this
+         * is the first snapshot.
+         */
+        public double getProcessCpuLoad() {
+            return this.processCpuLoad < 0 ? -1d : this.processCpuLoad * 100;
+        }
+
+        /**
+         * <p>Returns the number of open file descriptors.</p>
+         *
+         * @return a negative value if not available on this JVM.
+         */
+        public long getOpenFileDescriptorCount() {
+            return this.openFds;
+        }
+
+        /**
+         * <p>Returns how long it took to collect this snapshot.</p>
+         *
+         * @return in nanoseconds.
+         */
+        public long getCollectionNanos() {
+            return this.collectionNanos;
+        }
+
+        @NonNull @Override public String getTelemetryType() {
+            return "jvm";
+        }
+
+        @Override public void packTelemetry(@NonNull MessagePacker msgpack) throws IOException {
+            msgpack.packMapHeader(14);
+            msgpack.packString("gc").packArrayHeader(this.gcNames.length);
+            for (int i = 0; i < this.gcNames.length; i++) {
+                msgpack.packArrayHeader(3).packString(this.gcNames[i]).packLong(this.gcCounts[i]).packLong(this.gcTimes[i]);
+            }
+            msgpack.packString("pools").packArrayHeader(this.poolNames.length);
+            for (int i = 0; i < this.poolNames.length; i++) {
+                msgpack.packArrayHeader(4).packString(this.poolNames[i])
+                        .packLong(this.poolUsed[i]).packLong(this.poolCommitted[i]).packLong(this.poolMax[i]);
+            }
+            msgpack.packString("heapUsed").packLong(this.heapUsed)
+                    .packString("heapCommitted").packLong(this.heapCommitted)
+                    .packString("heapMax").packLong(this.heapMax == Long.MAX_VALUE ? -1L : this.heapMax)
+                    .packString("threads").packInt(this.threadCount)
+                    .packString("daemonThreads").packInt(this.daemonThreadCount)
+                    .packString("peakThreads").packInt(this.peakThreadCount)
+                    .packString("processCpuLoad").packDouble(this.getProcessCpuLoad())
+                    .packString("processCpuTime").packLong(this.processCpuTime)
+                    .packString("openFds").packLong(this.openFds)
+                    .packString("maxFds").packLong(this.maxFds)
+                    .packString("gcTime").packLong(this.getGcTime())
+                    .packString("collectionNanos").packLong(this.collectionNanos);
+        }
+
+    }
+
+}
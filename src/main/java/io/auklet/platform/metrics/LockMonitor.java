@@ -0,0 +1,382 @@
+package io.auklet.platform.metrics;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.auklet.Auklet;
+import io.auklet.AukletException;
+import io.auklet.core.HasAgent;
+import io.auklet.sink.Telemetry;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+import org.msgpack.core.MessagePacker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Periodically checks the JVM for deadlocked threads and contended locks.</p>
+ *
+ * <p>Each check takes a shallow (stackless) snapshot of all threads and looks for threads waiting on a
+ * lock held by another thread. Only if such threads exist does it ask the JVM to search for deadlocks,
+ * which is more expensive. When a deadlock is found, a single {@link DeadlockDetected} event is sent,
+ * carrying the stack of each involved thread and the owner of each lock; the same deadlock is not
+ * reported again while it persists.</p>
+ *
+ * <p>Contended locks are aggregated between telemetry emissions, and {@link #drain()} returns a report
+ * of the {@value #MAX_HOT_LOCKS} locks that had the most waiting threads. Where the JVM supports thread
+ * contention monitoring, the report also includes the time threads spent blocked. Contention monitoring
+ * is a JVM-wide setting; if this monitor enables it, {@link #shutdown()} disables it again.</p>
+ *
+ * <p>The check interval adapts to the application: it starts at {@value #MIN_INTERVAL_SECONDS} seconds
+ * and doubles after each check that finds no contention, up to the configured maximum, so that an idle
+ * JVM pays almost nothing. Any contention resets the interval to the minimum.</p>
+ *
+ * <p>This class requires the {@code java.lang.management} API, which is not available on Android.</p>
+ */
+@ThreadSafe
+public final class LockMonitor extends HasAgent {
+
+    /** <p>The maximum number of locks listed in each report.</p> */
+    public static final int MAX_HOT_LOCKS = 10;
+    /** <p>The maximum number of stack frames reported per deadlocked thread.</p> */
+    public static final int MAX_DEPTH = 32;
+    private static final int MIN_INTERVAL_SECONDS = 5;
+    private static final int MAX_TRACKED_LOCKS = 256;
+    private static final Logger LOGGER = LoggerFactory.getLogger(LockMonitor.class);
+    private final Object lock = new Object();
+    private final ThreadMXBean threads;
+    private final int maxIntervalSeconds;
+    @GuardedBy("lock") private final Map<String, LockStats> locks = new HashMap<>();
+    @GuardedBy("lock") private final Map<Long, Long> blockedTimes = new HashMap<>();
+    @GuardedBy("lock") private String lastDeadlock = null;
+    @GuardedBy("lock") private boolean contentionTimes = false;
+    @GuardedBy("lock") private boolean enabledContentionMonitoring = false;
+    @GuardedBy("lock") private int intervalSeconds = MIN_INTERVAL_SECONDS;
+    @GuardedBy("lock") private long periodStart = System.currentTimeMillis();
+    @GuardedBy("lock") private long checks = 0L;
+    @GuardedBy("lock") private long deadlocksFound = 0L;
+    @GuardedBy("lock") private ScheduledFuture<?> checkTask = null;
+    @GuardedBy("lock") private boolean stopped = false;
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param maxIntervalSeconds the maximum number of seconds between checks. If less than 1, the
+     * monitor is disabled.
+     */
+    public LockMonitor(int maxIntervalSeconds) {
+        this.threads = ManagementFactory.getThreadMXBean();
+        this.maxIntervalSeconds = Math.max(0, maxIntervalSeconds);
+    }
+
+    @Override public void start(@NonNull Auklet agent) throws AukletException {
+        this.setAgent(agent);
+        if (this.maxIntervalSeconds == 0) {
+            LOGGER.info("Lock monitor is disabled.");
+            return;
+        }
+        synchronized (this.lock) {
+            try {
+                if (this.threads.isThreadContentionMonitoringSupported()) {
+                    if (!this.threads.isThreadContentionMonitoringEnabled()) {
+                        this.threads.setThreadContentionMonitoringEnabled(true);
+                        this.enabledContentionMonitoring = true;
+                    }
+                    this.contentionTimes = true;
+                }
+            } catch (SecurityException | UnsupportedOperationException e) {
+                LOGGER.debug("Thread contention monitoring is not available; lock reports will not include blocked time.", e);
+            }
+            this.intervalSeconds = Math.min(MIN_INTERVAL_SECONDS, this.maxIntervalSeconds);
+            this.scheduleCheck();
+        }
+    }
+
+    /**
+     * <p>Stops checking for deadlocks and contention, and disables thread contention monitoring if this
+     * monitor enabled it.</p>
+     */
+    public void shutdown() {
+        synchronized (this.lock) {
+            this.stopped = true;
+            if (this.checkTask != null) this.checkTask.cancel(false);
+            if (!this.enabledContentionMonitoring) return;
+            this.enabledContentionMonitoring = false;
+            this.contentionTimes = false;
+            try {
+                this.threads.setThreadContentionMonitoringEnabled(false);
+            } catch (SecurityException | UnsupportedOperationException e) {
+                LOGGER.debug("Could not disable thread contention monitoring.", e);
+            }
+        }
+    }
+
+    /**
+     * <p>Returns the lock contention report aggregated since the previous call to this method, and starts
+     * a new one.</p>
+     *
+     * @return {@code null} if the monitor is disabled, or if no contention was observed.
+     */
+    @CheckForNull public Report drain() {
+        synchronized (this.lock) {
+            if (this.checks == 0L) return null;
+            if (this.locks.isEmpty() && this.deadlocksFound == 0L) {
+                // Nothing to report; don't spend uplink bandwidth on an empty report.
+                this.periodStart = System.currentTimeMillis();
+                this.checks = 0L;
+                return null;
+            }
+            List<Map.Entry<String, LockStats>> hottest = new ArrayList<>(this.locks.entrySet());
+            Collections.sort(hottest, new Comparator<Map.Entry<String, LockStats>>() {
+                @Override public int compare(Map.Entry<String, LockStats> a, Map.Entry<String, LockStats> b) {
+                    int byWaiters = Long.compare(b.getValue().waiters, a.getValue().waiters);
+                    return byWaiters != 0 ? byWaiters : Long.compare(b.getValue().blockedMillis, a.getValue().blockedMillis);
+                }
+            });
+            int count = Math.min(MAX_HOT_LOCKS, hottest.size());
+            String[] names = new String[count];
+            String[] owners = new String[count];
+            long[] waiters = new long[count];
+            long[] blockedMillis = new long[count];
+            for (int i = 0; i < count; i++) {
+                Map.Entry<String, LockStats> entry = hottest.get(i);
+                names[i] = entry.getKey();
+                owners[i] = entry.getValue().owner;
+                waiters[i] = entry.getValue().waiters;
+                blockedMillis[i] = this.contentionTimes ? entry.getValue().blockedMillis : -1L;
+            }
+            long now = System.currentTimeMillis();
+            Report report = new Report(now - this.periodStart, this.checks, this.deadlocksFound, names, owners, waiters, blockedMillis);
+            this.locks.clear();
+            this.periodStart = now;
+            this.checks = 0L;
+            this.deadlocksFound = 0L;
+            return report;
+        }
+    }
+
+    /** <p>Schedules the next check using the current interval.</p> */
+    @GuardedBy("lock") private void scheduleCheck() {
+        try {
+            this.checkTask = this.getAgent().scheduleOneShotTask(new Runnable() {
+                @Override public void run() {
+                    check();
+                }
+            }, this.intervalSeconds, TimeUnit.SECONDS);
+        } catch (AukletException e) {
+            LOGGER.warn("Could not schedule lock check; deadlocks will not be detected.", e);
+        }
+    }
+
+    /** <p>Checks for contention and deadlocks, then schedules the next check.</p> */
+    private void check() {
+        DeadlockDetected deadlock = null;
+        try {
+            synchronized (this.lock) {
+                if (this.stopped) return;
+                this.checks++;
+                boolean contended = this.recordContention();
+                this.intervalSeconds = contended ? Math.min(MIN_INTERVAL_SECONDS, this.maxIntervalSeconds)
+                        : Math.min(this.intervalSeconds * 2, this.maxIntervalSeconds);
+                if (contended) deadlock = this.findNewDeadlock();
+                else this.lastDeadlock = null;
+            }
+        } catch (RuntimeException e) {
+            // MXBeans may throw SecurityException or UnsupportedOperationException.
+            LOGGER.warn("Unable to check for deadlocks", e);
+        } finally {
+            synchronized (this.lock) {
+                if (!this.stopped) this.scheduleCheck();
+            }
+        }
+        if (deadlock != null) {
+            LOGGER.error("{}", deadlock.getMessage());
+            Map<String, String> tags = new LinkedHashMap<>();
+            deadlock.addTags(tags);
+            Auklet.send(deadlock, tags);
+        }
+    }
+
+    /**
+     * <p>Records every thread that is waiting on a lock held by another thread.</p>
+     *
+     * @return {@code true} if any such thread was found.
+     */
+    @GuardedBy("lock") private boolean recordContention() {
+        boolean contended = false;
+        Map<Long, Long> previousBlockedTimes = new HashMap<>(this.blockedTimes);
+        this.blockedTimes.clear();
+        for (ThreadInfo info : this.threads.getThreadInfo(this.threads.getAllThreadIds(), 0)) {
+            if (info == null) continue;
+            long blockedTime = this.contentionTimes ? info.getBlockedTime() : -1L;
+            if (blockedTime >= 0L) this.blockedTimes.put(info.getThreadId(), blockedTime);
+            if (info.getLockOwnerId() == -1L || info.getLockName() == null) continue;
+            contended = true;
+            LockStats stats = this.locks.get(info.getLockName());
+            if (stats == null) {
+                if (this.locks.size() >= MAX_TRACKED_LOCKS) continue;
+                stats = new LockStats();
+                this.locks.put(info.getLockName(), stats);
+            }
+            stats.waiters++;
+            stats.owner = info.getLockOwnerName();
+            // Blocked time accrued since the previous check is attributed to the lock being waited on now.
+            Long previous = previousBlockedTimes.get(info.getThreadId());
+            if (blockedTime >= 0L && previous != null) stats.blockedMillis += Math.max(0L, blockedTime - previous);
+        }
+        return contended;
+    }
+
+    /**
+     * <p>Searches for deadlocked threads, and remembers which deadlocks have been seen.</p>
+     *
+     * @return the event to send, or {@code null} if there is no deadlock that has not already been
+     * reported.
+     */
+    @GuardedBy("lock") @CheckForNull private DeadlockDetected findNewDeadlock() {
+        long[] ids = this.threads.isSynchronizerUsageSupported()
+                ? this.threads.findDeadlockedThreads()
+                : this.threads.findMonitorDeadlockedThreads();
+        if (ids == null) {
+            this.lastDeadlock = null;
+            return null;
+        }
+        Arrays.sort(ids);
+        String key = Arrays.toString(ids);
+        if (key.equals(this.lastDeadlock)) return null;
+        this.lastDeadlock = key;
+        this.deadlocksFound++;
+        List<ThreadInfo> infos = new ArrayList<>(ids.length);
+        for (ThreadInfo info : this.threads.getThreadInfo(ids, MAX_DEPTH)) {
+            if (info != null) infos.add(info);
+        }
+        return infos.isEmpty() ? null : new DeadlockDetected(infos);
+    }
+
+    /** <p>Contention observed on a single lock.</p> */
+    private static final class LockStats {
+
+        private long waiters = 0L;
+        private long blockedMillis = 0L;
+        private String owner = null;
+
+    }
+
+    /**
+     * <p>The event sent when a deadlock is found. Its stack trace is that of the first deadlocked thread;
+     * the name, state, awaited lock and lock owner of every deadlocked thread, and the stacks of the
+     * other threads, are attached as event tags.</p>
+     */
+    public static final class DeadlockDetected extends Throwable {
+
+        private static final long serialVersionUID = 1L;
+        private final transient Map<String, String> details;
+
+        private DeadlockDetected(@NonNull List<ThreadInfo> infos) {
+            super(describe(infos), null, false, true);
+            this.setStackTrace(infos.get(0).getStackTrace());
+            this.details = new LinkedHashMap<>();
+            for (int i = 0; i < infos.size(); i++) {
+                ThreadInfo info = infos.get(i);
+                this.details.put("deadlock.thread." + i, info.getThreadName() + " (" + info.getThreadState()
+                        + ") waiting on " + info.getLockName() + " held by " + info.getLockOwnerName());
+                if (i > 0) this.details.put("deadlock.stack." + i, formatStack(info.getStackTrace()));
+            }
+        }
+
+        /**
+         * <p>Adds the details of this deadlock to the given event tags.</p>
+         *
+         * @param tags the event tags. Never {@code null}.
+         */
+        private void addTags(@NonNull Map<String, String> tags) {
+            if (this.details != null) tags.putAll(this.details);
+        }
+
+        @NonNull private static String describe(@NonNull List<ThreadInfo> infos) {
+            StringBuilder message = new StringBuilder("Deadlock detected between ").append(infos.size()).append(" threads:");
+            for (ThreadInfo info : infos) {
+                message.append(" \"").append(info.getThreadName()).append("\" waits for \"")
+                        .append(info.getLockOwnerName()).append("\";");
+            }
+            message.setLength(message.length() - 1);
+            return message.toString();
+        }
+
+        @NonNull private static String formatStack(@NonNull StackTraceElement[] stack) {
+            StringBuilder formatted = new StringBuilder();
+            for (StackTraceElement frame : stack) {
+                if (formatted.length() > 0) formatted.append('\n');
+                formatted.append(frame);
+            }
+            return formatted.toString();
+        }
+
+    }
+
+    /**
+     * <p>A lock contention report.</p>
+     *
+     * <p>When packed, {@code locks} is an array of {@code [lockName, owner, waiters, blockedMillis]}
+     * arrays, hottest first, where {@code waiters} is the number of waiting threads observed across all
+     * checks in the period, {@code owner} is the most recently observed owner, and {@code blockedMillis}
+     * is -1 if thread contention monitoring is not available.</p>
+     */
+    @Immutable
+    public static final class Report implements Telemetry {
+
+        private final long periodMillis;
+        private final long checks;
+        private final long deadlocks;
+        private final String[] names;
+        private final String[] owners;
+        private final long[] waiters;
+        private final long[] blockedMillis;
+
+        private Report(long periodMillis, long checks, long deadlocks, @NonNull String[] names, @NonNull String[] owners,
+                       @NonNull long[] waiters, @NonNull long[] blockedMillis) {
+            this.periodMillis = periodMillis;
+            this.checks = checks;
+            this.deadlocks = deadlocks;
+            this.names = names;
+            this.owners = owners;
+            this.waiters = waiters;
+            this.blockedMillis = blockedMillis;
+        }
+
+        @NonNull @Override public String getTelemetryType() {
+            return "locks";
+        }
+
+        @Override public void packTelemetry(@NonNull MessagePacker msgpack) throws IOException {
+            msgpack.packMapHeader(4)
+                    .packString("period").packLong(this.periodMillis)
+                    .packString("checks").packLong(this.checks)
+                    .packString("deadlocks").packLong(this.deadlocks)
+                    .packString("locks").packArrayHeader(this.names.length);
+            for (int i = 0; i < this.names.length; i++) {
+                msgpack.packArrayHeader(4).packString(this.names[i]);
+                if (this.owners[i] == null) msgpack.packNil();
+                else msgpack.packString(this.owners[i]);
+                msgpack.packLong(this.waiters[i]).packLong(this.blockedMillis[i]);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,344 @@
+package io.auklet.platform.metrics;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.auklet.Auklet;
+import io.auklet.AukletException;
+import io.auklet.core.HasAgent;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>Warns when the JVM is heading toward an {@link OutOfMemoryError}, by sending an event when a
+ * long-lived heap pool (such as the old generation) is still above a configured occupancy right after
+ * garbage collection.</p>
+ *
+ * <p>Detection does not poll: collection usage and usage thresholds are registered on the heap pools
+ * that support them, and the JVM notifies this class when they are crossed. The notification listener
+ * only sets a flag and wakes the agent's daemon thread, which evaluates the pools. While a pool stays
+ * above the threshold, it is re-evaluated every {@value #RECHECK_SECONDS} seconds; warnings for each
+ * pool are sent at most once every {@value #REPEAT_MINUTES} minutes, and the number of warnings
+ * suppressed in between is reported with the next one.</p>
+ *
+ * <p>Each warning includes the pool's occupancy after GC, the rate and CPU share of garbage collection,
+ * and an estimate of the allocation rate based on young collections, all measured since the previous
+ * evaluation.</p>
+ *
+ * <p>Thresholds already set by the application or another tool are left untouched; the configured
+ * percentage is still applied when evaluating the pools.</p>
+ *
+ * <p>This class requires the {@code java.lang.management} API, which is not available on Android.</p>
+ */
+@ThreadSafe
+public final class MemoryMonitor extends HasAgent {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MemoryMonitor.class);
+    private static final long RECHECK_SECONDS = 60L;
+    private static final long REPEAT_MINUTES = 10L;
+    private final Object lock = new Object();
+    private final int thresholdPercent;
+    private final AtomicBoolean evaluationPending = new AtomicBoolean(false);
+    private final NotificationListener listener = new NotificationListener() {
+        @Override public void handleNotification(Notification notification, Object handback) {
+            String type = notification.getType();
+            if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(type)
+                    || MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(type)) {
+                scheduleEvaluation(0L);
+            }
+        }
+    };
+    @GuardedBy("lock") private final List<Pool> pools = new ArrayList<>();
+    @GuardedBy("lock") private List<GarbageCollectorMXBean> collectors = null;
+    @GuardedBy("lock") private NotificationEmitter emitter = null;
+    @GuardedBy("lock") private long lastEvaluation = 0L;
+    @GuardedBy("lock") private long lastGcCount = 0L;
+    @GuardedBy("lock") private long lastGcTime = 0L;
+    @GuardedBy("lock") private long lastYoungGcCount = 0L;
+    @GuardedBy("lock") private boolean stopped = false;
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param thresholdPercent the pool occupancy percentage, after GC, at or above which a warning is
+     * sent. If less than 1, the monitor is disabled.
+     */
+    public MemoryMonitor(int thresholdPercent) {
+        this.thresholdPercent = Math.min(100, Math.max(0, thresholdPercent));
+    }
+
+    @Override public void start(@NonNull Auklet agent) throws AukletException {
+        this.setAgent(agent);
+        if (this.thresholdPercent == 0) {
+            LOGGER.info("Memory monitor is disabled.");
+            return;
+        }
+        synchronized (this.lock) {
+            try {
+                this.collectors = ManagementFactory.getGarbageCollectorMXBeans();
+                for (MemoryPoolMXBean bean : ManagementFactory.getMemoryPoolMXBeans()) {
+                    // Only long-lived heap pools support usage thresholds.
+                    if (bean.getType() != MemoryType.HEAP || !bean.isUsageThresholdSupported()) continue;
+                    Pool pool = new Pool(bean);
+                    pool.arm(this.thresholdPercent);
+                    this.pools.add(pool);
+                }
+                if (this.pools.isEmpty()) {
+                    LOGGER.info("No memory pools support usage thresholds; memory monitor is disabled.");
+                    return;
+                }
+                this.emitter = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+                this.emitter.addNotificationListener(this.listener, null, null);
+                this.resetRates(System.currentTimeMillis());
+            } catch (SecurityException | UnsupportedOperationException | IllegalArgumentException | ClassCastException e) {
+                LOGGER.warn("Unable to register memory pool thresholds; memory warnings will not be sent.", e);
+                this.disarm();
+            }
+        }
+    }
+
+    /** <p>Unregisters the notification listener, and removes the thresholds set by this monitor.</p> */
+    public void shutdown() {
+        synchronized (this.lock) {
+            this.stopped = true;
+            this.disarm();
+        }
+    }
+
+    /** <p>Removes the listener and thresholds, if any.</p> */
+    @GuardedBy("lock") private void disarm() {
+        if (this.emitter != null) {
+            try {
+                this.emitter.removeNotificationListener(this.listener);
+            } catch (ListenerNotFoundException e) {
+                // Already removed.
+            }
+            this.emitter = null;
+        }
+        for (Pool pool : this.pools) pool.disarm();
+        this.pools.clear();
+    }
+
+    /**
+     * <p>Wakes the daemon thread to evaluate the pools, unless an evaluation is already pending.</p>
+     *
+     * @param delaySeconds the delay before evaluating.
+     */
+    private void scheduleEvaluation(long delaySeconds) {
+        if (!this.evaluationPending.compareAndSet(false, true)) return;
+        try {
+            this.getAgent().scheduleOneShotTask(new Runnable() {
+                @Override public void run() {
+                    evaluationPending.set(false);
+                    evaluate();
+                }
+            }, delaySeconds, TimeUnit.SECONDS);
+        } catch (AukletException | RuntimeException e) {
+            this.evaluationPending.set(false);
+            LOGGER.warn("Could not schedule memory pool evaluation.", e);
+        }
+    }
+
+    /** <p>Sends warnings for pools that are above the threshold after GC.</p> */
+    private void evaluate() {
+        List<MemoryThresholdExceeded> warnings = new ArrayList<>();
+        boolean above = false;
+        synchronized (this.lock) {
+            if (this.stopped) return;
+            long now = System.currentTimeMillis();
+            long elapsed = Math.max(1L, now - this.lastEvaluation);
+            long gcCount = 0L;
+            long gcTime = 0L;
+            long youngGcCount = 0L;
+            long edenBytes = 0L;
+            try {
+                for (GarbageCollectorMXBean collector : this.collectors) {
+                    long count = Math.max(0L, collector.getCollectionCount());
+                    gcCount += count;
+                    gcTime += Math.max(0L, collector.getCollectionTime());
+                    if (!this.managesTenuredPool(collector)) youngGcCount += count;
+                }
+                edenBytes = edenCommittedBytes();
+                for (Pool pool : this.pools) {
+                    MemoryUsage usage = pool.bean.getCollectionUsage();
+                    if (usage == null || usage.getMax() <= 0L) continue;
+                    double occupancy = 100d * usage.getUsed() / usage.getMax();
+                    if (occupancy < this.thresholdPercent) continue;
+                    above = true;
+                    if (now - pool.lastWarning < TimeUnit.MINUTES.toMillis(REPEAT_MINUTES)) {
+                        pool.suppressed++;
+                        continue;
+                    }
+                    double minutes = elapsed / 60000d;
+                    warnings.add(new MemoryThresholdExceeded(pool.bean.getName(), usage, occupancy, this.thresholdPercent,
+                            (gcCount - this.lastGcCount) / minutes,
+                            100d * (gcTime - this.lastGcTime) / elapsed,
+                            (long) ((youngGcCount - this.lastYoungGcCount) * edenBytes / (elapsed / 1000d)),
+                            pool.suppressed));
+                    pool.lastWarning = now;
+                    pool.suppressed = 0L;
+                }
+            } catch (RuntimeException e) {
+                // MXBeans may throw SecurityException or UnsupportedOperationException.
+                LOGGER.warn("Unable to evaluate memory pools", e);
+            }
+            this.lastEvaluation = now;
+            this.lastGcCount = gcCount;
+            this.lastGcTime = gcTime;
+            this.lastYoungGcCount = youngGcCount;
+        }
+        for (MemoryThresholdExceeded warning : warnings) {
+            LOGGER.warn("{}", warning.getMessage());
+            Auklet.send(warning, warning.getTags());
+        }
+        if (above) this.scheduleEvaluation(RECHECK_SECONDS);
+    }
+
+    /**
+     * <p>Sets the baseline for GC and allocation rates.</p>
+     *
+     * @param now the current time.
+     */
+    @GuardedBy("lock") private void resetRates(long now) {
+        this.lastEvaluation = now;
+        for (GarbageCollectorMXBean collector : this.collectors) {
+            long count = Math.max(0L, collector.getCollectionCount());
+            this.lastGcCount += count;
+            this.lastGcTime += Math.max(0L, collector.getCollectionTime());
+            if (!this.managesTenuredPool(collector)) this.lastYoungGcCount += count;
+        }
+    }
+
+    /**
+     * <p>Returns whether the given collector collects any of the monitored pools; collectors that do not
+     * are treated as young-generation collectors.</p>
+     *
+     * @param collector the collector. Never {@code null}.
+     * @return {@code true} if the collector collects a monitored pool.
+     */
+    @GuardedBy("lock") private boolean managesTenuredPool(@NonNull GarbageCollectorMXBean collector) {
+        List<String> managed = Arrays.asList(collector.getMemoryPoolNames());
+        for (Pool pool : this.pools) {
+            if (managed.contains(pool.bean.getName())) return true;
+        }
+        return false;
+    }
+
+    /**
+     * <p>Returns the committed size of the eden space, which approximates the bytes allocated between two
+     * young collections.</p>
+     *
+     * @return zero if there is no eden space.
+     */
+    private static long edenCommittedBytes() {
+        long bytes = 0L;
+        for (MemoryPoolMXBean bean : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (bean.getType() == MemoryType.HEAP && bean.getName().contains("Eden")) {
+                MemoryUsage usage = bean.getUsage();
+                if (usage != null) bytes += usage.getCommitted();
+            }
+        }
+        return bytes;
+    }
+
+    /** <p>A monitored memory pool.</p> */
+    private static final class Pool {
+
+        private final MemoryPoolMXBean bean;
+        private boolean ownsUsageThreshold = false;
+        private boolean ownsCollectionThreshold = false;
+        private long lastWarning = 0L;
+        private long suppressed = 0L;
+
+        private Pool(@NonNull MemoryPoolMXBean bean) {
+            this.bean = bean;
+        }
+
+        /**
+         * <p>Sets this pool's thresholds to the given percentage of its maximum size, unless already set.</p>
+         *
+         * @param thresholdPercent the threshold.
+         */
+        private void arm(int thresholdPercent) {
+            MemoryUsage usage = this.bean.getUsage();
+            if (usage == null || usage.getMax() <= 0L) return;
+            long max = usage.getMax();
+            long threshold = max / 100L * thresholdPercent;
+            if (this.bean.getUsageThreshold() == 0L) {
+                this.bean.setUsageThreshold(threshold);
+                this.ownsUsageThreshold = true;
+            }
+            if (this.bean.isCollectionUsageThresholdSupported() && this.bean.getCollectionUsageThreshold() == 0L) {
+                this.bean.setCollectionUsageThreshold(threshold);
+                this.ownsCollectionThreshold = true;
+            }
+        }
+
+        /** <p>Removes the thresholds set by {@link #arm(int)}.</p> */
+        private void disarm() {
+            try {
+                if (this.ownsUsageThreshold) this.bean.setUsageThreshold(0L);
+                if (this.ownsCollectionThreshold) this.bean.setCollectionUsageThreshold(0L);
+            } catch (SecurityException | UnsupportedOperationException | IllegalArgumentException e) {
+                LOGGER.debug("Could not remove memory pool threshold.", e);
+            }
+        }
+
+    }
+
+    /**
+     * <p>The event sent when a memory pool is above the configured occupancy after GC. It has no stack
+     * trace; the pool and GC statistics are attached as event tags.</p>
+     */
+    public static final class MemoryThresholdExceeded extends Throwable {
+
+        private static final long serialVersionUID = 1L;
+        private final transient Map<String, String> tags;
+
+        private MemoryThresholdExceeded(@NonNull String pool, @NonNull MemoryUsage usage, double occupancy, int threshold,
+                                        double gcPerMinute, double gcTimePercent, long allocationRate, long suppressed) {
+            super(String.format(Locale.ROOT, "Memory pool '%s' is %.0f%% full after garbage collection (threshold %d%%).",
+                    pool, occupancy, threshold), null, false, false);
+            this.tags = new LinkedHashMap<>();
+            this.tags.put("memory.pool", pool);
+            this.tags.put("memory.used", Long.toString(usage.getUsed()));
+            this.tags.put("memory.max", Long.toString(usage.getMax()));
+            this.tags.put("memory.occupancy", String.format(Locale.ROOT, "%.1f", occupancy));
+            this.tags.put("gc.perMinute", String.format(Locale.ROOT, "%.1f", gcPerMinute));
+            this.tags.put("gc.timePercent", String.format(Locale.ROOT, "%.1f", gcTimePercent));
+            this.tags.put("allocation.bytesPerSecond", Long.toString(allocationRate));
+            this.tags.put("memory.suppressedWarnings", Long.toString(suppressed));
+        }
+
+        /**
+         * <p>Returns the event tags.</p>
+         *
+         * @return possibly {@code null} if this object was deserialized.
+         */
+        @CheckForNull private Map<String, String> getTags() {
+            return this.tags;
+        }
+
+    }
+
+}
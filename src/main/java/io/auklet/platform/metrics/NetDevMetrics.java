@@ -0,0 +1,258 @@
+package io.auklet.platform.metrics;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import io.auklet.util.Util;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * <p>This class computes inbound/outbound network throughput from the Linux {@code /proc/net/dev}
+ * file, summed over all non-loopback interfaces.</p>
+ *
+ * <p>The file is sampled periodically by the task returned from {@link #calculateNetworkUsage()}. To
+ * keep sampling cheap, the file is kept open and is parsed in place from a reusable buffer; no objects
+ * are allocated per sample unless a new network interface appears. Readers of the computed rates only
+ * perform a volatile read.</p>
+ */
+@ThreadSafe
+public final class NetDevMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NetDevMetrics.class);
+    private static final String[] CANDIDATES = {"/proc/self/net/dev", "/proc/net/dev"};
+    private static final int MAX_INTERFACES = 64;
+    private static final int RX_BYTES_FIELD = 0;
+    private static final int TX_BYTES_FIELD = 8;
+
+    private final String path;
+    // The following fields are only accessed by the sampling task, which never runs concurrently
+    // with itself.
+    private RandomAccessFile file;
+    private byte[] buffer = new byte[4096];
+    private final byte[][] names = new byte[MAX_INTERFACES][];
+    private final long[] lastRx = new long[MAX_INTERFACES];
+    private final long[] lastTx = new long[MAX_INTERFACES];
+    private int interfaceCount = 0;
+    private long lastSampleNanos = 0L;
+    private long pendingRx;
+    private long pendingTx;
+
+    private volatile double inboundRate = 0d;
+    private volatile double outboundRate = 0d;
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param path the path of the {@code net/dev} file to read, or {@code null} to use the first
+     * readable default location.
+     */
+    public NetDevMetrics(@CheckForNull String path) {
+        this.path = path == null ? findDefault() : path;
+    }
+
+    /**
+     * <p>Returns a runnable task that samples the {@code net/dev} file and updates the inbound and
+     * outbound network rates.</p>
+     *
+     * @return {@code null} if no {@code net/dev} file is available on this system, in which case no
+     * background task needs to be executed.
+     */
+    @CheckForNull public Runnable calculateNetworkUsage() {
+        if (this.path == null) return null;
+        return new Runnable() {
+            @Override public void run() {
+                sample();
+            }
+        };
+    }
+
+    /**
+     * <p>Returns the number of bytes per second received by this host over the last sampling
+     * interval.</p>
+     *
+     * @return a non-negative value.
+     */
+    public double getInboundRate() {
+        return this.inboundRate;
+    }
+
+    /**
+     * <p>Returns the number of bytes per second sent by this host over the last sampling interval.</p>
+     *
+     * @return a non-negative value.
+     */
+    public double getOutboundRate() {
+        return this.outboundRate;
+    }
+
+    /** <p>Reads the {@code net/dev} file and updates the network rates.</p> */
+    private void sample() {
+        int length;
+        try {
+            if (this.file == null) this.file = new RandomAccessFile(this.path, "r");
+            length = this.readFully();
+        } catch (IOException | SecurityException e) {
+            LOGGER.warn("Unable to obtain network usage", e);
+            closeFile();
+            return;
+        }
+        long now = System.nanoTime();
+        this.pendingRx = 0L;
+        this.pendingTx = 0L;
+        // The first two lines are column headers.
+        int pos = this.skipLine(this.skipLine(0, length), length);
+        while (pos < length) {
+            pos = this.parseLine(pos, length);
+        }
+        if (this.lastSampleNanos != 0L) {
+            double seconds = (now - this.lastSampleNanos) / 1e9;
+            if (seconds > 0) {
+                this.inboundRate = this.pendingRx / seconds;
+                this.outboundRate = this.pendingTx / seconds;
+            }
+        }
+        this.lastSampleNanos = now;
+    }
+
+    /**
+     * <p>Reads the whole file into the buffer, growing it if needed.</p>
+     *
+     * @return the number of bytes read.
+     * @throws IOException if the file cannot be read.
+     */
+    private int readFully() throws IOException {
+        this.file.seek(0L);
+        int total = 0;
+        while (true) {
+            if (total == this.buffer.length) {
+                byte[] bigger = new byte[this.buffer.length * 2];
+                System.arraycopy(this.buffer, 0, bigger, 0, total);
+                this.buffer = bigger;
+            }
+            int read = this.file.read(this.buffer, total, this.buffer.length - total);
+            if (read < 0) return total;
+            total += read;
+        }
+    }
+
+    /**
+     * <p>Parses one interface line and accumulates its byte count deltas.</p>
+     *
+     * @param start the offset of the start of the line.
+     * @param end the end of the valid data in the buffer.
+     * @return the offset of the start of the next line.
+     */
+    private int parseLine(int start, int end) {
+        int pos = start;
+        while (pos < end && this.buffer[pos] == ' ') pos++;
+        int nameStart = pos;
+        while (pos < end && this.buffer[pos] != ':' && this.buffer[pos] != '\n') pos++;
+        if (pos >= end || this.buffer[pos] != ':') return this.skipLine(pos, end);
+        int nameEnd = pos++;
+        long rx = -1L;
+        long tx = -1L;
+        for (int field = 0; field <= TX_BYTES_FIELD && pos < end && this.buffer[pos] != '\n'; field++) {
+            while (pos < end && this.buffer[pos] == ' ') pos++;
+            long value = 0L;
+            while (pos < end && this.buffer[pos] >= '0' && this.buffer[pos] <= '9') {
+                value = value * 10 + (this.buffer[pos++] - '0');
+            }
+            if (field == RX_BYTES_FIELD) rx = value;
+            else if (field == TX_BYTES_FIELD) tx = value;
+        }
+        if (rx >= 0 && tx >= 0 && !this.isLoopback(nameStart, nameEnd)) {
+            int slot = this.slotFor(nameStart, nameEnd);
+            if (slot >= 0) {
+                // Counters reset when an interface is re-created, and may wrap on 32-bit kernels.
+                if (this.lastRx[slot] >= 0) {
+                    this.pendingRx += rx >= this.lastRx[slot] ? rx - this.lastRx[slot] : rx;
+                    this.pendingTx += tx >= this.lastTx[slot] ? tx - this.lastTx[slot] : tx;
+                }
+                this.lastRx[slot] = rx;
+                this.lastTx[slot] = tx;
+            }
+        }
+        return this.skipLine(pos, end);
+    }
+
+    /**
+     * <p>Returns the per-interface state slot for the named interface, creating it if needed. A newly
+     * created slot has no previous counters, so the interface contributes nothing to the sample in
+     * which it first appears.</p>
+     *
+     * @param nameStart the offset of the interface name.
+     * @param nameEnd the offset just past the interface name.
+     * @return {@code -1} if there are too many interfaces to track.
+     */
+    private int slotFor(int nameStart, int nameEnd) {
+        int nameLength = nameEnd - nameStart;
+        for (int i = 0; i < this.interfaceCount; i++) {
+            byte[] name = this.names[i];
+            if (name.length != nameLength) continue;
+            boolean matches = true;
+            for (int j = 0; j < nameLength && matches; j++) {
+                matches = name[j] == this.buffer[nameStart + j];
+            }
+            if (matches) return i;
+        }
+        if (this.interfaceCount == MAX_INTERFACES) return -1;
+        int slot = this.interfaceCount++;
+        byte[] name = new byte[nameLength];
+        System.arraycopy(this.buffer, nameStart, name, 0, nameLength);
+        this.names[slot] = name;
+        this.lastRx[slot] = -1L;
+        this.lastTx[slot] = -1L;
+        return slot;
+    }
+
+    /**
+     * <p>Determines whether the named interface is the loopback interface.</p>
+     *
+     * @param nameStart the offset of the interface name.
+     * @param nameEnd the offset just past the interface name.
+     * @return {@code true} if the interface is named {@code lo}.
+     */
+    private boolean isLoopback(int nameStart, int nameEnd) {
+        return nameEnd - nameStart == 2 && this.buffer[nameStart] == 'l' && this.buffer[nameStart + 1] == 'o';
+    }
+
+    /**
+     * <p>Returns the offset of the start of the next line.</p>
+     *
+     * @param pos the current offset.
+     * @param end the end of the valid data in the buffer.
+     * @return never greater than {@code end}.
+     */
+    private int skipLine(int pos, int end) {
+        while (pos < end && this.buffer[pos] != '\n') pos++;
+        return pos < end ? pos + 1 : end;
+    }
+
+    /** <p>Closes the {@code net/dev} file so that it is re-opened on the next sample.</p> */
+    private void closeFile() {
+        Util.closeQuietly(this.file);
+        this.file = null;
+    }
+
+    /**
+     * <p>Returns the first readable default {@code net/dev} location.</p>
+     *
+     * @return possibly {@code null}.
+     */
+    @CheckForNull private static String findDefault() {
+        for (String candidate : CANDIDATES) {
+            try {
+                if (new File(candidate).canRead()) return candidate;
+            } catch (SecurityException e) {
+                // Try the next candidate.
+            }
+        }
+        LOGGER.info("No readable net/dev file; host network usage will not be available.");
+        return null;
+    }
+
+}
@@ -0,0 +1,278 @@
+package io.auklet.platform.metrics;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.auklet.sink.Telemetry;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+import org.msgpack.core.MessagePacker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>A sampling CPU profiler. At a fixed frequency, the stacks of all runnable threads are captured and
+ * aggregated on-device into a map from stack to sample count; {@link #drain()} returns the aggregated
+ * profile and starts a new one.</p>
+ *
+ * <p>Stack frames are interned, so each stack is stored as an array of frame IDs. Memory is bounded:
+ * at most {@value #MAX_FRAMES} distinct frames and {@value #MAX_STACKS} distinct stacks are kept per
+ * profile, and stacks are truncated to the {@value #MAX_DEPTH} innermost frames. Samples that would
+ * exceed these limits are counted but not recorded.</p>
+ *
+ * <p>The time spent sampling is measured, and samples are skipped whenever needed to keep the average
+ * cost under the configured share of one CPU core.</p>
+ *
+ * <p>This class requires the {@code java.lang.management} API, which is not available on Android.</p>
+ */
+@ThreadSafe
+public final class Profiler {
+
+    /** <p>The maximum number of frames recorded per stack.</p> */
+    public static final int MAX_DEPTH = 64;
+    /** <p>The maximum number of distinct frames per profile.</p> */
+    public static final int MAX_FRAMES = 4096;
+    /** <p>The maximum number of distinct stacks per profile.</p> */
+    public static final int MAX_STACKS = 2048;
+    private static final Logger LOGGER = LoggerFactory.getLogger(Profiler.class);
+    private final Object lock = new Object();
+    private final ThreadMXBean threads;
+    private final int hz;
+    private final double budget;
+    @GuardedBy("lock") private final Map<String, Integer> frameIds = new HashMap<>();
+    @GuardedBy("lock") private final List<String> frames = new ArrayList<>();
+    @GuardedBy("lock") private final Map<StackKey, long[]> stacks = new HashMap<>();
+    @GuardedBy("lock") private long periodStart = System.nanoTime();
+    @GuardedBy("lock") private long lastSample = System.nanoTime();
+    @GuardedBy("lock") private long debtNanos = 0L;
+    @GuardedBy("lock") private long costNanos = 0L;
+    @GuardedBy("lock") private long samples = 0L;
+    @GuardedBy("lock") private long skipped = 0L;
+    @GuardedBy("lock") private long truncated = 0L;
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param hz the sampling frequency; clamped to between 1 and 100.
+     * @param overheadPercent the maximum average sampling cost, as a percentage of one CPU core;
+     * clamped to between 0.1 and 100.
+     */
+    public Profiler(int hz, double overheadPercent) {
+        this.threads = ManagementFactory.getThreadMXBean();
+        this.hz = Math.min(100, Math.max(1, hz));
+        this.budget = Math.min(100d, Math.max(0.1d, overheadPercent)) / 100d;
+    }
+
+    /**
+     * <p>Returns the sampling frequency.</p>
+     *
+     * @return between 1 and 100.
+     */
+    public int getHz() {
+        return this.hz;
+    }
+
+    /**
+     * <p>Returns a runnable task that captures one sample; it should be run {@link #getHz()} times per
+     * second.</p>
+     *
+     * @return never {@code null}.
+     */
+    @NonNull public Runnable sampleStacks() {
+        return new Runnable() {
+            @Override public void run() {
+                try {
+                    sample();
+                } catch (RuntimeException e) {
+                    // MXBeans may throw SecurityException or UnsupportedOperationException.
+                    LOGGER.warn("Unable to sample thread stacks", e);
+                }
+            }
+        };
+    }
+
+    /**
+     * <p>Returns the profile aggregated since the previous call to this method, and starts a new one.</p>
+     *
+     * @return {@code null} if no samples were attempted.
+     */
+    @CheckForNull public Profile drain() {
+        synchronized (this.lock) {
+            if (this.samples == 0L && this.skipped == 0L) return null;
+            long now = System.nanoTime();
+            List<long[]> counts = new ArrayList<>(this.stacks.size());
+            List<int[]> stackFrames = new ArrayList<>(this.stacks.size());
+            for (Map.Entry<StackKey, long[]> stack : this.stacks.entrySet()) {
+                stackFrames.add(stack.getKey().frames);
+                counts.add(stack.getValue());
+            }
+            double overhead = 100d * this.costNanos / Math.max(1L, now - this.periodStart);
+            Profile profile = new Profile((now - this.periodStart) / 1000000L, this.hz, this.samples, this.skipped,
+                    this.truncated, overhead, this.frames.toArray(new String[0]), stackFrames, counts);
+            this.frameIds.clear();
+            this.frames.clear();
+            this.stacks.clear();
+            this.periodStart = now;
+            this.costNanos = 0L;
+            this.samples = 0L;
+            this.skipped = 0L;
+            this.truncated = 0L;
+            return profile;
+        }
+    }
+
+    /** <p>Captures and aggregates the stacks of all runnable threads, unless over budget.</p> */
+    private void sample() {
+        synchronized (this.lock) {
+            long start = System.nanoTime();
+            // Pay down the cost of previous samples at the budgeted rate.
+            this.debtNanos = Math.max(0L, this.debtNanos - (long) ((start - this.lastSample) * this.budget));
+            this.lastSample = start;
+            if (this.debtNanos > 0L) {
+                this.skipped++;
+                return;
+            }
+            long self = Thread.currentThread().getId();
+            for (ThreadInfo info : this.threads.getThreadInfo(this.threads.getAllThreadIds(), MAX_DEPTH)) {
+                if (info == null || info.getThreadId() == self || info.getThreadState() != Thread.State.RUNNABLE) continue;
+                StackTraceElement[] trace = info.getStackTrace();
+                if (trace.length == 0) continue;
+                this.record(trace);
+            }
+            this.samples++;
+            long cost = System.nanoTime() - start;
+            this.costNanos += cost;
+            this.debtNanos += cost;
+        }
+    }
+
+    /**
+     * <p>Adds one occurrence of the given stack to the profile.</p>
+     *
+     * @param trace the stack, innermost frame first. Never {@code null} or empty.
+     */
+    @GuardedBy("lock") private void record(@NonNull StackTraceElement[] trace) {
+        int depth = trace.length;
+        int[] ids = new int[depth];
+        // Folded stacks are ordered from the outermost frame to the innermost.
+        for (int i = 0; i < depth; i++) {
+            StackTraceElement frame = trace[depth - 1 - i];
+            String name = frame.getClassName() + '.' + frame.getMethodName();
+            Integer id = this.frameIds.get(name);
+            if (id == null) {
+                if (this.frames.size() >= MAX_FRAMES) {
+                    this.truncated++;
+                    return;
+                }
+                id = this.frames.size();
+                this.frames.add(name);
+                this.frameIds.put(name, id);
+            }
+            ids[i] = id;
+        }
+        StackKey key = new StackKey(ids);
+        long[] count = this.stacks.get(key);
+        if (count == null) {
+            if (this.stacks.size() >= MAX_STACKS) {
+                this.truncated++;
+                return;
+            }
+            count = new long[1];
+            this.stacks.put(key, count);
+        }
+        count[0]++;
+    }
+
+    /** <p>A stack of interned frame IDs, usable as a map key.</p> */
+    @Immutable
+    private static final class StackKey {
+
+        private final int[] frames;
+        private final int hash;
+
+        private StackKey(@NonNull int[] frames) {
+            this.frames = frames;
+            this.hash = Arrays.hashCode(frames);
+        }
+
+        @Override public int hashCode() {
+            return this.hash;
+        }
+
+        @Override public boolean equals(Object o) {
+            return o instanceof StackKey && Arrays.equals(this.frames, ((StackKey) o).frames);
+        }
+
+    }
+
+    /**
+     * <p>An aggregated CPU profile.</p>
+     *
+     * <p>When packed, {@code frames} is the frame name table ({@code class.method}), and {@code stacks}
+     * is an array of {@code [count, [frameId, ...]]} arrays, with frames ordered from the outermost to
+     * the innermost. {@code samples} counts sampling rounds (each of which may record several threads),
+     * {@code skipped} counts rounds skipped to stay within the overhead budget, {@code truncated} counts
+     * thread stacks not recorded due to the memory budget, and {@code overhead} is the measured sampling
+     * cost as a percentage of one CPU core.</p>
+     */
+    @Immutable
+    public static final class Profile implements Telemetry {
+
+        private final long periodMillis;
+        private final int hz;
+        private final long samples;
+        private final long skipped;
+        private final long truncated;
+        private final double overhead;
+        private final String[] frames;
+        private final List<int[]> stacks;
+        private final List<long[]> counts;
+
+        private Profile(long periodMillis, int hz, long samples, long skipped, long truncated, double overhead,
+                        @NonNull String[] frames, @NonNull List<int[]> stacks, @NonNull List<long[]> counts) {
+            this.periodMillis = periodMillis;
+            this.hz = hz;
+            this.samples = samples;
+            this.skipped = skipped;
+            this.truncated = truncated;
+            this.overhead = overhead;
+            this.frames = frames;
+            this.stacks = stacks;
+            this.counts = counts;
+        }
+
+        @NonNull @Override public String getTelemetryType() {
+            return "profile";
+        }
+
+        @Override public void packTelemetry(@NonNull MessagePacker msgpack) throws IOException {
+            msgpack.packMapHeader(8)
+                    .packString("period").packLong(this.periodMillis)
+                    .packString("hz").packInt(this.hz)
+                    .packString("samples").packLong(this.samples)
+                    .packString("skipped").packLong(this.skipped)
+                    .packString("truncated").packLong(this.truncated)
+                    .packString("overhead").packDouble(this.overhead)
+                    .packString("frames").packArrayHeader(this.frames.length);
+            for (String frame : this.frames) msgpack.packString(frame);
+            msgpack.packString("stacks").packArrayHeader(this.stacks.size());
+            for (int i = 0; i < this.stacks.size(); i++) {
+                int[] stack = this.stacks.get(i);
+                msgpack.packArrayHeader(2).packLong(this.counts.get(i)[0]).packArrayHeader(stack.length);
+                for (int frame : stack) msgpack.packInt(frame);
+            }
+        }
+
+    }
+
+}
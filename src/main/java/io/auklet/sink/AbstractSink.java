@@ -4,7 +4,15 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import io.auklet.Auklet;
 import io.auklet.AukletException;
+import io.auklet.EventIdGenerator;
+import io.auklet.core.Breadcrumbs;
+import io.auklet.core.EventRateLimiter;
 import io.auklet.core.HasAgent;
+import io.auklet.core.PipelineStats;
+import io.auklet.jfr.AgentEvent;
+import io.auklet.net.TrafficCounter;
+import io.auklet.platform.Platform;
+import io.auklet.platform.metrics.JvmMetrics;
 import io.auklet.util.Util;
 import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.ThreadSafe;
@@ -15,7 +23,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.util.UUID;
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * <p>Base class of all Auklet agent data sinks. Each implementation provides a {@link MessagePacker} that
@@ -29,6 +38,10 @@ public abstract class AbstractSink extends HasAgent implements Sink {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractSink.class);
     @GuardedBy("itself") protected final MessageBufferPacker msgpack = MessagePack.newDefaultBufferPacker();
+    @GuardedBy("msgpack") private StringDictionary dictionary;
+    @GuardedBy("msgpack") private final byte[] id = new byte[EventIdGenerator.ID_LENGTH];
+    @GuardedBy("msgpack") private boolean dropped = false;
+    private final SinkStats sinkStats = new SinkStats();
 
     @Override public void shutdown() {
         synchronized (this.msgpack) {
@@ -40,45 +53,206 @@ public abstract class AbstractSink extends HasAgent implements Sink {
         }
     }
 
-    @Override public void send(@Nullable Throwable throwable) throws AukletException {
+    @Override public final void send(@Nullable Throwable throwable) throws AukletException {
+        this.send(throwable, null);
+    }
+
+    @Override public void send(@Nullable Throwable throwable, @Nullable EventContext context) throws AukletException {
         if (throwable == null) return;
+        PipelineStats stats = this.getAgent().getPipelineStats();
+        stats.recordEventReceived();
+        EventRateLimiter.Decision sampling = this.getAgent().getRateLimiter().tryAcquire(throwable, context);
+        if (sampling == null) return;
         StackTraceElement[] stackTrace = throwable.getStackTrace();
         // Assemble the complete message.
         synchronized (this.msgpack) {
+            AgentEvent encode = AgentEvent.encode("event");
             this.msgpack.clear();
             try {
-                this.initMessage(11);
+                this.initMessage(15);
                 this.msgpack
                         .packString("timestamp").packLong(System.currentTimeMillis())
+                        .packString("sampling").packMapHeader(2)
+                        .packString("rate").packDouble(sampling.getSampleRate())
+                        .packString("suppressed").packLong(sampling.getSuppressed())
                         .packString("excType").packString(throwable.getClass().getName())
-                        .packString("message").packString(Util.orElse(throwable.getMessage(), ""))
-                        .packString("stackTrace").packArrayHeader(stackTrace.length);
+                        .packString("message").packString(Util.orElse(throwable.getMessage(), ""));
+                this.msgpack.packString("jvmMetrics");
+                JvmMetrics.Snapshot jvmMetrics = this.getAgent().getPlatform().getJvmMetrics();
+                if (jvmMetrics == null) this.msgpack.packNil();
+                else jvmMetrics.packTelemetry(this.msgpack);
+                this.packBreadcrumbs(context == null ? null : context.getBreadcrumbs());
+                this.packTags(context == null ? Collections.<String, String>emptyMap() : context.getTags());
+                this.msgpack.packString("stackTrace").packArrayHeader(stackTrace.length);
                 for (StackTraceElement ste : stackTrace) {
                     int lineNumber = ste.getLineNumber();
-                    this.msgpack.packMapHeader(4)
-                            .packString("functionName").packString(ste.getMethodName())
-                            .packString("className").packString(ste.getClassName())
-                            .packString("filePath").packString(Util.orElse(ste.getFileName(), ""))
-                            // Normalize all negative return values.
-                            .packString("lineNumber").packInt(lineNumber < 0 ? -1 : lineNumber);
+                    this.msgpack.packMapHeader(4).packString("functionName");
+                    this.packFrameString(ste.getMethodName());
+                    this.msgpack.packString("className");
+                    this.packFrameString(ste.getClassName());
+                    this.msgpack.packString("filePath");
+                    this.packFrameString(Util.orElse(ste.getFileName(), ""));
+                    // Normalize all negative return values.
+                    this.msgpack.packString("lineNumber").packInt(lineNumber < 0 ? -1 : lineNumber);
                 }
                 this.msgpack.flush();
             } catch (IOException e) {
+                stats.recordEventFailed();
                 throw new AukletException("Could not assemble event message.", e);
             }
             byte[] payload = this.msgpack.toByteArray();
-            if (payload == null || payload.length == 0) return;
-            this.write(payload);
+            encode.setBytes(payload.length).end();
+            if (payload.length == 0) return;
+            boolean written;
+            try {
+                written = this.timedWrite(payload, false);
+            } catch (AukletException e) {
+                stats.recordEventFailed();
+                throw e;
+            }
+            if (written) stats.recordEventSent();
+            else if (this.dropped) stats.recordEventDropped();
+            else stats.recordEventOverDataLimit();
+        }
+    }
+
+    @Override public boolean sendTelemetry(@Nullable Telemetry telemetry) throws AukletException {
+        if (telemetry == null) return true;
+        synchronized (this.msgpack) {
+            AgentEvent encode = AgentEvent.encode(telemetry.getTelemetryType());
+            this.msgpack.clear();
+            try {
+                this.getAgent().getIdGenerator().nextId(this.id);
+                this.msgpack.packMapHeader(6)
+                        .packString("id").packBinaryHeader(this.id.length).writePayload(this.id)
+                        .packString("type").packString(telemetry.getTelemetryType())
+                        .packString("timestamp").packLong(System.currentTimeMillis())
+                        .packString("application").packString(this.getAgent().getAppId())
+                        .packString("device").packString(this.getAgent().getDeviceAuth().getClientUsername())
+                        .packString("data");
+                telemetry.packTelemetry(this.msgpack);
+                this.msgpack.flush();
+            } catch (IOException | IllegalArgumentException e) {
+                throw new AukletException("Could not assemble telemetry message.", e);
+            }
+            byte[] payload = this.msgpack.toByteArray();
+            encode.setBytes(payload.length).end();
+            if (payload.length == 0) return true;
+            return this.timedWrite(payload, true);
         }
     }
 
+    @NonNull @Override public final SinkStats getStats() {
+        return this.sinkStats;
+    }
+
+    /** <p>By default, sinks are considered connected; subclasses with a connection should override this.</p> */
+    @Override public boolean isConnected() {
+        return true;
+    }
+
+    /**
+     * <p>Discards the string dictionary used to encode stack frames. Subclasses must invoke this
+     * method whenever the connection to the underlying data sink is lost or re-established; messages
+     * that are not written discard it automatically.</p>
+     */
+    protected final void resetStringDictionary() {
+        synchronized (this.msgpack) {
+            if (this.dictionary != null) this.dictionary.reset();
+        }
+    }
+
+    /**
+     * <p>Records that the message being written was dropped because the underlying data sink could not
+     * accept it in time, e.g. because its queue was full, rather than because of the data usage limit.
+     * Implementations of {@link #write(byte[])} and {@link #writeTelemetry(byte[])} return the result of
+     * this method in that case.</p>
+     *
+     * @return {@code false}.
+     */
+    @GuardedBy("msgpack") protected final boolean drop() {
+        this.dropped = true;
+        return false;
+    }
+
     /**
      * <p>Writes the given byte array to the underlying data sink.</p>
      *
      * @param bytes the byte array, never {@code null} or empty.
+     * @return {@code false} if the data was not written because doing so would exceed the data usage
+     * limit, or the result of {@link #drop()}, {@code true} otherwise.
      * @throws AukletException if the data cannot be written.
      */
-    @GuardedBy("msgpack") protected abstract void write(@NonNull byte[] bytes) throws AukletException;
+    @GuardedBy("msgpack") protected abstract boolean write(@NonNull byte[] bytes) throws AukletException;
+
+    /**
+     * <p>Writes the given telemetry byte array to the underlying data sink. By default, this is the same
+     * as {@link #write(byte[])}; subclasses may override this to send telemetry differently from
+     * events.</p>
+     *
+     * @param bytes the byte array, never {@code null} or empty.
+     * @return {@code false} if the data was not written because doing so would exceed the data usage
+     * limit, or the result of {@link #drop()}, {@code true} otherwise.
+     * @throws AukletException if the data cannot be written.
+     */
+    @GuardedBy("msgpack") protected boolean writeTelemetry(@NonNull byte[] bytes) throws AukletException {
+        return this.write(bytes);
+    }
+
+    /**
+     * <p>Returns whether this sink may intern stack frame strings. Sinks whose receivers do not see every
+     * message this sink encodes must override this to return {@code false}.</p>
+     *
+     * @return {@code true} by default.
+     */
+    protected boolean usesStringDictionary() {
+        return true;
+    }
+
+    /**
+     * <p>Writes a message that was already encoded by another sink (see {@link CompositeSink}).</p>
+     *
+     * @param bytes the encoded message. Never {@code null} or empty.
+     * @param telemetry whether the message is telemetry.
+     * @return the result of the write.
+     * @throws AukletException if the data cannot be written.
+     */
+    /*package*/ final boolean writeEncoded(@NonNull byte[] bytes, boolean telemetry) throws AukletException {
+        synchronized (this.msgpack) {
+            return this.timedWrite(bytes, telemetry);
+        }
+    }
+
+    /**
+     * <p>Writes the given payload to the underlying data sink, updating the write counters and
+     * recording a Flight Recorder event.</p>
+     *
+     * @param bytes the byte array, never {@code null} or empty.
+     * @param telemetry {@code true} to write via {@link #writeTelemetry(byte[])}, {@code false} to write
+     * via {@link #write(byte[])}.
+     * @return the result of the write.
+     * @throws AukletException if the data cannot be written.
+     */
+    @GuardedBy("msgpack") private boolean timedWrite(@NonNull byte[] bytes, boolean telemetry) throws AukletException {
+        AgentEvent event = AgentEvent.sinkWrite(this.getClass().getSimpleName()).setBytes(bytes.length);
+        boolean written;
+        this.dropped = false;
+        try {
+            written = telemetry ? this.writeTelemetry(bytes) : this.write(bytes);
+        } catch (AukletException e) {
+            this.sinkStats.recordWriteFailure();
+            event.setStatus(-1).end();
+            if (!telemetry) this.resetStringDictionary();
+            throw e;
+        }
+        if (written) this.sinkStats.recordWrite(bytes.length);
+        else if (this.dropped) this.sinkStats.recordDropped();
+        else this.sinkStats.recordOverDataLimit();
+        // The receiver will not see any strings that this event defined.
+        if (!written && !telemetry) this.resetStringDictionary();
+        event.setStatus(written ? 1 : 0).end();
+        return written;
+    }
 
     /**
      * <p>Starts assembling an Auklet-compatible MessagePack message, which is defined as a MessagePack
@@ -91,8 +265,9 @@ public abstract class AbstractSink extends HasAgent implements Sink {
     @GuardedBy("msgpack") private void initMessage(int mapSize) throws AukletException {
         if (mapSize < 7) throw new AukletException("Message size is too small.");
         try {
+            this.getAgent().getIdGenerator().nextId(this.id);
             this.msgpack.packMapHeader(mapSize)
-                    .packString("id").packString(UUID.randomUUID().toString())
+                    .packString("id").packBinaryHeader(this.id.length).writePayload(this.id)
                     .packString("application").packString(this.getAgent().getAppId())
                     .packString("macAddressHash").packString(this.getAgent().getMacHash())
                     .packString("publicIP").packString(this.getAgent().getIpAddress())
@@ -105,6 +280,54 @@ public abstract class AbstractSink extends HasAgent implements Sink {
         }
     }
 
+    /**
+     * <p>Writes a stack frame string to the current position in the MessagePacker, interning it in
+     * the string dictionary if the agent is configured to do so.</p>
+     *
+     * @param value the string to write. Never {@code null}.
+     * @throws AukletException if the agent reference has not been set.
+     * @throws IOException if an error occurs while assembling the message.
+     */
+    @GuardedBy("msgpack") private void packFrameString(@NonNull String value) throws AukletException, IOException {
+        if (this.dictionary == null) {
+            int size = this.usesStringDictionary() ? this.getAgent().getStringDictionarySize() : 0;
+            if (size == 0) {
+                this.msgpack.packString(value);
+                return;
+            }
+            this.dictionary = new StringDictionary(size);
+        }
+        this.dictionary.pack(this.msgpack, value);
+    }
+
+    /**
+     * <p>Writes the given breadcrumbs to the current position in the MessagePacker as a map entry whose
+     * value is an array of {@code [timestamp, message]} arrays, oldest first.</p>
+     *
+     * @param breadcrumbs possibly {@code null}, in which case an empty array is written.
+     * @throws IOException if an error occurs while assembling the message.
+     */
+    @GuardedBy("msgpack") private void packBreadcrumbs(@Nullable Breadcrumbs.Trail breadcrumbs) throws IOException {
+        int size = breadcrumbs == null ? 0 : breadcrumbs.size();
+        this.msgpack.packString("breadcrumbs").packArrayHeader(size);
+        for (int i = 0; i < size; i++) {
+            this.msgpack.packArrayHeader(2).packLong(breadcrumbs.getTimestamp(i)).packString(breadcrumbs.getMessage(i));
+        }
+    }
+
+    /**
+     * <p>Writes the given tags to the current position in the MessagePacker as a map entry.</p>
+     *
+     * @param tags never {@code null}.
+     * @throws IOException if an error occurs while assembling the message.
+     */
+    @GuardedBy("msgpack") private void packTags(@NonNull Map<String, String> tags) throws IOException {
+        this.msgpack.packString("tags").packMapHeader(tags.size());
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            this.msgpack.packString(tag.getKey()).packString(tag.getValue());
+        }
+    }
+
     /**
      * <p>Adds system metrics to the current position in the given MessagePacker as a map object.</p>
      *
@@ -112,11 +335,16 @@ public abstract class AbstractSink extends HasAgent implements Sink {
      */
     @GuardedBy("msgpack") private void addSystemMetrics() throws AukletException {
         try {
-            this.msgpack.packMapHeader(4);
-            this.getAgent().getPlatform().addSystemMetrics(this.msgpack);
-            // Add other system metrics.
-            this.msgpack.packString("outboundNetwork").packDouble(0);
-            this.msgpack.packString("inboundNetwork").packDouble(0);
+            Platform platform = this.getAgent().getPlatform();
+            this.msgpack.packMapHeader(7);
+            platform.addSystemMetrics(this.msgpack);
+            // Add other system metrics. Host network rates are in bytes per second; agent traffic
+            // is the total number of bytes sent/received by the agent since JVM start.
+            this.msgpack.packString("outboundNetwork").packDouble(platform.getOutboundNetworkRate());
+            this.msgpack.packString("inboundNetwork").packDouble(platform.getInboundNetworkRate());
+            this.msgpack.packString("cpuThrottling").packDouble(platform.getCpuThrottling());
+            this.msgpack.packString("agentOutboundBytes").packLong(TrafficCounter.getOutboundBytes());
+            this.msgpack.packString("agentInboundBytes").packLong(TrafficCounter.getInboundBytes());
         } catch (IOException e) {
             throw new AukletException("Error while assembling msgpack payload.", e);
         }
@@ -0,0 +1,183 @@
+package io.auklet.sink;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.auklet.Auklet;
+import io.auklet.AukletException;
+import io.auklet.core.AukletDaemonExecutor;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttPingSender;
+import org.eclipse.paho.client.mqttv3.MqttToken;
+import org.eclipse.paho.client.mqttv3.internal.ClientComms;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>An MQTT ping sender that runs on the agent's daemon executor, rather than on a timer thread of its
+ * own, and that skips pings while publishes keep the session alive.</p>
+ *
+ * <p>A broker only needs to hear from the client once per keep-alive interval, and any publish will do.
+ * Paho also pings whenever nothing has been <i>received</i> for an interval, which for QoS 0 traffic
+ * means pinging every interval no matter how much is published. This sender defers Paho's check while
+ * the sink has published within the interval, provided that the broker has answered something (a
+ * connect, a QoS 1 publish or a ping) within the last {@value #MAX_SILENT_INTERVALS} intervals, so that
+ * a dead connection is still noticed. The interval itself is longer on metered networks, where each ping
+ * wakes the radio. Every ping sent is counted against the data usage limit.</p>
+ */
+@ThreadSafe
+/*package*/ final class AgentPingSender implements MqttPingSender {
+
+    /** <p>The keep-alive interval on unmetered networks.</p> */
+    /*package*/ static final int KEEP_ALIVE_SECONDS = 60;
+    /** <p>The keep-alive interval on metered networks.</p> */
+    /*package*/ static final int METERED_KEEP_ALIVE_SECONDS = 300;
+    /**
+     * <p>The estimated network cost of a ping: a 2-byte PINGREQ and a 2-byte PINGRESP, each in its own
+     * TLS record (29 bytes of overhead with AES-GCM) and TCP segment (40 bytes of IP and TCP headers).</p>
+     */
+    /*package*/ static final int PING_BYTES = 2 * (2 + 29 + 40);
+    private static final int MAX_SILENT_INTERVALS = 3;
+    private static final Logger LOGGER = LoggerFactory.getLogger(AgentPingSender.class);
+    private final Object lock = new Object();
+    private final Auklet agent;
+    @GuardedBy("lock") private ClientComms comms;
+    @GuardedBy("lock") private ScheduledFuture<?> task;
+    @GuardedBy("lock") private boolean started = false;
+    @GuardedBy("lock") private long lastPublish = 0L;
+    @GuardedBy("lock") private long lastInbound = 0L;
+    @GuardedBy("lock") private long pings = 0L;
+    @GuardedBy("lock") private long skipped = 0L;
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param agent the Auklet agent. Never {@code null}.
+     */
+    /*package*/ AgentPingSender(@NonNull Auklet agent) {
+        this.agent = agent;
+    }
+
+    /**
+     * <p>Returns the keep-alive interval to request for a new connection. The network is treated as
+     * metered if the platform says so, or if a cellular data limit is configured.</p>
+     *
+     * @return the interval, in seconds.
+     */
+    /*package*/ int getKeepAliveSeconds() {
+        boolean metered = this.agent.getPlatform().isNetworkMetered()
+                || this.agent.getUsageMonitor().getUsageConfig().getCellularDataLimit() > 0;
+        return metered ? METERED_KEEP_ALIVE_SECONDS : KEEP_ALIVE_SECONDS;
+    }
+
+    /** <p>Records that the sink has just published a message.</p> */
+    /*package*/ void publishSent() {
+        synchronized (this.lock) {
+            this.lastPublish = System.currentTimeMillis();
+        }
+    }
+
+    /** <p>Records that the broker has just answered the client.</p> */
+    /*package*/ void responseReceived() {
+        synchronized (this.lock) {
+            this.lastInbound = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * <p>Returns the number of pings sent.</p>
+     *
+     * @return never negative.
+     */
+    /*package*/ long getPingCount() {
+        synchronized (this.lock) {
+            return this.pings;
+        }
+    }
+
+    /**
+     * <p>Returns the number of pings skipped because a recent publish kept the session alive.</p>
+     *
+     * @return never negative.
+     */
+    /*package*/ long getSkippedCount() {
+        synchronized (this.lock) {
+            return this.skipped;
+        }
+    }
+
+    @Override public void init(@NonNull ClientComms comms) {
+        synchronized (this.lock) {
+            this.comms = comms;
+        }
+    }
+
+    @Override public void start() {
+        synchronized (this.lock) {
+            this.started = true;
+            this.lastInbound = System.currentTimeMillis(); // The broker has just acknowledged the connection.
+            this.schedule(this.comms.getKeepAlive());
+        }
+    }
+
+    @Override public void stop() {
+        synchronized (this.lock) {
+            this.started = false;
+            if (this.task != null) this.task.cancel(false);
+            this.task = null;
+        }
+    }
+
+    @Override public void schedule(long delayInMilliseconds) {
+        synchronized (this.lock) {
+            if (!this.started) return;
+            if (this.task != null) this.task.cancel(false);
+            try {
+                // Paho reschedules from within the check itself, so cancelling is routine.
+                this.task = this.agent.scheduleOneShotTask(new AukletDaemonExecutor.CancelSilentlyRunnable() {
+                    @Override public void run() {
+                        check();
+                    }
+                }, delayInMilliseconds, TimeUnit.MILLISECONDS);
+            } catch (AukletException e) {
+                LOGGER.warn("Could not schedule MQTT keep-alive check.", e);
+            }
+        }
+    }
+
+    /** <p>Defers the keep-alive check if a recent publish suffices, or else lets Paho ping if needed.</p> */
+    private void check() {
+        ClientComms client;
+        synchronized (this.lock) {
+            if (!this.started) return;
+            long keepAlive = this.comms.getKeepAlive();
+            long now = System.currentTimeMillis();
+            long sincePublish = now - this.lastPublish;
+            if (sincePublish < keepAlive && now - this.lastInbound < keepAlive * MAX_SILENT_INTERVALS) {
+                this.skipped++;
+                this.schedule(keepAlive - sincePublish);
+                return;
+            }
+            client = this.comms;
+        }
+        // Paho reschedules this sender itself; call it without holding the lock, as Paho holds its own.
+        MqttToken ping = client.checkForActivity(new IMqttActionListener() {
+            @Override public void onSuccess(IMqttToken token) {
+                responseReceived();
+            }
+            @Override public void onFailure(IMqttToken token, Throwable cause) {
+                // Paho disconnects if no response arrives in time.
+            }
+        });
+        if (ping == null) return;
+        synchronized (this.lock) {
+            this.pings++;
+        }
+        this.agent.getUsageMonitor().addMoreData(PING_BYTES);
+    }
+
+}
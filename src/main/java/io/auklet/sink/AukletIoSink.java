@@ -3,6 +3,7 @@ package io.auklet.sink;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import io.auklet.Auklet;
 import io.auklet.AukletException;
+import io.auklet.jfr.AgentEvent;
 import io.auklet.config.AukletIoBrokers;
 import io.auklet.config.AukletIoCert;
 import io.auklet.core.AukletDaemonExecutor;
@@ -17,15 +18,32 @@ import org.slf4j.LoggerFactory;
 
 import java.security.cert.X509Certificate;
 import java.util.Collections;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
-/** <p>The default Auklet data sink, which sends data to {@code auklet.io} via MQTT.</p> */
+/**
+ * <p>The default Auklet data sink, which sends data to {@code auklet.io} via MQTT.</p>
+ *
+ * <p>Keep-alive pings are sent by an {@link AgentPingSender}, which uses a longer interval on metered
+ * networks and skips pings while publishes keep the session alive.</p>
+ *
+ * <p>Paho's automatic reconnect starts a timer thread of its own, so this sink reconnects from the
+ * agent's scheduler instead, with the same backoff: one second, doubling up to two minutes. Messages
+ * published while disconnected are buffered by Paho and sent after reconnecting.</p>
+ */
 @ThreadSafe
 public final class AukletIoSink extends AbstractSink {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AukletIoSink.class);
+    private static final long MIN_RECONNECT_DELAY_MILLIS = 1000L;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 128000L;
     private final Object lock = new Object();
-    @GuardedBy("lock") private AukletDaemonExecutor executorService;
-    @GuardedBy("lock") private MqttAsyncClient client;
+    @GuardedBy("lock") private ScheduledExecutorService executorService;
+    @GuardedBy("lock") private AgentMqttClient client;
+    @GuardedBy("lock") private AgentPingSender pingSender;
+    @GuardedBy("lock") private boolean closed = false;
+    // Read by the MQTT callback, which must not take the lock; see getCallback().
+    private volatile MqttConnectOptions options;
 
     /**
      * <p>Constructs the underlying MQTT client.</p>
@@ -44,42 +62,48 @@ public final class AukletIoSink extends AbstractSink {
             // Workaround to ensure that MQTT client threads do not stop JVM shutdown.
             // https://github.com/eclipse/paho.mqtt.java/issues/402#issuecomment-424686340
             // MQTT threads must be daemon threads or else the JVM will hang on shutdown.
-            this.executorService = new AukletDaemonExecutor(agent.getMqttThreads(), ThreadUtil.createDaemonThreadFactory("AukletPahoMQTT-%d"));
+            // In thread-budget mode, the agent's daemon threads are used; the agent does not shut them down.
+            if (agent.getThreadBudget() > 0) {
+                this.executorService = agent.createSharedExecutor();
+            } else {
+                this.executorService = new AukletDaemonExecutor(agent.getMqttThreads(), ThreadUtil.createDaemonThreadFactory("AukletPahoMQTT-%d", agent.getThreadStackSize()));
+            }
             org.eclipse.paho.client.mqttv3.logging.LoggerFactory.setLogger("io.auklet.misc.PahoLogger");
-            this.client = new MqttAsyncClient(brokers.getUrl(), agent.getDeviceAuth().getClientId(), new MemoryPersistence(), new TimerPingSender(), executorService);
-            this.client.setCallback(this.getCallback());
+            this.pingSender = new AgentPingSender(agent);
+            this.client = new AgentMqttClient(brokers.getUrl(), agent.getDeviceAuth().getClientId(), this.pingSender, executorService);
+            this.client.setCallback(this.getCallback(this.client, this.pingSender));
             this.client.setBufferOpts(this.getDisconnectBufferOptions(agent));
+            this.options = this.getConnectOptions(agent, cert.getCert(), this.pingSender.getKeepAliveSeconds());
             // Wait 10 seconds for connect to succeed, then give up.
-            this.client.connect(this.getConnectOptions(agent, cert.getCert())).waitForCompletion(10000L);
+            this.client.connect(this.options).waitForCompletion(10000L);
         } catch (MqttException e) {
             this.shutdown();
             throw new AukletException("Could not initialize MQTT sink.", e);
         }
     }
 
-    @Override protected void write(@NonNull byte[] bytes) throws AukletException {
+    @Override protected boolean write(@NonNull byte[] bytes) throws AukletException {
+        return this.publish(this.getAgent().getDeviceAuth().getMqttEventsTopic(), bytes, 1);
+    }
+
+    /** <p>Telemetry is periodic and superseded by the next message, so it is sent at QoS 0.</p> */
+    @Override protected boolean writeTelemetry(@NonNull byte[] bytes) throws AukletException {
+        return this.publish(this.getAgent().getDeviceAuth().getMqttTelemetryTopic(), bytes, 0);
+    }
+
+    @Override public boolean isConnected() {
         synchronized (this.lock) {
-            try {
-                MqttMessage message = new MqttMessage(bytes);
-                message.setQos(1);
-                int size = bytes.length;
-                boolean willExceedLimit = this.getAgent().getUsageMonitor().willExceedLimit(size);
-                if (!willExceedLimit) {
-                    client.publish(this.getAgent().getDeviceAuth().getMqttEventsTopic(), message);
-                    this.getAgent().getUsageMonitor().addMoreData(size);
-                }
-            } catch (MqttException e) {
-                throw new AukletException("Error while publishing MQTT message.", e);
-            }
+            return this.client != null && this.client.isConnected();
         }
     }
 
     @Override public void shutdown() {
         synchronized (this.lock) {
             super.shutdown();
+            this.closed = true;
             if (this.client != null) {
                 if (this.client.isConnected()) {
-                    this.executorService.logCancelExceptions(false);
+                    if (this.executorService instanceof AukletDaemonExecutor) ((AukletDaemonExecutor) this.executorService).logCancelExceptions(false);
                     try {
                         // Wait 2 seconds for work to quiesce and 1 second for disconnect to finish.
                         this.client.disconnect(2000L).waitForCompletion(1000L);
@@ -104,20 +128,131 @@ public final class AukletIoSink extends AbstractSink {
                     LOGGER.warn("Error while closing MQTT client.", e);
                 }
             }
+            if (this.pingSender != null) {
+                LOGGER.debug("Sent {} MQTT pings; skipped {} while publishing.", this.pingSender.getPingCount(), this.pingSender.getSkippedCount());
+            }
             ThreadUtil.shutdown(this.executorService);
         }
     }
 
+    /**
+     * <p>Publishes the given byte array to the given MQTT topic, unless doing so would exceed the data
+     * usage limit.</p>
+     *
+     * @param topic the MQTT topic. Never {@code null}.
+     * @param bytes the byte array, never {@code null} or empty.
+     * @param qos the MQTT QoS level.
+     * @return {@code false} if the message was not published due to the data usage limit.
+     * @throws AukletException if the message cannot be published.
+     */
+    private boolean publish(@NonNull String topic, @NonNull byte[] bytes, int qos) throws AukletException {
+        synchronized (this.lock) {
+            try {
+                MqttMessage message = new MqttMessage(bytes);
+                message.setQos(qos);
+                int size = bytes.length;
+                boolean willExceedLimit = this.getAgent().getUsageMonitor().willExceedLimit(size);
+                if (!willExceedLimit) {
+                    AgentEvent publish = AgentEvent.mqttPublish(topic, qos).setBytes(size);
+                    final AgentEvent ack = AgentEvent.mqttAck(topic, qos).setBytes(size);
+                    if (ack.isEnabled()) {
+                        client.publish(topic, message, null, new IMqttActionListener() {
+                            @Override public void onSuccess(IMqttToken token) {
+                                ack.setStatus(1).end();
+                            }
+                            @Override public void onFailure(IMqttToken token, Throwable cause) {
+                                ack.setStatus(0).end();
+                            }
+                        });
+                    } else {
+                        client.publish(topic, message);
+                    }
+                    publish.end();
+                    this.pingSender.publishSent();
+                    this.getAgent().getUsageMonitor().addMoreData(size);
+                }
+                return !willExceedLimit;
+            } catch (MqttException e) {
+                throw new AukletException("Error while publishing MQTT message.", e);
+            }
+        }
+    }
+
+    /**
+     * <p>Schedules an attempt to reconnect the MQTT client on the agent's scheduler.</p>
+     *
+     * @param delayMillis the delay before the attempt.
+     */
+    private void scheduleReconnect(final long delayMillis) {
+        try {
+            this.getAgent().scheduleOneShotTask(new AukletDaemonExecutor.CancelSilentlyRunnable() {
+                @Override public void run() {
+                    reconnect(delayMillis);
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (AukletException e) {
+            LOGGER.warn("Could not schedule MQTT reconnect.", e);
+        }
+    }
+
+    /**
+     * <p>Attempts to reconnect the MQTT client, and schedules another attempt, after twice the delay,
+     * if this one fails.</p>
+     *
+     * @param delayMillis the delay before this attempt.
+     */
+    private void reconnect(long delayMillis) {
+        final long nextDelayMillis = Math.min(delayMillis * 2, MAX_RECONNECT_DELAY_MILLIS);
+        synchronized (this.lock) {
+            if (this.closed || this.client == null) return;
+            try {
+                this.client.connect(this.options, null, new IMqttActionListener() {
+                    @Override public void onSuccess(IMqttToken token) {
+                        LOGGER.info("Reconnected to MQTT.");
+                    }
+                    @Override public void onFailure(IMqttToken token, Throwable cause) {
+                        LOGGER.debug("Could not reconnect to MQTT; retrying in {} ms.", nextDelayMillis, cause);
+                        scheduleReconnect(nextDelayMillis);
+                    }
+                });
+            } catch (MqttException e) {
+                switch (e.getReasonCode()) {
+                    case MqttException.REASON_CODE_CLIENT_CONNECTED:
+                    case MqttException.REASON_CODE_CONNECT_IN_PROGRESS:
+                    case MqttException.REASON_CODE_CLIENT_CLOSED:
+                        return;
+                    default:
+                        LOGGER.debug("Could not reconnect to MQTT; retrying in {} ms.", nextDelayMillis, e);
+                        scheduleReconnect(nextDelayMillis);
+                }
+            }
+        }
+    }
+
     /**
      * <p>Returns the MQTT callback object used by the MQTT client.</p>
      *
+     * @param client the MQTT client. Never {@code null}.
+     * @param pingSender the MQTT client's ping sender. Never {@code null}.
      * @return never {@code null}.
      */
-    @NonNull private MqttCallback getCallback() {
-        return new MqttCallback() {
+    @NonNull private MqttCallback getCallback(@NonNull final AgentMqttClient client, @NonNull final AgentPingSender pingSender) {
+        return new MqttCallbackExtended() {
+            @Override
+            public void connectComplete(boolean reconnect, String serverURI) {
+                pingSender.responseReceived();
+            }
+
             @Override
             public void connectionLost(Throwable cause) {
                 LOGGER.error("Unexpected disconnect from MQTT.", cause);
+                // The broker-side string dictionary does not survive a new connection.
+                resetStringDictionary();
+                client.bufferWhileDisconnected();
+                // The reconnect reuses these options; the network type may have changed.
+                MqttConnectOptions reconnectOptions = options;
+                if (reconnectOptions != null) reconnectOptions.setKeepAliveInterval(pingSender.getKeepAliveSeconds());
+                scheduleReconnect(MIN_RECONNECT_DELAY_MILLIS);
             }
 
             @Override
@@ -127,6 +262,8 @@ public final class AukletIoSink extends AbstractSink {
 
             @Override
             public void deliveryComplete(IMqttDeliveryToken token) {
+                // Only QoS 1 deliveries are acknowledged by the broker.
+                if (token.getResponse() != null) pingSender.responseReceived();
                 // TODO: handle what happens when MQTT message delivery completes
             }
         };
@@ -157,10 +294,11 @@ public final class AukletIoSink extends AbstractSink {
      *
      * @param agent the Auklet agent reference. Never {@code null}.
      * @param cert the Auklet SSL certificate object. Never {@code null}.
+     * @param keepAliveSeconds the MQTT keep-alive interval.
      * @return never {@code null}.
      * @throws AukletException if the options object cannot be constructed, or if any argument is {@code null}.
      */
-    @NonNull private MqttConnectOptions getConnectOptions(@NonNull Auklet agent, @NonNull X509Certificate cert) throws AukletException {
+    @NonNull private MqttConnectOptions getConnectOptions(@NonNull Auklet agent, @NonNull X509Certificate cert, int keepAliveSeconds) throws AukletException {
         if (agent == null) throw new AukletException("Auklet agent is null.");
         if (cert == null) throw new AukletException("SSL cert is null.");
         MqttConnectOptions options = new MqttConnectOptions();
@@ -168,11 +306,30 @@ public final class AukletIoSink extends AbstractSink {
         options.setPassword(agent.getDeviceAuth().getClientPassword().toCharArray());
         options.setMqttVersion(MqttConnectOptions.MQTT_VERSION_3_1);
         options.setConnectionTimeout(60);
-        options.setKeepAliveInterval(60);
+        options.setKeepAliveInterval(keepAliveSeconds);
         options.setCleanSession(false);
-        options.setAutomaticReconnect(true);
+        // See scheduleReconnect().
+        options.setAutomaticReconnect(false);
         options.setSocketFactory(X509Trust.fromCerts(Collections.singleton(cert)).createSocketFactory());
         return options;
     }
 
+    /**
+     * <p>An MQTT client that buffers messages while disconnected even though its automatic reconnect is
+     * disabled. Paho only does so after a connection loss if it is going to reconnect by itself.</p>
+     */
+    private static final class AgentMqttClient extends MqttAsyncClient {
+
+        private AgentMqttClient(@NonNull String serverUri, @NonNull String clientId, @NonNull MqttPingSender pingSender,
+                                @NonNull ScheduledExecutorService executorService) throws MqttException {
+            super(serverUri, clientId, new MemoryPersistence(), pingSender, executorService);
+        }
+
+        /** <p>Buffers messages published from now until the client reconnects.</p> */
+        private void bufferWhileDisconnected() {
+            this.comms.setRestingState(true);
+        }
+
+    }
+
 }
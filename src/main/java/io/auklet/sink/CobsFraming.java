@@ -0,0 +1,165 @@
+package io.auklet.sink;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+/**
+ * <p>Frames messages for byte streams that may lose or corrupt bytes, such as serial lines.</p>
+ *
+ * <p>Each frame is the message followed by the 4-byte big-endian CRC32 of the message, encoded with
+ * Consistent Overhead Byte Stuffing (COBS) so that it contains no zero bytes, and terminated by a single
+ * zero byte. A receiver that loses or corrupts bytes therefore discards at most the frames affected and
+ * resynchronizes at the next zero byte. COBS adds at most one byte per 254 bytes of message.</p>
+ */
+@Immutable
+public final class CobsFraming {
+
+    /** <p>The byte that ends every frame.</p> */
+    public static final byte DELIMITER = 0;
+    private static final int CRC_SIZE = 4;
+
+    private CobsFraming() {}
+
+    /**
+     * <p>Returns the frame for the given message.</p>
+     *
+     * @param message the message. Never {@code null}.
+     * @return never {@code null}.
+     */
+    @NonNull public static byte[] encode(@NonNull byte[] message) {
+        CRC32 crc = new CRC32();
+        crc.update(message, 0, message.length);
+        long value = crc.getValue();
+        byte[] raw = new byte[message.length + CRC_SIZE];
+        System.arraycopy(message, 0, raw, 0, message.length);
+        for (int i = 0; i < CRC_SIZE; i++) raw[message.length + i] = (byte) (value >>> (24 - 8 * i));
+        byte[] frame = new byte[raw.length + raw.length / 254 + 2];
+        int out = 1;
+        int code = 1;
+        int codeIndex = 0;
+        for (byte b : raw) {
+            if (b != 0) {
+                frame[out++] = b;
+                code++;
+            }
+            if (b == 0 || code == 0xFF) {
+                frame[codeIndex] = (byte) code;
+                codeIndex = out++;
+                code = 1;
+            }
+        }
+        frame[codeIndex] = (byte) code;
+        frame[out++] = DELIMITER;
+        byte[] result = new byte[out];
+        System.arraycopy(frame, 0, result, 0, out);
+        return result;
+    }
+
+    /**
+     * <p>Returns the message in the given frame, which excludes the terminating zero byte.</p>
+     *
+     * @param frame the frame bytes. Never {@code null}.
+     * @param length the number of frame bytes.
+     * @return {@code null} if the frame is malformed or its CRC does not match.
+     */
+    @CheckForNull public static byte[] decode(@NonNull byte[] frame, int length) {
+        byte[] raw = new byte[length];
+        int out = 0;
+        int in = 0;
+        while (in < length) {
+            int code = frame[in++] & 0xFF;
+            if (code == 0 || in + code - 1 > length) return null;
+            for (int i = 1; i < code; i++) raw[out++] = frame[in++];
+            if (code < 0xFF && in < length) raw[out++] = 0;
+        }
+        if (out < CRC_SIZE) return null;
+        int size = out - CRC_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(raw, 0, size);
+        long expected = 0L;
+        for (int i = 0; i < CRC_SIZE; i++) expected = (expected << 8) | (raw[size + i] & 0xFF);
+        if (crc.getValue() != expected) return null;
+        byte[] message = new byte[size];
+        System.arraycopy(raw, 0, message, 0, size);
+        return message;
+    }
+
+    /**
+     * <p>Reads frames from a byte stream, such as the receiving end of a serial line, and returns their
+     * messages. Corrupt frames and frames longer than the configured maximum are skipped and
+     * counted.</p>
+     */
+    @NotThreadSafe
+    public static final class Decoder {
+
+        private final InputStream in;
+        private final int maxFrameBytes;
+        private final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        private final byte[] buffer = new byte[4096];
+        private int position = 0;
+        private int limit = 0;
+        private boolean overflowed = false;
+        private long corrupt = 0L;
+
+        /**
+         * <p>Constructor.</p>
+         *
+         * @param in the stream to read from. Never {@code null}.
+         * @param maxFrameBytes the largest encoded frame to accept, excluding its delimiter.
+         */
+        public Decoder(@NonNull InputStream in, int maxFrameBytes) {
+            this.in = in;
+            this.maxFrameBytes = maxFrameBytes;
+        }
+
+        /**
+         * <p>Blocks until a valid frame is read, and returns its message.</p>
+         *
+         * @return {@code null} if the end of the stream is reached.
+         * @throws IOException if the stream cannot be read.
+         */
+        @CheckForNull public byte[] next() throws IOException {
+            while (true) {
+                if (this.position == this.limit) {
+                    int read = this.in.read(this.buffer);
+                    if (read < 0) return null;
+                    this.position = 0;
+                    this.limit = read;
+                    continue;
+                }
+                byte b = this.buffer[this.position++];
+                if (b != DELIMITER) {
+                    if (this.frame.size() < this.maxFrameBytes) this.frame.write(b);
+                    else this.overflowed = true;
+                    continue;
+                }
+                if (this.frame.size() == 0) continue;
+                byte[] bytes = this.frame.toByteArray();
+                boolean overflow = this.overflowed;
+                this.frame.reset();
+                this.overflowed = false;
+                byte[] message = overflow ? null : decode(bytes, bytes.length);
+                if (message != null) return message;
+                this.corrupt++;
+            }
+        }
+
+        /**
+         * <p>Returns the number of frames skipped because they were corrupt or too long.</p>
+         *
+         * @return never negative.
+         */
+        public long getCorruptCount() {
+            return this.corrupt;
+        }
+
+    }
+
+}
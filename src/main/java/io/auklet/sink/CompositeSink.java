@@ -0,0 +1,274 @@
+package io.auklet.sink;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import io.auklet.Auklet;
+import io.auklet.AukletException;
+import io.auklet.util.ThreadUtil;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>A data sink that routes each message to one or more other data sinks (<i>branches</i>),
+ * according to a {@link Policy}.</p>
+ *
+ * <p>Messages are encoded once, by this sink, and the encoded bytes are handed to the branches. Each
+ * branch has its own bounded queue and writer thread, so a slow or blocked branch never delays the
+ * agent or the other branches; when a branch's queue is full, new messages for that branch are dropped
+ * and counted. Each branch keeps its own {@link SinkStats}, and data usage limits are enforced by each
+ * branch as usual.</p>
+ *
+ * <p>Because branches may see different subsets of the message stream, frame strings are never interned
+ * by this sink (see {@link Auklet#getStringDictionarySize()}).</p>
+ */
+@ThreadSafe
+public final class CompositeSink extends AbstractSink {
+
+    /** <p>The number of messages each branch may have waiting to be written.</p> */
+    public static final int BRANCH_QUEUE_CAPACITY = 256;
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompositeSink.class);
+    private final Policy policy;
+    private final List<Branch> branches;
+
+    /** <p>Decides which branches receive each message.</p> */
+    public enum Policy {
+        /**
+         * <p>Write each message to the first branch that is connected, in configuration order; if none
+         * is connected, write it to the first branch.</p>
+         */
+        FALLBACK,
+        /** <p>Write each message to every branch.</p> */
+        MIRROR;
+
+        /**
+         * <p>Returns the policy with the given config name.</p>
+         *
+         * @param name {@code fallback} or {@code mirror}, case-insensitive.
+         * @return {@code null} if the name is {@code null} or not recognized.
+         */
+        @CheckForNull public static Policy fromConfig(@Nullable String name) {
+            if ("fallback".equalsIgnoreCase(name)) return FALLBACK;
+            if ("mirror".equalsIgnoreCase(name)) return MIRROR;
+            return null;
+        }
+    }
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param policy the routing policy. Never {@code null}.
+     * @param sinks the branches, in priority order. Never {@code null} or empty.
+     */
+    public CompositeSink(@NonNull Policy policy, @NonNull List<AbstractSink> sinks) {
+        this.policy = policy;
+        List<Branch> list = new ArrayList<>(sinks.size());
+        for (AbstractSink sink : sinks) list.add(new Branch(sink));
+        this.branches = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * <p>Starts every branch. A branch that cannot be started is left disconnected and receives no
+     * messages.</p>
+     *
+     * @throws AukletException if no branch could be started.
+     */
+    @Override public void start(@NonNull Auklet agent) throws AukletException {
+        this.setAgent(agent);
+        AukletException failure = null;
+        int started = 0;
+        for (Branch branch : this.branches) {
+            try {
+                branch.sink.start(agent);
+                branch.started.set(true);
+                started++;
+            } catch (AukletException e) {
+                LOGGER.warn("Could not start {}; it will not receive data.", branch.getName(), e);
+                failure = e;
+            }
+        }
+        if (started == 0) throw new AukletException("Could not start any data sink.", failure);
+        LOGGER.info("Routing data to {} of {} sinks using policy {}.", started, this.branches.size(), this.policy);
+    }
+
+    /**
+     * <p>Returns the routing policy.</p>
+     *
+     * @return never {@code null}.
+     */
+    @NonNull public Policy getPolicy() {
+        return this.policy;
+    }
+
+    /**
+     * <p>Returns the branches of this sink, in priority order.</p>
+     *
+     * @return never {@code null}.
+     */
+    @NonNull public List<Branch> getBranches() {
+        return this.branches;
+    }
+
+    @Override protected boolean write(@NonNull byte[] bytes) throws AukletException {
+        return this.route(bytes, false);
+    }
+
+    @Override protected boolean writeTelemetry(@NonNull byte[] bytes) throws AukletException {
+        return this.route(bytes, true);
+    }
+
+    @Override protected boolean usesStringDictionary() {
+        return false;
+    }
+
+    /** <p>This sink is connected if any of its branches is connected.</p> */
+    @Override public boolean isConnected() {
+        for (Branch branch : this.branches) {
+            if (branch.isConnected()) return true;
+        }
+        return false;
+    }
+
+    /** <p>Waits briefly for each branch to write its queued messages, then shuts the branches down.</p> */
+    @Override public void shutdown() {
+        super.shutdown();
+        for (Branch branch : this.branches) {
+            ThreadUtil.shutdown(branch.writer);
+            branch.sink.shutdown();
+        }
+    }
+
+    /**
+     * <p>Queues the given message on the branches selected by the routing policy.</p>
+     *
+     * @param bytes the message. Never {@code null}.
+     * @param telemetry whether the message is telemetry.
+     * @return the result of {@link #drop()} if no branch accepted the message.
+     */
+    private boolean route(@NonNull byte[] bytes, boolean telemetry) {
+        if (this.policy == Policy.MIRROR) {
+            boolean queued = false;
+            for (Branch branch : this.branches) {
+                if (branch.started.get()) queued |= branch.offer(bytes, telemetry);
+            }
+            return queued || this.drop();
+        }
+        Branch target = null;
+        for (Branch branch : this.branches) {
+            if (branch.isConnected()) {
+                target = branch;
+                break;
+            }
+        }
+        if (target == null) {
+            for (Branch branch : this.branches) {
+                if (branch.started.get()) {
+                    target = branch;
+                    break;
+                }
+            }
+        }
+        return target != null && target.offer(bytes, telemetry) || this.drop();
+    }
+
+    /** <p>A data sink that receives messages from a {@link CompositeSink}, through its own queue.</p> */
+    @ThreadSafe
+    public static final class Branch {
+
+        private final AbstractSink sink;
+        private final ThreadPoolExecutor writer;
+        private final AtomicBoolean started = new AtomicBoolean(false);
+        private final AtomicLong dropped = new AtomicLong();
+
+        private Branch(@NonNull AbstractSink sink) {
+            this.sink = sink;
+            this.writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(BRANCH_QUEUE_CAPACITY),
+                    ThreadUtil.createDaemonThreadFactory("Auklet" + sink.getClass().getSimpleName()),
+                    new ThreadPoolExecutor.AbortPolicy());
+        }
+
+        /**
+         * <p>Returns the data sink of this branch.</p>
+         *
+         * @return never {@code null}.
+         */
+        @NonNull public Sink getSink() {
+            return this.sink;
+        }
+
+        /**
+         * <p>Returns the name of this branch's data sink.</p>
+         *
+         * @return never {@code null}.
+         */
+        @NonNull public String getName() {
+            return this.sink.getClass().getSimpleName();
+        }
+
+        /**
+         * <p>Returns whether this branch was started and its data sink is connected.</p>
+         *
+         * @return {@code false} if messages routed to this branch cannot currently be delivered.
+         */
+        public boolean isConnected() {
+            return this.started.get() && this.sink.isConnected();
+        }
+
+        /**
+         * <p>Returns the number of messages waiting to be written to this branch.</p>
+         *
+         * @return never negative.
+         */
+        public int getQueueSize() {
+            return this.writer.getQueue().size();
+        }
+
+        /**
+         * <p>Returns the number of messages dropped because this branch's queue was full.</p>
+         *
+         * @return never negative.
+         */
+        public long getDroppedCount() {
+            return this.dropped.get();
+        }
+
+        /**
+         * <p>Queues the given message to be written to this branch.</p>
+         *
+         * @param bytes the message. Never {@code null}.
+         * @param telemetry whether the message is telemetry.
+         * @return {@code false} if the queue was full.
+         */
+        private boolean offer(@NonNull final byte[] bytes, final boolean telemetry) {
+            try {
+                this.writer.execute(new Runnable() {
+                    @Override public void run() {
+                        try {
+                            sink.writeEncoded(bytes, telemetry);
+                        } catch (AukletException | RuntimeException e) {
+                            LOGGER.debug("Could not write to {}.", getName(), e);
+                        }
+                    }
+                });
+                return true;
+            } catch (RejectedExecutionException e) {
+                this.dropped.incrementAndGet();
+                return false;
+            }
+        }
+
+    }
+
+}
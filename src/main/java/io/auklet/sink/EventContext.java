@@ -0,0 +1,86 @@
+package io.auklet.sink;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import io.auklet.core.Breadcrumbs;
+import net.jcip.annotations.Immutable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Context about an event that must be captured on the thread that submitted the event, before the
+ * event is handed off to the agent's daemon thread for sending.</p>
+ */
+@Immutable
+public final class EventContext {
+
+    private final Breadcrumbs.Trail breadcrumbs;
+    private final Map<String, String> tags;
+    private final double sampleRate;
+
+    /**
+     * <p>Constructor for an event that was not sampled when it was submitted.</p>
+     *
+     * @param breadcrumbs the breadcrumbs of the submitting thread; may be {@code null}.
+     * @param tags arbitrary key/value pairs describing the event, such as the logger name and MDC of a
+     * logged exception; may be {@code null}. Entries with {@code null} keys or values are ignored.
+     */
+    public EventContext(@Nullable Breadcrumbs.Trail breadcrumbs, @Nullable Map<String, String> tags) {
+        this(breadcrumbs, tags, 1d);
+    }
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param breadcrumbs the breadcrumbs of the submitting thread; may be {@code null}.
+     * @param tags arbitrary key/value pairs describing the event, such as the logger name and MDC of a
+     * logged exception; may be {@code null}. Entries with {@code null} keys or values are ignored.
+     * @param sampleRate the probability with which the event was sampled when it was submitted (see
+     * {@link io.auklet.core.EventRateLimiter#admit(boolean)}); values outside {@code (0, 1]} are coerced
+     * to 1.
+     */
+    public EventContext(@Nullable Breadcrumbs.Trail breadcrumbs, @Nullable Map<String, String> tags, double sampleRate) {
+        this.breadcrumbs = breadcrumbs;
+        this.sampleRate = sampleRate > 0d && sampleRate <= 1d ? sampleRate : 1d;
+        if (tags == null || tags.isEmpty()) {
+            this.tags = Collections.emptyMap();
+        } else {
+            Map<String, String> copy = new HashMap<>();
+            for (Map.Entry<String, String> tag : tags.entrySet()) {
+                if (tag.getKey() != null && tag.getValue() != null) copy.put(tag.getKey(), tag.getValue());
+            }
+            this.tags = Collections.unmodifiableMap(copy);
+        }
+    }
+
+    /**
+     * <p>Returns the breadcrumbs of the thread that submitted the event.</p>
+     *
+     * @return possibly {@code null}.
+     */
+    @CheckForNull public Breadcrumbs.Trail getBreadcrumbs() {
+        return this.breadcrumbs;
+    }
+
+    /**
+     * <p>Returns the tags of the event.</p>
+     *
+     * @return never {@code null}, but possibly empty. The returned map is unmodifiable.
+     */
+    @NonNull public Map<String, String> getTags() {
+        return this.tags;
+    }
+
+    /**
+     * <p>Returns the probability with which the event was sampled when it was submitted.</p>
+     *
+     * @return a value greater than 0 and at most 1.
+     */
+    public double getSampleRate() {
+        return this.sampleRate;
+    }
+
+}
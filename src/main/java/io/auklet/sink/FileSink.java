@@ -0,0 +1,494 @@
+package io.auklet.sink;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.auklet.Auklet;
+import io.auklet.AukletException;
+import io.auklet.util.FileUtil;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.NotThreadSafe;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>An Auklet data sink that appends messages to rolling segment files in the {@value #DIRECTORY}
+ * subdirectory of the agent's config directory, for deployments that are offline for long periods.
+ * The segments can later be uploaded in bulk or inspected locally using {@link Reader}.</p>
+ *
+ * <p>Each record is a 4-byte big-endian length, a 1-byte kind ({@value #KIND_EVENT} for events,
+ * {@value #KIND_TELEMETRY} for telemetry) and the MessagePack message. Records are collected in a
+ * memory buffer and written to the active segment with a single {@link FileChannel} write when the
+ * buffer fills, and at least once per second, so that a crash loses at most about one second of
+ * data. A segment is closed once it reaches {@value #MAX_SEGMENT_BYTES} bytes or is one hour old; closed
+ * segments are optionally compressed with gzip on the agent's daemon thread. Messages larger than
+ * {@value #MAX_RECORD_BYTES} bytes are rejected.</p>
+ *
+ * <p>Frame strings are not interned (see {@link StringDictionary}), so that each segment can be decoded
+ * on its own, even after older segments are deleted or the agent restarts.</p>
+ *
+ * <p>The total size of all segments is bounded by the storage limit from the Auklet backend's data
+ * usage config, or {@value #DEFAULT_STORAGE_LIMIT} bytes if none is set; when it is exceeded, the oldest
+ * closed segments are deleted. Writes to this sink do not count against the cellular data limit.</p>
+ */
+@ThreadSafe
+public final class FileSink extends AbstractSink {
+
+    /** <p>The name of the segment directory, relative to the agent's config directory.</p> */
+    public static final String DIRECTORY = "events";
+    /** <p>The record kind of events.</p> */
+    public static final byte KIND_EVENT = 0;
+    /** <p>The record kind of telemetry.</p> */
+    public static final byte KIND_TELEMETRY = 1;
+    /** <p>The size at which a segment is closed.</p> */
+    public static final long MAX_SEGMENT_BYTES = 1024L * 1024L;
+    /** <p>The size of the largest message that can be written.</p> */
+    public static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+    /** <p>The total size of all segments, if the Auklet backend does not set a storage limit.</p> */
+    public static final long DEFAULT_STORAGE_LIMIT = 100L * 1024L * 1024L;
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileSink.class);
+    private static final long MAX_SEGMENT_AGE_MILLIS = TimeUnit.HOURS.toMillis(1L);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int HEADER_SIZE = 5;
+    private static final String ACTIVE_SUFFIX = ".active";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String COMPRESSED_SUFFIX = ".seg.gz";
+    private final Object lock = new Object();
+    @GuardedBy("lock") private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    @GuardedBy("lock") private File directory;
+    @GuardedBy("lock") private boolean compress;
+    @GuardedBy("lock") private FileChannel channel;
+    @GuardedBy("lock") private File activeFile;
+    @GuardedBy("lock") private long activeBytes = 0L;
+    @GuardedBy("lock") private long activeSince = 0L;
+    @GuardedBy("lock") private long sequence = 0L;
+    @GuardedBy("lock") private long deletedSegments = 0L;
+    @GuardedBy("lock") private ScheduledFuture<?> flushTask;
+
+    /**
+     * <p>Opens a new segment, and closes any segments left active by a previous run.</p>
+     *
+     * @throws AukletException if the segment directory or the new segment cannot be created.
+     */
+    @Override public void start(@NonNull Auklet agent) throws AukletException {
+        this.setAgent(agent);
+        synchronized (this.lock) {
+            this.directory = getDirectory(agent.getConfigDir());
+            this.compress = agent.isFileSinkCompressed();
+            if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+                throw new AukletException("Could not create file sink directory: " + this.directory);
+            }
+            LOGGER.info("Writing data to segment files in {}.", this.directory);
+            for (File leftover : listFiles(this.directory, ACTIVE_SUFFIX)) this.renameToClosed(leftover);
+            if (this.compress) {
+                for (File segment : listFiles(this.directory, SEGMENT_SUFFIX)) this.scheduleCompression(segment);
+            }
+            this.openSegment();
+            this.enforceRetention();
+            this.flushTask = agent.scheduleRepeatingTask(new Runnable() {
+                @Override public void run() {
+                    flushAndRotate();
+                }
+            }, 1L, 1L, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override protected boolean write(@NonNull byte[] bytes) throws AukletException {
+        return this.append(KIND_EVENT, bytes);
+    }
+
+    @Override protected boolean writeTelemetry(@NonNull byte[] bytes) throws AukletException {
+        return this.append(KIND_TELEMETRY, bytes);
+    }
+
+    /** <p>Segments must be readable on their own, so frame strings are not interned.</p> */
+    @Override protected boolean usesStringDictionary() {
+        return false;
+    }
+
+    @Override public boolean isConnected() {
+        synchronized (this.lock) {
+            return this.channel != null;
+        }
+    }
+
+    /** <p>Writes buffered records and closes the active segment. It is compressed on the next start.</p> */
+    @Override public void shutdown() {
+        synchronized (this.lock) {
+            super.shutdown();
+            if (this.flushTask != null) this.flushTask.cancel(false);
+            if (this.channel == null) return;
+            try {
+                this.flushBuffer();
+                this.channel.force(false);
+            } catch (IOException e) {
+                LOGGER.warn("Could not write buffered data to {}.", this.activeFile, e);
+            }
+            this.closeChannel();
+            this.renameToClosed(this.activeFile);
+        }
+    }
+
+    /**
+     * <p>Returns the number of segments deleted to stay within the storage limit.</p>
+     *
+     * @return never negative.
+     */
+    public long getDeletedSegmentCount() {
+        synchronized (this.lock) {
+            return this.deletedSegments;
+        }
+    }
+
+    /**
+     * <p>Returns the segment directory within the given config directory.</p>
+     *
+     * @param configDir the agent's config directory. Never {@code null}.
+     * @return never {@code null}.
+     */
+    @NonNull public static File getDirectory(@NonNull File configDir) {
+        return new File(configDir, DIRECTORY);
+    }
+
+    /**
+     * <p>Returns the closed segments in the given directory, oldest first. The active segment is not
+     * included.</p>
+     *
+     * @param directory the segment directory. Never {@code null}.
+     * @return never {@code null}.
+     */
+    @NonNull public static List<File> listSegments(@NonNull File directory) {
+        List<File> segments = listFiles(directory, SEGMENT_SUFFIX);
+        segments.addAll(listFiles(directory, COMPRESSED_SUFFIX));
+        Collections.sort(segments);
+        return segments;
+    }
+
+    /**
+     * <p>Appends a record to the buffer, writing the buffer to the active segment if needed.</p>
+     *
+     * @param kind the record kind.
+     * @param bytes the message. Never {@code null}.
+     * @return {@code true}.
+     * @throws AukletException if this sink is closed, the message is too large or the record cannot be
+     * written.
+     */
+    private boolean append(byte kind, @NonNull byte[] bytes) throws AukletException {
+        if (bytes.length > MAX_RECORD_BYTES) throw new AukletException("Message is too large for the file sink: " + bytes.length + " bytes.");
+        synchronized (this.lock) {
+            if (this.channel == null) throw new AukletException("File sink is closed.");
+            int size = HEADER_SIZE + bytes.length;
+            try {
+                if (this.buffer.remaining() < size) this.flushBuffer();
+                if (size > this.buffer.capacity()) {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                    header.putInt(bytes.length).put(kind).flip();
+                    writeFully(this.channel, header);
+                    writeFully(this.channel, ByteBuffer.wrap(bytes));
+                } else {
+                    this.buffer.putInt(bytes.length).put(kind).put(bytes);
+                }
+                this.activeBytes += size;
+                if (this.activeBytes >= MAX_SEGMENT_BYTES) this.rotate();
+            } catch (IOException e) {
+                throw new AukletException("Could not write data to " + this.activeFile, e);
+            }
+            return true;
+        }
+    }
+
+    /** <p>Writes buffered records, and closes the active segment if it is too old.</p> */
+    private void flushAndRotate() {
+        synchronized (this.lock) {
+            if (this.channel == null) return;
+            try {
+                this.flushBuffer();
+                if (this.activeBytes > 0L && System.currentTimeMillis() - this.activeSince >= MAX_SEGMENT_AGE_MILLIS) this.rotate();
+            } catch (AukletException | IOException e) {
+                LOGGER.warn("Could not write buffered data to {}.", this.activeFile, e);
+            }
+        }
+    }
+
+    /**
+     * <p>Writes the contents of the buffer to the active segment.</p>
+     *
+     * @throws IOException if the data cannot be written.
+     */
+    @GuardedBy("lock") private void flushBuffer() throws IOException {
+        if (this.buffer.position() == 0) return;
+        this.buffer.flip();
+        try {
+            writeFully(this.channel, this.buffer);
+        } finally {
+            this.buffer.clear();
+        }
+    }
+
+    /**
+     * <p>Closes the active segment and opens a new one.</p>
+     *
+     * @throws IOException if the active segment cannot be written.
+     * @throws AukletException if the new segment cannot be created.
+     */
+    @GuardedBy("lock") private void rotate() throws IOException, AukletException {
+        this.flushBuffer();
+        this.channel.force(false);
+        this.closeChannel();
+        this.closeSegment(this.activeFile);
+        this.openSegment();
+        this.enforceRetention();
+    }
+
+    /**
+     * <p>Creates a new active segment.</p>
+     *
+     * @throws AukletException if the segment cannot be created.
+     */
+    @GuardedBy("lock") private void openSegment() throws AukletException {
+        long now = System.currentTimeMillis();
+        // Zero-padded so that segments sort by name in creation order.
+        this.activeFile = new File(this.directory, String.format("%013d-%06d%s", now, this.sequence++ % 1000000L, ACTIVE_SUFFIX));
+        try {
+            this.channel = new RandomAccessFile(this.activeFile, "rw").getChannel();
+            this.channel.position(this.channel.size());
+        } catch (IOException | SecurityException e) {
+            this.channel = null;
+            throw new AukletException("Could not create segment file " + this.activeFile, e);
+        }
+        this.activeBytes = 0L;
+        this.activeSince = now;
+    }
+
+    /** <p>Closes the channel of the active segment.</p> */
+    @GuardedBy("lock") private void closeChannel() {
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            LOGGER.warn("Could not close {}.", this.activeFile, e);
+        }
+        this.channel = null;
+    }
+
+    /**
+     * <p>Marks the given segment as closed, and schedules its compression if enabled.</p>
+     *
+     * @param active the active segment file. Never {@code null}.
+     */
+    @GuardedBy("lock") private void closeSegment(@NonNull File active) {
+        File closed = this.renameToClosed(active);
+        if (closed != null && this.compress) this.scheduleCompression(closed);
+    }
+
+    /**
+     * <p>Marks the given segment as closed.</p>
+     *
+     * @param active the active segment file. Never {@code null}.
+     * @return the closed segment file, or {@code null} if it could not be renamed.
+     */
+    @GuardedBy("lock") @CheckForNull private File renameToClosed(@NonNull File active) {
+        File closed = new File(this.directory, segmentName(active, SEGMENT_SUFFIX));
+        if (active.renameTo(closed)) return closed;
+        LOGGER.warn("Could not close segment {}.", active);
+        return null;
+    }
+
+    /**
+     * <p>Compresses the given closed segment on the agent's daemon thread.</p>
+     *
+     * @param closed the closed segment file. Never {@code null}.
+     */
+    private void scheduleCompression(@NonNull final File closed) {
+        try {
+            this.getAgent().scheduleOneShotTask(new Runnable() {
+                @Override public void run() {
+                    compress(closed);
+                }
+            }, 0L, TimeUnit.SECONDS);
+        } catch (AukletException e) {
+            LOGGER.warn("Could not schedule compression of {}.", closed, e);
+        }
+    }
+
+    /**
+     * <p>Replaces the given closed segment with a gzip-compressed copy. The copy is made without holding
+     * the lock, but only replaces the segment if retention has not deleted it in the meantime.</p>
+     *
+     * @param segment the segment file. Never {@code null}.
+     */
+    private void compress(@NonNull File segment) {
+        File compressed = new File(segment.getParentFile(), segmentName(segment, COMPRESSED_SUFFIX));
+        File temp = new File(segment.getParentFile(), compressed.getName() + ".tmp");
+        try (InputStream in = new FileInputStream(segment);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(temp), BUFFER_SIZE)) {
+            byte[] chunk = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(chunk)) != -1) out.write(chunk, 0, read);
+        } catch (IOException | SecurityException e) {
+            LOGGER.warn("Could not compress segment {}.", segment, e);
+            FileUtil.deleteQuietly(temp);
+            return;
+        }
+        synchronized (this.lock) {
+            if (segment.exists() && temp.renameTo(compressed)) FileUtil.deleteQuietly(segment);
+            else FileUtil.deleteQuietly(temp);
+        }
+    }
+
+    /** <p>Deletes the oldest closed segments until all segments fit within the storage limit.</p> */
+    @GuardedBy("lock") private void enforceRetention() {
+        long limit = DEFAULT_STORAGE_LIMIT;
+        try {
+            long storageLimit = this.getAgent().getUsageMonitor().getUsageConfig().getStorageLimit();
+            if (storageLimit > 0L) limit = storageLimit;
+        } catch (AukletException e) {
+            LOGGER.debug("Using default storage limit.", e);
+        }
+        List<File> segments = listSegments(this.directory);
+        long total = this.activeBytes;
+        for (File segment : segments) total += segment.length();
+        for (File segment : segments) {
+            if (total <= limit) break;
+            total -= segment.length();
+            FileUtil.deleteQuietly(segment);
+            if (this.deletedSegments++ == 0L) LOGGER.warn("File sink storage limit ({} bytes) reached; deleting the oldest segments.", limit);
+        }
+    }
+
+    /**
+     * <p>Returns the name of the given segment with its suffix replaced.</p>
+     *
+     * @param segment the segment file. Never {@code null}.
+     * @param suffix the new suffix. Never {@code null}.
+     * @return never {@code null}.
+     */
+    @NonNull private static String segmentName(@NonNull File segment, @NonNull String suffix) {
+        String name = segment.getName();
+        return name.substring(0, name.indexOf('.')) + suffix;
+    }
+
+    @NonNull private static List<File> listFiles(@NonNull File directory, @NonNull final String suffix) {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override public boolean accept(File dir, String name) {
+                return name.endsWith(suffix);
+            }
+        });
+        List<File> list = files == null ? new ArrayList<File>() : new ArrayList<>(Arrays.asList(files));
+        Collections.sort(list);
+        return list;
+    }
+
+    private static void writeFully(@NonNull FileChannel channel, @NonNull ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    /**
+     * <p>Reads the records of one segment file, compressed or not, in the order they were written.</p>
+     *
+     * <p>A record that was only partly written (for example, because the process was killed), or whose
+     * length is invalid, ends the segment.</p>
+     */
+    @NotThreadSafe
+    public static final class Reader implements Closeable {
+
+        private final DataInputStream in;
+
+        /**
+         * <p>Opens the given segment file.</p>
+         *
+         * @param segment a segment returned by {@link #listSegments(File)}. Never {@code null}.
+         * @throws IOException if the file cannot be opened.
+         */
+        public Reader(@NonNull File segment) throws IOException {
+            InputStream stream = new FileInputStream(segment);
+            try {
+                if (segment.getName().endsWith(COMPRESSED_SUFFIX)) stream = new GZIPInputStream(stream, BUFFER_SIZE);
+            } catch (IOException e) {
+                stream.close();
+                throw e;
+            }
+            this.in = new DataInputStream(new BufferedInputStream(stream, BUFFER_SIZE));
+        }
+
+        /**
+         * <p>Reads the next record.</p>
+         *
+         * @return {@code null} at the end of the segment.
+         * @throws IOException if the file cannot be read.
+         */
+        @CheckForNull public Record next() throws IOException {
+            try {
+                int length = this.in.readInt();
+                byte kind = this.in.readByte();
+                if (length < 0 || length > MAX_RECORD_BYTES) return null;
+                byte[] payload = new byte[length];
+                this.in.readFully(payload);
+                return new Record(kind, payload);
+            } catch (EOFException e) {
+                return null;
+            }
+        }
+
+        @Override public void close() throws IOException {
+            this.in.close();
+        }
+
+    }
+
+    /** <p>A record read from a segment file.</p> */
+    @Immutable
+    public static final class Record {
+
+        private final byte kind;
+        private final byte[] payload;
+
+        private Record(byte kind, @NonNull byte[] payload) {
+            this.kind = kind;
+            this.payload = payload;
+        }
+
+        /**
+         * <p>Returns whether this record is telemetry, rather than an event.</p>
+         *
+         * @return {@code true} if this record is telemetry.
+         */
+        public boolean isTelemetry() {
+            return this.kind == KIND_TELEMETRY;
+        }
+
+        /**
+         * <p>Returns the MessagePack message. The returned array must not be modified.</p>
+         *
+         * @return never {@code null}.
+         */
+        @NonNull public byte[] getPayload() {
+            return this.payload;
+        }
+
+    }
+
+}
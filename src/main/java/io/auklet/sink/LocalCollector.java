@@ -0,0 +1,272 @@
+package io.auklet.sink;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.auklet.Auklet;
+import io.auklet.AukletException;
+import io.auklet.core.HasAgent;
+import io.auklet.util.ThreadUtil;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Receives messages from the {@link LocalCollectorSink}s of other JVMs on the same host and forwards
+ * them, unchanged, to this agent's own data sink, so that all of them share one upstream connection.</p>
+ *
+ * <p>The collector listens on loopback UDP if the collector address is a port number, or on a Unix domain
+ * socket (Java 16 and later) otherwise. All sockets are served by a single non-blocking thread. Malformed
+ * messages, and messages larger than {@value #MAX_FRAME_BYTES} bytes, are discarded and counted; a Unix
+ * domain socket client that sends one is disconnected.</p>
+ */
+@ThreadSafe
+public final class LocalCollector extends HasAgent {
+
+    /** <p>The UDP port used if no collector address is configured.</p> */
+    public static final int DEFAULT_PORT = 7155;
+    /** <p>The largest message accepted over a Unix domain socket.</p> */
+    public static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+    /** <p>The size of the length and kind that precede each message on a Unix domain socket.</p> */
+    /*package*/ static final int HEADER_SIZE = 5;
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalCollector.class);
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int RECEIVE_BUFFER_SIZE = 4 * 1024 * 1024;
+    private final AbstractSink upstream;
+    private final String address;
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final Set<Channel> channels = Collections.newSetFromMap(new ConcurrentHashMap<Channel, Boolean>());
+    private volatile Selector selector;
+    private volatile Thread thread;
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param address the collector address: a UDP port number or a Unix domain socket path. Never {@code null}.
+     * @param upstream the sink to which received messages are forwarded. Never {@code null}.
+     */
+    public LocalCollector(@NonNull String address, @NonNull AbstractSink upstream) {
+        this.address = address;
+        this.upstream = upstream;
+    }
+
+    /**
+     * <p>Returns the UDP port named by the given collector address.</p>
+     *
+     * @param address the collector address. Never {@code null}.
+     * @return the port, or {@code -1} if the address is a Unix domain socket path.
+     * @throws AukletException if the address is a number, but not a valid port.
+     */
+    /*package*/ static int parsePort(@NonNull String address) throws AukletException {
+        int port;
+        try {
+            port = Integer.parseInt(address.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (port < 1 || port > 65535) throw new AukletException("Invalid local collector port: " + address);
+        return port;
+    }
+
+    /**
+     * <p>Binds the collector socket and starts the collector thread.</p>
+     *
+     * @throws AukletException if the socket cannot be bound.
+     */
+    @Override public void start(@NonNull Auklet agent) throws AukletException {
+        this.setAgent(agent);
+        int port = parsePort(this.address);
+        Selector sel = null;
+        try {
+            sel = Selector.open();
+            if (port < 0) {
+                ServerSocketChannel server = UnixSockets.bind(this.address);
+                this.channels.add(server);
+                server.register(sel, SelectionKey.OP_ACCEPT);
+            } else {
+                DatagramChannel channel = DatagramChannel.open();
+                this.channels.add(channel);
+                channel.configureBlocking(false);
+                // Loopback datagrams that arrive while the receive buffer is full are lost, so make it roomy.
+                channel.setOption(StandardSocketOptions.SO_RCVBUF, RECEIVE_BUFFER_SIZE);
+                channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+                channel.register(sel, SelectionKey.OP_READ);
+            }
+        } catch (IOException e) {
+            LocalCollectorSink.closeQuietly(sel);
+            this.closeChannels();
+            throw new AukletException("Could not bind local collector to " + this.address, e);
+        }
+        this.selector = sel;
+        Thread t = ThreadUtil.createDaemonThreadFactory("AukletLocalCollector").newThread(new Runnable() {
+            @Override public void run() {
+                serve();
+            }
+        });
+        this.thread = t;
+        t.start();
+        LOGGER.info("Local collector is listening on {}.", port < 0 ? this.address : "UDP port " + port);
+    }
+
+    /**
+     * <p>Returns the number of messages forwarded to this agent's data sink.</p>
+     *
+     * @return never negative.
+     */
+    public long getReceivedCount() {
+        return this.received.get();
+    }
+
+    /**
+     * <p>Returns the number of malformed or oversized messages that were discarded.</p>
+     *
+     * @return never negative.
+     */
+    public long getDiscardedCount() {
+        return this.discarded.get();
+    }
+
+    /** <p>Stops the collector thread, closes all sockets and removes the Unix domain socket file.</p> */
+    public void shutdown() {
+        LocalCollectorSink.closeQuietly(this.selector);
+        Thread t = this.thread;
+        if (t != null) {
+            try {
+                t.join(1000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        this.closeChannels();
+        try {
+            if (t != null && parsePort(this.address) < 0 && !new File(this.address).delete()) {
+                LOGGER.debug("Could not delete local collector socket file {}.", this.address);
+            }
+        } catch (AukletException e) {
+            // Start would have failed already.
+        }
+    }
+
+    /** <p>Runs the collector thread until the selector is closed.</p> */
+    private void serve() {
+        ByteBuffer datagram = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        Selector sel = this.selector;
+        try {
+            while (sel.isOpen()) {
+                sel.select();
+                Iterator<SelectionKey> keys = sel.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) this.accept(sel, (ServerSocketChannel) key.channel());
+                        else if (key.channel() instanceof DatagramChannel) this.receive((DatagramChannel) key.channel(), datagram);
+                        else this.read(key);
+                    } catch (IOException e) {
+                        LOGGER.debug("Closing local collector client.", e);
+                        this.channels.remove(key.channel());
+                        LocalCollectorSink.closeQuietly(key.channel());
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (sel.isOpen()) LOGGER.warn("Local collector stopped unexpectedly.", e);
+        }
+    }
+
+    private void accept(@NonNull Selector sel, @NonNull ServerSocketChannel server) throws IOException {
+        SocketChannel client = server.accept();
+        if (client == null) return;
+        this.channels.add(client);
+        client.configureBlocking(false);
+        client.register(sel, SelectionKey.OP_READ, ByteBuffer.allocate(READ_BUFFER_SIZE));
+    }
+
+    private void receive(@NonNull DatagramChannel channel, @NonNull ByteBuffer buffer) throws IOException {
+        while (true) {
+            buffer.clear();
+            if (channel.receive(buffer) == null) return;
+            buffer.flip();
+            if (buffer.remaining() < 2) {
+                this.discarded.incrementAndGet();
+                continue;
+            }
+            byte kind = buffer.get();
+            byte[] payload = new byte[buffer.remaining()];
+            buffer.get(payload);
+            this.forward(kind, payload);
+        }
+    }
+
+    /**
+     * <p>Reads from a Unix domain socket client and forwards each complete message.</p>
+     *
+     * @throws IOException if the client disconnected or sent a malformed message.
+     */
+    private void read(@NonNull SelectionKey key) throws IOException {
+        SocketChannel client = (SocketChannel) key.channel();
+        ByteBuffer buffer = (ByteBuffer) key.attachment();
+        if (client.read(buffer) < 0) throw new IOException("Client disconnected.");
+        buffer.flip();
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int length = buffer.getInt(buffer.position());
+            if (length <= 0 || length > MAX_FRAME_BYTES) {
+                this.discarded.incrementAndGet();
+                throw new IOException("Invalid message length: " + length);
+            }
+            if (buffer.remaining() < HEADER_SIZE + length) break;
+            buffer.getInt();
+            byte kind = buffer.get();
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            this.forward(kind, payload);
+        }
+        buffer.compact();
+        if (!buffer.hasRemaining()) {
+            // Grow the buffer to fit the partial message; its length was validated above.
+            int length = buffer.getInt(0);
+            ByteBuffer bigger = ByteBuffer.allocate(HEADER_SIZE + length);
+            buffer.flip();
+            bigger.put(buffer);
+            key.attach(bigger);
+        }
+    }
+
+    private void forward(byte kind, @NonNull byte[] payload) {
+        if (kind != FileSink.KIND_EVENT && kind != FileSink.KIND_TELEMETRY) {
+            this.discarded.incrementAndGet();
+            return;
+        }
+        try {
+            this.upstream.writeEncoded(payload, kind == FileSink.KIND_TELEMETRY);
+            this.received.incrementAndGet();
+        } catch (AukletException | RuntimeException e) {
+            LOGGER.debug("Could not forward message from local collector.", e);
+        }
+    }
+
+    private void closeChannels() {
+        for (Channel channel : this.channels) LocalCollectorSink.closeQuietly(channel);
+        this.channels.clear();
+    }
+
+}
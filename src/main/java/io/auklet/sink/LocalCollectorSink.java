@@ -0,0 +1,228 @@
+package io.auklet.sink;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import io.auklet.Auklet;
+import io.auklet.AukletException;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>A data sink that sends messages to a {@link LocalCollector} running in another JVM on the same
+ * host, which forwards them over its own upstream connection. This avoids having every JVM on a busy host
+ * hold its own MQTT session.</p>
+ *
+ * <p>If the collector address ({@link Auklet#getCollectorAddress()}) is a port number, each message is
+ * sent as one loopback UDP datagram containing a 1-byte kind ({@link FileSink#KIND_EVENT} or
+ * {@link FileSink#KIND_TELEMETRY}) followed by the MessagePack message; messages larger than
+ * {@value #MAX_DATAGRAM_PAYLOAD} bytes are dropped. Otherwise, the address is the path of a Unix domain
+ * socket (Java 16 and later), over which each message is sent as a 4-byte big-endian length, the kind
+ * and the message.</p>
+ *
+ * <p>Writes never block: if the socket buffer is full, or the collector is not running, the message is
+ * dropped and counted (see {@link #getDroppedCount()}). Writes to this sink do not count against the
+ * cellular data limit; the collector counts them when forwarding.</p>
+ */
+@ThreadSafe
+public final class LocalCollectorSink extends AbstractSink {
+
+    /** <p>The largest message that can be sent over loopback UDP.</p> */
+    public static final int MAX_DATAGRAM_PAYLOAD = 65507 - 1;
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalCollectorSink.class);
+    private static final int STREAM_BUFFER_SIZE = 256 * 1024;
+    private static final long RECONNECT_INTERVAL_MILLIS = 5000L;
+    private final Object lock = new Object();
+    private final AtomicLong dropped = new AtomicLong();
+    @GuardedBy("lock") private final ByteBuffer header = ByteBuffer.allocate(1);
+    @GuardedBy("lock") private String socketPath;
+    @GuardedBy("lock") private DatagramChannel datagram;
+    @GuardedBy("lock") private SocketChannel stream;
+    @GuardedBy("lock") private ByteBuffer pending;
+    @GuardedBy("lock") private long lastConnectAttempt = 0L;
+    @GuardedBy("lock") private boolean connected = false;
+    @GuardedBy("lock") private ScheduledFuture<?> flushTask;
+
+    /**
+     * <p>Opens the channel to the local collector. The collector need not be running yet.</p>
+     *
+     * @throws AukletException if the collector address is invalid, or the UDP channel cannot be opened.
+     */
+    @Override public void start(@NonNull Auklet agent) throws AukletException {
+        this.setAgent(agent);
+        String address = agent.getCollectorAddress();
+        int port = LocalCollector.parsePort(address);
+        synchronized (this.lock) {
+            if (port < 0) {
+                if (!UnixSockets.isSupported()) throw new AukletException("Unix domain sockets require Java 16 or later; set the collector address to a port number instead.");
+                this.socketPath = address;
+                this.pending = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+                this.reconnect(System.currentTimeMillis());
+                this.flushTask = agent.scheduleRepeatingTask(new Runnable() {
+                    @Override public void run() {
+                        synchronized (lock) {
+                            flushPending();
+                        }
+                    }
+                }, 1L, 1L, TimeUnit.SECONDS);
+                LOGGER.info("Sending data to the local collector at {}.", address);
+            } else {
+                try {
+                    this.datagram = DatagramChannel.open();
+                    this.datagram.configureBlocking(false);
+                    this.datagram.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+                } catch (IOException e) {
+                    throw new AukletException("Could not open UDP channel to local collector.", e);
+                }
+                this.connected = true;
+                LOGGER.info("Sending data to the local collector on UDP port {}.", port);
+            }
+        }
+    }
+
+    @Override protected boolean write(@NonNull byte[] bytes) throws AukletException {
+        return this.offer(FileSink.KIND_EVENT, bytes);
+    }
+
+    @Override protected boolean writeTelemetry(@NonNull byte[] bytes) throws AukletException {
+        return this.offer(FileSink.KIND_TELEMETRY, bytes);
+    }
+
+    /** <p>The collector interns nothing, so neither does this sink.</p> */
+    @Override protected boolean usesStringDictionary() {
+        return false;
+    }
+
+    /** <p>This sink is connected if the last message was accepted by the socket.</p> */
+    @Override public boolean isConnected() {
+        synchronized (this.lock) {
+            return this.connected;
+        }
+    }
+
+    /**
+     * <p>Returns the number of messages dropped because the collector was unavailable or the socket
+     * buffer was full.</p>
+     *
+     * @return never negative.
+     */
+    public long getDroppedCount() {
+        return this.dropped.get();
+    }
+
+    @Override public void shutdown() {
+        synchronized (this.lock) {
+            super.shutdown();
+            if (this.flushTask != null) this.flushTask.cancel(false);
+            if (this.stream != null) this.flushPending();
+            closeQuietly(this.datagram);
+            closeQuietly(this.stream);
+            this.datagram = null;
+            this.stream = null;
+            this.connected = false;
+        }
+    }
+
+    /**
+     * <p>Sends the given message to the collector, or drops it.</p>
+     *
+     * @param kind the message kind.
+     * @param bytes the message. Never {@code null}.
+     * @return the result of {@link #drop()} if the message was dropped.
+     */
+    private boolean offer(byte kind, @NonNull byte[] bytes) {
+        synchronized (this.lock) {
+            boolean sent = this.datagram != null ? this.sendDatagram(kind, bytes) : this.sendFrame(kind, bytes);
+            if (sent) return true;
+            this.dropped.incrementAndGet();
+            return this.drop();
+        }
+    }
+
+    @GuardedBy("lock") private boolean sendDatagram(byte kind, @NonNull byte[] bytes) {
+        if (bytes.length > MAX_DATAGRAM_PAYLOAD) return false;
+        this.header.clear();
+        this.header.put(kind).flip();
+        try {
+            // A gathering write sends the kind and the message as a single datagram.
+            long sent = this.datagram.write(new ByteBuffer[] {this.header, ByteBuffer.wrap(bytes)});
+            this.connected = sent > 0;
+        } catch (IOException e) {
+            // Typically PortUnreachableException, if the collector is not running.
+            LOGGER.debug("Could not send datagram to local collector.", e);
+            this.connected = false;
+        }
+        return this.connected;
+    }
+
+    @GuardedBy("lock") private boolean sendFrame(byte kind, @NonNull byte[] bytes) {
+        long now = System.currentTimeMillis();
+        if (this.stream == null && !this.reconnect(now)) return false;
+        this.flushPending();
+        if (this.stream == null || this.pending.remaining() < LocalCollector.HEADER_SIZE + bytes.length) return false;
+        this.pending.putInt(bytes.length).put(kind).put(bytes);
+        this.flushPending();
+        return true;
+    }
+
+    /**
+     * <p>Writes as much pending data to the Unix domain socket as it will accept without blocking. If the
+     * socket is broken, the pending data is discarded and the socket is closed.</p>
+     */
+    @GuardedBy("lock") private void flushPending() {
+        if (this.stream == null || this.pending.position() == 0) return;
+        this.pending.flip();
+        try {
+            this.stream.write(this.pending);
+            this.pending.compact();
+        } catch (IOException e) {
+            LOGGER.debug("Lost connection to local collector.", e);
+            closeQuietly(this.stream);
+            this.stream = null;
+            this.connected = false;
+            this.pending.clear();
+        }
+    }
+
+    /**
+     * <p>Connects to the Unix domain socket, at most once every few seconds.</p>
+     *
+     * @param now the current time.
+     * @return {@code true} if connected.
+     */
+    @GuardedBy("lock") private boolean reconnect(long now) {
+        if (now - this.lastConnectAttempt < RECONNECT_INTERVAL_MILLIS) return false;
+        this.lastConnectAttempt = now;
+        try {
+            this.stream = UnixSockets.connect(this.socketPath);
+            this.pending.clear();
+            this.connected = true;
+        } catch (IOException e) {
+            LOGGER.debug("Could not connect to local collector at {}.", this.socketPath, e);
+            this.connected = false;
+        }
+        return this.connected;
+    }
+
+    /*package*/ static void closeQuietly(@Nullable Closeable channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.debug("Could not close channel to local collector.", e);
+        }
+    }
+
+}
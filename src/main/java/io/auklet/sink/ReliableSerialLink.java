@@ -0,0 +1,433 @@
+package io.auklet.sink;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.auklet.util.ThreadUtil;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.NotThreadSafe;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Delivers messages over a serial line reliably and in order, using selective-repeat ARQ.</p>
+ *
+ * <p>Every frame is a 1-byte type, a 4-byte big-endian session id and a 4-byte big-endian sequence
+ * number; data frames add the sequence number of the oldest unacknowledged message and the message
+ * itself. Frames are framed with {@link CobsFraming}. The sender numbers each message and keeps up to
+ * {@code windowSize} of them unacknowledged at once; the receiver ({@link Receiver}) acknowledges each
+ * data frame individually, and requests missing frames with a NAK as soon as it sees a gap. A message is
+ * sent again when it is NAKed, or when no ACK arrives within the time the line needs to send everything
+ * ahead of it plus {@value #ACK_TIMEOUT_MILLIS} ms. Only unacknowledged messages are resent, so a
+ * corrupted frame costs one retransmission rather than a whole window, and throughput stays close to
+ * the line rate.</p>
+ *
+ * <p>Each link picks a random session id when it is created, and ignores ACKs and NAKs for other
+ * sessions. When the receiver sees a new session id, because either end has restarted, it discards its
+ * state and expects the oldest unacknowledged message next, so sequence numbers never need to survive a
+ * restart.</p>
+ *
+ * <p>Outgoing frames go through a {@link SerialFrameWriter}, so they are paced to the line rate; a frame
+ * that the writer drops is simply resent later. Messages waiting for a free slot in the window are held
+ * in a bounded queue, and dropped when it is full.</p>
+ */
+@ThreadSafe
+public final class ReliableSerialLink {
+
+    /** <p>The type of frames that carry a message.</p> */
+    public static final byte TYPE_DATA = 1;
+    /** <p>The type of frames that acknowledge a data frame.</p> */
+    public static final byte TYPE_ACK = 2;
+    /** <p>The type of frames that request a data frame again.</p> */
+    public static final byte TYPE_NAK = 3;
+    /** <p>The number of unacknowledged messages allowed, by default.</p> */
+    public static final int DEFAULT_WINDOW_SIZE = 16;
+    /** <p>How long to wait for an ACK once a frame should have reached the receiver.</p> */
+    public static final long ACK_TIMEOUT_MILLIS = 500L;
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReliableSerialLink.class);
+    private static final int CONTROL_SIZE = 9;
+    private static final int DATA_HEADER_SIZE = 13;
+    private static final int MAX_CONTROL_FRAME_BYTES = 64;
+    private final Object lock = new Object();
+    private final SerialFrameWriter writer;
+    private final InputStream in;
+    private final int windowSize;
+    private final int queueCapacity;
+    private final long nanosPerByte;
+    private final Listener listener;
+    private final int session = new Random().nextInt();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong retransmitted = new AtomicLong();
+    @GuardedBy("lock") private final Queue<byte[]> pending = new ArrayDeque<>();
+    @GuardedBy("lock") private final Map<Integer, Slot> window = new LinkedHashMap<>();
+    @GuardedBy("lock") private int nextSequence = 0;
+    @GuardedBy("lock") private boolean running = false;
+    private Thread sender;
+    private Thread reader;
+
+    /** <p>Receives delivery notifications from a {@link ReliableSerialLink}.</p> */
+    public interface Listener {
+        /**
+         * <p>Called, on the link's reader thread, when the receiver acknowledges a message.</p>
+         *
+         * @param bytes the size of the message's data frame.
+         */
+        void delivered(int bytes);
+    }
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param out the serial line's output stream. Never {@code null}.
+     * @param in the serial line's input stream, from which ACKs and NAKs are read. Never {@code null}.
+     * @param baudRate the line rate, in bits per second.
+     * @param windowSize the number of unacknowledged messages allowed.
+     * @param queueCapacity the number of messages that may wait for a slot in the window.
+     * @param listener notified of each delivered message. Never {@code null}.
+     */
+    public ReliableSerialLink(@NonNull OutputStream out, @NonNull InputStream in, int baudRate, int windowSize,
+                              int queueCapacity, @NonNull Listener listener) {
+        // The writer's queue never needs to hold more than the window and a few control frames.
+        this.writer = new SerialFrameWriter(out, baudRate, windowSize * 2);
+        this.in = in;
+        this.windowSize = windowSize;
+        this.queueCapacity = queueCapacity;
+        long bytesPerSecond = Math.max(1L, baudRate / 10L);
+        this.nanosPerByte = TimeUnit.SECONDS.toNanos(1L) / bytesPerSecond;
+        this.listener = listener;
+    }
+
+    /** <p>Starts the sender and reader threads.</p> */
+    public void start() {
+        synchronized (this.lock) {
+            this.running = true;
+        }
+        this.sender = ThreadUtil.createDaemonThreadFactory("AukletSerialSender").newThread(new Runnable() {
+            @Override public void run() {
+                send();
+            }
+        });
+        this.reader = ThreadUtil.createDaemonThreadFactory("AukletSerialReader").newThread(new Runnable() {
+            @Override public void run() {
+                read();
+            }
+        });
+        this.sender.start();
+        this.reader.start();
+    }
+
+    /**
+     * <p>Queues the given message for delivery.</p>
+     *
+     * @param message the message. Never {@code null}.
+     * @return {@code false} if the queue was full and the message was dropped.
+     */
+    public boolean offer(@NonNull byte[] message) {
+        synchronized (this.lock) {
+            if (this.pending.size() >= this.queueCapacity) {
+                this.dropped.incrementAndGet();
+                return false;
+            }
+            this.pending.add(message);
+            this.lock.notifyAll();
+            return true;
+        }
+    }
+
+    /**
+     * <p>Returns the number of messages sent but not yet acknowledged.</p>
+     *
+     * @return never negative.
+     */
+    public int getUnacknowledgedCount() {
+        synchronized (this.lock) {
+            return this.window.size();
+        }
+    }
+
+    /**
+     * <p>Returns the number of messages waiting for a slot in the window.</p>
+     *
+     * @return never negative.
+     */
+    public int getQueueSize() {
+        synchronized (this.lock) {
+            return this.pending.size();
+        }
+    }
+
+    /**
+     * <p>Returns the number of messages dropped because the queue was full.</p>
+     *
+     * @return never negative.
+     */
+    public long getDroppedCount() {
+        return this.dropped.get();
+    }
+
+    /**
+     * <p>Returns the number of data frames sent again after a NAK or timeout.</p>
+     *
+     * @return never negative.
+     */
+    public long getRetransmittedCount() {
+        return this.retransmitted.get();
+    }
+
+    /**
+     * <p>Stops the sender thread and the frame writer. The reader thread stops when the input stream is
+     * closed.</p>
+     */
+    public void shutdown() {
+        synchronized (this.lock) {
+            this.running = false;
+            this.lock.notifyAll();
+        }
+        if (this.sender != null) {
+            try {
+                this.sender.join(1000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        this.writer.shutdown();
+    }
+
+    /** <p>Runs the sender thread: fills the window and resends frames that were NAKed or timed out.</p> */
+    private void send() {
+        synchronized (this.lock) {
+            while (this.running) {
+                long now = System.nanoTime();
+                long wake = Long.MAX_VALUE;
+                for (Slot slot : this.window.values()) {
+                    if (slot.nak || now >= slot.deadline) {
+                        this.retransmitted.incrementAndGet();
+                        this.transmit(slot, now);
+                    }
+                    wake = Math.min(wake, slot.deadline);
+                }
+                while (this.window.size() < this.windowSize && !this.pending.isEmpty()) {
+                    int sequence = this.nextSequence++;
+                    Slot slot = new Slot(sequence, this.pending.poll());
+                    this.window.put(sequence, slot);
+                    this.transmit(slot, now);
+                    wake = Math.min(wake, slot.deadline);
+                }
+                long waitNanos = wake == Long.MAX_VALUE ? TimeUnit.SECONDS.toNanos(1L) : Math.max(1L, wake - System.nanoTime());
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this.lock, waitNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>Hands a data frame to the writer and sets its ACK deadline, allowing for the frames queued ahead
+     * of it. The frame is encoded each time, so that it carries the current oldest unacknowledged
+     * message.</p>
+     */
+    @GuardedBy("lock") private void transmit(@NonNull Slot slot, long now) {
+        int oldest = this.window.keySet().iterator().next(); // The window is in sequence order.
+        byte[] frame = CobsFraming.encode(ByteBuffer.allocate(DATA_HEADER_SIZE + slot.message.length)
+                .put(TYPE_DATA).putInt(this.session).putInt(slot.sequence).putInt(oldest).put(slot.message).array());
+        this.writer.offer(frame);
+        slot.frameLength = frame.length;
+        slot.nak = false;
+        slot.deadline = now + this.writer.getQueuedBytes() * this.nanosPerByte + TimeUnit.MILLISECONDS.toNanos(ACK_TIMEOUT_MILLIS);
+    }
+
+    /** <p>Runs the reader thread: applies ACKs and NAKs until the input stream ends.</p> */
+    private void read() {
+        CobsFraming.Decoder decoder = new CobsFraming.Decoder(this.in, MAX_CONTROL_FRAME_BYTES);
+        try {
+            byte[] message;
+            while ((message = decoder.next()) != null) {
+                if (message.length != CONTROL_SIZE) continue;
+                ByteBuffer buffer = ByteBuffer.wrap(message);
+                byte type = buffer.get();
+                if (buffer.getInt() != this.session) continue; // Meant for a link from before a restart.
+                int sequence = buffer.getInt();
+                int delivered = -1;
+                synchronized (this.lock) {
+                    if (type == TYPE_ACK) {
+                        Slot slot = this.window.remove(sequence);
+                        if (slot != null) delivered = slot.frameLength;
+                    } else if (type == TYPE_NAK) {
+                        Slot slot = this.window.get(sequence);
+                        if (slot != null) slot.nak = true;
+                    }
+                    this.lock.notifyAll();
+                }
+                if (delivered >= 0) this.listener.delivered(delivered);
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Stopped reading acknowledgements from serial port.", e);
+        }
+    }
+
+    /** <p>An unacknowledged message.</p> */
+    @NotThreadSafe
+    private static final class Slot {
+        private final int sequence;
+        private final byte[] message;
+        private int frameLength = 0;
+        private long deadline = 0L;
+        private boolean nak = false;
+
+        private Slot(int sequence, @NonNull byte[] message) {
+            this.sequence = sequence;
+            this.message = message;
+        }
+    }
+
+    /**
+     * <p>The receiving end of a {@link ReliableSerialLink}, for gateways and tests. It acknowledges every
+     * data frame, NAKs gaps, discards duplicates and returns messages in order. Messages received but not
+     * yet returned when the sender restarts are lost.</p>
+     */
+    @NotThreadSafe
+    public static final class Receiver {
+
+        private final CobsFraming.Decoder decoder;
+        private final OutputStream out;
+        private final int windowSize;
+        private final Map<Integer, byte[]> early = new HashMap<>();
+        private boolean synced = false;
+        private int session = 0;
+        private int expected = 0;
+        private int oldest = 0;
+        private int nakedUpTo = 0;
+        private long duplicates = 0L;
+        private long sessions = 0L;
+
+        /**
+         * <p>Constructor.</p>
+         *
+         * @param in the serial line's input stream. Never {@code null}.
+         * @param out the serial line's output stream, to which ACKs and NAKs are written. Never {@code null}.
+         * @param windowSize the sender's window size.
+         * @param maxFrameBytes the largest encoded frame to accept.
+         */
+        public Receiver(@NonNull InputStream in, @NonNull OutputStream out, int windowSize, int maxFrameBytes) {
+            this.decoder = new CobsFraming.Decoder(in, maxFrameBytes);
+            this.out = out;
+            this.windowSize = windowSize;
+        }
+
+        /**
+         * <p>Blocks until the next message in sequence is available, and returns it.</p>
+         *
+         * @return {@code null} if the end of the stream is reached.
+         * @throws IOException if the stream cannot be read, or an ACK or NAK cannot be written.
+         */
+        @CheckForNull public byte[] next() throws IOException {
+            while (true) {
+                this.skipAcknowledged();
+                byte[] ready = this.early.remove(this.expected);
+                if (ready != null) {
+                    this.expected++;
+                    return ready;
+                }
+                byte[] frame = this.decoder.next();
+                if (frame == null) return null;
+                if (frame.length < DATA_HEADER_SIZE || frame[0] != TYPE_DATA) continue;
+                ByteBuffer header = ByteBuffer.wrap(frame, 1, DATA_HEADER_SIZE - 1);
+                int frameSession = header.getInt();
+                int sequence = header.getInt();
+                int oldest = header.getInt();
+                if (!this.synced || frameSession != this.session) {
+                    // Either end has restarted: everything before the oldest unacknowledged message has
+                    // already been delivered, to this receiver or to its predecessor.
+                    this.synced = true;
+                    this.session = frameSession;
+                    this.expected = oldest;
+                    this.oldest = oldest;
+                    this.nakedUpTo = oldest;
+                    this.early.clear();
+                    this.sessions++;
+                }
+                if (oldest - this.oldest > 0) {
+                    this.oldest = oldest;
+                    this.skipAcknowledged();
+                }
+                int offset = sequence - this.expected;
+                if (offset >= this.windowSize) continue; // Beyond the window; the sender will resend it.
+                this.control(TYPE_ACK, sequence);
+                if (offset < 0 || this.early.containsKey(sequence)) {
+                    this.duplicates++;
+                    continue;
+                }
+                byte[] message = new byte[frame.length - DATA_HEADER_SIZE];
+                System.arraycopy(frame, DATA_HEADER_SIZE, message, 0, message.length);
+                this.early.put(sequence, message);
+                // Request every frame skipped since the last one we requested or expected.
+                int from = Math.max(this.expected, this.nakedUpTo) - this.expected;
+                for (int missing = from; missing < offset; missing++) {
+                    if (!this.early.containsKey(this.expected + missing)) this.control(TYPE_NAK, this.expected + missing);
+                }
+                if (offset > 0 && sequence + 1 - this.nakedUpTo > 0) this.nakedUpTo = sequence + 1;
+            }
+        }
+
+        /**
+         * <p>Returns the number of duplicate data frames received.</p>
+         *
+         * @return never negative.
+         */
+        public long getDuplicateCount() {
+            return this.duplicates;
+        }
+
+        /**
+         * <p>Returns the number of sessions seen, i.e. how many times the sender has started or restarted
+         * since this receiver was created.</p>
+         *
+         * @return never negative.
+         */
+        public long getSessionCount() {
+            return this.sessions;
+        }
+
+        /**
+         * <p>Returns the number of frames skipped because they were corrupt.</p>
+         *
+         * @return never negative.
+         */
+        public long getCorruptCount() {
+            return this.decoder.getCorruptCount();
+        }
+
+        /**
+         * <p>Skips the messages that the sender has seen acknowledged but that this receiver never received,
+         * because they were acknowledged by its predecessor. A frame may carry an older value than the
+         * frames before it, if it waited in the sender's queue, so a new receiver can start too early.</p>
+         */
+        private void skipAcknowledged() {
+            while (this.expected - this.oldest < 0 && !this.early.containsKey(this.expected)) this.expected++;
+            if (this.nakedUpTo - this.expected < 0) this.nakedUpTo = this.expected;
+        }
+
+        private void control(byte type, int sequence) throws IOException {
+            this.out.write(CobsFraming.encode(ByteBuffer.allocate(CONTROL_SIZE).put(type).putInt(this.session).putInt(sequence).array()));
+            this.out.flush();
+        }
+
+    }
+
+}
@@ -0,0 +1,165 @@
+package io.auklet.sink;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.auklet.util.ThreadUtil;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Writes frames to a serial line on a background thread, so that callers never wait for the line.</p>
+ *
+ * <p>Frames wait in a bounded queue; when it is full, new frames are dropped and counted. The writer
+ * paces its output to the line rate (10 bits per byte, for 8N1), writing in chunks of about
+ * {@value #CHUNK_MILLIS} ms of line time and keeping at most one chunk ahead of the line, so that frames
+ * queue here, where they can be counted and dropped, rather than in the operating system's buffer, and so
+ * that closing the port never waits for a large backlog to drain.</p>
+ */
+@ThreadSafe
+public final class SerialFrameWriter {
+
+    /** <p>The number of frames that may wait to be written, by default.</p> */
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+    /** <p>The line time covered by each write to the output stream.</p> */
+    public static final int CHUNK_MILLIS = 20;
+    private static final Logger LOGGER = LoggerFactory.getLogger(SerialFrameWriter.class);
+    private static final int MIN_CHUNK_BYTES = 16;
+    private final OutputStream out;
+    private final long nanosPerByte;
+    private final int chunkBytes;
+    private final ThreadPoolExecutor writer;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong bytesQueued = new AtomicLong();
+    private long lineFreeAt = 0L; // Only accessed by the writer thread.
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param out the serial line. Never {@code null}.
+     * @param baudRate the line rate, in bits per second; if not positive, output is not paced.
+     * @param queueCapacity the number of frames that may wait to be written.
+     */
+    public SerialFrameWriter(@NonNull OutputStream out, int baudRate, int queueCapacity) {
+        this.out = out;
+        long bytesPerSecond = baudRate > 0 ? baudRate / 10L : 0L;
+        this.nanosPerByte = bytesPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1L) / bytesPerSecond : 0L;
+        this.chunkBytes = (int) Math.max(MIN_CHUNK_BYTES, bytesPerSecond * CHUNK_MILLIS / 1000L);
+        this.writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity),
+                ThreadUtil.createDaemonThreadFactory("AukletSerialWriter"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * <p>Queues the given frame to be written.</p>
+     *
+     * @param frame the encoded frame. Never {@code null}.
+     * @return {@code false} if the queue was full and the frame was dropped.
+     */
+    public boolean offer(@NonNull final byte[] frame) {
+        this.bytesQueued.addAndGet(frame.length);
+        try {
+            this.writer.execute(new Runnable() {
+                @Override public void run() {
+                    try {
+                        writeFrame(frame);
+                    } finally {
+                        bytesQueued.addAndGet(-frame.length);
+                    }
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            this.dropped.incrementAndGet();
+            this.bytesQueued.addAndGet(-frame.length);
+            return false;
+        }
+    }
+
+    /**
+     * <p>Returns the number of frames waiting to be written.</p>
+     *
+     * @return never negative.
+     */
+    public int getQueueSize() {
+        return this.writer.getQueue().size();
+    }
+
+    /**
+     * <p>Returns the number of frames dropped because the queue was full.</p>
+     *
+     * @return never negative.
+     */
+    public long getDroppedCount() {
+        return this.dropped.get();
+    }
+
+    /**
+     * <p>Returns the number of frames that could not be written because the output stream failed.</p>
+     *
+     * @return never negative.
+     */
+    public long getFailedCount() {
+        return this.failed.get();
+    }
+
+    /**
+     * <p>Returns the number of bytes written to the serial line.</p>
+     *
+     * @return never negative.
+     */
+    public long getBytesWritten() {
+        return this.bytesWritten.get();
+    }
+
+    /**
+     * <p>Returns the number of bytes queued or being written; the line needs about this many bytes' time
+     * to send a frame queued now.</p>
+     *
+     * @return never negative.
+     */
+    public long getQueuedBytes() {
+        return this.bytesQueued.get();
+    }
+
+    /** <p>Waits briefly for queued frames to be written, then stops the writer thread.</p> */
+    public void shutdown() {
+        ThreadUtil.shutdown(this.writer);
+    }
+
+    private void writeFrame(@NonNull byte[] frame) {
+        try {
+            for (int offset = 0; offset < frame.length; offset += this.chunkBytes) {
+                int length = Math.min(this.chunkBytes, frame.length - offset);
+                this.pace();
+                this.out.write(frame, offset, length);
+                this.out.flush();
+                this.bytesWritten.addAndGet(length);
+                long now = System.nanoTime();
+                this.lineFreeAt = Math.max(now, this.lineFreeAt) + length * this.nanosPerByte;
+            }
+        } catch (IOException e) {
+            this.failed.incrementAndGet();
+            LOGGER.warn("Could not write frame to serial port.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** <p>Waits until no more than one chunk of line time is still outstanding.</p> */
+    private void pace() throws InterruptedException {
+        long ahead = this.lineFreeAt - System.nanoTime() - this.chunkBytes * this.nanosPerByte;
+        if (ahead > 0L) TimeUnit.NANOSECONDS.sleep(ahead);
+    }
+
+}
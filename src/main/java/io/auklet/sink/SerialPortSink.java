@@ -1,93 +1,151 @@
 package io.auklet.sink;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
-import edu.umd.cs.findbugs.annotations.Nullable;
 import io.auklet.Auklet;
 import io.auklet.AukletException;
 import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.ThreadSafe;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import purejavacomm.CommPortIdentifier;
 import purejavacomm.NoSuchPortException;
 import purejavacomm.PortInUseException;
 import purejavacomm.SerialPort;
+import purejavacomm.UnsupportedCommOperationException;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 
-/** <p>An Auklet data sink backed by a named serial port.</p> */
+/**
+ * <p>An Auklet data sink backed by a named serial port.</p>
+ *
+ * <p>Each message is wrapped inside another MessagePack map with 2 elements: the name of the target MQTT
+ * topic and the message itself. The result is framed with {@link CobsFraming}, so that the receiver can
+ * detect corrupt frames and resynchronize after lost bytes, and handed to a {@link SerialFrameWriter},
+ * which writes it on a background thread at the configured baud rate. Sending therefore never waits for
+ * the serial line; if the line cannot keep up, messages are dropped.</p>
+ *
+ * <p>If {@link Auklet#isSerialReliable()} is {@code true}, messages are sent through a
+ * {@link ReliableSerialLink} instead, which reads acknowledgements from the serial port and resends
+ * messages until they are acknowledged. Data usage is then counted as messages are acknowledged.</p>
+ */
 @ThreadSafe
 public final class SerialPortSink extends AbstractSink {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SerialPortSink.class);
     private final Object lock = new Object();
+    @GuardedBy("lock") private final MessageBufferPacker wrapper = MessagePack.newDefaultBufferPacker();
     @GuardedBy("lock") private SerialPort port;
-    @GuardedBy("lock") private OutputStream out;
+    @GuardedBy("lock") private SerialFrameWriter writer;
+    @GuardedBy("lock") private ReliableSerialLink link;
 
     /**
      * <p>Constructs the serial data sink and opens the underlying serial port.</p>
      *
      * @throws AukletException if the serial port does not exist or is already in use, or if the
-     * serial port's underlying output stream cannot be obtained.
+     * serial port's underlying streams cannot be obtained.
      */
-    @Override public void start(@NonNull Auklet agent) throws AukletException {
+    @Override public void start(@NonNull final Auklet agent) throws AukletException {
         this.setAgent(agent);
         String portName = this.getAgent().getSerialPort();
-        LOGGER.info("Connecting to serial port: {}", portName);
-        try {
-            String appName = "auklet:" + this.getAgent().getAppId();
-            this.port = (SerialPort) CommPortIdentifier.getPortIdentifier(portName).open(appName, 1000);
-        } catch (NoSuchPortException | PortInUseException e) {
-            this.shutdown();
-            throw new AukletException("Could not initialize serial port sink.", e);
-        }
-        try {
-            this.out = this.port.getOutputStream();
-        } catch (IOException e) {
-            this.shutdown();
-            throw new AukletException("Could not initialize serial port sink.", e);
-        }
-    }
-
-    /**
-     * <p>Sends the given throwable as an Auklet event object, wrapped further inside another MessagePack
-     * map with 2 elements: the name of the target MQTT topic and the event payload.</p>
-     */
-    @Override public void send(@Nullable Throwable throwable) throws AukletException {
-        synchronized (this.msgpack) {
+        int baudRate = this.getAgent().getSerialBaudRate();
+        LOGGER.info("Connecting to serial port {} at {} baud.", portName, baudRate);
+        synchronized (this.lock) {
             try {
-                LOGGER.debug("Adding MQTT info to payload.");
-                this.msgpack.packMapHeader(2)
-                        .packString("topic").packString(this.getAgent().getDeviceAuth().getMqttEventsTopic())
-                        .packString("payload"); // The value will be set by calling super.write().
+                String appName = "auklet:" + this.getAgent().getAppId();
+                this.port = (SerialPort) CommPortIdentifier.getPortIdentifier(portName).open(appName, 1000);
+                this.port.setSerialPortParams(baudRate, SerialPort.DATABITS_8, SerialPort.STOPBITS_1, SerialPort.PARITY_NONE);
+            } catch (NoSuchPortException | PortInUseException | UnsupportedCommOperationException e) {
+                this.shutdown();
+                throw new AukletException("Could not initialize serial port sink.", e);
+            }
+            OutputStream out;
+            InputStream in = null;
+            try {
+                out = this.port.getOutputStream();
+                if (this.getAgent().isSerialReliable()) in = this.port.getInputStream();
             } catch (IOException e) {
-                throw new AukletException("Could not assemble event message.", e);
+                this.shutdown();
+                throw new AukletException("Could not initialize serial port sink.", e);
             }
-            super.send(throwable);
+            if (in == null) {
+                this.writer = new SerialFrameWriter(out, baudRate, SerialFrameWriter.DEFAULT_QUEUE_CAPACITY);
+                return;
+            }
+            LOGGER.info("Using reliable delivery on serial port {}.", portName);
+            this.link = new ReliableSerialLink(out, in, baudRate, ReliableSerialLink.DEFAULT_WINDOW_SIZE,
+                    SerialFrameWriter.DEFAULT_QUEUE_CAPACITY, new ReliableSerialLink.Listener() {
+                        @Override public void delivered(int bytes) {
+                            agent.getUsageMonitor().addMoreData(bytes);
+                        }
+                    });
+            this.link.start();
         }
     }
 
-    @Override protected void write(@NonNull byte[] bytes) throws AukletException {
+    @Override protected boolean write(@NonNull byte[] bytes) throws AukletException {
+        return this.writeFrame(this.getAgent().getDeviceAuth().getMqttEventsTopic(), bytes);
+    }
+
+    @Override protected boolean writeTelemetry(@NonNull byte[] bytes) throws AukletException {
+        return this.writeFrame(this.getAgent().getDeviceAuth().getMqttTelemetryTopic(), bytes);
+    }
+
+    @Override public boolean isConnected() {
         synchronized (this.lock) {
-            try {
-                int size = bytes.length;
-                boolean willExceedLimit = this.getAgent().getUsageMonitor().willExceedLimit(size);
-                if (!willExceedLimit) {
-                    this.out.write(bytes);
-                    this.out.flush();
-                    this.getAgent().getUsageMonitor().addMoreData(size);
-                }
-            } catch (IOException e) {
-                throw new AukletException("Could not write data to serial port.", e);
-            }
+            return this.writer != null || this.link != null;
         }
     }
 
     @Override public void shutdown() {
         synchronized (this.lock) {
             super.shutdown();
-            if (this.port != null) this.port.close(); // implicitly closes this.out
+            if (this.writer != null) this.writer.shutdown();
+            if (this.link != null) this.link.shutdown();
+            if (this.port != null) this.port.close(); // implicitly closes the streams, stopping the link's reader
+            this.port = null;
+            this.writer = null;
+            this.link = null;
+        }
+    }
+
+    /**
+     * <p>Wraps and frames the given message, and queues it for the serial line.</p>
+     *
+     * @param topic the target MQTT topic. Never {@code null}.
+     * @param bytes the message. Never {@code null}.
+     * @return {@code false} if the message would exceed the data limit, or the result of {@link #drop()}
+     * if the queue is full.
+     * @throws AukletException if the serial port is closed, or the message cannot be wrapped.
+     */
+    private boolean writeFrame(@NonNull String topic, @NonNull byte[] bytes) throws AukletException {
+        synchronized (this.lock) {
+            if (this.writer == null && this.link == null) throw new AukletException("Serial port is closed.");
+            byte[] message;
+            try {
+                this.wrapper.clear();
+                this.wrapper.packMapHeader(2)
+                        .packString("topic").packString(topic)
+                        .packString("payload"); // The value is the message itself.
+                this.wrapper.addPayload(bytes);
+                message = this.wrapper.toByteArray();
+            } catch (IOException e) {
+                throw new AukletException("Could not assemble serial message.", e);
+            }
+            if (this.link != null) {
+                // Usage is counted by the link's listener once the message is acknowledged.
+                if (this.getAgent().getUsageMonitor().willExceedLimit(message.length)) return false;
+                return this.link.offer(message) || this.drop();
+            }
+            byte[] frame = CobsFraming.encode(message);
+            int size = frame.length;
+            if (this.getAgent().getUsageMonitor().willExceedLimit(size)) return false;
+            if (!this.writer.offer(frame)) return this.drop();
+            this.getAgent().getUsageMonitor().addMoreData(size);
+            return true;
         }
     }
 
@@ -0,0 +1,273 @@
+package io.auklet.sink;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.auklet.AukletException;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+
+/**
+ * <p>A memory-mapped ring of encoded messages, shared by all agents on a host that use the same config
+ * directory. Any number of processes may add messages, and one process (the leader) removes them.</p>
+ *
+ * <p>The file starts with a {@value #HEADER_SIZE}-byte header holding the capacity, the read and write
+ * positions, the number of dropped messages and the leader's public IP address, followed by the data
+ * area. Each message is a 4-byte big-endian length, a 1-byte kind ({@link FileSink#KIND_EVENT} or
+ * {@link FileSink#KIND_TELEMETRY}) and the MessagePack message, and may wrap around the end of the data
+ * area. A message that does not fit in the free space is dropped.</p>
+ *
+ * <p>Java 7 offers no atomic operations on mapped memory, so every update of the header is made while
+ * holding an exclusive lock on the first byte of the file. Writers copy a message in before publishing
+ * the new write position, and the leader copies messages out before publishing the new read position, so
+ * the leader never holds the lock while reading messages. This class is not thread-safe within a single
+ * JVM; callers must serialize access.</p>
+ */
+@NotThreadSafe
+public final class SharedRing implements Closeable {
+
+    /** <p>The name of the ring file, relative to the agent's config directory.</p> */
+    public static final String FILENAME = "ring";
+    /** <p>The size of the data area of a newly created ring file.</p> */
+    public static final int DEFAULT_CAPACITY = 4 * 1024 * 1024;
+    /** <p>The size of the header that precedes the data area.</p> */
+    public static final int HEADER_SIZE = 4096;
+    private static final int MAGIC = 0x41524E47; // "ARNG"
+    private static final int VERSION = 1;
+    private static final int RECORD_HEADER_SIZE = 5;
+    private static final int MAX_IP_LENGTH = 64;
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_CAPACITY = 8;
+    private static final int OFFSET_HEAD = 16;
+    private static final int OFFSET_TAIL = 24;
+    private static final int OFFSET_DROPPED = 32;
+    private static final int OFFSET_IP = 40;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final MappedByteBuffer data;
+    private final int capacity;
+
+    /** <p>Receives the messages removed from the ring by {@link #drain(int, Consumer)}.</p> */
+    public interface Consumer {
+        /**
+         * <p>Handles one message.</p>
+         *
+         * @param kind the message kind.
+         * @param payload the message. Never {@code null}.
+         */
+        void accept(byte kind, @NonNull byte[] payload);
+    }
+
+    /**
+     * <p>Opens the ring file in the given directory, creating it if it does not exist or is not a valid
+     * ring file.</p>
+     *
+     * @param dir the agent's config directory. Never {@code null}.
+     * @throws AukletException if the file cannot be opened or mapped.
+     */
+    public SharedRing(@NonNull File dir) throws AukletException {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(new File(dir, FILENAME), "rw");
+            FileChannel ch = raf.getChannel();
+            int cap;
+            try (FileLock ignored = ch.lock(0L, 1L, false)) {
+                MappedByteBuffer head = ch.map(FileChannel.MapMode.READ_WRITE, 0L, HEADER_SIZE);
+                cap = head.getInt(OFFSET_CAPACITY);
+                if (head.getInt(OFFSET_MAGIC) != MAGIC || head.getInt(OFFSET_VERSION) != VERSION || cap <= 0
+                        || ch.size() != (long) HEADER_SIZE + cap) {
+                    cap = DEFAULT_CAPACITY;
+                    raf.setLength((long) HEADER_SIZE + cap);
+                    head.putInt(OFFSET_CAPACITY, cap).putLong(OFFSET_HEAD, 0L).putLong(OFFSET_TAIL, 0L)
+                            .putLong(OFFSET_DROPPED, 0L).putShort(OFFSET_IP, (short) 0)
+                            .putInt(OFFSET_VERSION, VERSION).putInt(OFFSET_MAGIC, MAGIC);
+                }
+                this.header = head;
+            }
+            this.data = ch.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE, cap);
+            this.capacity = cap;
+            this.channel = ch;
+            this.file = raf;
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(raf);
+            throw new AukletException("Could not open shared ring file.", e);
+        }
+    }
+
+    /**
+     * <p>Returns the size of the data area.</p>
+     *
+     * @return never less than 1.
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * <p>Adds a message to the ring, or drops it if there is not enough free space.</p>
+     *
+     * @param kind the message kind.
+     * @param payload the message. Never {@code null}.
+     * @return {@code false} if the message was dropped.
+     * @throws AukletException if the ring file cannot be locked.
+     */
+    public boolean offer(byte kind, @NonNull byte[] payload) throws AukletException {
+        long needed = (long) RECORD_HEADER_SIZE + payload.length;
+        try (FileLock ignored = this.channel.lock(0L, 1L, false)) {
+            long head = this.header.getLong(OFFSET_HEAD);
+            long tail = this.header.getLong(OFFSET_TAIL);
+            if (needed > this.capacity - (tail - head)) {
+                this.header.putLong(OFFSET_DROPPED, this.header.getLong(OFFSET_DROPPED) + 1L);
+                return false;
+            }
+            ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+            recordHeader.putInt(payload.length).put(kind);
+            this.put(tail, recordHeader.array());
+            this.put(tail + RECORD_HEADER_SIZE, payload);
+            this.header.putLong(OFFSET_TAIL, tail + needed);
+            return true;
+        } catch (IOException e) {
+            throw new AukletException("Could not lock shared ring file.", e);
+        }
+    }
+
+    /**
+     * <p>Removes up to the given number of messages from the ring, in order. Only the leader may call
+     * this method. If the ring is found to be corrupt, all of its messages are discarded.</p>
+     *
+     * @param max the maximum number of messages to remove.
+     * @param consumer receives each message. Never {@code null}.
+     * @return the number of messages removed.
+     * @throws AukletException if the ring file cannot be locked.
+     */
+    public int drain(int max, @NonNull Consumer consumer) throws AukletException {
+        long head;
+        long tail;
+        try (FileLock ignored = this.channel.lock(0L, 1L, false)) {
+            head = this.header.getLong(OFFSET_HEAD);
+            tail = this.header.getLong(OFFSET_TAIL);
+        } catch (IOException e) {
+            throw new AukletException("Could not lock shared ring file.", e);
+        }
+        int count = 0;
+        long position = head;
+        byte[] recordHeader = new byte[RECORD_HEADER_SIZE];
+        while (count < max && tail - position >= RECORD_HEADER_SIZE) {
+            this.get(position, recordHeader);
+            ByteBuffer parsed = ByteBuffer.wrap(recordHeader);
+            int length = parsed.getInt();
+            byte kind = parsed.get();
+            if (length < 0 || RECORD_HEADER_SIZE + (long) length > tail - position) {
+                // Only possible if the file was modified by something other than this class.
+                position = tail;
+                break;
+            }
+            byte[] payload = new byte[length];
+            this.get(position + RECORD_HEADER_SIZE, payload);
+            position += RECORD_HEADER_SIZE + length;
+            count++;
+            consumer.accept(kind, payload);
+        }
+        if (position != head) {
+            try (FileLock ignored = this.channel.lock(0L, 1L, false)) {
+                this.header.putLong(OFFSET_HEAD, position);
+            } catch (IOException e) {
+                throw new AukletException("Could not lock shared ring file.", e);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * <p>Returns the number of messages dropped because the ring was full, since it was created.</p>
+     *
+     * @return never negative.
+     */
+    public long getDroppedCount() {
+        return this.header.getLong(OFFSET_DROPPED);
+    }
+
+    /**
+     * <p>Returns the public IP address last published by a leader.</p>
+     *
+     * @return never {@code null}; empty if none was published.
+     */
+    @NonNull public String getIpAddress() {
+        try (FileLock ignored = this.channel.lock(0L, 1L, false)) {
+            int length = this.header.getShort(OFFSET_IP);
+            if (length <= 0 || length > MAX_IP_LENGTH) return "";
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) bytes[i] = this.header.get(OFFSET_IP + 2 + i);
+            return new String(bytes, UTF_8);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    /**
+     * <p>Publishes this host's public IP address for followers, which do not look it up themselves.</p>
+     *
+     * @param ipAddress the IP address. Never {@code null}.
+     * @throws AukletException if the ring file cannot be locked.
+     */
+    public void setIpAddress(@NonNull String ipAddress) throws AukletException {
+        byte[] bytes = ipAddress.getBytes(UTF_8);
+        if (bytes.length > MAX_IP_LENGTH) return;
+        try (FileLock ignored = this.channel.lock(0L, 1L, false)) {
+            for (int i = 0; i < bytes.length; i++) this.header.put(OFFSET_IP + 2 + i, bytes[i]);
+            this.header.putShort(OFFSET_IP, (short) bytes.length);
+        } catch (IOException e) {
+            throw new AukletException("Could not lock shared ring file.", e);
+        }
+    }
+
+    @Override public void close() {
+        closeQuietly(this.file);
+    }
+
+    /** <p>Copies bytes into the data area at the given ring position, wrapping around its end.</p> */
+    private void put(long position, @NonNull byte[] bytes) {
+        int offset = (int) (position % this.capacity);
+        int first = Math.min(bytes.length, this.capacity - offset);
+        ByteBuffer view = this.data.duplicate();
+        view.position(offset);
+        view.put(bytes, 0, first);
+        if (first < bytes.length) {
+            view.position(0);
+            view.put(bytes, first, bytes.length - first);
+        }
+    }
+
+    /** <p>Copies bytes out of the data area at the given ring position, wrapping around its end.</p> */
+    private void get(long position, @NonNull byte[] bytes) {
+        int offset = (int) (position % this.capacity);
+        int first = Math.min(bytes.length, this.capacity - offset);
+        ByteBuffer view = this.data.duplicate();
+        view.position(offset);
+        view.get(bytes, 0, first);
+        if (first < bytes.length) {
+            view.position(0);
+            view.get(bytes, first, bytes.length - first);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing useful can be done.
+        }
+    }
+
+}
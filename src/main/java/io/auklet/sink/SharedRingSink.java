@@ -0,0 +1,273 @@
+package io.auklet.sink;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.auklet.Auklet;
+import io.auklet.AukletException;
+import io.auklet.core.AukletDaemonExecutor;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A data sink that lets all agents on a host that share a config directory also share one upstream
+ * connection.</p>
+ *
+ * <p>The agent holding an exclusive lock on the {@value #LOCK_FILENAME} file in the config directory is
+ * the <i>leader</i>: it writes its own messages to the upstream sink, and forwards the messages that the
+ * other agents (<i>followers</i>) add to the {@link SharedRing}. Followers never start the upstream sink,
+ * so they make no broker connection and do not look up the host's public IP address, using the one
+ * published by the leader instead. Nor do they use the Auklet API: they read the device credentials
+ * and data usage limits that the leader saves in the config directory, and re-read the limits daily
+ * instead of fetching them. A follower that starts before any leader has saved these files waits for
+ * them for up to 30 seconds, and then fails to start. The operating system releases the lock when the leader's process
+ * exits; followers try to acquire it every {@value #ELECTION_INTERVAL_SECONDS} seconds, and the first to
+ * succeed reloads the data usage that the previous leader saved, starts its upstream sink and takes over,
+ * forwarding whatever the ring held in the meantime.</p>
+ */
+@ThreadSafe
+public final class SharedRingSink extends AbstractSink {
+
+    /** <p>The name of the leader lock file, relative to the agent's config directory.</p> */
+    public static final String LOCK_FILENAME = "ring.lock";
+    /** <p>How often followers try to become the leader.</p> */
+    public static final long ELECTION_INTERVAL_SECONDS = 5L;
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedRingSink.class);
+    private static final long DRAIN_INTERVAL_MILLIS = 100L;
+    private static final int DRAIN_BATCH = 10000;
+    private final Object lock = new Object();
+    private final AbstractSink upstream;
+    @GuardedBy("lock") private final SharedRing ring;
+    @GuardedBy("lock") private final RandomAccessFile lockFile;
+    @GuardedBy("lock") private FileLock leaderLock;
+    @GuardedBy("lock") private boolean upstreamStarted = false;
+    @GuardedBy("lock") private boolean electionAbandoned = false;
+    @GuardedBy("lock") private ScheduledFuture<?> task;
+
+    /**
+     * <p>Opens the shared ring and tries to become the leader.</p>
+     *
+     * @param upstream the sink used while this agent is the leader; it is not started unless this agent
+     * becomes the leader. Never {@code null}.
+     * @param configDir the agent's config directory. Never {@code null}.
+     * @throws AukletException if the ring or lock file cannot be opened.
+     */
+    public SharedRingSink(@NonNull AbstractSink upstream, @NonNull File configDir) throws AukletException {
+        this.upstream = upstream;
+        this.ring = new SharedRing(configDir);
+        try {
+            this.lockFile = new RandomAccessFile(new File(configDir, LOCK_FILENAME), "rw");
+        } catch (IOException e) {
+            this.ring.close();
+            throw new AukletException("Could not open shared ring lock file.", e);
+        }
+        synchronized (this.lock) {
+            this.tryLead();
+        }
+    }
+
+    /**
+     * <p>Starts the upstream sink if this agent is the leader, and schedules the task that forwards
+     * messages from the ring (as the leader) or tries to become the leader (as a follower).</p>
+     *
+     * @throws AukletException if this agent is the leader and the upstream sink cannot be started.
+     */
+    @Override public void start(@NonNull Auklet agent) throws AukletException {
+        this.setAgent(agent);
+        synchronized (this.lock) {
+            if (this.leaderLock != null) {
+                this.startUpstream();
+                this.schedule(DRAIN_INTERVAL_MILLIS);
+            } else {
+                LOGGER.info("Another agent owns the shared uplink; sending data through {}.", SharedRing.FILENAME);
+                this.schedule(TimeUnit.SECONDS.toMillis(ELECTION_INTERVAL_SECONDS));
+            }
+        }
+    }
+
+    /**
+     * <p>Returns whether this agent owns the shared uplink.</p>
+     *
+     * @return {@code true} if this agent is the leader.
+     */
+    public boolean isLeader() {
+        synchronized (this.lock) {
+            return this.leaderLock != null;
+        }
+    }
+
+    /**
+     * <p>Returns the public IP address published by the leader.</p>
+     *
+     * @return never {@code null}; empty if no leader has published one.
+     */
+    @NonNull public String getLeaderIpAddress() {
+        synchronized (this.lock) {
+            return this.ring.getIpAddress();
+        }
+    }
+
+    /**
+     * <p>Returns the number of messages dropped because the shared ring was full, by any agent, since the
+     * ring file was created.</p>
+     *
+     * @return never negative.
+     */
+    public long getDroppedCount() {
+        synchronized (this.lock) {
+            return this.ring.getDroppedCount();
+        }
+    }
+
+    @Override protected boolean write(@NonNull byte[] bytes) throws AukletException {
+        return this.route(FileSink.KIND_EVENT, bytes);
+    }
+
+    @Override protected boolean writeTelemetry(@NonNull byte[] bytes) throws AukletException {
+        return this.route(FileSink.KIND_TELEMETRY, bytes);
+    }
+
+    /** <p>Messages may be forwarded by another agent's upstream sink, so frame strings are not interned.</p> */
+    @Override protected boolean usesStringDictionary() {
+        return false;
+    }
+
+    /** <p>Followers are always connected; the leader is connected if its upstream sink is.</p> */
+    @Override public boolean isConnected() {
+        synchronized (this.lock) {
+            return this.leaderLock == null || this.upstream.isConnected();
+        }
+    }
+
+    /** <p>As the leader, forwards the messages left in the ring and gives up the leader lock.</p> */
+    @Override public void shutdown() {
+        synchronized (this.lock) {
+            super.shutdown();
+            if (this.task != null) this.task.cancel(false);
+            if (this.upstreamStarted) {
+                try {
+                    this.drain();
+                } catch (AukletException e) {
+                    LOGGER.warn("Could not forward messages from the shared ring.", e);
+                }
+                this.upstream.shutdown();
+            }
+            this.release();
+            try {
+                this.lockFile.close();
+            } catch (IOException e) {
+                LOGGER.debug("Could not close shared ring lock file.", e);
+            }
+            this.ring.close();
+        }
+    }
+
+    private boolean route(byte kind, @NonNull byte[] bytes) throws AukletException {
+        synchronized (this.lock) {
+            if (this.upstreamStarted) return this.upstream.writeEncoded(bytes, kind == FileSink.KIND_TELEMETRY);
+            return this.ring.offer(kind, bytes) || this.drop();
+        }
+    }
+
+    /** <p>Forwards messages from the ring as the leader, or periodically tries to become the leader.</p> */
+    private void tick() throws AukletException {
+        synchronized (this.lock) {
+            if (this.upstreamStarted) {
+                this.drain();
+                return;
+            }
+            if (this.electionAbandoned || !this.tryLead()) return;
+            LOGGER.info("The previous owner of the shared uplink is gone; taking over.");
+            // The usage file was updated by the previous leader; carry on from its count.
+            this.getAgent().getUsageMonitor().reloadUsage();
+            try {
+                this.startUpstream();
+            } catch (AukletException e) {
+                // A sink can only be started once, so this agent can never lead; let another agent try.
+                LOGGER.error("Could not start upstream sink; will not try to own the shared uplink again.", e);
+                this.electionAbandoned = true;
+                this.release();
+                this.task.cancel(false);
+                return;
+            }
+            this.task.cancel(false);
+            this.schedule(DRAIN_INTERVAL_MILLIS);
+        }
+    }
+
+    /**
+     * <p>Schedules the task that forwards messages from the ring (as the leader) or tries to become the
+     * leader (as a follower).</p>
+     *
+     * @param periodMillis how often to run the task.
+     * @throws AukletException if the task cannot be scheduled.
+     */
+    @GuardedBy("lock") private void schedule(long periodMillis) throws AukletException {
+        // Taking over cancels the follower's task, which is not worth logging.
+        this.task = this.getAgent().scheduleRepeatingTask(new AukletDaemonExecutor.CancelSilentlyRunnable() {
+            @Override public void run() {
+                try {
+                    tick();
+                } catch (AukletException | RuntimeException e) {
+                    LOGGER.warn("Error while servicing the shared ring.", e);
+                }
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @GuardedBy("lock") private void startUpstream() throws AukletException {
+        this.upstream.start(this.getAgent());
+        this.upstreamStarted = true;
+        String ip = this.getAgent().getIpAddress();
+        if (!ip.isEmpty()) this.ring.setIpAddress(ip);
+        LOGGER.info("This agent owns the shared uplink.");
+    }
+
+    @GuardedBy("lock") private int drain() throws AukletException {
+        return this.ring.drain(DRAIN_BATCH, new SharedRing.Consumer() {
+            @Override public void accept(byte kind, @NonNull byte[] payload) {
+                try {
+                    upstream.writeEncoded(payload, kind == FileSink.KIND_TELEMETRY);
+                } catch (AukletException | RuntimeException e) {
+                    LOGGER.debug("Could not forward message from the shared ring.", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * <p>Tries to acquire the leader lock without blocking.</p>
+     *
+     * @return {@code true} if this agent is now the leader.
+     */
+    @GuardedBy("lock") private boolean tryLead() {
+        if (this.leaderLock != null) return true;
+        try {
+            FileChannel channel = this.lockFile.getChannel();
+            this.leaderLock = channel.tryLock();
+        } catch (IOException | OverlappingFileLockException e) {
+            LOGGER.debug("Could not try shared ring lock.", e);
+        }
+        return this.leaderLock != null;
+    }
+
+    @GuardedBy("lock") private void release() {
+        if (this.leaderLock == null) return;
+        try {
+            this.leaderLock.release();
+        } catch (IOException e) {
+            LOGGER.debug("Could not release shared ring lock.", e);
+        }
+        this.leaderLock = null;
+    }
+
+}
@@ -1,5 +1,6 @@
 package io.auklet.sink;
 
+import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import io.auklet.AukletException;
 
@@ -14,6 +15,41 @@ public interface Sink {
      */
     void send(@Nullable Throwable throwable) throws AukletException;
 
+    /**
+     * <p>Transforms the given throwable object and its context into an Auklet event object and sends it
+     * to this sink.</p>
+     *
+     * @param throwable if {@code null}, this method is no-op.
+     * @param context the context captured when the throwable was submitted; may be {@code null}.
+     * @throws AukletException if an error occurs while sending the event to the sink.
+     */
+    void send(@Nullable Throwable throwable, @Nullable EventContext context) throws AukletException;
+
+    /**
+     * <p>Sends the given telemetry to this sink. Telemetry is sent on a best-effort basis and is not
+     * subject to event rate limiting.</p>
+     *
+     * @param telemetry if {@code null}, this method is no-op.
+     * @return {@code false} if the telemetry was not written because doing so would exceed the data usage
+     * limit, or because the sink could not accept it, {@code true} otherwise.
+     * @throws AukletException if an error occurs while sending the telemetry to the sink.
+     */
+    boolean sendTelemetry(@Nullable Telemetry telemetry) throws AukletException;
+
+    /**
+     * <p>Returns the write counters for this sink.</p>
+     *
+     * @return never {@code null}.
+     */
+    @NonNull SinkStats getStats();
+
+    /**
+     * <p>Returns whether this sink is currently connected to its underlying output.</p>
+     *
+     * @return {@code false} if data written to this sink cannot currently be delivered.
+     */
+    boolean isConnected();
+
     /**
      * <p>Shuts down this data sink and disconnects/closes any underlying resources.</p>
      *
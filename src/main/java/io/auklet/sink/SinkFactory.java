@@ -0,0 +1,90 @@
+package io.auklet.sink;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import io.auklet.AukletException;
+import io.auklet.util.Util;
+import net.jcip.annotations.Immutable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/** <p>Creates the data sink selected by the agent configuration.</p> */
+@Immutable
+public final class SinkFactory {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SinkFactory.class);
+
+    private SinkFactory() {}
+
+    /**
+     * <p>Creates the data sink(s) named in the given list.</p>
+     *
+     * <p>If no sinks are named, the agent writes to the serial port if one is configured, or to the
+     * Auklet backend via MQTT otherwise. If exactly one sink is named, it is used directly; if several are
+     * named, they are combined into a {@link CompositeSink} using the given policy, with the first
+     * named sink as the primary.</p>
+     *
+     * @param sinks a comma-separated list of sink names ({@code mqtt}, {@code serial}, {@code file} or
+     * {@code collector}); may be
+     * {@code null}. Unknown names are ignored.
+     * @param policy the routing policy for multiple sinks. Never {@code null}.
+     * @param serialPort the configured serial port; may be {@code null}.
+     * @return never {@code null}.
+     * @throws AukletException if a serial sink is named but no serial port is configured.
+     */
+    @NonNull public static AbstractSink create(@Nullable String sinks, @NonNull CompositeSink.Policy policy, @Nullable String serialPort) throws AukletException {
+        Set<String> names = new LinkedHashSet<>();
+        if (!Util.isNullOrEmpty(sinks)) {
+            for (String name : sinks.split(",")) {
+                name = name.trim().toLowerCase(Locale.ROOT);
+                if (!name.isEmpty()) names.add(name);
+            }
+        }
+        if (names.isEmpty()) names.add(serialPort != null ? "serial" : "mqtt");
+        List<AbstractSink> created = new ArrayList<>(names.size());
+        for (String name : names) {
+            switch (name) {
+                case "mqtt":
+                    created.add(new AukletIoSink());
+                    break;
+                case "file":
+                    created.add(new FileSink());
+                    break;
+                case "collector":
+                    created.add(new LocalCollectorSink());
+                    break;
+                case "serial":
+                    if (serialPort == null) throw new AukletException("The serial sink requires a serial port to be configured.");
+                    created.add(new SerialPortSink());
+                    break;
+                default:
+                    LOGGER.warn("Ignoring unknown data sink '{}'.", name);
+            }
+        }
+        if (created.isEmpty()) throw new AukletException("No valid data sinks configured: " + sinks);
+        if (created.size() == 1) return created.get(0);
+        return new CompositeSink(policy, created);
+    }
+
+    /**
+     * <p>Returns whether the given sink is, or routes to, a {@link LocalCollectorSink}.</p>
+     *
+     * @param sink the sink. Never {@code null}.
+     * @return {@code true} if data written to the sink may be sent to a local collector.
+     */
+    public static boolean includesCollector(@NonNull AbstractSink sink) {
+        if (sink instanceof LocalCollectorSink) return true;
+        if (!(sink instanceof CompositeSink)) return false;
+        for (CompositeSink.Branch branch : ((CompositeSink) sink).getBranches()) {
+            if (branch.getSink() instanceof LocalCollectorSink) return true;
+        }
+        return false;
+    }
+
+}
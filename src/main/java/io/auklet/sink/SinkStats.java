@@ -0,0 +1,104 @@
+package io.auklet.sink;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Counts the messages written by a data sink. All counts are cumulative since the sink was
+ * created.</p>
+ */
+@ThreadSafe
+public final class SinkStats {
+
+    private final AtomicLong messagesWritten = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong messagesOverDataLimit = new AtomicLong();
+    private final AtomicLong messagesDropped = new AtomicLong();
+    private final AtomicLong writeFailures = new AtomicLong();
+    private volatile long lastWriteTime = 0L;
+
+    /**
+     * <p>Records that a message was written to the data sink.</p>
+     *
+     * @param size the size of the message, in bytes.
+     */
+    /*package*/ void recordWrite(int size) {
+        this.messagesWritten.incrementAndGet();
+        this.bytesWritten.addAndGet(size);
+        this.lastWriteTime = System.currentTimeMillis();
+    }
+
+    /** <p>Records that a message was not written because doing so would exceed the data usage limit.</p> */
+    /*package*/ void recordOverDataLimit() {
+        this.messagesOverDataLimit.incrementAndGet();
+    }
+
+    /** <p>Records that a message was dropped because the data sink could not accept it in time.</p> */
+    /*package*/ void recordDropped() {
+        this.messagesDropped.incrementAndGet();
+    }
+
+    /** <p>Records that a message could not be written due to an error.</p> */
+    /*package*/ void recordWriteFailure() {
+        this.writeFailures.incrementAndGet();
+    }
+
+    /**
+     * <p>Returns the number of messages (events and telemetry) written to the data sink.</p>
+     *
+     * @return never negative.
+     */
+    public long getMessagesWritten() {
+        return this.messagesWritten.get();
+    }
+
+    /**
+     * <p>Returns the number of payload bytes written to the data sink. Protocol overhead is not
+     * included.</p>
+     *
+     * @return never negative.
+     */
+    public long getBytesWritten() {
+        return this.bytesWritten.get();
+    }
+
+    /**
+     * <p>Returns the number of messages not written because doing so would exceed the data usage
+     * limit.</p>
+     *
+     * @return never negative.
+     */
+    public long getMessagesOverDataLimit() {
+        return this.messagesOverDataLimit.get();
+    }
+
+    /**
+     * <p>Returns the number of messages dropped because the data sink could not accept them in time,
+     * e.g. because its queue was full.</p>
+     *
+     * @return never negative.
+     */
+    public long getMessagesDropped() {
+        return this.messagesDropped.get();
+    }
+
+    /**
+     * <p>Returns the number of messages that could not be written due to an error.</p>
+     *
+     * @return never negative.
+     */
+    public long getWriteFailures() {
+        return this.writeFailures.get();
+    }
+
+    /**
+     * <p>Returns the time at which a message was last written to the data sink.</p>
+     *
+     * @return milliseconds since the epoch, or {@code 0} if no message has been written.
+     */
+    public long getLastWriteTime() {
+        return this.lastWriteTime;
+    }
+
+}
@@ -0,0 +1,117 @@
+package io.auklet.sink;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.auklet.util.Util;
+import net.jcip.annotations.NotThreadSafe;
+import org.msgpack.core.MessagePacker;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>A bounded, per-connection string interning dictionary used to shrink the class, method and file
+ * names that are sent in every stack frame.</p>
+ *
+ * <p>Each string is written as a MessagePack extension value of type {@link #EXT_TYPE}. The extension
+ * payload starts with a one-byte format version ({@link #VERSION}), a one-byte dictionary epoch and a
+ * two-byte big-endian string ID. If the payload ends there, it is a reference to a string previously
+ * defined in the same epoch; otherwise, the remaining bytes are the UTF-8 encoded string, which the
+ * receiver must bind to that ID (replacing any string previously bound to it).</p>
+ *
+ * <p>When the dictionary is full, the least recently used string is evicted and its ID is reused for the
+ * next new string. The dictionary must be {@link #reset()} whenever the receiver may have missed a
+ * definition: when the underlying connection is re-established, and whenever a message is not sent.
+ * Resetting starts a new epoch. The receiver keeps the strings of the latest epoch it has seen, starting
+ * afresh when a new epoch appears, and must treat a reference from any other epoch as unknown: such
+ * references come from messages that were delayed, for example in a client-side buffer across a
+ * reconnect, and their IDs may since have been bound to other strings.</p>
+ */
+@NotThreadSafe
+public final class StringDictionary {
+
+    /** <p>The MessagePack extension type used for dictionary-encoded strings.</p> */
+    public static final byte EXT_TYPE = 1;
+    /** <p>The version of the extension payload format.</p> */
+    public static final byte VERSION = 2;
+    private static final int HEADER_SIZE = 4;
+    private static final int MAX_CAPACITY = 65535;
+
+    private final int capacity;
+    private final Map<String, Integer> ids;
+    private final byte[] header = new byte[HEADER_SIZE];
+    private int nextId = 0;
+    private int epoch = 0;
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param capacity the maximum number of strings to remember. Must be between 1 and 65535.
+     * @throws IllegalArgumentException if the capacity is out of range.
+     */
+    public StringDictionary(int capacity) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) throw new IllegalArgumentException("Invalid string dictionary capacity: " + capacity);
+        this.capacity = capacity;
+        // Access order gives us LRU iteration order for free.
+        this.ids = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * <p>Writes the given string to the given MessagePacker, either as a reference to an existing
+     * dictionary entry or as a new definition.</p>
+     *
+     * @param msgpack the MessagePacker to write to. Never {@code null}.
+     * @param value the string to write. Never {@code null}.
+     * @throws IOException if an error occurs while writing to the MessagePacker.
+     */
+    public void pack(@NonNull MessagePacker msgpack, @NonNull String value) throws IOException {
+        Integer existing = this.ids.get(value);
+        if (existing != null) {
+            this.writeHeader(existing);
+            msgpack.packExtensionTypeHeader(EXT_TYPE, HEADER_SIZE).writePayload(this.header);
+            return;
+        }
+        int id = this.allocate();
+        this.ids.put(value, id);
+        byte[] utf8 = value.getBytes(Util.UTF_8);
+        this.writeHeader(id);
+        msgpack.packExtensionTypeHeader(EXT_TYPE, HEADER_SIZE + utf8.length)
+                .writePayload(this.header)
+                .writePayload(utf8);
+    }
+
+    /** <p>Forgets all strings in this dictionary and starts a new epoch.</p> */
+    public void reset() {
+        this.ids.clear();
+        this.nextId = 0;
+        this.epoch = (this.epoch + 1) & 0xFF;
+    }
+
+    /**
+     * <p>Returns the ID to bind to a new string, evicting the least recently used string if the
+     * dictionary is full.</p>
+     *
+     * @return the ID.
+     */
+    private int allocate() {
+        if (this.nextId < this.capacity) return this.nextId++;
+        Iterator<Map.Entry<String, Integer>> eldest = this.ids.entrySet().iterator();
+        int id = eldest.next().getValue();
+        eldest.remove();
+        return id;
+    }
+
+    /**
+     * <p>Fills the reusable extension payload header for the given ID.</p>
+     *
+     * @param id the string ID.
+     */
+    private void writeHeader(int id) {
+        this.header[0] = VERSION;
+        this.header[1] = (byte) this.epoch;
+        this.header[2] = (byte) (id >>> 8);
+        this.header[3] = (byte) id;
+    }
+
+}
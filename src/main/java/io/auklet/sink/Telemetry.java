@@ -0,0 +1,30 @@
+package io.auklet.sink;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import org.msgpack.core.MessagePacker;
+
+import java.io.IOException;
+
+/**
+ * <p>A block of periodic, non-event data (such as runtime metrics) that can be sent to a data sink via
+ * {@link Sink#sendTelemetry(Telemetry)}.</p>
+ */
+public interface Telemetry {
+
+    /**
+     * <p>Returns the type of this telemetry, which tells the receiver how to interpret its data.</p>
+     *
+     * @return never {@code null} or empty.
+     */
+    @NonNull String getTelemetryType();
+
+    /**
+     * <p>Writes the data of this telemetry to the current position in the given MessagePacker as a
+     * single MessagePack value.</p>
+     *
+     * @param msgpack the MessagePacker to write to. Never {@code null}.
+     * @throws IOException if an error occurs while writing to the MessagePacker.
+     */
+    void packTelemetry(@NonNull MessagePacker msgpack) throws IOException;
+
+}
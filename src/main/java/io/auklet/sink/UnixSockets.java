@@ -0,0 +1,55 @@
+package io.auklet.sink;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import net.jcip.annotations.Immutable;
+
+import java.io.IOException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * <p>Opens Unix domain socket channels for the local collector.</p>
+ *
+ * <p>This is the Java 7 implementation, in which Unix domain sockets are not supported and every method
+ * throws {@link IOException}; the local collector falls back to loopback UDP. The agent JAR is a
+ * multi-release JAR; on Java 16 and later, an implementation of this class backed by
+ * {@code java.net.UnixDomainSocketAddress} is used instead.</p>
+ */
+@Immutable
+/*package*/ final class UnixSockets {
+
+    private UnixSockets() {}
+
+    /**
+     * <p>Returns whether Unix domain sockets are supported on this JVM.</p>
+     *
+     * @return {@code false}.
+     */
+    /*package*/ static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * <p>Opens a non-blocking channel connected to the Unix domain socket at the given path.</p>
+     *
+     * @param path the path of the socket file. Never {@code null}.
+     * @return never {@code null}.
+     * @throws IOException always.
+     */
+    @NonNull /*package*/ static SocketChannel connect(@NonNull String path) throws IOException {
+        throw new IOException("Unix domain sockets require Java 16 or later: " + path);
+    }
+
+    /**
+     * <p>Opens a non-blocking server channel bound to the Unix domain socket at the given path, replacing
+     * any stale socket file.</p>
+     *
+     * @param path the path of the socket file. Never {@code null}.
+     * @return never {@code null}.
+     * @throws IOException always.
+     */
+    @NonNull /*package*/ static ServerSocketChannel bind(@NonNull String path) throws IOException {
+        throw new IOException("Unix domain sockets require Java 16 or later: " + path);
+    }
+
+}
@@ -28,10 +28,33 @@ public final class ThreadUtil {
      */
     @NonNull
     public static ThreadFactory createDaemonThreadFactory(@Nullable final String nameFormat) {
+        return createDaemonThreadFactory(nameFormat, 0L);
+    }
+
+    /**
+     * <p>Returns a thread factory that produces daemon threads with the given stack size.</p>
+     *
+     * @param nameFormat the name format for threads created by this factory. If {@code null},
+     * thread names will be autogenerated by the JVM. If not {@code null}, you can use the placeholder
+     * {@code %d} to substitute the thread number (auto-increments starting at 1).
+     * @param stackSize the stack size of each thread, in bytes. If zero or negative, the JVM default
+     * is used. As with {@link Thread#Thread(ThreadGroup, Runnable, String, long)}, the JVM may round
+     * this value up or ignore it.
+     * @return never {@code null}.
+     */
+    @NonNull
+    public static ThreadFactory createDaemonThreadFactory(@Nullable final String nameFormat, final long stackSize) {
         return new ThreadFactory() {
             private final AtomicLong counter = new AtomicLong();
+            private final ThreadFactory defaults = Executors.defaultThreadFactory();
             @Override public Thread newThread(Runnable r) {
-                Thread t = Executors.defaultThreadFactory().newThread(r);
+                Thread t = this.defaults.newThread(r);
+                if (stackSize > 0L) {
+                    // The default factory cannot set a stack size, so copy its other settings.
+                    Thread sized = new Thread(t.getThreadGroup(), r, t.getName(), stackSize);
+                    sized.setPriority(t.getPriority());
+                    t = sized;
+                }
                 t.setDaemon(true);
                 final long count = counter.incrementAndGet();
                 if (nameFormat != null) t.setName(String.format(nameFormat, count));
@@ -0,0 +1,208 @@
+package io.auklet.jfr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.util.Optional;
+
+/**
+ * <p>A timed agent operation, recorded as a JDK Flight Recorder event so that the agent's own work can
+ * be told apart from the application's in standard profiling tools.</p>
+ *
+ * <p>This is the Java 11+ implementation. Each factory method allocates a Flight Recorder event only if
+ * the corresponding event type is enabled in a running recording; otherwise, it returns a shared no-op
+ * instance. All event types are in the {@code Auklet} category and are named {@code io.auklet.*}.</p>
+ */
+@NotThreadSafe
+public class AgentEvent {
+
+    private static final AgentEvent DISABLED = new AgentEvent(null);
+    private static final boolean AVAILABLE = initialize();
+    private final Base event;
+
+    private AgentEvent(@Nullable Base event) {
+        this.event = event;
+    }
+
+    @NonNull public static AgentEvent encode(@Nullable String kind) {
+        if (!AVAILABLE) return DISABLED;
+        Encode event = new Encode();
+        if (!event.isEnabled()) return DISABLED;
+        event.kind = kind;
+        return begin(event);
+    }
+
+    @NonNull public static AgentEvent sinkWrite(@Nullable String sink) {
+        if (!AVAILABLE) return DISABLED;
+        SinkWrite event = new SinkWrite();
+        if (!event.isEnabled()) return DISABLED;
+        event.sink = sink;
+        return begin(event);
+    }
+
+    @NonNull public static AgentEvent mqttPublish(@Nullable String topic, int qos) {
+        if (!AVAILABLE) return DISABLED;
+        MqttPublish event = new MqttPublish();
+        if (!event.isEnabled()) return DISABLED;
+        event.topic = topic;
+        event.qos = qos;
+        return begin(event);
+    }
+
+    @NonNull public static AgentEvent mqttAck(@Nullable String topic, int qos) {
+        if (!AVAILABLE) return DISABLED;
+        MqttAck event = new MqttAck();
+        if (!event.isEnabled()) return DISABLED;
+        event.topic = topic;
+        event.qos = qos;
+        return begin(event);
+    }
+
+    @NonNull public static AgentEvent configFetch(@Nullable String path) {
+        if (!AVAILABLE) return DISABLED;
+        ConfigFetch event = new ConfigFetch();
+        if (!event.isEnabled()) return DISABLED;
+        event.path = path;
+        return begin(event);
+    }
+
+    @NonNull public static AgentEvent usageFileWrite() {
+        if (!AVAILABLE) return DISABLED;
+        UsageFileWrite event = new UsageFileWrite();
+        if (!event.isEnabled()) return DISABLED;
+        return begin(event);
+    }
+
+    @NonNull public static AgentEvent startupPhase(@Nullable String phase) {
+        if (!AVAILABLE) return DISABLED;
+        StartupPhase event = new StartupPhase();
+        if (!event.isEnabled()) return DISABLED;
+        event.phase = phase;
+        return begin(event);
+    }
+
+    public boolean isEnabled() {
+        return this.event != null;
+    }
+
+    @NonNull public AgentEvent setBytes(long bytes) {
+        if (this.event != null) this.event.setBytes(bytes);
+        return this;
+    }
+
+    @NonNull public AgentEvent setStatus(int status) {
+        if (this.event != null) this.event.setStatus(status);
+        return this;
+    }
+
+    public void end() {
+        if (this.event != null) this.event.commit();
+    }
+
+    @NonNull private static AgentEvent begin(@NonNull Base event) {
+        event.begin();
+        return new AgentEvent(event);
+    }
+
+    /**
+     * <p>Determines whether Flight Recorder is present in this JVM, and if so, ensures that this module
+     * can use it. When the agent is loaded as a named module, it does not declare a dependency on
+     * {@code jdk.jfr}, so that it still loads on runtimes built without it.</p>
+     *
+     * @return {@code true} if Flight Recorder events can be used.
+     */
+    private static boolean initialize() {
+        try {
+            Optional<Module> jfr = ModuleLayer.boot().findModule("jdk.jfr");
+            if (!jfr.isPresent()) return false;
+            Module self = AgentEvent.class.getModule();
+            self.addReads(jfr.get());
+            self.addExports(AgentEvent.class.getPackageName(), jfr.get());
+            return true;
+        } catch (RuntimeException | LinkageError e) {
+            return false;
+        }
+    }
+
+    @Category("Auklet")
+    @StackTrace(false)
+    private abstract static class Base extends Event {
+        void setBytes(long bytes) {}
+        void setStatus(int status) {}
+    }
+
+    @Name("io.auklet.Encode")
+    @Label("Auklet Payload Encode")
+    @Description("Assembly of a MessagePack payload by the Auklet agent.")
+    private static final class Encode extends Base {
+        @Label("Kind") String kind;
+        @Label("Size") @DataAmount long bytes;
+        @Override void setBytes(long bytes) { this.bytes = bytes; }
+    }
+
+    @Name("io.auklet.SinkWrite")
+    @Label("Auklet Sink Write")
+    @Description("Write of a payload to the Auklet agent's data sink.")
+    private static final class SinkWrite extends Base {
+        @Label("Sink") String sink;
+        @Label("Size") @DataAmount long bytes;
+        @Label("Written") @Description("1 if written, 0 if dropped due to the data usage limit, -1 on error.") int status;
+        @Override void setBytes(long bytes) { this.bytes = bytes; }
+        @Override void setStatus(int status) { this.status = status; }
+    }
+
+    @Name("io.auklet.MqttPublish")
+    @Label("Auklet MQTT Publish")
+    @Description("Handoff of a message to the MQTT client by the Auklet agent.")
+    private static final class MqttPublish extends Base {
+        @Label("Topic") String topic;
+        @Label("QoS") int qos;
+        @Label("Size") @DataAmount long bytes;
+        @Override void setBytes(long bytes) { this.bytes = bytes; }
+    }
+
+    @Name("io.auklet.MqttAck")
+    @Label("Auklet MQTT Acknowledgement")
+    @Description("Time from publishing an Auklet agent message until the MQTT broker acknowledged it.")
+    private static final class MqttAck extends Base {
+        @Label("Topic") String topic;
+        @Label("QoS") int qos;
+        @Label("Size") @DataAmount long bytes;
+        @Label("Acknowledged") @Description("1 if acknowledged, 0 if delivery failed.") int status;
+        @Override void setBytes(long bytes) { this.bytes = bytes; }
+        @Override void setStatus(int status) { this.status = status; }
+    }
+
+    @Name("io.auklet.ConfigFetch")
+    @Label("Auklet Config Fetch")
+    @Description("Request to the Auklet API.")
+    private static final class ConfigFetch extends Base {
+        @Label("Path") String path;
+        @Label("HTTP Status") int status;
+        @Override void setStatus(int status) { this.status = status; }
+    }
+
+    @Name("io.auklet.UsageFileWrite")
+    @Label("Auklet Usage File Write")
+    @Description("Write of the Auklet agent's data usage file.")
+    private static final class UsageFileWrite extends Base {
+        @Label("Size") @DataAmount long bytes;
+        @Override void setBytes(long bytes) { this.bytes = bytes; }
+    }
+
+    @Name("io.auklet.StartupPhase")
+    @Label("Auklet Startup Phase")
+    @Description("One phase of Auklet agent startup.")
+    private static final class StartupPhase extends Base {
+        @Label("Phase") String phase;
+    }
+
+}
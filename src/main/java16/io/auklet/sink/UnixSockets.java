@@ -0,0 +1,55 @@
+package io.auklet.sink;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import net.jcip.annotations.Immutable;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * <p>Opens Unix domain socket channels for the local collector.</p>
+ *
+ * <p>This is the Java 16+ implementation, backed by {@link UnixDomainSocketAddress}.</p>
+ */
+@Immutable
+/*package*/ final class UnixSockets {
+
+    private UnixSockets() {}
+
+    /*package*/ static boolean isSupported() {
+        return true;
+    }
+
+    @NonNull /*package*/ static SocketChannel connect(@NonNull String path) throws IOException {
+        SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(UnixDomainSocketAddress.of(path));
+            channel.configureBlocking(false);
+            return channel;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @NonNull /*package*/ static ServerSocketChannel bind(@NonNull String path) throws IOException {
+        Path file = Paths.get(path);
+        Files.deleteIfExists(file);
+        ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.bind(UnixDomainSocketAddress.of(file));
+            channel.configureBlocking(false);
+            return channel;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+}
@@ -1,3 +1,5 @@
 module io.auklet {
     exports io.auklet;
+    exports io.auklet.instrument;
+    exports io.auklet.logging;
 }
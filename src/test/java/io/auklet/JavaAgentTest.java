@@ -1,4 +1,134 @@
 package io.auklet;
 
+import io.auklet.instrument.CatchSiteTransformer;
+import io.auklet.instrument.CatchSites;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
 public class JavaAgentTest {
+
+    private static final String WORKLOAD = Workload.class.getName();
+
+    @Test public void filtersClassesByPackage() throws IOException {
+        CatchSiteTransformer transformer = new CatchSiteTransformer("com.example:org.example");
+        byte[] classfile = classfile(WORKLOAD);
+        ClassLoader loader = JavaAgentTest.class.getClassLoader();
+        assertNull(transformer.transform(loader, "net/example/Foo", null, null, classfile));
+        assertNull(transformer.transform(loader, "io/auklet/Foo", null, null, classfile));
+        assertNull(transformer.transform(null, "com/example/Foo", null, null, classfile));
+        assertNotNull(transformer.transform(loader, "com/example/Foo", null, null, classfile));
+        assertNotNull(transformer.transform(loader, "org/example/bar/Foo", null, null, classfile));
+    }
+
+    @Test public void reportsCaughtExceptions() throws Exception {
+        Task instrumented = load(true);
+        String[] inputs = {"1", "x", "2", "y", "z"};
+        long before = CatchSites.getCaughtCount();
+        assertEquals(new Workload().run(inputs), instrumented.run(inputs));
+        // Three parse failures; the finally block in run() is not a catch site.
+        assertEquals(3, CatchSites.getCaughtCount() - before);
+    }
+
+    @Test public void instrumentationDoesNotSlowNonThrowingCode() throws Exception {
+        String[] inputs = new String[1000];
+        for (int i = 0; i < inputs.length; i++) inputs[i] = Integer.toString(i);
+        Task baseline = load(false);
+        Task instrumented = load(true);
+        for (int i = 0; i < 5000; i++) {
+            baseline.run(inputs);
+            instrumented.run(inputs);
+        }
+        long baselineNanos = Long.MAX_VALUE;
+        long instrumentedNanos = Long.MAX_VALUE;
+        for (int round = 0; round < 20; round++) {
+            baselineNanos = Math.min(baselineNanos, time(baseline, inputs));
+            instrumentedNanos = Math.min(instrumentedNanos, time(instrumented, inputs));
+        }
+        System.out.printf("Workload: %.1f ns/op uninstrumented, %.1f ns/op instrumented%n",
+                (double) baselineNanos / inputs.length, (double) instrumentedNanos / inputs.length);
+        assertTrue("Instrumented workload took " + instrumentedNanos + " ns, uninstrumented " + baselineNanos + " ns",
+                instrumentedNanos < baselineNanos * 3 / 2);
+    }
+
+    private static long time(Task task, String[] inputs) {
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) task.run(inputs);
+        return (System.nanoTime() - start) / 100;
+    }
+
+    /** <p>Loads a separate copy of {@link Workload}, instrumented or not, so that both get their own JIT profile.</p> */
+    private static Task load(boolean instrument) throws Exception {
+        byte[] classfile = classfile(WORKLOAD);
+        if (instrument) classfile = CatchSiteTransformer.instrument(classfile);
+        assertNotNull(classfile);
+        return (Task) new WorkloadLoader(classfile).loadClass(WORKLOAD).newInstance();
+    }
+
+    private static byte[] classfile(String className) throws IOException {
+        try (InputStream in = JavaAgentTest.class.getClassLoader().getResourceAsStream(className.replace('.', '/') + ".class")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) out.write(buffer, 0, read);
+            return out.toByteArray();
+        }
+    }
+
+    public interface Task {
+        long run(String[] inputs);
+    }
+
+    /** <p>A synthetic workload whose only catch block is on the parse failure path.</p> */
+    public static final class Workload implements Task {
+
+        private long runs = 0;
+
+        @Override public long run(String[] inputs) {
+            long sum = 0;
+            try {
+                for (String input : inputs) {
+                    try {
+                        sum += Integer.parseInt(input);
+                    } catch (NumberFormatException e) {
+                        sum -= e.getMessage().length();
+                    }
+                }
+            } finally {
+                this.runs++;
+            }
+            return sum;
+        }
+
+    }
+
+    private static final class WorkloadLoader extends ClassLoader {
+
+        private final byte[] classfile;
+
+        private WorkloadLoader(byte[] classfile) {
+            super(JavaAgentTest.class.getClassLoader());
+            this.classfile = Arrays.copyOf(classfile, classfile.length);
+        }
+
+        @Override protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            synchronized (this.getClassLoadingLock(name)) {
+                if (!WORKLOAD.equals(name)) return super.loadClass(name, resolve);
+                Class<?> c = this.findLoadedClass(name);
+                if (c == null) c = this.defineClass(name, this.classfile, 0, this.classfile.length);
+                if (resolve) this.resolveClass(c);
+                return c;
+            }
+        }
+
+    }
+
 }
@@ -0,0 +1,53 @@
+package io.auklet;
+
+import org.junit.Test;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.value.Value;
+import org.msgpack.value.ValueFactory;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class MetricRegistryTest {
+
+    @Test public void sharesOneHandlePerTypeWhenFull() {
+        MetricRegistry registry = new MetricRegistry();
+        for (int i = 0; i < 1000; i++) registry.get("metric" + i, Counter.class);
+        Counter first = registry.get("extra1", Counter.class);
+        assertSame(first, registry.get("extra2", Counter.class));
+        assertSame(registry.get("extra1", Histogram.class), registry.get("extra2", Histogram.class));
+        assertNotSame(first, registry.get("metric0", Counter.class));
+    }
+
+    @Test public void restoresValuesThatWereNotSent() throws IOException {
+        MetricRegistry registry = new MetricRegistry();
+        registry.get("requests", Counter.class).add(5L);
+        registry.get("latency", Histogram.class).record(3L);
+        registry.restore(registry.snapshot());
+        registry.get("requests", Counter.class).add(2L);
+        Value data = unpack(registry);
+        assertEquals(7L, data.asMapValue().map().get(string("counters")).asMapValue().map().get(string("requests")).asIntegerValue().toLong());
+        Value latency = data.asMapValue().map().get(string("histograms")).asMapValue().map().get(string("latency"));
+        assertEquals(1L, latency.asMapValue().map().get(string("count")).asIntegerValue().toLong());
+        assertEquals(3L, latency.asMapValue().map().get(string("sum")).asIntegerValue().toLong());
+        // Drained values are not reported twice.
+        assertEquals(0L, unpack(registry).asMapValue().map().get(string("counters")).asMapValue().map().get(string("requests")).asIntegerValue().toLong());
+    }
+
+    private static Value unpack(MetricRegistry registry) throws IOException {
+        MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
+        registry.snapshot().packTelemetry(packer);
+        MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(packer.toByteArray());
+        return unpacker.unpackValue();
+    }
+
+    private static Value string(String value) {
+        return ValueFactory.newString(value);
+    }
+
+}
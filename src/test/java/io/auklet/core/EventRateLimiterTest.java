@@ -0,0 +1,100 @@
+package io.auklet.core;
+
+import io.auklet.sink.EventContext;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EventRateLimiterTest {
+
+    @Test public void samplesWhenQueuedWhileDegraded() {
+        EventRateLimiter limiter = new EventRateLimiter(0);
+        int admitted = 0;
+        for (int i = 0; i < 10000; i++) {
+            double rate = limiter.admit(true);
+            if (rate > 0d) {
+                assertEquals(LoadGovernor.DEGRADED_SAMPLE_RATE, rate, 0d);
+                admitted++;
+            }
+        }
+        assertTrue("admitted " + admitted, admitted > 800 && admitted < 1200);
+        assertEquals(10000L - admitted, limiter.getSampledOutCount());
+        assertEquals(1d, limiter.admit(false), 0d);
+    }
+
+    @Test public void eventQueuedWhileDegradedIsSentAfterRecoveryAtItsQueuedRate() {
+        EventRateLimiter limiter = new EventRateLimiter(0);
+        double rate = 0d;
+        while (rate == 0d) rate = limiter.admit(true);
+        EventContext context = new EventContext(null, null, rate);
+        long sampledOut = limiter.getSampledOutCount();
+        // The agent has recovered when the queue is drained; the event is not sampled again.
+        EventRateLimiter.Decision decision = limiter.tryAcquire(new IllegalStateException(), context, 1d);
+        assertNotNull(decision);
+        assertEquals(LoadGovernor.DEGRADED_SAMPLE_RATE, decision.getSampleRate(), 0d);
+        assertEquals(sampledOut, limiter.getSampledOutCount());
+    }
+
+    @Test public void globalLimitIsAppliedBeforeQueueing() {
+        EventRateLimiter limiter = new EventRateLimiter(10);
+        for (int i = 0; i < 10; i++) assertEquals(1d, limiter.admit(false), 0d);
+        assertEquals(0d, limiter.admit(false), 0d);
+        assertEquals(1L, limiter.getRateLimitedCount());
+    }
+
+    @Test public void fingerprintLimitReturnsGlobalToken() {
+        // The global bucket holds 10 tokens and each fingerprint's holds 1.
+        EventRateLimiter limiter = new EventRateLimiter(10);
+        Throwable hot = new IllegalStateException();
+        for (int i = 0; i < 10; i++) assertEquals(1d, limiter.admit(false), 0d);
+        assertNotNull(limiter.tryAcquire(hot, null, 1d));
+        assertNull(limiter.tryAcquire(hot, null, 1d));
+        assertEquals(1d, limiter.admit(false), 0d);
+        assertEquals(0d, limiter.admit(false), 0d);
+    }
+
+    @Test public void suppressedCountsOnlyRateLimitedEvents() throws InterruptedException {
+        // Each fingerprint's bucket holds 6000 tokens and gains one every 10 ms.
+        EventRateLimiter limiter = new EventRateLimiter(60000);
+        Throwable hot = new IllegalStateException();
+        int suppressed = 0;
+        while (suppressed < 3) {
+            if (limiter.tryAcquire(hot, null, 1d) == null) suppressed++;
+            else suppressed = 0;
+        }
+        Thread.sleep(50L);
+        EventRateLimiter.Decision decision = limiter.tryAcquire(hot, null, 1d);
+        assertNotNull(decision);
+        assertEquals(3L, decision.getSuppressed());
+        assertEquals(1d, decision.getSampleRate(), 0d);
+    }
+
+    @Test public void sampledOutEventsAreNotSuppressed() {
+        EventRateLimiter limiter = new EventRateLimiter(600);
+        Throwable hot = new IllegalStateException();
+        int permitted = 0;
+        for (int i = 0; i < 2000; i++) {
+            EventRateLimiter.Decision decision = limiter.tryAcquire(hot, null, 0.01d);
+            if (decision == null) continue;
+            permitted++;
+            // Sampled-out events are accounted for by the rate alone.
+            assertEquals(0L, decision.getSuppressed());
+            assertEquals(0.01d, decision.getSampleRate(), 0d);
+        }
+        assertTrue(permitted > 0);
+        assertEquals(0L, limiter.getRateLimitedCount());
+        assertEquals(2000L - permitted, limiter.getSampledOutCount());
+    }
+
+    @Test public void eventQueuedNormallyIsSentAtFullRate() {
+        EventRateLimiter limiter = new EventRateLimiter(0);
+        EventContext context = new EventContext(null, null, limiter.admit(false));
+        EventRateLimiter.Decision decision = limiter.tryAcquire(new IllegalStateException(), context, 1d);
+        assertNotNull(decision);
+        assertEquals(1d, decision.getSampleRate(), 0d);
+    }
+
+}
@@ -0,0 +1,31 @@
+package io.auklet.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TokenBucketTest {
+
+    // Slow enough that no token is added during a test.
+    private static final double RATE = 1e-6d;
+
+    @Test public void releasedTokenCanBeAcquiredAgain() {
+        TokenBucket bucket = new TokenBucket(2d, RATE);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+        bucket.release();
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test public void releaseDoesNotExceedCapacity() {
+        TokenBucket bucket = new TokenBucket(2d, RATE);
+        for (int i = 0; i < 5; i++) bucket.release();
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+}
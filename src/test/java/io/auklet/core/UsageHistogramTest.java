@@ -0,0 +1,35 @@
+package io.auklet.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class UsageHistogramTest {
+
+    @Test public void mergeAddsSamples() {
+        UsageHistogram older = new UsageHistogram();
+        older.record(10d);
+        older.record(90d);
+        UsageHistogram newer = new UsageHistogram();
+        newer.record(50d);
+        newer.merge(older);
+        assertEquals(3, newer.getCount());
+        assertEquals(10d, newer.getMin(), 0d);
+        assertEquals(90d, newer.getMax(), 0d);
+        assertEquals(50d, newer.getAverage(), 0.001d);
+        assertEquals(50.5d, newer.getPercentile(50d), 0d);
+    }
+
+    @Test public void mergeIntoEmptyHistogram() {
+        UsageHistogram older = new UsageHistogram();
+        older.record(20d);
+        UsageHistogram newer = new UsageHistogram();
+        newer.merge(new UsageHistogram());
+        assertEquals(0, newer.getCount());
+        newer.merge(older);
+        assertEquals(1, newer.getCount());
+        assertEquals(20d, newer.getMin(), 0d);
+        assertEquals(20d, newer.getMax(), 0d);
+    }
+
+}
@@ -0,0 +1,94 @@
+package io.auklet.platform.metrics;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class CgroupMetricsTest {
+
+    @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test public void readsProcessCgroupOnV2() throws IOException {
+        write("proc/self/cgroup", "0::/user.slice/app.service\n");
+        write("proc/self/mountinfo",
+                "22 1 8:1 / / rw,relatime shared:1 - ext4 /dev/sda1 rw\n" +
+                "30 22 0:26 / /sys/fs/cgroup rw,nosuid,nodev shared:4 - cgroup2 cgroup2 rw,nsdelegate\n");
+        write("sys/fs/cgroup/cgroup.controllers", "cpu memory\n");
+        // The root cgroup has different values, which must not be used.
+        write("sys/fs/cgroup/memory.current", "999999\n");
+        write("sys/fs/cgroup/user.slice/app.service/cgroup.controllers", "cpu memory\n");
+        write("sys/fs/cgroup/user.slice/app.service/cpu.stat", "usage_usec 1000\nnr_periods 0\nnr_throttled 0\n");
+        write("sys/fs/cgroup/user.slice/app.service/cpu.max", "50000 100000\n");
+        write("sys/fs/cgroup/user.slice/app.service/memory.current", "1000\n");
+        write("sys/fs/cgroup/user.slice/app.service/memory.max", "4000\n");
+        write("sys/fs/cgroup/user.slice/app.service/memory.stat", "anon 800\ninactive_file 200\n");
+        assertEquals(20d, sampleMemory(), 0.001d);
+    }
+
+    @Test public void readsProcessCgroupOnV2Namespace() throws IOException {
+        // Inside a cgroup namespace, the process is at the root of the mount.
+        write("proc/self/cgroup", "0::/\n");
+        write("proc/self/mountinfo", "30 22 0:26 / /sys/fs/cgroup ro,nosuid - cgroup2 cgroup rw\n");
+        write("sys/fs/cgroup/cgroup.controllers", "cpu memory\n");
+        write("sys/fs/cgroup/memory.current", "3000\n");
+        write("sys/fs/cgroup/memory.max", "4000\n");
+        assertEquals(75d, sampleMemory(), 0.001d);
+    }
+
+    @Test public void readsPerControllerMountsOnV1() throws IOException {
+        // A container without a cgroup namespace: each controller's mount is rooted at the container's cgroup.
+        write("proc/self/cgroup",
+                "12:memory:/docker/abc\n" +
+                "4:cpu,cpuacct:/docker/abc\n" +
+                "1:name=systemd:/docker/abc\n");
+        write("proc/self/mountinfo",
+                "40 30 0:35 /docker/abc /sys/fs/cgroup/cpu,cpuacct ro,nosuid - cgroup cgroup rw,cpu,cpuacct\n" +
+                "41 30 0:36 /docker/abc /sys/fs/cgroup/memory ro,nosuid - cgroup cgroup rw,memory\n" +
+                "42 30 0:37 /docker/abc /sys/fs/cgroup/systemd ro,nosuid - cgroup cgroup rw,name=systemd\n");
+        write("sys/fs/cgroup/cpu,cpuacct/cpuacct.usage", "5000000\n");
+        write("sys/fs/cgroup/memory/memory.usage_in_bytes", "2000\n");
+        write("sys/fs/cgroup/memory/memory.limit_in_bytes", "10000\n");
+        write("sys/fs/cgroup/memory/memory.stat", "total_inactive_file 1000\n");
+        assertEquals(10d, sampleMemory(), 0.001d);
+    }
+
+    @Test public void readsHostPathOnV1WithoutNamespace() throws IOException {
+        write("proc/self/cgroup", "7:memory:/system.slice/app.service\n");
+        write("proc/self/mountinfo", "41 30 0:36 / /sys/fs/cgroup/memory rw,nosuid shared:9 - cgroup cgroup rw,memory\n");
+        write("sys/fs/cgroup/memory/memory.usage_in_bytes", "999999\n");
+        write("sys/fs/cgroup/memory/system.slice/app.service/memory.usage_in_bytes", "500\n");
+        write("sys/fs/cgroup/memory/system.slice/app.service/memory.limit_in_bytes", "1000\n");
+        assertEquals(50d, sampleMemory(), 0.001d);
+    }
+
+    @Test public void unavailableWithoutProcFiles() throws IOException {
+        write("sys/fs/cgroup/cgroup.controllers", "cpu memory\n");
+        CgroupMetrics metrics = new CgroupMetrics(this.folder.getRoot().getPath());
+        assertFalse(metrics.isAvailable());
+        assertNull(metrics.calculateUsage());
+    }
+
+    private double sampleMemory() {
+        CgroupMetrics metrics = new CgroupMetrics(this.folder.getRoot().getPath());
+        metrics.calculateUsage().run();
+        return metrics.getMemoryUsage();
+    }
+
+    private void write(String path, String content) throws IOException {
+        File file = new File(this.folder.getRoot(), path);
+        file.getParentFile().mkdirs();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+package io.auklet.sink;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CobsFramingTest {
+
+    private static final int MAX_SIZE = 20000;
+    private final Random random = new Random(42L);
+
+    @Test public void roundTripsAllSizes() {
+        for (int size = 0; size <= MAX_SIZE; size++) {
+            // Alternate between messages with no zeros, which fill whole COBS blocks, and messages with some.
+            this.roundTrip(this.message(size, size % 2 == 0 ? 0d : 0.05d));
+        }
+    }
+
+    @Test public void roundTripsBlockBoundaries() {
+        // A COBS block holds 254 non-zero bytes; the CRC adds 4 bytes to the message.
+        for (int block = 1; block <= 3; block++) {
+            for (int size = 254 * block - 8; size <= 254 * block + 2; size++) {
+                this.roundTrip(this.message(size, 0d));
+                this.roundTrip(new byte[size]);
+                byte[] zeroAtBoundary = this.message(size, 0d);
+                if (size >= 254) zeroAtBoundary[253] = 0;
+                this.roundTrip(zeroAtBoundary);
+            }
+        }
+    }
+
+    @Test public void rejectsCorruptFrames() {
+        byte[] message = this.message(1000, 0.05d);
+        byte[] frame = CobsFraming.encode(message);
+        for (int i = 0; i < frame.length - 1; i++) {
+            byte[] corrupt = Arrays.copyOf(frame, frame.length);
+            corrupt[i] ^= (byte) (1 << (i % 8));
+            assertNull("bit flip at " + i, CobsFraming.decode(corrupt, corrupt.length - 1));
+        }
+        assertNull(CobsFraming.decode(frame, frame.length / 2));
+        assertNull(CobsFraming.decode(frame, 3));
+    }
+
+    @Test public void decoderResynchronizesAfterLostAndCorruptBytes() throws IOException {
+        byte[][] messages = new byte[5][];
+        for (int i = 0; i < messages.length; i++) messages[i] = this.message(300 * i, 0.05d);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(new byte[] {17, 42, 99}); // the tail of a frame whose start was lost
+        stream.write(0);
+        stream.write(CobsFraming.encode(messages[0]));
+        byte[] truncated = CobsFraming.encode(messages[1]);
+        stream.write(truncated, truncated.length / 2, truncated.length - truncated.length / 2);
+        stream.write(CobsFraming.encode(messages[2]));
+        byte[] corrupt = CobsFraming.encode(messages[3]);
+        corrupt[corrupt.length / 2] ^= 0x10;
+        if (corrupt[corrupt.length / 2] == 0) corrupt[corrupt.length / 2] = 1;
+        stream.write(corrupt);
+        stream.write(new byte[] {0, 0});
+        stream.write(CobsFraming.encode(new byte[2000])); // longer than the decoder accepts
+        stream.write(CobsFraming.encode(messages[4]));
+        CobsFraming.Decoder decoder = new CobsFraming.Decoder(new ByteArrayInputStream(stream.toByteArray()), 1500);
+        assertArrayEquals(messages[0], decoder.next());
+        assertArrayEquals(messages[2], decoder.next());
+        assertArrayEquals(messages[4], decoder.next());
+        assertNull(decoder.next());
+        assertEquals(4L, decoder.getCorruptCount());
+    }
+
+    private void roundTrip(byte[] message) {
+        byte[] frame = CobsFraming.encode(message);
+        int raw = message.length + 4;
+        assertTrue("overhead for " + message.length, frame.length <= raw + raw / 254 + 2);
+        assertEquals(CobsFraming.DELIMITER, frame[frame.length - 1]);
+        for (int i = 0; i < frame.length - 1; i++) assertNotEquals("zero in frame of " + message.length, 0, frame[i]);
+        assertArrayEquals("size " + message.length, message, CobsFraming.decode(frame, frame.length - 1));
+    }
+
+    private byte[] message(int size, double zeros) {
+        byte[] message = new byte[size];
+        for (int i = 0; i < size; i++) {
+            message[i] = this.random.nextDouble() < zeros ? 0 : (byte) (1 + this.random.nextInt(255));
+        }
+        return message;
+    }
+
+}
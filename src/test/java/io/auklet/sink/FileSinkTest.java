@@ -0,0 +1,67 @@
+package io.auklet.sink;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FileSinkTest {
+
+    @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test public void readsRecordsFromCompressedSegment() throws IOException {
+        File segment = this.folder.newFile("0000000000001-000000.seg.gz");
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new FileOutputStream(segment)))) {
+            out.writeInt(2);
+            out.writeByte(FileSink.KIND_EVENT);
+            out.write(new byte[] {1, 2});
+            out.writeInt(1);
+            out.writeByte(FileSink.KIND_TELEMETRY);
+            out.write(new byte[] {3});
+        }
+        try (FileSink.Reader reader = new FileSink.Reader(segment)) {
+            FileSink.Record event = reader.next();
+            assertFalse(event.isTelemetry());
+            assertArrayEquals(new byte[] {1, 2}, event.getPayload());
+            FileSink.Record telemetry = reader.next();
+            assertTrue(telemetry.isTelemetry());
+            assertArrayEquals(new byte[] {3}, telemetry.getPayload());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test public void endsSegmentAtPartialRecord() throws IOException {
+        File segment = this.folder.newFile("0000000000001-000000.seg");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(segment))) {
+            out.writeInt(100);
+            out.writeByte(FileSink.KIND_EVENT);
+            out.write(new byte[10]);
+        }
+        try (FileSink.Reader reader = new FileSink.Reader(segment)) {
+            assertNull(reader.next());
+        }
+    }
+
+    @Test public void endsSegmentAtCorruptLength() throws IOException {
+        File segment = this.folder.newFile("0000000000001-000000.seg");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(segment))) {
+            // Would need a 2 GB allocation if the length were trusted.
+            out.writeInt(Integer.MAX_VALUE);
+            out.writeByte(FileSink.KIND_EVENT);
+        }
+        try (FileSink.Reader reader = new FileSink.Reader(segment)) {
+            assertNull(reader.next());
+        }
+    }
+
+}
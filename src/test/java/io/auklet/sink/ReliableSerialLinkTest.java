@@ -0,0 +1,92 @@
+package io.auklet.sink;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReliableSerialLinkTest {
+
+    private static final int BAUD_RATE = 1000000;
+    private static final int MAX_FRAME_BYTES = 1024;
+    private final SerialLine down = new SerialLine(0.0);
+    private final SerialLine up = new SerialLine(0.0);
+    private final AtomicInteger delivered = new AtomicInteger();
+    private final List<ReliableSerialLink> links = new ArrayList<>();
+
+    @After public void shutdown() {
+        for (ReliableSerialLink link : this.links) link.shutdown();
+    }
+
+    @Test public void deliversInOrderOverNoisyLine() throws IOException {
+        SerialLine noisyDown = new SerialLine(0.0005);
+        SerialLine noisyUp = new SerialLine(0.0005);
+        ReliableSerialLink.Receiver receiver = new ReliableSerialLink.Receiver(noisyDown.attach(), noisyUp, ReliableSerialLink.DEFAULT_WINDOW_SIZE, MAX_FRAME_BYTES);
+        ReliableSerialLink link = this.start(noisyDown, noisyUp.attach());
+        this.offer(link, "m", 0, 500);
+        this.expect(receiver, "m", 0, 500);
+        assertTrue(receiver.getCorruptCount() > 0);
+        assertTrue(link.getRetransmittedCount() > 0);
+    }
+
+    @Test public void recoversWhenSenderRestarts() throws IOException {
+        ReliableSerialLink.Receiver receiver = new ReliableSerialLink.Receiver(this.down.attach(), this.up, ReliableSerialLink.DEFAULT_WINDOW_SIZE, MAX_FRAME_BYTES);
+        ReliableSerialLink first = this.start(this.down, this.up.attach());
+        this.offer(first, "first", 0, 50);
+        this.expect(receiver, "first", 0, 50);
+        first.shutdown();
+        // The new link numbers its messages from 0 again.
+        ReliableSerialLink second = this.start(this.down, this.up.attach());
+        this.offer(second, "second", 0, 50);
+        this.expect(receiver, "second", 0, 50);
+        assertEquals(2L, receiver.getSessionCount());
+        assertEquals(0L, receiver.getDuplicateCount());
+    }
+
+    @Test public void recoversWhenReceiverRestarts() throws Exception {
+        ReliableSerialLink link = this.start(this.down, this.up.attach());
+        ReliableSerialLink.Receiver first = new ReliableSerialLink.Receiver(this.down.attach(), this.up, ReliableSerialLink.DEFAULT_WINDOW_SIZE, MAX_FRAME_BYTES);
+        this.offer(link, "m", 0, 100);
+        this.expect(first, "m", 0, 40);
+        // Frames already on the line to the old receiver are lost, and must be resent to the new one.
+        ReliableSerialLink.Receiver second = new ReliableSerialLink.Receiver(this.down.attach(), this.up, ReliableSerialLink.DEFAULT_WINDOW_SIZE, MAX_FRAME_BYTES);
+        this.offer(link, "m", 100, 200);
+        this.expect(second, "m", 40, 200);
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (link.getUnacknowledgedCount() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(10L);
+        assertEquals(0, link.getUnacknowledgedCount());
+        assertEquals(200, this.delivered.get());
+    }
+
+    private ReliableSerialLink start(SerialLine out, InputStream in) {
+        ReliableSerialLink link = new ReliableSerialLink(out, in, BAUD_RATE, ReliableSerialLink.DEFAULT_WINDOW_SIZE, 1000,
+                new ReliableSerialLink.Listener() {
+                    @Override public void delivered(int bytes) {
+                        delivered.incrementAndGet();
+                    }
+                });
+        link.start();
+        this.links.add(link);
+        return link;
+    }
+
+    private void offer(ReliableSerialLink link, String prefix, int from, int to) {
+        for (int i = from; i < to; i++) assertTrue(link.offer((prefix + i).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void expect(ReliableSerialLink.Receiver receiver, String prefix, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            byte[] message = receiver.next();
+            assertEquals(prefix + i, message == null ? null : new String(message, StandardCharsets.UTF_8));
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package io.auklet.sink;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SerialFrameWriterTest {
+
+    private static final int CAPACITY = 8;
+    private static final int THREADS = 4;
+    private static final int FRAMES_PER_THREAD = 50;
+
+    @Test public void countsEachDropOnceWhenOfferedConcurrently() throws InterruptedException {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        OutputStream line = new OutputStream() {
+            @Override public void write(int b) throws IOException {
+                this.write(new byte[] {(byte) b}, 0, 1);
+            }
+            @Override public void write(byte[] b, int off, int len) throws IOException {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+        final SerialFrameWriter writer = new SerialFrameWriter(line, 0, CAPACITY);
+        try {
+            // Hold the writer thread so that the queue fills up.
+            assertTrue(writer.offer(new byte[1]));
+            assertTrue(writing.await(5L, TimeUnit.SECONDS));
+            final AtomicInteger refused = new AtomicInteger();
+            final CountDownLatch start = new CountDownLatch(1);
+            Thread[] threads = new Thread[THREADS];
+            for (int t = 0; t < THREADS; t++) {
+                threads[t] = new Thread(new Runnable() {
+                    @Override public void run() {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        for (int i = 0; i < FRAMES_PER_THREAD; i++) {
+                            if (!writer.offer(new byte[10])) refused.incrementAndGet();
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            start.countDown();
+            for (Thread thread : threads) thread.join();
+            assertEquals(THREADS * FRAMES_PER_THREAD - CAPACITY, refused.get());
+            assertEquals(refused.get(), writer.getDroppedCount());
+            assertEquals(1L + CAPACITY * 10L, writer.getQueuedBytes());
+        } finally {
+            release.countDown();
+            writer.shutdown();
+        }
+    }
+
+}
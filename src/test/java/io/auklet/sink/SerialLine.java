@@ -0,0 +1,83 @@
+package io.auklet.sink;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * <p>One direction of a simulated serial line. Bytes written to the line go to the input stream most
+ * recently returned by {@link #attach()}; attaching a new stream ends the previous one, as when the
+ * process at the receiving end restarts. The line may corrupt bytes at random.</p>
+ */
+/*package*/ final class SerialLine extends OutputStream {
+
+    private static final int EOF = -1;
+    private final Random random = new Random(42L);
+    private final double corruption;
+    private volatile End end;
+
+    /**
+     * <p>Constructor.</p>
+     *
+     * @param corruption the probability that each byte is corrupted.
+     */
+    /*package*/ SerialLine(double corruption) {
+        this.corruption = corruption;
+        this.end = new End();
+    }
+
+    /**
+     * <p>Returns a new receiving end for this line, and ends the previous one.</p>
+     *
+     * @return never {@code null}.
+     */
+    /*package*/ InputStream attach() {
+        End previous = this.end;
+        this.end = new End();
+        previous.close();
+        return this.end;
+    }
+
+    @Override public void write(int b) {
+        synchronized (this.random) {
+            if (this.random.nextDouble() < this.corruption) b ^= 1 << this.random.nextInt(8);
+        }
+        this.end.bytes.add(b & 0xFF);
+    }
+
+    private static final class End extends InputStream {
+
+        private final BlockingQueue<Integer> bytes = new LinkedBlockingQueue<>();
+
+        @Override public int read() {
+            try {
+                return this.bytes.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return EOF;
+            }
+        }
+
+        /** <p>Blocks only until the first byte is available, like a real serial port.</p> */
+        @Override public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            int first = this.read();
+            if (first == EOF) return EOF;
+            b[off] = (byte) first;
+            int count = 1;
+            Integer next;
+            while (count < len && (next = this.bytes.peek()) != null && next != EOF) {
+                b[off + count++] = (byte) (int) this.bytes.poll();
+            }
+            return count;
+        }
+
+        @Override public void close() {
+            this.bytes.add(EOF);
+        }
+
+    }
+
+}
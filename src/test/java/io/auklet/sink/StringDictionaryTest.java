@@ -0,0 +1,63 @@
+package io.auklet.sink;
+
+import org.junit.Test;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.value.ExtensionValue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class StringDictionaryTest {
+
+    @Test public void definesOnceThenReferences() throws IOException {
+        StringDictionary dictionary = new StringDictionary(16);
+        byte[][] payloads = pack(dictionary, "a.B", "a.B");
+        assertArrayEquals(concat(new byte[] {StringDictionary.VERSION, 0, 0, 0}, "a.B"), payloads[0]);
+        assertArrayEquals(new byte[] {StringDictionary.VERSION, 0, 0, 0}, payloads[1]);
+    }
+
+    @Test public void resetStartsNewEpoch() throws IOException {
+        StringDictionary dictionary = new StringDictionary(16);
+        pack(dictionary, "a.B");
+        dictionary.reset();
+        // The string is defined again, in epoch 1, so a receiver that missed the first definition can decode it.
+        byte[][] payloads = pack(dictionary, "a.B", "a.B");
+        assertArrayEquals(concat(new byte[] {StringDictionary.VERSION, 1, 0, 0}, "a.B"), payloads[0]);
+        assertArrayEquals(new byte[] {StringDictionary.VERSION, 1, 0, 0}, payloads[1]);
+    }
+
+    @Test public void evictsLeastRecentlyUsed() throws IOException {
+        StringDictionary dictionary = new StringDictionary(2);
+        byte[][] payloads = pack(dictionary, "x", "y", "x", "z", "y");
+        // "y" was least recently used when "z" arrived, so "z" takes its ID and "y" must be defined again.
+        assertArrayEquals(concat(new byte[] {StringDictionary.VERSION, 0, 0, 1}, "z"), payloads[3]);
+        assertArrayEquals(concat(new byte[] {StringDictionary.VERSION, 0, 0, 0}, "y"), payloads[4]);
+    }
+
+    private static byte[][] pack(StringDictionary dictionary, String... values) throws IOException {
+        MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
+        for (String value : values) dictionary.pack(packer, value);
+        MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(packer.toByteArray());
+        byte[][] payloads = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            ExtensionValue value = unpacker.unpackValue().asExtensionValue();
+            assertEquals(StringDictionary.EXT_TYPE, value.getType());
+            payloads[i] = value.getData();
+        }
+        return payloads;
+    }
+
+    private static byte[] concat(byte[] header, String value) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        byte[] result = Arrays.copyOf(header, header.length + utf8.length);
+        System.arraycopy(utf8, 0, result, header.length, utf8.length);
+        return result;
+    }
+
+}